@@ -0,0 +1,443 @@
+package com.kejunyao.db.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为添加了com.kejunyao.db.GenerateMapper注解的实体类生成EntityMapper<br/>
+ * 本模块为纯Java模块，不依赖EasyLite-core，注解按全限定名匹配。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class EntityMapperProcessor extends AbstractProcessor {
+
+    private static final String GENERATE_MAPPER = "com.kejunyao.db.GenerateMapper";
+    private static final String COLUMN_NAME = "com.kejunyao.db.ColumnName";
+    private static final String SUFFIX = "_EntityMapper";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GENERATE_MAPPER);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            if (!GENERATE_MAPPER.equals(annotation.getQualifiedName().toString())) {
+                continue;
+            }
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GenerateMapper can only be applied to classes");
+                    continue;
+                }
+                try {
+                    generate((TypeElement) element);
+                } catch (IOException e) {
+                    error(element, "generate EntityMapper failure: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement entity) throws IOException {
+        if (!checkEntity(entity)) {
+            return;
+        }
+        List<Property> properties = collectProperties(entity);
+        if (properties == null) {
+            return;
+        }
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(entity).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String entityName = entity.getQualifiedName().toString();
+
+        StringBuilder code = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            code.append("package ").append(packageName).append(";\n\n");
+        }
+        code.append("import android.content.ContentValues;\n");
+        code.append("import android.database.Cursor;\n");
+        code.append("import android.database.sqlite.SQLiteProgram;\n\n");
+        code.append("/**\n * 由EasyLite-compiler根据{@link ").append(entityName).append("}生成，请勿修改\n */\n");
+        code.append("public final class ").append(simpleName)
+                .append(" implements com.kejunyao.db.EntityMapper<").append(entityName).append("> {\n\n");
+
+        code.append("    private static final String[] COLUMNS = {");
+        for (int i = 0, size = properties.size(); i < size; i++) {
+            if (i > 0) {
+                code.append(", ");
+            }
+            code.append(literal(properties.get(i).column));
+        }
+        code.append("};\n\n");
+
+        code.append("    @Override\n    public String[] columns() {\n        return COLUMNS.clone();\n    }\n\n");
+
+        code.append("    @Override\n    public int[] resolveIndices(Cursor c) {\n");
+        code.append("        int[] indices = new int[").append(properties.size()).append("];\n");
+        for (int i = 0, size = properties.size(); i < size; i++) {
+            code.append("        indices[").append(i).append("] = c.getColumnIndex(COLUMNS[").append(i).append("]);\n");
+        }
+        code.append("        return indices;\n    }\n\n");
+
+        code.append("    @Override\n    public ").append(entityName).append(" toEntity(Cursor c, int[] indices) {\n");
+        code.append("        ").append(entityName).append(" entity = new ").append(entityName).append("();\n");
+        for (int i = 0, size = properties.size(); i < size; i++) {
+            Property property = properties.get(i);
+            code.append("        if (indices[").append(i).append("] >= 0) {\n");
+            code.append("            ").append(property.write("entity", property.type.readCursor("c", "indices[" + i + "]"))).append(";\n");
+            code.append("        }\n");
+        }
+        code.append("        return entity;\n    }\n\n");
+
+        code.append("    @Override\n    public ContentValues toContentValues(").append(entityName).append(" entity) {\n");
+        code.append("        ContentValues values = new ContentValues(").append(properties.size()).append(");\n");
+        for (Property property : properties) {
+            code.append("        values.put(").append(literal(property.column)).append(", ").append(property.read("entity")).append(");\n");
+        }
+        code.append("        return values;\n    }\n\n");
+
+        code.append("    @Override\n    public void bind(SQLiteProgram program, int index, ").append(entityName).append(" entity, int ordinal) {\n");
+        code.append("        switch (ordinal) {\n");
+        for (int i = 0, size = properties.size(); i < size; i++) {
+            Property property = properties.get(i);
+            code.append("            case ").append(i).append(": {\n");
+            code.append("                ").append(property.type.javaType).append(" value = ").append(property.read("entity")).append(";\n");
+            if (property.type.primitive) {
+                code.append("                ").append(property.type.bind("program", "index", "value")).append(";\n");
+            } else {
+                code.append("                if (value == null) {\n");
+                code.append("                    program.bindNull(index);\n");
+                code.append("                } else {\n");
+                code.append("                    ").append(property.type.bind("program", "index", "value")).append(";\n");
+                code.append("                }\n");
+            }
+            code.append("                break;\n            }\n");
+        }
+        code.append("            default:\n");
+        code.append("                throw new IllegalArgumentException(\"unknown ordinal: \" + ordinal);\n");
+        code.append("        }\n    }\n}\n");
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? simpleName : packageName + '.' + simpleName, entity);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(code.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private boolean checkEntity(TypeElement entity) {
+        Set<Modifier> modifiers = entity.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT)) {
+            error(entity, "@GenerateMapper entity must not be private or abstract");
+            return false;
+        }
+        if (entity.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) {
+            error(entity, "@GenerateMapper nested entity must be static");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(entity, "@GenerateMapper entity must have a non-private no-arg constructor");
+        return false;
+    }
+
+    private List<Property> collectProperties(TypeElement entity) {
+        List<Property> properties = new ArrayList<>();
+        Set<String> columns = new HashSet<>();
+        List<TypeElement> hierarchy = new ArrayList<>();
+        TypeElement type = entity;
+        while (type != null && !"java.lang.Object".equals(type.getQualifiedName().toString())) {
+            hierarchy.add(0, type);
+            TypeMirror superclass = type.getSuperclass();
+            type = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) processingEnv.getTypeUtils().asElement(superclass) : null;
+        }
+        // 生成的映射类与实体同包，只能直接访问同包或public的字段和方法
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entity);
+        boolean valid = true;
+        for (int level = 0, levels = hierarchy.size(); level < levels; level++) {
+            TypeElement current = hierarchy.get(level);
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                FieldType fieldType = FieldType.of(field.asType());
+                if (fieldType == null) {
+                    error(field, "unsupported field type: " + field.asType());
+                    valid = false;
+                    continue;
+                }
+                String name = field.getSimpleName().toString();
+                String column = columnName(field);
+                if (!columns.add(column)) {
+                    error(field, "duplicate column: " + column);
+                    valid = false;
+                    continue;
+                }
+                Property property = new Property(name, column, fieldType);
+                if (modifiers.contains(Modifier.FINAL) || !isAccessible(field, pkg)) {
+                    // 子类中声明的访问方法同样可用，从实体本身开始查找
+                    List<TypeElement> types = hierarchy.subList(level, levels);
+                    String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                    property.getter = findMethod(types, pkg, fieldType.isBoolean() ? "is" + capitalized : null, "get" + capitalized, 0);
+                    property.setter = findMethod(types, pkg, null, "set" + capitalized, 1);
+                    if (property.getter == null || property.setter == null) {
+                        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                            error(field, "private or final field " + name + " needs accessible getter and setter");
+                        } else {
+                            error(field, "field " + name + " is not accessible from package " + pkg.getQualifiedName()
+                                    + " and needs accessible getter and setter");
+                        }
+                        valid = false;
+                        continue;
+                    }
+                }
+                properties.add(property);
+            }
+        }
+        if (valid && properties.isEmpty()) {
+            error(entity, "@GenerateMapper entity has no mappable field");
+            valid = false;
+        }
+        return valid ? properties : null;
+    }
+
+    private String columnName(VariableElement field) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (COLUMN_NAME.equals(annotation.getQualifiedName().toString())) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                    if ("value".equals(entry.getKey().getSimpleName().toString())) {
+                        return String.valueOf(entry.getValue().getValue());
+                    }
+                }
+            }
+        }
+        return field.getSimpleName().toString();
+    }
+
+    /**
+     * 查找生成的映射类可访问的方法，子类中的方法优先
+     */
+    private String findMethod(List<TypeElement> types, PackageElement pkg, String preferredName, String name, int parameterCount) {
+        for (int i = types.size() - 1; i >= 0; i--) {
+            String found = null;
+            for (ExecutableElement method : ElementFilter.methodsIn(types.get(i).getEnclosedElements())) {
+                if (method.getModifiers().contains(Modifier.STATIC)
+                        || method.getParameters().size() != parameterCount
+                        || !isAccessible(method, pkg)) {
+                    continue;
+                }
+                String methodName = method.getSimpleName().toString();
+                if (methodName.equals(preferredName)) {
+                    return methodName;
+                }
+                if (methodName.equals(name)) {
+                    found = methodName;
+                }
+            }
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 成员是否可从pkg包中的类直接访问：public，或非private且声明在同一包中<br/>
+     * 其他包中父类的protected成员对生成的映射类不可见
+     */
+    private boolean isAccessible(Element member, PackageElement pkg) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return !modifiers.contains(Modifier.PRIVATE)
+                && processingEnv.getElementUtils().getPackageOf(member).equals(pkg);
+    }
+
+    private static String literal(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private void error(Element element, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
+    }
+
+    /**
+     * 实体属性
+     */
+    private static final class Property {
+        final String name;
+        final String column;
+        final FieldType type;
+        String getter;
+        String setter;
+
+        Property(String name, String column, FieldType type) {
+            this.name = name;
+            this.column = column;
+            this.type = type;
+        }
+
+        String read(String entity) {
+            return getter == null ? entity + '.' + name : entity + '.' + getter + "()";
+        }
+
+        String write(String entity, String value) {
+            return setter == null ? entity + '.' + name + " = " + value : entity + '.' + setter + '(' + value + ')';
+        }
+    }
+
+    /**
+     * 支持的字段类型
+     */
+    private enum FieldType {
+        LONG("long", true, "getLong", "bindLong"),
+        INT("int", true, "getInt", "bindLong"),
+        SHORT("short", true, "getShort", "bindLong"),
+        BYTE("byte", true, "getInt", "bindLong"),
+        DOUBLE("double", true, "getDouble", "bindDouble"),
+        FLOAT("float", true, "getFloat", "bindDouble"),
+        BOOLEAN("boolean", true, "getInt", "bindLong"),
+        BOXED_LONG("Long", false, "getLong", "bindLong"),
+        BOXED_INT("Integer", false, "getInt", "bindLong"),
+        BOXED_SHORT("Short", false, "getShort", "bindLong"),
+        BOXED_BYTE("Byte", false, "getInt", "bindLong"),
+        BOXED_DOUBLE("Double", false, "getDouble", "bindDouble"),
+        BOXED_FLOAT("Float", false, "getFloat", "bindDouble"),
+        BOXED_BOOLEAN("Boolean", false, "getInt", "bindLong"),
+        STRING("String", false, "getString", "bindString"),
+        BLOB("byte[]", false, "getBlob", "bindBlob");
+
+        final String javaType;
+        final boolean primitive;
+        final String getter;
+        final String binder;
+
+        FieldType(String javaType, boolean primitive, String getter, String binder) {
+            this.javaType = javaType;
+            this.primitive = primitive;
+            this.getter = getter;
+            this.binder = binder;
+        }
+
+        boolean isBoolean() {
+            return this == BOOLEAN || this == BOXED_BOOLEAN;
+        }
+
+        String readCursor(String cursor, String index) {
+            String value = cursor + '.' + getter + '(' + index + ')';
+            switch (this) {
+                case BOOLEAN:
+                    return value + " != 0";
+                case BYTE:
+                    return "(byte) " + value;
+                case BOXED_BOOLEAN:
+                    return cursor + ".isNull(" + index + ") ? null : Boolean.valueOf(" + value + " != 0)";
+                case BOXED_BYTE:
+                    return cursor + ".isNull(" + index + ") ? null : Byte.valueOf((byte) " + value + ')';
+                case BOXED_LONG:
+                case BOXED_INT:
+                case BOXED_SHORT:
+                case BOXED_DOUBLE:
+                case BOXED_FLOAT:
+                    return cursor + ".isNull(" + index + ") ? null : " + javaType + ".valueOf(" + value + ')';
+                default:
+                    return value;
+            }
+        }
+
+        String bind(String program, String index, String value) {
+            if (isBoolean()) {
+                return program + '.' + binder + '(' + index + ", " + value + " ? 1 : 0)";
+            }
+            return program + '.' + binder + '(' + index + ", " + value + ')';
+        }
+
+        static FieldType of(TypeMirror type) {
+            switch (type.getKind()) {
+                case LONG:
+                    return LONG;
+                case INT:
+                    return INT;
+                case SHORT:
+                    return SHORT;
+                case BYTE:
+                    return BYTE;
+                case DOUBLE:
+                    return DOUBLE;
+                case FLOAT:
+                    return FLOAT;
+                case BOOLEAN:
+                    return BOOLEAN;
+                case ARRAY:
+                    return "byte[]".equals(type.toString()) ? BLOB : null;
+                case DECLARED:
+                    switch (type.toString()) {
+                        case "java.lang.Long":
+                            return BOXED_LONG;
+                        case "java.lang.Integer":
+                            return BOXED_INT;
+                        case "java.lang.Short":
+                            return BOXED_SHORT;
+                        case "java.lang.Byte":
+                            return BOXED_BYTE;
+                        case "java.lang.Double":
+                            return BOXED_DOUBLE;
+                        case "java.lang.Float":
+                            return BOXED_FLOAT;
+                        case "java.lang.Boolean":
+                            return BOXED_BOOLEAN;
+                        case "java.lang.String":
+                            return STRING;
+                        default:
+                            return null;
+                    }
+                default:
+                    return null;
+            }
+        }
+    }
+}
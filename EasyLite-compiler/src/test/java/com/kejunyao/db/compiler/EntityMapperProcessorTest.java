@@ -0,0 +1,212 @@
+package com.kejunyao.db.compiler;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+
+/**
+ * {@link EntityMapperProcessor}测试<br/>
+ * 本模块不依赖Android及EasyLite-core，生成代码用到的类以最小的桩代码参与编译。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public class EntityMapperProcessorTest {
+
+    private static final JavaFileObject[] STUBS = {
+            JavaFileObjects.forSourceLines("android.content.ContentValues",
+                    "package android.content;",
+                    "public final class ContentValues {",
+                    "    public ContentValues(int size) {}",
+                    "    public void put(String key, Long value) {}",
+                    "    public void put(String key, Integer value) {}",
+                    "    public void put(String key, Short value) {}",
+                    "    public void put(String key, Byte value) {}",
+                    "    public void put(String key, Double value) {}",
+                    "    public void put(String key, Float value) {}",
+                    "    public void put(String key, Boolean value) {}",
+                    "    public void put(String key, String value) {}",
+                    "    public void put(String key, byte[] value) {}",
+                    "}"),
+            JavaFileObjects.forSourceLines("android.database.Cursor",
+                    "package android.database;",
+                    "public interface Cursor {",
+                    "    int getColumnIndex(String columnName);",
+                    "    boolean isNull(int columnIndex);",
+                    "    long getLong(int columnIndex);",
+                    "    int getInt(int columnIndex);",
+                    "    short getShort(int columnIndex);",
+                    "    double getDouble(int columnIndex);",
+                    "    float getFloat(int columnIndex);",
+                    "    String getString(int columnIndex);",
+                    "    byte[] getBlob(int columnIndex);",
+                    "}"),
+            JavaFileObjects.forSourceLines("android.database.sqlite.SQLiteProgram",
+                    "package android.database.sqlite;",
+                    "public abstract class SQLiteProgram {",
+                    "    public void bindNull(int index) {}",
+                    "    public void bindLong(int index, long value) {}",
+                    "    public void bindDouble(int index, double value) {}",
+                    "    public void bindString(int index, String value) {}",
+                    "    public void bindBlob(int index, byte[] value) {}",
+                    "}"),
+            JavaFileObjects.forSourceLines("com.kejunyao.db.EntityMapper",
+                    "package com.kejunyao.db;",
+                    "import android.content.ContentValues;",
+                    "import android.database.Cursor;",
+                    "import android.database.sqlite.SQLiteProgram;",
+                    "public interface EntityMapper<T> {",
+                    "    String[] columns();",
+                    "    int[] resolveIndices(Cursor c);",
+                    "    T toEntity(Cursor c, int[] indices);",
+                    "    ContentValues toContentValues(T entity);",
+                    "    void bind(SQLiteProgram program, int index, T entity, int ordinal);",
+                    "}"),
+            JavaFileObjects.forSourceLines("com.kejunyao.db.GenerateMapper",
+                    "package com.kejunyao.db;",
+                    "public @interface GenerateMapper {",
+                    "}"),
+            JavaFileObjects.forSourceLines("com.kejunyao.db.ColumnName",
+                    "package com.kejunyao.db;",
+                    "public @interface ColumnName {",
+                    "    String value();",
+                    "}")
+    };
+
+    private static Compilation compile(JavaFileObject... entities) {
+        List<JavaFileObject> files = new ArrayList<>(Arrays.asList(STUBS));
+        files.addAll(Arrays.asList(entities));
+        return javac().withProcessors(new EntityMapperProcessor()).compile(files);
+    }
+
+    @Test
+    public void generatesMapperForFieldsAndAccessors() {
+        Compilation compilation = compile(JavaFileObjects.forSourceLines("test.User",
+                "package test;",
+                "import com.kejunyao.db.ColumnName;",
+                "import com.kejunyao.db.GenerateMapper;",
+                "@GenerateMapper",
+                "public class User {",
+                "    long id;",
+                "    @ColumnName(\"user_name\") String name;",
+                "    Integer age;",
+                "    private boolean vip;",
+                "    byte[] avatar;",
+                "    static int ignoredStatic;",
+                "    transient int ignoredTransient;",
+                "    public boolean isVip() { return vip; }",
+                "    public void setVip(boolean vip) { this.vip = vip; }",
+                "}"));
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.User_EntityMapper").contentsAsUtf8String()
+                .contains("private static final String[] COLUMNS = {\"id\", \"user_name\", \"age\", \"vip\", \"avatar\"};");
+        assertThat(compilation).generatedSourceFile("test.User_EntityMapper").contentsAsUtf8String()
+                .contains("entity.setVip(c.getInt(indices[3]) != 0)");
+        assertThat(compilation).generatedSourceFile("test.User_EntityMapper").contentsAsUtf8String()
+                .contains("entity.age = c.isNull(indices[2]) ? null : Integer.valueOf(c.getInt(indices[2]))");
+        assertThat(compilation).generatedSourceFile("test.User_EntityMapper").contentsAsUtf8String()
+                .contains("program.bindLong(index, value ? 1 : 0)");
+    }
+
+    @Test
+    public void generatesMapperForStaticNestedEntity() {
+        Compilation compilation = compile(JavaFileObjects.forSourceLines("test.Outer",
+                "package test;",
+                "public class Outer {",
+                "    @com.kejunyao.db.GenerateMapper",
+                "    public static class Event {",
+                "        long id;",
+                "    }",
+                "}"));
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.Outer$Event_EntityMapper");
+    }
+
+    @Test
+    public void rejectsEntityWithoutNoArgConstructor() {
+        Compilation compilation = compile(JavaFileObjects.forSourceLines("test.Point",
+                "package test;",
+                "@com.kejunyao.db.GenerateMapper",
+                "public class Point {",
+                "    int x;",
+                "    public Point(int x) { this.x = x; }",
+                "}"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("must have a non-private no-arg constructor");
+    }
+
+    @Test
+    public void rejectsPrivateFieldWithoutAccessors() {
+        Compilation compilation = compile(JavaFileObjects.forSourceLines("test.Secret",
+                "package test;",
+                "@com.kejunyao.db.GenerateMapper",
+                "public class Secret {",
+                "    private String value;",
+                "}"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("needs accessible getter and setter");
+    }
+
+    @Test
+    public void rejectsUnsupportedFieldType() {
+        Compilation compilation = compile(JavaFileObjects.forSourceLines("test.Bag",
+                "package test;",
+                "@com.kejunyao.db.GenerateMapper",
+                "public class Bag {",
+                "    java.util.List<String> items;",
+                "}"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("unsupported field type");
+    }
+
+    @Test
+    public void usesAccessorsForProtectedFieldInheritedFromOtherPackage() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("base.Base",
+                        "package base;",
+                        "public class Base {",
+                        "    protected long id;",
+                        "    public long getId() { return id; }",
+                        "    public void setId(long id) { this.id = id; }",
+                        "}"),
+                JavaFileObjects.forSourceLines("test.Child",
+                        "package test;",
+                        "@com.kejunyao.db.GenerateMapper",
+                        "public class Child extends base.Base {",
+                        "    String name;",
+                        "}"));
+        assertThat(compilation).succeeded();
+        assertThat(compilation).generatedSourceFile("test.Child_EntityMapper").contentsAsUtf8String()
+                .contains("values.put(\"id\", entity.getId())");
+        assertThat(compilation).generatedSourceFile("test.Child_EntityMapper").contentsAsUtf8String()
+                .contains("entity.name = c.getString(indices[1])");
+    }
+
+    @Test
+    public void rejectsInaccessibleInheritedFieldWithoutAccessors() {
+        Compilation compilation = compile(
+                JavaFileObjects.forSourceLines("base.Base",
+                        "package base;",
+                        "public class Base {",
+                        "    protected long id;",
+                        "}"),
+                JavaFileObjects.forSourceLines("test.Child",
+                        "package test;",
+                        "@com.kejunyao.db.GenerateMapper",
+                        "public class Child extends base.Base {",
+                        "    String name;",
+                        "}"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("field id is not accessible from package test");
+    }
+}
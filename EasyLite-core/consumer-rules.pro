@@ -0,0 +1,5 @@
+# EntityMapper按“实体类名_EntityMapper”反射加载，须保留实体类名及EntityMapper的无参构造方法
+-keepnames @com.kejunyao.db.GenerateMapper class *
+-keep class * implements com.kejunyao.db.EntityMapper {
+    <init>();
+}
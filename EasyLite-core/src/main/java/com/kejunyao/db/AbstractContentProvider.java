@@ -41,7 +41,18 @@ public abstract class AbstractContentProvider extends ContentProvider {
                 throw new IllegalArgumentException("Unknown URL " + uri);
             }
             SQLiteDatabase db = mHelper.getReadableDatabase();
-            cursor = db.query(table, projection, selection, selectionArgs, null, null, sortOrder);
+            // 去重、分组、分页等查询选项由Uri参数传递，见QueryOptions
+            cursor = db.query(
+                    "true".equals(uri.getQueryParameter(QueryOptions.PARAM_DISTINCT)),
+                    table,
+                    projection,
+                    selection,
+                    selectionArgs,
+                    uri.getQueryParameter(QueryOptions.PARAM_GROUP_BY),
+                    uri.getQueryParameter(QueryOptions.PARAM_HAVING),
+                    sortOrder,
+                    uri.getQueryParameter(QueryOptions.PARAM_LIMIT)
+            );
         } catch (Exception e) {
             if (Log.isLogEnabled()) {
                 Log.e(getClass().getSimpleName(), "toEntity failed - ", e);
@@ -143,7 +154,11 @@ public abstract class AbstractContentProvider extends ContentProvider {
             return null;
         }
         String result = uriStr.substring(prefixLength);
-        int index = result.indexOf('/');
+        int index = result.indexOf('?');
+        if (index >= 0) {
+            result = result.substring(0, index);
+        }
+        index = result.indexOf('/');
         if (index > 0) {
             return result.substring(0, index);
         }
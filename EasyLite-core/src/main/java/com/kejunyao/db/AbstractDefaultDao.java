@@ -2,10 +2,20 @@ package com.kejunyao.db;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 数据库通用操作基类
@@ -15,19 +25,57 @@ import java.util.List;
  */
 public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
 
+    /**
+     * 批量操作默认每批次提交的记录数
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    /**
+     * 按主键批量操作时每条语句绑定的主键数，分块大小为两者之间2的幂，
+     * 相同分块大小的语句文本相同，可复用已编译的语句
+     */
+    static final int MIN_KEYS_PER_STATEMENT = 8;
+    static final int MAX_KEYS_PER_STATEMENT = 256;
+    /**
+     * 按主键批量读取时一条语句绑定的主键数上限（SQLITE_MAX_VARIABLE_NUMBER默认值），
+     * 主键数不超过该值时只执行一条查询，读到的是同一时刻的数据
+     */
+    static final int MAX_KEYS_PER_QUERY = 999;
+
     protected final String PRIMARY_KEY_WHERE_CLAUSE;
     protected final boolean isPrimaryKeyAutoIncrement;
     protected final String[] mColumns;
     protected final String mPrimaryKey;
+    private final HashMap<String, Column> mColumnDefinitions;
+    private volatile int mBatchSize = DEFAULT_BATCH_SIZE;
+    /**
+     * 编译期生成的实体映射，未生成或未覆盖全部列时为null
+     */
+    private final EntityMapper<T> mEntityMapper;
+    /**
+     * mColumns中各列在mEntityMapper中的序号
+     */
+    private final int[] mMapperOrdinals;
+    /**
+     * mEntityMapper中不属于Dao的列，写入时从ContentValues中移除，没有时为null
+     */
+    private final String[] mMapperExtraColumns;
+    /**
+     * 最近一次{@link #toEntity(Cursor)}解析的列位置，同一Cursor逐行转换时只解析一次
+     */
+    private volatile CursorIndices mLastIndices;
+    private final boolean isMapperReadable;
+    private final boolean isMapperWritable;
 
     public AbstractDefaultDao() {
         Column[] columns = getColumns();
         mColumns = new String[columns.length];
+        mColumnDefinitions = new HashMap<>(columns.length);
         boolean isAuto = false;
         String primaryKey = null;
         for (int i = 0, size = columns.length; i < size; i++) {
             Column column = columns[i];
             mColumns[i] = column.name();
+            mColumnDefinitions.put(column.name(), column);
             if (primaryKey == null) {
                 if (column.isPrimaryKeyAuto()) {
                     primaryKey = column.name();
@@ -40,21 +88,297 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
         mPrimaryKey = primaryKey;
         PRIMARY_KEY_WHERE_CLAUSE = Utils.concat(primaryKey, " = ? ");
         isPrimaryKeyAutoIncrement = isAuto;
+
+        EntityMapper<T> mapper = EntityMappers.get(getPersistentClass());
+        int[] ordinals = null;
+        if (mapper != null) {
+            ordinals = toMapperOrdinals(mapper, mColumns);
+            if (ordinals == null) {
+                if (Utils.isDebug()) {
+                    Utils.log(this, entityLog("EntityMapper"), "does not cover all columns, ignored.");
+                }
+                mapper = null;
+            }
+        }
+        mEntityMapper = mapper;
+        mMapperOrdinals = ordinals;
+        mMapperExtraColumns = mapper == null ? null : extraColumns(mapper, mColumns);
+        // 子类重写了转换方法时，以子类实现为准
+        isMapperReadable = mapper != null && !isOverridden("toEntity", Cursor.class);
+        isMapperWritable = mapper != null && !isOverridden("toContentValues", Object.class);
+    }
+
+    private boolean isOverridden(String name, Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod(name, parameterTypes).getDeclaringClass() != AbstractDefaultDao.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private static int[] toMapperOrdinals(EntityMapper<?> mapper, String[] columns) {
+        String[] mapperColumns = mapper.columns();
+        int[] ordinals = new int[columns.length];
+        for (int i = 0, size = columns.length; i < size; i++) {
+            ordinals[i] = -1;
+            for (int j = 0; j < mapperColumns.length; j++) {
+                if (mapperColumns[j].equals(columns[i])) {
+                    ordinals[i] = j;
+                    break;
+                }
+            }
+            if (ordinals[i] < 0) {
+                return null;
+            }
+        }
+        return ordinals;
+    }
+
+    private static String[] extraColumns(EntityMapper<?> mapper, String[] columns) {
+        List<String> extra = null;
+        for (String column : mapper.columns()) {
+            if (!Arrays.asList(columns).contains(column)) {
+                if (extra == null) {
+                    extra = new ArrayList<>();
+                }
+                extra.add(column);
+            }
+        }
+        return extra == null ? null : extra.toArray(new String[extra.size()]);
     }
 
     public abstract String getTableName();
 
-    protected abstract Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs);
+    protected Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs) {
+        return query(tableName, columns, whereClause, whereArgs, null);
+    }
+
+    /**
+     * 查询
+     * @param options 查询选项，可为null
+     */
+    protected abstract Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs, QueryOptions options);
 
     public abstract Column[] getColumns();
 
+    /**
+     * 表的索引，建表时一并创建，完整性检查时按声明补建、重建或删除
+     * @return 索引，默认没有索引
+     */
+    public Index[] getIndexes() {
+        return null;
+    }
+
+    /**
+     * 设置批量操作每批次提交的记录数
+     * @param batchSize 每批次记录数，须大于0
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be greater than 0!");
+        this.mBatchSize = batchSize;
+    }
+
+    /**
+     * 批量操作每批次提交的记录数
+     */
+    public int getBatchSize() {
+        return mBatchSize;
+    }
+
+    /**
+     * 按列名获取列定义
+     * @param name 列名
+     * @return 列定义，不存在返回null
+     */
+    Column getColumn(String name) {
+        return mColumnDefinitions.get(name);
+    }
+
+    /**
+     * 写操作可直接使用的实体映射（子类未重写{@link #toContentValues(Object)}）
+     * @return 实体映射，不可用时返回null
+     */
+    EntityMapper<T> getWritableMapper() {
+        return isMapperWritable ? mEntityMapper : null;
+    }
+
+    /**
+     * 获取各列在实体映射中的序号
+     * @param columns 列定义
+     * @return 各列序号，实体映射不可写时返回null
+     */
+    int[] getMapperOrdinals(Column[] columns) {
+        if (!isMapperWritable) {
+            return null;
+        }
+        int[] ordinals = new int[columns.length];
+        for (int i = 0, size = columns.length; i < size; i++) {
+            ordinals[i] = -1;
+            for (int j = 0; j < mColumns.length; j++) {
+                if (mColumns[j].equals(columns[i].name())) {
+                    ordinals[i] = mMapperOrdinals[j];
+                    break;
+                }
+            }
+            if (ordinals[i] < 0) {
+                return null;
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * 获取实体的主键值
+     * @return 主键值，无主键时返回null
+     */
+    String primaryKeyOf(T entity) {
+        return mPrimaryKey == null ? null : toContentValues(entity).getAsString(mPrimaryKey);
+    }
+
+    /**
+     * 是否为未保存的新记录：没有主键值，或自增主键值为0
+     */
+    boolean isNewRecord(ContentValues values) {
+        if (mPrimaryKey == null) {
+            return true;
+        }
+        Object key = values.get(mPrimaryKey);
+        if (key == null) {
+            return true;
+        }
+        if (!isPrimaryKeyAutoIncrement) {
+            return false;
+        }
+        if (key instanceof Number) {
+            return ((Number) key).longValue() == 0;
+        }
+        return "0".equals(key.toString().trim());
+    }
+
+    /**
+     * 剩余remaining个主键时本次绑定的主键数，不足时以最后一个主键补齐
+     */
+    static int keysPerStatement(int remaining) {
+        if (remaining >= MAX_KEYS_PER_STATEMENT) {
+            return MAX_KEYS_PER_STATEMENT;
+        }
+        int size = MIN_KEYS_PER_STATEMENT;
+        while (size < remaining) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * 剩余remaining个主键时一条查询语句绑定的主键数：不超过{@link #MAX_KEYS_PER_STATEMENT}时同{@link #keysPerStatement(int)}，
+     * 超过时取{@link #MAX_KEYS_PER_STATEMENT}的整数倍，最多{@link #MAX_KEYS_PER_QUERY}
+     */
+    static int keysPerQuery(int remaining) {
+        if (remaining <= MAX_KEYS_PER_STATEMENT) {
+            return keysPerStatement(remaining);
+        }
+        int size = (remaining + MAX_KEYS_PER_STATEMENT - 1) / MAX_KEYS_PER_STATEMENT * MAX_KEYS_PER_STATEMENT;
+        return Math.min(size, MAX_KEYS_PER_QUERY);
+    }
+
+    /**
+     * 按主键列的亲和性规范主键值，使参数与查询结果按SQLite比较的方式匹配，如整型主键的“007”与“7”
+     */
+    String normalizePrimaryKey(String primaryKey) {
+        return SQLiteBinder.normalize(primaryKey, getColumn(mPrimaryKey));
+    }
+
+    /**
+     * 逐行读取记录
+     */
+    interface RowReader {
+        void read(Cursor c);
+    }
+
+    /**
+     * 按主键批量读取，逐行回调reader<br/>
+     * 主键数不超过{@link #MAX_KEYS_PER_QUERY}时只执行一条查询；超过时分块查询，各分块可能读到不同时刻的数据，
+     * {@link AbstractSQLiteDaoImpl}改为经由临时表以一条查询读取
+     * @param columns 查询的列
+     * @throws SQLException 查询出错
+     */
+    void readByPrimaryKeys(String[] columns, String[] primaryKeys, RowReader reader) {
+        for (int start = 0, size; start < primaryKeys.length; start += size) {
+            size = keysPerQuery(primaryKeys.length - start);
+            Cursor c = query(getTableName(), columns, primaryKeyInClause(size), chunkArgs(primaryKeys, start, size));
+            try {
+                if (c == null) {
+                    throw new SQLException(entityLog("query by primary keys failed"));
+                }
+                while (c.moveToNext()) {
+                    reader.read(c);
+                }
+            } finally {
+                Utils.closeSafely(c);
+            }
+        }
+    }
+
+    /**
+     * 生成“主键 IN (?, ...)”条件
+     * @param size 参数个数
+     */
+    String primaryKeyInClause(int size) {
+        StringBuilder sql = new StringBuilder(mPrimaryKey.length() + 8 + 2 * size);
+        sql.append(mPrimaryKey).append(" IN (");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append('?');
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * 从start开始取size个主键作为参数，超出末尾的以最后一个主键补齐
+     */
+    static String[] chunkArgs(String[] primaryKeys, int start, int size) {
+        String[] args = new String[size];
+        for (int i = 0; i < size; i++) {
+            args[i] = primaryKeys[Math.min(start + i, primaryKeys.length - 1)];
+        }
+        return args;
+    }
+
     protected String[] primaryKeyWhereArgs(String primaryKey) {
         return new String[] {primaryKey};
     }
 
-    public abstract T toEntity(Cursor c);
+    /**
+     * 将Cursor当前行转换为实体<br/>
+     * 默认使用{@link GenerateMapper}生成的{@link EntityMapper}，未生成时子类须重写
+     */
+    public T toEntity(Cursor c) {
+        Assert.notNull(mEntityMapper, entityLog("no EntityMapper generated, toEntity(Cursor) must be overridden"));
+        CursorIndices last = mLastIndices;
+        if (last == null || last.cursor.get() != c) {
+            last = new CursorIndices(c, mEntityMapper.resolveIndices(c));
+            mLastIndices = last;
+        }
+        return mEntityMapper.toEntity(c, last.indices);
+    }
 
-    public abstract ContentValues toContentValues(T entity);
+    /**
+     * 将实体转换为{@link ContentValues}<br/>
+     * 默认使用{@link GenerateMapper}生成的{@link EntityMapper}，未生成时子类须重写
+     */
+    public ContentValues toContentValues(T entity) {
+        Assert.notNull(mEntityMapper, entityLog("no EntityMapper generated, toContentValues(T) must be overridden"));
+        ContentValues values = mEntityMapper.toContentValues(entity);
+        if (mMapperExtraColumns != null) {
+            // 实体中不属于Dao的字段不写入数据库
+            for (String column : mMapperExtraColumns) {
+                values.remove(column);
+            }
+        }
+        return values;
+    }
 
     protected abstract boolean has(String log, String whereClause, String[] whereArgs);
 
@@ -62,7 +386,7 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
 
     protected abstract T query(String log, String whereClause, String[] whereArgs);
 
-    protected abstract List<T> queryMany(String log, String whereClause, String[] whereArgs);
+    protected abstract List<T> queryMany(String log, String whereClause, String[] whereArgs, QueryOptions options);
 
     protected abstract boolean update(String log, ContentValues values, String whereClause, String[] whereArgs);
 
@@ -73,11 +397,27 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
             Utils.log(this, "create table ", getTableName(), " before");
         }
         db.execSQL(Utils.buildCreateTableSql(getTableName(), getColumns()));
+        Index[] indexes = getIndexes();
+        if (indexes != null) {
+            for (Index index : indexes) {
+                if (Indexes.isSupported(db, index)) {
+                    Indexes.create(db, getTableName(), index);
+                }
+            }
+        }
+        onSchemaChanged();
         if (Utils.isDebug()) {
             Utils.log(this, "create table ", getTableName(), " done.");
         }
     }
 
+    /**
+     * 表结构发生变化（建表、新增字段、升降级等）时回调，
+     * 子类可在此清理与表结构相关的缓存（如已编译的语句）
+     */
+    protected void onSchemaChanged() {
+    }
+
     final String entityLog(String log) {
         return String.format("%1$s: %2$s ", log, getPersistentClass().getCanonicalName());
     }
@@ -101,18 +441,173 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
     }
 
     protected List<T> queryMany(Cursor c) {
-        int count = Utils.getCount(c);
-        if (count > 0) {
-            List<T> ts = new ArrayList<>(count);
-            while (c.moveToNext()) {
-                T entity = toEntity(c);
-                if (entity != null) {
-                    ts.add(entity);
+        if (c == null || c.isClosed()) {
+            return null;
+        }
+        // 不调用getCount()，避免为计数预先遍历全部结果
+        List<T> ts = null;
+        int[] indices = null;
+        while (c.moveToNext()) {
+            if (ts == null) {
+                ts = new ArrayList<>();
+                // 列位置每个Cursor只解析一次
+                indices = resolveIndices(c);
+            }
+            T entity = toEntity(c, indices);
+            if (entity != null) {
+                ts.add(entity);
+            }
+        }
+        return ts;
+    }
+
+    /**
+     * 解析各列在Cursor中的位置，每个Cursor只需解析一次
+     * @return 各列位置，未使用EntityMapper时返回null
+     */
+    int[] resolveIndices(Cursor c) {
+        return isMapperReadable ? mEntityMapper.resolveIndices(c) : null;
+    }
+
+    /**
+     * 将Cursor当前行转换为实体
+     * @param indices {@link #resolveIndices(Cursor)}的结果
+     */
+    T toEntity(Cursor c, int[] indices) {
+        return indices == null ? toEntity(c) : mEntityMapper.toEntity(c, indices);
+    }
+
+    @Override
+    public List<T> queryMany(String whereClause, String[] whereArgs) {
+        String log = null;
+        if (Utils.isDebug()) {
+            log = "List<T> queryMany(String whereClause, String[] whereArgs)";
+        }
+        return queryMany(log, whereClause, whereArgs, null);
+    }
+
+    @Override
+    public List<T> queryMany(String whereClause, String[] whereArgs, QueryOptions options) {
+        String log = null;
+        if (Utils.isDebug()) {
+            log = "List<T> queryMany(String whereClause, String[] whereArgs, QueryOptions options)";
+        }
+        return queryMany(log, whereClause, whereArgs, options);
+    }
+
+    @Override
+    public Page<T> page(PageRequest request) {
+        Assert.notNull(mPrimaryKey, entityLog("page(PageRequest) requires a primary key"));
+        final String sortColumn = request.sortColumn();
+        final boolean descending = request.isDescending();
+        final String direction = descending ? " DESC" : " ASC";
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        if (!TextUtils.isEmpty(request.whereClause())) {
+            where.append('(').append(request.whereClause()).append(')');
+            if (request.whereArgs() != null) {
+                args.addAll(Arrays.asList(request.whereArgs()));
+            }
+        }
+        if (request.token() != null) {
+            PageToken token = PageToken.decode(request.token(), sortColumn, descending);
+            if (where.length() > 0) {
+                where.append(" AND ");
+            }
+            where.append(token.seekClause(mPrimaryKey, args));
+        }
+        // 多取一条判断是否还有下一页
+        QueryOptions options = QueryOptions.create()
+                .orderBy(sortColumn == null
+                        ? Utils.concat(mPrimaryKey, direction)
+                        : Utils.concat(sortColumn, direction, ", ", mPrimaryKey, direction))
+                .limit(request.pageSize() + 1);
+        final String whereClause = where.length() == 0 ? null : where.toString();
+        final String[] whereArgs = args.isEmpty() ? null : args.toArray(new String[args.size()]);
+
+        List<T> entities = new ArrayList<>(request.pageSize());
+        String nextToken = null;
+        Cursor c = null;
+        try {
+            c = query(getTableName(), mColumns, whereClause, whereArgs, options);
+            if (c != null && !c.isClosed()) {
+                final int[] indices = resolveIndices(c);
+                final int sortIndex = sortColumn == null ? -1 : c.getColumnIndexOrThrow(sortColumn);
+                final int primaryKeyIndex = c.getColumnIndexOrThrow(mPrimaryKey);
+                PageToken last = null;
+                while (c.moveToNext()) {
+                    if (entities.size() == request.pageSize()) {
+                        nextToken = last.encode();
+                        break;
+                    }
+                    T entity = toEntity(c, indices);
+                    if (entity != null) {
+                        entities.add(entity);
+                    }
+                    if (entities.size() == request.pageSize()) {
+                        last = PageToken.read(c, sortColumn, descending, sortIndex, primaryKeyIndex);
+                    }
+                }
+            }
+        } finally {
+            Utils.closeSafely(c);
+            if (Utils.isDebug()) {
+                Utils.log4SQL(
+                        this,
+                        entityLog("Page<T> page(PageRequest request)"),
+                        "\nrequest: ", request,
+                        "\nwhereClause: ", whereClause,
+                        "\nwhereArgs: ", Utils.toString(whereArgs),
+                        "\nsize: ", entities.size(),
+                        "\nnextToken: ", nextToken
+                );
+            }
+        }
+        return new Page<>(entities, nextToken);
+    }
+
+    @Override
+    public CloseableIterator<T> iterate(String whereClause, String[] whereArgs) {
+        return iterate(whereClause, whereArgs, null);
+    }
+
+    @Override
+    public CloseableIterator<T> iterate(String whereClause, String[] whereArgs, QueryOptions options) {
+        Cursor c = query(getTableName(), mColumns, whereClause, whereArgs, options);
+        if (Utils.isDebug()) {
+            Utils.log4SQL(
+                    this,
+                    entityLog("CloseableIterator<T> iterate(String whereClause, String[] whereArgs, QueryOptions options)"),
+                    "\nwhereClause: ", whereClause,
+                    "\nwhereArgs: ", Utils.toString(whereArgs),
+                    "\noptions: ", options
+            );
+        }
+        return new CursorIterator<>(this, c);
+    }
+
+    @Override
+    public int forEach(String whereClause, String[] whereArgs, EntityVisitor<T> visitor) {
+        int count = 0;
+        CloseableIterator<T> iterator = null;
+        try {
+            iterator = iterate(whereClause, whereArgs);
+            while (iterator.hasNext()) {
+                count++;
+                if (!visitor.visit(iterator.next())) {
+                    break;
                 }
             }
-            return ts;
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("int forEach(String whereClause, String[] whereArgs, EntityVisitor<T> visitor)"), e);
+            }
+        } finally {
+            if (iterator != null) {
+                iterator.close();
+            }
+            return count;
         }
-        return null;
     }
 
     @Override
@@ -124,11 +619,85 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
         return query(log, PRIMARY_KEY_WHERE_CLAUSE, primaryKeyWhereArgs(primaryKey));
     }
 
+    @Override
+    public Map<String, T> queryByIds(String[] primaryKeys) {
+        if (primaryKeys == null || primaryKeys.length == 0 || mPrimaryKey == null) {
+            return new HashMap<>();
+        }
+        // Key为规范化的主键值
+        final Map<String, T> found = new HashMap<>(primaryKeys.length);
+        try {
+            readByPrimaryKeys(mColumns, primaryKeys, new RowReader() {
+                int[] indices;
+                int primaryKeyIndex = -1;
+
+                @Override
+                public void read(Cursor c) {
+                    if (primaryKeyIndex < 0) {
+                        indices = resolveIndices(c);
+                        primaryKeyIndex = c.getColumnIndexOrThrow(mPrimaryKey);
+                    }
+                    T entity = toEntity(c, indices);
+                    if (entity != null) {
+                        found.put(normalizePrimaryKey(c.getString(primaryKeyIndex)), entity);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("Map<String, T> queryByIds(String[] primaryKeys)"), e);
+            }
+            return null;
+        }
+        // 按参数顺序、以参数中的主键值为Key返回
+        Map<String, T> result = new LinkedHashMap<>(found.size());
+        for (String primaryKey : primaryKeys) {
+            T entity = found.get(normalizePrimaryKey(primaryKey));
+            if (entity != null) {
+                result.put(primaryKey, entity);
+            }
+        }
+        if (Utils.isDebug()) {
+            Utils.log4SQL(this, entityLog("Map<String, T> queryByIds(String[] primaryKeys)"),
+                    "\nsize: ", primaryKeys.length, "\nfound: ", result.size());
+        }
+        return result;
+    }
+
+    @Override
+    public BitSet hasMany(String[] primaryKeys) {
+        if (primaryKeys == null || primaryKeys.length == 0 || mPrimaryKey == null) {
+            return new BitSet();
+        }
+        // 规范化的主键值
+        final Set<String> found = new HashSet<>();
+        try {
+            readByPrimaryKeys(new String[] {mPrimaryKey}, primaryKeys, new RowReader() {
+                @Override
+                public void read(Cursor c) {
+                    found.add(normalizePrimaryKey(c.getString(0)));
+                }
+            });
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("BitSet hasMany(String[] primaryKeys)"), e);
+            }
+            return null;
+        }
+        BitSet result = new BitSet(primaryKeys.length);
+        for (int i = 0; i < primaryKeys.length; i++) {
+            if (found.contains(normalizePrimaryKey(primaryKeys[i]))) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
     @Override
     public Cursor rawQuery(String sql, String[] selectionArgs) {
         Cursor cursor = null;
         try {
-            cursor = mSQLiteOpenHelper.getReadableDatabase().rawQuery(sql, selectionArgs);
+            cursor = Cancellations.rawQuery(mSQLiteOpenHelper.getReadableDatabase(), sql, selectionArgs);
         } catch (Exception e) {
             if (Utils.isDebug()) {
                 Utils.log(this, entityLog("Cursor rawQuery(String sql, String[] whereArgs)"), e);
@@ -151,7 +720,7 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
         if (Utils.isDebug()) {
             log = "List<T> queryAll()";
         }
-        return queryMany(log, null, null);
+        return queryMany(log, null, null, null);
     }
 
     @Override
@@ -179,7 +748,19 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
         if (Utils.isDebug()) {
             log = "boolean insertOrUpdate(T entity)";
         }
-        ContentValues values = toContentValues(entity);
+        return upsert(log, toContentValues(entity));
+    }
+
+    /**
+     * 按主键插入或更新记录，子类可用数据库原生的UPSERT语句实现
+     * @param log 日志，为null时不输出日志
+     * @param values 记录值
+     * @return true，插入或更新成功；false，插入或更新失败
+     */
+    protected boolean upsert(String log, ContentValues values) {
+        if (isNewRecord(values)) {
+            return insert(log, values);
+        }
         final String primaryKey = values.getAsString(mPrimaryKey);
         final String[] whereArgs = primaryKeyWhereArgs(primaryKey);
         boolean has =  has(null, PRIMARY_KEY_WHERE_CLAUSE, whereArgs);
@@ -189,6 +770,41 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
         return insert(log, values);
     }
 
+    /**
+     * 重放写后缓冲日志中的记录，新记录（见{@link #isNewRecord(ContentValues)}）插入，其余按主键插入或更新
+     * @param rows 记录值
+     * @return 写入失败的记录
+     */
+    List<ContentValues> replay(List<ContentValues> rows) {
+        List<ContentValues> failed = new ArrayList<>();
+        for (ContentValues values : rows) {
+            boolean s;
+            if (isNewRecord(values)) {
+                s = insert(null, values);
+            } else {
+                s = upsert(null, values);
+            }
+            if (!s) {
+                failed.add(values);
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public boolean batchInsertOrUpdate(List<T> entities) {
+        boolean success = true;
+        for (T entity : entities) {
+            if (!upsert(null, toContentValues(entity))) {
+                success = false;
+            }
+        }
+        if (Utils.isDebug()) {
+            Utils.log4SQL(this, entityLog("boolean batchInsertOrUpdate(List<T> entities)"), "\nsize: ", entities.size(), "\nreturn: ", success);
+        }
+        return success;
+    }
+
     @Override
     public boolean insertOrUpdate(T entity, String whereClause, String[] whereArgs) {
         String log = null;
@@ -227,4 +843,17 @@ public abstract class AbstractDefaultDao<T> extends AbstractDao<T> {
             return success;
         }
     }
+
+    /**
+     * Cursor及其列位置，不持有Cursor的强引用
+     */
+    private static final class CursorIndices {
+        final WeakReference<Cursor> cursor;
+        final int[] indices;
+
+        CursorIndices(Cursor cursor, int[] indices) {
+            this.cursor = new WeakReference<>(cursor);
+            this.indices = indices;
+        }
+    }
 }
@@ -60,7 +60,7 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         Cursor c = null;
         boolean result = false;
         try {
-            c = mContentResolver.query(getUri(), new String[]{Utils.count()}, whereClause, whereArgs, null);
+            c = Cancellations.query(mContentResolver, getUri(), new String[]{Utils.count()}, whereClause, whereArgs, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 result = c.getLong(0) > 0l;
             }
@@ -119,7 +119,8 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         T entity = null;
         Cursor c = null;
         try {
-            c = mContentResolver.query(
+            c = Cancellations.query(
+                    mContentResolver,
                     getUri(),
                     mColumns,
                     whereClause,
@@ -161,19 +162,20 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
     }
 
     @Override
-    protected List<T> queryMany(String log, String whereClause, String[] whereArgs) {
+    protected List<T> queryMany(String log, String whereClause, String[] whereArgs, QueryOptions options) {
         if (!isProviderEnable()) {
             return null;
         }
         List<T> entities = null;
         Cursor c = null;
         try {
-            c = mContentResolver.query(
-                    getUri(),
+            c = Cancellations.query(
+                    mContentResolver,
+                    options == null ? getUri() : options.appendTo(getUri()),
                     mColumns,
                     whereClause,
                     whereArgs,
-                    null
+                    options == null ? null : options.orderBy()
             );
             entities = queryMany(c);
         } catch (Exception e) {
@@ -200,6 +202,7 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
                         entityLog(log),
                         "\nwhereClause: ", whereClause,
                         "\nwhereArgs: ", Utils.toString(whereArgs),
+                        "\noptions: ", options,
                         "\nreturn: ", logBuilder.toString()
                 );
             }
@@ -282,15 +285,6 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         return query(log, whereClause, whereArgs);
     }
 
-    @Override
-    public List<T> queryMany(String whereClause, String[] whereArgs) {
-        String log = null;
-        if (Utils.isDebug()) {
-            log = "List<T> queryMany(String whereClause, String[] whereArgs)";
-        }
-        return queryMany(log, whereClause, whereArgs);
-    }
-
     @Override
     public boolean insert(T entity) {
         String log = null;
@@ -350,35 +344,63 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
 
     @Override
     public boolean batchInsert(List<T> entities) {
+        return batchInsert(entities, null);
+    }
+
+    @Override
+    public boolean batchInsert(List<T> entities, OnBatchListener listener) {
         if (!isProviderEnable()) {
             return false;
         }
         boolean success = false;
         StringBuilder logBuilder = null;
         try {
-            ArrayList<ContentProviderOperation> ops = new ArrayList<>();
             logBuilder = Utils.newLogBuilder();
-            for (T entity : entities) {
-                ContentValues values = toContentValues(entity);
-                if (logBuilder != null) {
-                    logBuilder.append(values);
-                }
-                if (isPrimaryKeyAutoIncrement) {
-                    values.remove(mPrimaryKey);
+            final int total = entities.size();
+            final int batchSize = getBatchSize();
+            int committed = 0;
+            boolean allCommitted = true;
+            for (int start = 0; start < total; start += batchSize) {
+                final int end = Math.min(start + batchSize, total);
+                try {
+                    ArrayList<ContentProviderOperation> ops = new ArrayList<>(end - start);
+                    for (int position = start; position < end; position++) {
+                        ContentValues values = toContentValues(entities.get(position));
+                        if (logBuilder != null) {
+                            logBuilder.append(values);
+                        }
+                        if (isPrimaryKeyAutoIncrement) {
+                            values.remove(mPrimaryKey);
+                        }
+                        ops.add(ContentProviderOperation.newInsert(getUri()).withValues(values).build());
+                    }
+                    mContentResolver.applyBatch(mProviderAuthority, ops);
+                    committed += end - start;
+                    if (listener != null) {
+                        listener.onBatchCommitted(committed, total);
+                    }
+                } catch (Exception e) {
+                    allCommitted = false;
+                    if (Utils.isDebug()) {
+                        Utils.log(this, entityLog("batch [" + start + ", " + end + ") failed"), e);
+                    }
+                    if (listener != null) {
+                        listener.onBatchFailed(start, end, e);
+                    }
                 }
-                ops.add(ContentProviderOperation.newInsert(getUri()).withValues(values).build());
+                // 批次之间让排队中更高优先级的任务先执行
+                InstrumentedExecutor.yieldToUrgent();
             }
-            mContentResolver.applyBatch(mProviderAuthority, ops);
-            success = true;
+            success = allCommitted;
         } catch (Exception e) {
             if (Utils.isDebug()) {
-                Utils.log(this, entityLog("boolean batchInsert(List<T> entities)"), e);
+                Utils.log(this, entityLog("boolean batchInsert(List<T> entities, OnBatchListener listener)"), e);
             }
         } finally {
             if (Utils.isDebug()) {
                 Utils.log4SQL(
                         this,
-                        entityLog("boolean batchInsert(List<T> entities)"),
+                        entityLog("boolean batchInsert(List<T> entities, OnBatchListener listener)"),
                         "\nentities: ", logBuilder,
                         "\nreturn: ", success
                 );
@@ -566,7 +588,7 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         Long result = null;
         Cursor c = null;
         try {
-            c = mContentResolver.query(getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
+            c = Cancellations.query(mContentResolver, getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 result = c.getLong(0);
             }
@@ -598,7 +620,7 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         String result = null;
         Cursor c = null;
         try {
-            c = mContentResolver.query(getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
+            c = Cancellations.query(mContentResolver, getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 result = c.getString(0);
             }
@@ -630,7 +652,7 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         List<Long> result = null;
         Cursor c = null;
         try {
-            c = mContentResolver.query(getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
+            c = Cancellations.query(mContentResolver, getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
             int count = Utils.getCount(c);
             if (count > 0) {
                 result = new ArrayList<>(count);
@@ -664,7 +686,7 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         List<String> result = null;
         Cursor c = null;
         try {
-            c = mContentResolver.query(getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
+            c = Cancellations.query(mContentResolver, getUri(), new String[] {columnOrExpression}, whereClause, whereArgs, null);
             int count = Utils.getCount(c);
             if (count > 0) {
                 result = new ArrayList<>(count);
@@ -706,7 +728,7 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
         ContentValues result = null;
         Cursor c = null;
         try {
-            c = mContentResolver.query(getUri(), columnsOrExpressions, whereClause, whereArgs, null);
+            c = Cancellations.query(mContentResolver, getUri(), columnsOrExpressions, whereClause, whereArgs, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 result = new ContentValues();
                 for (String column : columnsOrExpressions) {
@@ -734,23 +756,24 @@ public abstract class AbstractProviderDaoImpl<T> extends AbstractDefaultDao<T> {
     }
 
     @Override
-    protected Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs) {
+    protected Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs, QueryOptions options) {
         Uri uri = uri(tableName);
         if (!isProviderEnable(uri)) {
             return null;
         }
         Cursor c = null;
         try {
-            c = mContentResolver.query(
-                    uri,
+            c = Cancellations.query(
+                    mContentResolver,
+                    options == null ? uri : options.appendTo(uri),
                     columns,
                     whereClause,
                     whereArgs,
-                    null
+                    options == null ? null : options.orderBy()
             );
         } catch (Exception e) {
             if (Utils.isDebug()) {
-                Utils.log(this, entityLog("Cursor query(Uri uri, String[] columns, String whereClause, String[] whereArgs)"), e);
+                Utils.log(this, entityLog("Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs, QueryOptions options)"), e);
             }
         } finally {
             return c;
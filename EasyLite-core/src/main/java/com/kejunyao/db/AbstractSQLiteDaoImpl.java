@@ -5,13 +5,14 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteProgram;
 import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 /**
  * {@link SQLiteOpenHelper}实现数据库操作基类
@@ -21,9 +22,62 @@ import java.util.Set;
  */
 public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
 
+    /**
+     * SQLite单条语句绑定参数个数上限（SQLITE_MAX_VARIABLE_NUMBER默认值）
+     */
+    static final int MAX_SQL_VARIABLES = 999;
+    /**
+     * 多行VALUES语句的行数上限（SQLITE_MAX_COMPOUND_SELECT默认值）
+     */
+    static final int MAX_ROWS_PER_INSERT = 500;
+    /**
+     * 支持多行VALUES语句的最低SQLite版本：3.7.11
+     */
+    private static final int MULTI_ROW_VALUES_SQLITE_VERSION = 3007011;
+    /**
+     * 支持UPSERT语句（INSERT ... ON CONFLICT DO UPDATE）的最低SQLite版本：3.24.0
+     */
+    private static final int UPSERT_SQLITE_VERSION = 3024000;
+    /**
+     * 按主键批量操作的主键数超过该值时，先写入临时表，再用一条语句完成操作
+     */
+    static final int TEMP_KEYS_THRESHOLD = 2048;
+    private static final String TEMP_KEYS_TABLE = "temp.easylite_keys";
+
+    /**
+     * 每个Dao缓存的已编译语句个数上限
+     */
+    public static final int STATEMENT_CACHE_SIZE = 16;
+
     private final ContentResolver mContentResolver;
     private final String mProviderAuthority;
 
+    private final StatementCache mStatementCache = new StatementCache(STATEMENT_CACHE_SIZE);
+
+    /**
+     * 按主键操作及批量操作的SQL模板，首次使用时生成
+     */
+    private volatile boolean mTemplatesPrepared;
+    private String mHasByPrimaryKeySql;
+    private String mQueryByPrimaryKeySql;
+    private String mUpdateByPrimaryKeySql;
+    private String mDeleteByPrimaryKeySql;
+    private Column[] mUpdateColumns;
+    private int[] mUpdateOrdinals;
+    private Column[] mUpdateByPrimaryKeyColumns;
+    private int[] mUpdateByPrimaryKeyOrdinals;
+    private Column mPrimaryKeyColumn;
+    private String mSingleRowInsertSql;
+    private String mMultiRowInsertSql;
+    private Column[] mInsertColumns;
+    private int[] mInsertOrdinals;
+    /**
+     * 多行VALUES语句的最大行数：min(MAX_SQL_VARIABLES / 列数, MAX_ROWS_PER_INSERT)，批量插入时另不超过批次大小
+     */
+    private int mRowsPerInsertStatement;
+    private String mUpsertSql;
+    private Column[] mUpsertColumns;
+
     public AbstractSQLiteDaoImpl() {
         super();
         mContentResolver = null;
@@ -38,13 +92,279 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
     void setProviderAuthority(String authority) {
     }
 
+    /**
+     * 已编译语句缓存的统计信息
+     */
+    public CacheStats getStatementCacheStats() {
+        return mStatementCache.stats();
+    }
+
+    @Override
+    protected void onSchemaChanged() {
+        super.onSchemaChanged();
+        mTemplatesPrepared = false;
+        mStatementCache.invalidate();
+    }
+
+    /**
+     * 生成按主键操作及批量操作的SQL模板
+     */
+    private void prepareTemplates(SQLiteDatabase db) {
+        if (mTemplatesPrepared) {
+            return;
+        }
+        synchronized (mStatementCache) {
+            if (mTemplatesPrepared) {
+                return;
+            }
+            final String table = getTableName();
+            List<String> updateColumns = new ArrayList<>(Arrays.asList(mColumns));
+            updateColumns.remove(mPrimaryKey);
+            if (mPrimaryKey != null) {
+                mPrimaryKeyColumn = getColumn(mPrimaryKey);
+                mHasByPrimaryKeySql = Utils.concat("SELECT ", Utils.count(), " FROM ", table, " WHERE ", PRIMARY_KEY_WHERE_CLAUSE);
+                mQueryByPrimaryKeySql = buildSelectSql(mColumns, PRIMARY_KEY_WHERE_CLAUSE);
+                mDeleteByPrimaryKeySql = Utils.concat("DELETE FROM ", table, " WHERE ", PRIMARY_KEY_WHERE_CLAUSE);
+                mUpdateByPrimaryKeySql = buildUpdateSql(updateColumns, PRIMARY_KEY_WHERE_CLAUSE);
+                mUpsertSql = buildUpsertSql(Arrays.asList(mColumns));
+                mUpsertColumns = toColumnDefinitions(Arrays.asList(mColumns));
+                updateColumns.add(mPrimaryKey);
+                mUpdateByPrimaryKeyColumns = toColumnDefinitions(updateColumns);
+                mUpdateByPrimaryKeyOrdinals = getMapperOrdinals(mUpdateByPrimaryKeyColumns);
+                updateColumns.remove(mPrimaryKey);
+            }
+            mUpdateColumns = toColumnDefinitions(updateColumns);
+            mUpdateOrdinals = getMapperOrdinals(mUpdateColumns);
+
+            List<String> insertColumns = new ArrayList<>(Arrays.asList(mColumns));
+            if (isPrimaryKeyAutoIncrement) {
+                insertColumns.remove(mPrimaryKey);
+            }
+            final int size = insertColumns.size();
+            int rows = 1;
+            if (size > 0 && Utils.getSQLiteVersion(db) >= MULTI_ROW_VALUES_SQLITE_VERSION) {
+                rows = Math.min(MAX_SQL_VARIABLES / size, MAX_ROWS_PER_INSERT);
+            }
+            mInsertColumns = toColumnDefinitions(insertColumns);
+            mInsertOrdinals = getMapperOrdinals(mInsertColumns);
+            mSingleRowInsertSql = buildInsertSql(insertColumns, 1);
+            mMultiRowInsertSql = rows > 1 ? buildInsertSql(insertColumns, rows) : null;
+            mRowsPerInsertStatement = rows;
+            mTemplatesPrepared = true;
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("prepareTemplates"), ", columns: ", size, ", rows per insert statement: ", rows);
+            }
+        }
+    }
+
+    private String buildSelectSql(String[] columns, String whereClause) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns[i]);
+        }
+        sql.append(" FROM ").append(getTableName());
+        if (!TextUtils.isEmpty(whereClause)) {
+            sql.append(" WHERE ").append(whereClause);
+        }
+        return sql.toString();
+    }
+
+    private String buildUpdateSql(List<String> columns, String whereClause) {
+        StringBuilder sql = new StringBuilder();
+        sql.append(" UPDATE ").append(getTableName()).append(" SET ");
+        for (int i = 0, size = columns.size(); i < size; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns.get(i)).append('=').append('?');
+        }
+        if (!TextUtils.isEmpty(whereClause)) {
+            sql.append(" WHERE ").append(whereClause);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 将实体各列绑定到语句参数<br/>
+     * 有生成的{@link EntityMapper}时直接读取实体字段绑定，否则经由{@link ContentValues}绑定
+     * @param values 实体对应的ContentValues，为null时按需转换
+     * @param ordinals 各列在EntityMapper中的序号，为null时不使用EntityMapper
+     */
+    private void bindEntity(SQLiteProgram program, int startIndex, T entity, ContentValues values, Column[] columns, int[] ordinals) {
+        final int size = columns.length;
+        final EntityMapper<T> mapper = ordinals == null ? null : getWritableMapper();
+        if (mapper != null) {
+            for (int i = 0; i < size; i++) {
+                mapper.bind(program, startIndex + i, entity, ordinals[i]);
+            }
+        } else {
+            if (values == null) {
+                values = toContentValues(entity);
+            }
+            for (int i = 0; i < size; i++) {
+                SQLiteBinder.bind(program, startIndex + i, values, columns[i]);
+            }
+        }
+    }
+
+    private void bindPrimaryKeyArgs(SQLiteStatement statement, int startIndex, String[] whereArgs) {
+        for (int i = 0; i < whereArgs.length; i++) {
+            SQLiteBinder.bind(statement, startIndex + i, whereArgs[i], mPrimaryKeyColumn);
+        }
+    }
+
+    @Override
+    public boolean has(String primaryKey) {
+        if (mPrimaryKey == null) {
+            return super.has(primaryKey);
+        }
+        boolean success = false;
+        final String[] whereArgs = primaryKeyWhereArgs(primaryKey);
+        StatementCache.Entry entry = null;
+        try {
+            SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
+            prepareTemplates(db);
+            entry = mStatementCache.acquire(db, mHasByPrimaryKeySql);
+            bindPrimaryKeyArgs(entry.statement, 1, whereArgs);
+            success = entry.statement.simpleQueryForLong() > 0;
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("boolean has(String primaryKey)"), e);
+            }
+        } finally {
+            mStatementCache.release(entry);
+            if (Utils.isDebug()) {
+                Utils.log4SQL(
+                        this,
+                        entityLog("boolean has(String primaryKey)"),
+                        "\nwhereArgs: ", Utils.toString(whereArgs),
+                        "\nreturn: ", success
+                );
+            }
+            return success;
+        }
+    }
+
+    @Override
+    public T query(String primaryKey) {
+        if (mPrimaryKey == null) {
+            return super.query(primaryKey);
+        }
+        T entity = null;
+        Cursor c = null;
+        final String[] whereArgs = primaryKeyWhereArgs(primaryKey);
+        try {
+            SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
+            prepareTemplates(db);
+            // 查询语句需返回多列，由SQLiteDatabase按SQL缓存已编译语句，此处复用同一SQL模板
+            c = Cancellations.rawQuery(db, mQueryByPrimaryKeySql, whereArgs);
+            if (c != null && !c.isClosed() && c.moveToFirst()) {
+                entity = toEntity(c);
+            }
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("T query(String primaryKey)"), e);
+            }
+        } finally {
+            Utils.closeSafely(c);
+            if (Utils.isDebug()) {
+                Utils.log4SQL(
+                        this,
+                        entityLog("T query(String primaryKey)"),
+                        "\nwhereArgs: ", Utils.toString(whereArgs),
+                        "\nreturn: ", entity == null ? "null" : Utils.toString(toContentValues(entity))
+                );
+            }
+            return entity;
+        }
+    }
+
+    @Override
+    public boolean update(T entity) {
+        if (mPrimaryKey == null) {
+            return super.update(entity);
+        }
+        ContentValues values = getWritableMapper() == null ? toContentValues(entity) : null;
+        if (values != null && !containsAllColumns(values)) {
+            String log = null;
+            if (Utils.isDebug()) {
+                log = "boolean update(T entity)";
+            }
+            return update(log, values, PRIMARY_KEY_WHERE_CLAUSE, primaryKeyWhereArgs(values.getAsString(mPrimaryKey)));
+        }
+        boolean success = false;
+        StatementCache.Entry entry = null;
+        try {
+            SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
+            prepareTemplates(db);
+            entry = mStatementCache.acquire(db, mUpdateByPrimaryKeySql);
+            bindEntity(entry.statement, 1, entity, values, mUpdateByPrimaryKeyColumns, mUpdateByPrimaryKeyOrdinals);
+            entry.statement.executeUpdateDelete();
+            success = true;
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("boolean update(T entity)"), e);
+            }
+        } finally {
+            mStatementCache.release(entry);
+            if (Utils.isDebug()) {
+                Utils.log4SQL(
+                        this,
+                        entityLog("boolean update(T entity)"),
+                        "\nvalues: ", values == null ? toContentValues(entity) : values,
+                        "\nreturn: ", success
+                );
+            }
+            return success;
+        }
+    }
+
+    @Override
+    public boolean delete(String primaryKey) {
+        if (mPrimaryKey == null) {
+            return super.delete(primaryKey);
+        }
+        boolean success = false;
+        final String[] whereArgs = primaryKeyWhereArgs(primaryKey);
+        StatementCache.Entry entry = null;
+        try {
+            SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
+            prepareTemplates(db);
+            entry = mStatementCache.acquire(db, mDeleteByPrimaryKeySql);
+            bindPrimaryKeyArgs(entry.statement, 1, whereArgs);
+            int count = entry.statement.executeUpdateDelete();
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("delete"), ", count: ", count);
+            }
+            success = true;
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("boolean delete(String primaryKey)"), e);
+            }
+        } finally {
+            mStatementCache.release(entry);
+            if (Utils.isDebug()) {
+                Utils.log4SQL(
+                        this,
+                        entityLog("boolean delete(String primaryKey)"),
+                        "\nwhereArgs: ", Utils.toString(whereArgs),
+                        "\nreturn: ", success
+                );
+            }
+            return success;
+        }
+    }
+
     @Override
     protected boolean has(String log, String whereClause, String[] whereArgs) {
         boolean success = false;
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), new String[] {Utils.count()}, whereClause, whereArgs, null, null, null);
+            c = select(db, false, getTableName(), new String[] {Utils.count()}, whereClause, whereArgs, null, null, null, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 success = c.getLong(0) > 0;
             }
@@ -103,7 +423,8 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), mColumns, whereClause, whereArgs, null, null, null);
+            // 只取一条记录，SQLite找到第一条后即可结束查询
+            c = select(db, false, getTableName(), mColumns, whereClause, whereArgs, null, null, null, "1");
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 entity = toEntity(c);
             }
@@ -133,12 +454,12 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
     }
 
     @Override
-    protected List<T> queryMany(String log, String whereClause, String[] whereArgs) {
+    protected List<T> queryMany(String log, String whereClause, String[] whereArgs, QueryOptions options) {
         List<T> entities = null;
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), mColumns, whereClause, whereArgs, null, null, null);
+            c = query(db, getTableName(), mColumns, whereClause, whereArgs, options);
             entities = queryMany(c);
         } catch (Exception e) {
             if (Utils.isDebug()) {
@@ -160,6 +481,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
                         entityLog(log),
                         "\nwhereClause: ", whereClause,
                         "\nwhereArgs: ", Utils.toString(whereArgs),
+                        "\noptions: ", options,
                         "\nreturn: ", logBuilder.toString()
                 );
             }
@@ -231,15 +553,6 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         return query(log, whereClause, whereArgs);
     }
 
-    @Override
-    public List<T> queryMany(String whereClause, String[] whereArgs) {
-        String log = null;
-        if (Utils.isDebug()) {
-            log = "List<T> queryMany(String whereClause, String[] whereArgs)";
-        }
-        return queryMany(log, whereClause, whereArgs);
-    }
-
     @Override
     public boolean insert(T entity) {
         String log = null;
@@ -251,32 +564,157 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
 
     @Override
     public boolean delete(String[] primaryKeys) {
-        if (primaryKeys == null || primaryKeys.length == 0) {
+        if (primaryKeys == null || primaryKeys.length == 0 || mPrimaryKey == null) {
             if (Utils.isDebug()) {
-                Utils.log4SQL(this, entityLog("boolean delete(long[] ids)"), ", ids is null or empty!");
+                Utils.log4SQL(this, entityLog("boolean delete(String[] primaryKeys)"), ", primaryKeys is empty or no primary key!");
             }
             return false;
         }
-        final int SIZE = primaryKeys.length;
-        StringBuilder whereClause = new StringBuilder(" DELETE FROM ").append(getTableName()).append(" WHERE ").append(mPrimaryKey).append(" IN ( ");
-        String[] whereArgs = new String[SIZE];
-        for (int i = 0; i < SIZE; i++) {
-            if (i > 0) {
-                whereClause.append(',');
+        boolean success = false;
+        int count = 0;
+        SQLiteDatabase db = null;
+        try {
+            db = mSQLiteOpenHelper.getWritableDatabase();
+            prepareTemplates(db);
+            db.beginTransaction();
+            try {
+                count = executeByPrimaryKeys(db, Utils.concat("DELETE FROM ", getTableName()), null, null, primaryKeys);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
-            whereClause.append(primaryKeys[i]);
+            success = true;
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("boolean delete(String[] primaryKeys)"), e);
+            }
+        } finally {
+            if (Utils.isDebug()) {
+                Utils.log4SQL(
+                        this,
+                        entityLog("boolean delete(String[] primaryKeys)"),
+                        "\nprimaryKeys: ", Utils.toString(primaryKeys),
+                        "\ncount: ", count,
+                        "\nreturn: ", success
+                );
+            }
+            return success;
         }
-        whereClause.append(" ) ");
-        boolean success = delete(whereClause.toString(), whereArgs);
-        if (Utils.isDebug()) {
-            Utils.log4SQL(
-                    this,
-                    entityLog("boolean delete(String[] primaryKeys)"),
-                    "\nprimaryKeys: ", Utils.toString(primaryKeys),
-                    "\nreturn: ", success
-            );
+    }
+
+    /**
+     * 按主键批量执行语句，须在事务中调用<br/>
+     * 主键数不超过{@link #TEMP_KEYS_THRESHOLD}时分块绑定到“主键 IN (?, ...)”，最后一块不足时重复最后一个主键补齐，
+     * 使同一分块大小的语句可以复用；超过时先写入临时表，再以“主键 IN (SELECT ...)”执行一次。
+     * @param prefix WHERE之前的语句，如“DELETE FROM 表名”
+     * @param prefixArgs prefix中的参数值，可为null
+     * @param prefixColumns prefix中参数对应的列定义，用于选择绑定类型，可为null
+     * @return 受影响的记录数
+     */
+    private int executeByPrimaryKeys(SQLiteDatabase db, String prefix, Object[] prefixArgs,
+                                     Column[] prefixColumns, String[] primaryKeys) {
+        final int argsSize = prefixArgs == null ? 0 : prefixArgs.length;
+        if (primaryKeys.length > TEMP_KEYS_THRESHOLD) {
+            stageTempKeys(db, primaryKeys);
+            StatementCache.Entry entry = null;
+            try {
+                entry = mStatementCache.acquire(db, Utils.concat(prefix, " WHERE ", mPrimaryKey, " IN (SELECT k FROM ", TEMP_KEYS_TABLE, ")"));
+                bindArgs(entry.statement, prefixArgs, prefixColumns);
+                return entry.statement.executeUpdateDelete();
+            } finally {
+                mStatementCache.release(entry);
+                db.execSQL("DELETE FROM " + TEMP_KEYS_TABLE);
+            }
+        }
+        final int length = primaryKeys.length;
+        int count = 0;
+        int chunk = 0;
+        StatementCache.Entry entry = null;
+        try {
+            for (int start = 0; start < length; start += chunk) {
+                int size = keysPerStatement(length - start);
+                if (size != chunk) {
+                    // 先置空，acquire失败时finally中不会重复归还
+                    mStatementCache.release(entry);
+                    entry = null;
+                    entry = mStatementCache.acquire(db, Utils.concat(prefix, " WHERE ", primaryKeyInClause(size)));
+                    chunk = size;
+                }
+                final SQLiteStatement statement = entry.statement;
+                bindArgs(statement, prefixArgs, prefixColumns);
+                for (int i = 0; i < size; i++) {
+                    String primaryKey = primaryKeys[Math.min(start + i, length - 1)];
+                    SQLiteBinder.bind(statement, argsSize + i + 1, primaryKey, mPrimaryKeyColumn);
+                }
+                count += statement.executeUpdateDelete();
+            }
+        } finally {
+            mStatementCache.release(entry);
+        }
+        return count;
+    }
+
+
+    /**
+     * 主键数超过{@link #MAX_KEYS_PER_QUERY}时，先将主键写入临时表，再以一条“主键 IN (SELECT ...)”查询读取，
+     * 读到的是同一时刻的数据<br/>
+     * 临时表只对创建它的连接可见，Android只在事务中保证连续的语句使用同一连接，
+     * 因此写入临时表与查询在同一事务中执行，并在事务内读完全部结果
+     */
+    @Override
+    void readByPrimaryKeys(String[] columns, String[] primaryKeys, RowReader reader) {
+        SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
+        if (mPrimaryKey == null || primaryKeys.length <= MAX_KEYS_PER_QUERY || db.isReadOnly()) {
+            super.readByPrimaryKeys(columns, primaryKeys, reader);
+            return;
+        }
+        prepareTemplates(db);
+        db.beginTransactionNonExclusive();
+        try {
+            stageTempKeys(db, primaryKeys);
+            Cursor c = null;
+            try {
+                c = select(db, false, getTableName(), columns,
+                        Utils.concat(mPrimaryKey, " IN (SELECT k FROM ", TEMP_KEYS_TABLE, ")"),
+                        null, null, null, null, null);
+                while (c.moveToNext()) {
+                    reader.read(c);
+                }
+            } finally {
+                Utils.closeSafely(c);
+                db.execSQL("DELETE FROM " + TEMP_KEYS_TABLE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void bindArgs(SQLiteStatement statement, Object[] args, Column[] columns) {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            SQLiteBinder.bind(statement, i + 1, args[i], columns == null ? null : columns[i]);
+        }
+    }
+
+    /**
+     * 将主键写入临时表（仅当前连接可见），须在事务中调用
+     */
+    private void stageTempKeys(SQLiteDatabase db, String[] primaryKeys) {
+        db.execSQL("CREATE TEMP TABLE IF NOT EXISTS easylite_keys (k PRIMARY KEY)");
+        db.execSQL("DELETE FROM " + TEMP_KEYS_TABLE);
+        StatementCache.Entry entry = null;
+        try {
+            entry = mStatementCache.acquire(db, "INSERT OR IGNORE INTO " + TEMP_KEYS_TABLE + " (k) VALUES (?)");
+            for (String primaryKey : primaryKeys) {
+                SQLiteBinder.bind(entry.statement, 1, primaryKey, mPrimaryKeyColumn);
+                entry.statement.executeInsert();
+            }
+        } finally {
+            mStatementCache.release(entry);
         }
-        return success;
     }
 
     @Override
@@ -299,24 +737,159 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
 
     @Override
     public boolean batchInsert(List<T> entities) {
+        return batchInsert(entities, null);
+    }
+
+    @Override
+    public boolean batchInsert(List<T> entities, OnBatchListener listener) {
         boolean success = false;
         StringBuilder logBuilder = null;
+        StatementCache.Entry multiRowInsert = null;
+        StatementCache.Entry singleRowInsert = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
-            StringBuilder batchSQL = new StringBuilder();
-            batchSQL.append(" INSERT INTO ").append(getTableName()).append(" ( ");
-            List<String> columns = new ArrayList<>(Arrays.asList(mColumns));
-            if (isPrimaryKeyAutoIncrement) {
-                columns.remove(mPrimaryKey);
+            prepareTemplates(db);
+            final int batchSize = getBatchSize();
+            // 一条多行语句不跨批次，批次较小时按批次大小生成语句
+            final int rowsPerStatement = Math.min(batchSize, mRowsPerInsertStatement);
+            singleRowInsert = mStatementCache.acquire(db, mSingleRowInsertSql);
+            if (rowsPerStatement > 1) {
+                multiRowInsert = mStatementCache.acquire(db, multiRowInsertSql(rowsPerStatement));
             }
-            final int size = columns.size();
-            for (int i = 0; i < size; i++) {
-                if (i > 0) {
-                    batchSQL.append(", ");
+            {
+                final Column[] columns = mInsertColumns;
+                final int[] ordinals = mInsertOrdinals;
+                final int size = columns.length;
+                logBuilder = Utils.newLogBuilder();
+                final int total = entities.size();
+                int committed = 0;
+                boolean allCommitted = true;
+                for (int start = 0; start < total; start += batchSize) {
+                    final int end = Math.min(start + batchSize, total);
+                    Exception error = null;
+                    db.beginTransaction();
+                    try {
+                        int position = start;
+                        if (rowsPerStatement > 1) {
+                            // 多行VALUES语句，一次执行插入rowsPerStatement行
+                            while (end - position >= rowsPerStatement) {
+                                for (int row = 0; row < rowsPerStatement; row++) {
+                                    T entity = entities.get(position + row);
+                                    bindEntity(multiRowInsert.statement, row * size + 1, entity, toLogValues(entity, logBuilder), columns, ordinals);
+                                }
+                                long id = multiRowInsert.statement.executeInsert();
+                                if (Utils.isDebug()) {
+                                    Utils.log(this, entityLog("boolean batchInsert(List<T> entities, OnBatchListener listener)"), ", rows: ", rowsPerStatement, ", last id: ", id);
+                                }
+                                position += rowsPerStatement;
+                            }
+                        }
+                        // 剩余不足一条多行语句的记录，逐行插入
+                        for (; position < end; position++) {
+                            T entity = entities.get(position);
+                            bindEntity(singleRowInsert.statement, 1, entity, toLogValues(entity, logBuilder), columns, ordinals);
+                            long id = singleRowInsert.statement.executeInsert();
+                            if (Utils.isDebug()) {
+                                Utils.log(this, entityLog("boolean batchInsert(List<T> entities, OnBatchListener listener)"), ", id: ", id);
+                            }
+                        }
+                        db.setTransactionSuccessful();
+                    } catch (Exception e) {
+                        error = e;
+                    } finally {
+                        error = endTransaction(db, error);
+                    }
+                    if (error == null) {
+                        committed += end - start;
+                        if (listener != null) {
+                            listener.onBatchCommitted(committed, total);
+                        }
+                    } else {
+                        allCommitted = false;
+                        if (Utils.isDebug()) {
+                            Utils.log(this, entityLog("batch [" + start + ", " + end + ") rollback"), error);
+                        }
+                        if (listener != null) {
+                            listener.onBatchFailed(start, end, error);
+                        }
+                    }
+                    if (!db.inTransaction()) {
+                        // 批次之间让排队中更高优先级的任务先执行
+                        InstrumentedExecutor.yieldToUrgent();
+                    }
                 }
-                batchSQL.append(columns.get(i));
+                success = allCommitted;
+            }
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("boolean batchInsert(List<T> entities, OnBatchListener listener)"), e);
+            }
+        } finally {
+            mStatementCache.release(multiRowInsert);
+            mStatementCache.release(singleRowInsert);
+            if (Utils.isDebug()) {
+                Utils.log4SQL(
+                        this,
+                        entityLog("boolean batchInsert(List<T> entities, OnBatchListener listener)"),
+                        "\nentities: ", logBuilder,
+                        "\nreturn: ", success
+                );
             }
-            batchSQL.append(" ) VALUES( ");
+            return success;
+        }
+    }
+
+    /**
+     * 输出日志时转换实体并记录，不输出日志时返回null，由绑定时按需转换
+     */
+    private ContentValues toLogValues(T entity, StringBuilder logBuilder) {
+        if (logBuilder == null) {
+            return null;
+        }
+        ContentValues values = toContentValues(entity);
+        logBuilder.append(values);
+        return values;
+    }
+
+    private Column[] toColumnDefinitions(List<String> columns) {
+        final int size = columns.size();
+        Column[] definitions = new Column[size];
+        for (int i = 0; i < size; i++) {
+            definitions[i] = getColumn(columns.get(i));
+        }
+        return definitions;
+    }
+
+    /**
+     * 一次插入rows行的多行VALUES语句，rows不超过{@link #mRowsPerInsertStatement}
+     */
+    private String multiRowInsertSql(int rows) {
+        if (rows == mRowsPerInsertStatement) {
+            return mMultiRowInsertSql;
+        }
+        List<String> columns = new ArrayList<>(mInsertColumns.length);
+        for (Column column : mInsertColumns) {
+            columns.add(column.name());
+        }
+        return buildInsertSql(columns, rows);
+    }
+
+    private String buildInsertSql(List<String> columns, int rows) {
+        StringBuilder batchSQL = new StringBuilder();
+        batchSQL.append(" INSERT INTO ").append(getTableName()).append(" ( ");
+        final int size = columns.size();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                batchSQL.append(", ");
+            }
+            batchSQL.append(columns.get(i));
+        }
+        batchSQL.append(" ) VALUES ");
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                batchSQL.append(", ");
+            }
+            batchSQL.append('(');
             for (int i = 0; i < size; i++) {
                 if (i > 0) {
                     batchSQL.append(", ");
@@ -324,35 +897,142 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
                 batchSQL.append('?');
             }
             batchSQL.append(')');
+        }
+        return batchSQL.toString();
+    }
 
-            SQLiteStatement statement = db.compileStatement(batchSQL.toString());
-            logBuilder = Utils.newLogBuilder();
-            for (T entity : entities) {
-                ContentValues values = toContentValues(entity);
-                if (logBuilder != null) {
-                    logBuilder.append(values);
-                }
-                if (isPrimaryKeyAutoIncrement) {
-                    values.remove(mPrimaryKey);
-                }
-                for (int i = 0; i < size; i++) {
-                    statement.bindString(i + 1, values.getAsString(columns.get(i)));
-                }
-                long id = statement.executeInsert();
-                if (Utils.isDebug()) {
-                    Utils.log(this, entityLog("boolean batchInsert(List<T> entities)"), ", id: ", id, ", values: ", values.toString());
+    /**
+     * 结束事务，若提交时出错则返回提交异常
+     */
+    private static Exception endTransaction(SQLiteDatabase db, Exception error) {
+        try {
+            db.endTransaction();
+        } catch (Exception e) {
+            if (error == null) {
+                return e;
+            }
+        }
+        return error;
+    }
+
+    @Override
+    protected boolean upsert(String log, ContentValues values) {
+        if (mPrimaryKey == null) {
+            return super.upsert(log, values);
+        }
+        // 无主键值或自增主键为0的实体是新记录，插入时由数据库分配主键
+        if (isNewRecord(values)) {
+            return insert(log, values);
+        }
+        boolean success = false;
+        try {
+            SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
+            if (isUpsertSupported(db)) {
+                executeUpsert(db, values);
+            } else {
+                db.beginTransaction();
+                try {
+                    updateOrInsert(db, values);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
                 }
             }
             success = true;
         } catch (Exception e) {
             if (Utils.isDebug()) {
-                Utils.log(this, entityLog("boolean batchInsert(List<T> entities)"), e);
+                Utils.log(this, entityLog(log == null ? "boolean upsert(String log, ContentValues values)" : log), e);
             }
         } finally {
+            if (log != null) {
+                Utils.log4SQL(
+                        this,
+                        entityLog(log),
+                        "\nentity: ", values,
+                        "\nreturn: ", success
+                );
+            }
+            return success;
+        }
+    }
+
+    @Override
+    public boolean batchInsertOrUpdate(List<T> entities) {
+        if (mPrimaryKey == null) {
+            return super.batchInsertOrUpdate(entities);
+        }
+        boolean success = false;
+        StringBuilder logBuilder = null;
+        StatementCache.Entry upsert = null;
+        try {
+            SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
+            final boolean upsertSupported = isUpsertSupported(db);
+            logBuilder = Utils.newLogBuilder();
+            prepareTemplates(db);
+            {
+                final int batchSize = getBatchSize();
+                final int total = entities.size();
+                boolean allCommitted = true;
+                // 与batchInsert相同，按批次大小分批在独立事务中提交
+                for (int start = 0; start < total; start += batchSize) {
+                    final int end = Math.min(start + batchSize, total);
+                    Exception error = null;
+                    db.beginTransaction();
+                    try {
+                        for (int position = start; position < end; position++) {
+                            ContentValues values = toContentValues(entities.get(position));
+                            if (logBuilder != null) {
+                                logBuilder.append(values);
+                            }
+                            if (isNewRecord(values)) {
+                                if (isPrimaryKeyAutoIncrement) {
+                                    values.remove(mPrimaryKey);
+                                }
+                                db.insertOrThrow(getTableName(), null, values);
+                            } else if (!upsertSupported) {
+                                updateOrInsert(db, values);
+                            } else if (containsAllColumns(values)) {
+                                if (upsert == null) {
+                                    upsert = mStatementCache.acquire(db, mUpsertSql);
+                                }
+                                for (int i = 0, size = mUpsertColumns.length; i < size; i++) {
+                                    SQLiteBinder.bind(upsert.statement, i + 1, values, mUpsertColumns[i]);
+                                }
+                                upsert.statement.executeUpdateDelete();
+                            } else {
+                                executeUpsert(db, values);
+                            }
+                        }
+                        db.setTransactionSuccessful();
+                    } catch (Exception e) {
+                        error = e;
+                    } finally {
+                        error = endTransaction(db, error);
+                    }
+                    if (error != null) {
+                        allCommitted = false;
+                        if (Utils.isDebug()) {
+                            Utils.log(this, entityLog("batch [" + start + ", " + end + ") rollback"), error);
+                        }
+                    }
+                    if (!db.inTransaction()) {
+                        // 批次之间让排队中更高优先级的任务先执行
+                        InstrumentedExecutor.yieldToUrgent();
+                    }
+                }
+                success = allCommitted;
+            }
+        } catch (Exception e) {
+            success = false;
+            if (Utils.isDebug()) {
+                Utils.log(this, entityLog("boolean batchInsertOrUpdate(List<T> entities)"), e);
+            }
+        } finally {
+            mStatementCache.release(upsert);
             if (Utils.isDebug()) {
                 Utils.log4SQL(
                         this,
-                        entityLog("boolean batchInsert(List<T> entities)"),
+                        entityLog("boolean batchInsertOrUpdate(List<T> entities)"),
                         "\nentities: ", logBuilder,
                         "\nreturn: ", success
                 );
@@ -361,36 +1041,90 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         }
     }
 
+    private static boolean isUpsertSupported(SQLiteDatabase db) {
+        return Utils.getSQLiteVersion(db) >= UPSERT_SQLITE_VERSION;
+    }
+
+    private boolean containsAllColumns(ContentValues values) {
+        if (values.size() != mColumns.length) {
+            return false;
+        }
+        for (String column : mColumns) {
+            if (!values.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 执行INSERT ... ON CONFLICT(主键) DO UPDATE语句，仅更新values中包含的列
+     */
+    private void executeUpsert(SQLiteDatabase db, ContentValues values) {
+        // 列按名称排序，相同列集合的UPSERT复用同一语句
+        List<String> columns = new ArrayList<>(values.keySet());
+        Collections.sort(columns);
+        StatementCache.Entry entry = mStatementCache.acquire(db, buildUpsertSql(columns));
+        try {
+            for (int i = 0, size = columns.size(); i < size; i++) {
+                String column = columns.get(i);
+                SQLiteBinder.bind(entry.statement, i + 1, values.get(column), getColumn(column));
+            }
+            entry.statement.executeUpdateDelete();
+        } finally {
+            mStatementCache.release(entry);
+        }
+    }
+
+    /**
+     * 不支持UPSERT语句时，先按主键更新，无记录被更新时再插入（须在事务中调用）
+     */
+    private void updateOrInsert(SQLiteDatabase db, ContentValues values) {
+        ContentValues updateValues = new ContentValues(values);
+        updateValues.remove(mPrimaryKey);
+        int rows = 0;
+        if (updateValues.size() > 0) {
+            rows = db.update(getTableName(), updateValues, PRIMARY_KEY_WHERE_CLAUSE, primaryKeyWhereArgs(values.getAsString(mPrimaryKey)));
+        }
+        if (rows == 0) {
+            db.insertWithOnConflict(getTableName(), null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        }
+    }
+
+    private String buildUpsertSql(List<String> columns) {
+        StringBuilder sql = new StringBuilder(buildInsertSql(columns, 1));
+        sql.append(" ON CONFLICT(").append(mPrimaryKey).append(") DO ");
+        int updated = 0;
+        for (String column : columns) {
+            if (column.equals(mPrimaryKey)) {
+                continue;
+            }
+            sql.append(updated == 0 ? "UPDATE SET " : ", ");
+            sql.append(column).append(" = excluded.").append(column);
+            updated++;
+        }
+        if (updated == 0) {
+            sql.append("NOTHING");
+        }
+        return sql.toString();
+    }
+
     @Override
     public boolean batchUpdate(List<T> entities) {
         boolean success = false;
         StringBuilder logBuilder = null;
+        StatementCache.Entry entry = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
-            StringBuilder batchSQL = new StringBuilder();
-            batchSQL.append(" UPDATE ").append(getTableName()).append(" SET ");
-            List<String> columns = new ArrayList<>(Arrays.asList(mColumns));
-            columns.remove(mPrimaryKey);
-            final int size = columns.size();
-            for (int i = 0; i < size; i++) {
-                if (i > 0) {
-                    batchSQL.append(", ");
-                }
-                batchSQL.append(columns.get(i)).append('=').append('?');
-            }
-            batchSQL.append(" WHERE ").append(mPrimaryKey).append(" = ? ");
-            SQLiteStatement statement = db.compileStatement(batchSQL.toString());
+            prepareTemplates(db);
+            entry = mStatementCache.acquire(db, mUpdateByPrimaryKeySql);
+            final SQLiteStatement statement = entry.statement;
+            final Column[] columns = mUpdateByPrimaryKeyColumns;
+            final int[] ordinals = mUpdateByPrimaryKeyOrdinals;
             logBuilder = Utils.newLogBuilder();
             for (T entity : entities) {
-                ContentValues values = toContentValues(entity);
-                for (int i = 0; i < size; i++) {
-                    statement.bindString(i + 1, values.getAsString(columns.get(i)));
-                }
-                statement.bindLong(size + 1, values.getAsLong(mPrimaryKey));
+                bindEntity(statement, 1, entity, toLogValues(entity, logBuilder), columns, ordinals);
                 statement.executeUpdateDelete();
-                if (logBuilder != null) {
-                    logBuilder.append(values);
-                }
             }
             success = true;
         } catch (Exception e) {
@@ -398,6 +1132,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
                 Utils.log(this, entityLog("boolean batchUpdate(List<T> entities)"), e);
             }
         } finally {
+            mStatementCache.release(entry);
             if (Utils.isDebug()) {
                 Utils.log4SQL(
                         this,
@@ -460,29 +1195,34 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
     @Override
     public boolean update(String[] primaryKeys, ContentValues values) {
         boolean success = false;
+        int count = 0;
         try {
             values.remove(mPrimaryKey);
-            SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
-            StringBuilder sql = new StringBuilder();
-            sql.append(" UPDATE ").append(getTableName()).append(" SET ");
-            Set<String> columns = values.keySet();
-            int j = 0;
-            for (String column : columns) {
-                if (j > 0) {
-                    sql.append(',');
+            if (primaryKeys == null || primaryKeys.length == 0 || values.size() == 0 || mPrimaryKey == null) {
+                if (Utils.isDebug()) {
+                    Utils.log(this, entityLog("boolean update(String[] primaryKeys, ContentValues values)"), ", primaryKeys or values is empty!");
                 }
-                sql.append(column).append(" = '").append(values.getAsString(column)).append("' ");
-                j += 1;
+                return false;
             }
-            sql.append(" WHERE ").append(mPrimaryKey).append(" IN(");
-            for (int i = 0, size = primaryKeys.length; i < size; i++) {
-                if (i > 0) {
-                    sql.append(',');
-                }
-                sql.append(primaryKeys[i]);
+            SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
+            prepareTemplates(db);
+            // 列按名称排序，相同列集合的更新复用同一语句
+            List<String> columns = new ArrayList<>(values.keySet());
+            Collections.sort(columns);
+            final int size = columns.size();
+            Object[] args = new Object[size];
+            Column[] columnDefinitions = new Column[size];
+            for (int i = 0; i < size; i++) {
+                args[i] = values.get(columns.get(i));
+                columnDefinitions[i] = getColumn(columns.get(i));
+            }
+            db.beginTransaction();
+            try {
+                count = executeByPrimaryKeys(db, buildUpdateSql(columns, null), args, columnDefinitions, primaryKeys);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
-            sql.append(")");
-            db.execSQL(sql.toString());
             success = true;
         } catch (Exception e) {
             if (Utils.isDebug()) {
@@ -495,6 +1235,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
                         entityLog("boolean update(String[] primaryKeys, ContentValues values)"),
                         "\nprimaryKeys: ", Utils.toString(primaryKeys),
                         "\nvalues: ", values,
+                        "\ncount: ", count,
                         "\nreturn: ", success
                 );
             }
@@ -515,35 +1256,21 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
     public boolean batchUpdate(List<T> entities, String whereClause, String[] whereArgs) {
         boolean success = false;
         StringBuilder logBuilder = null;
+        StatementCache.Entry entry = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
-            StringBuilder batchSQL = new StringBuilder();
-            batchSQL.append(" UPDATE ").append(getTableName()).append(" SET ");
+            prepareTemplates(db);
+            final int whereArgsSize = whereArgs == null ? 0 : whereArgs.length;
             List<String> columns = new ArrayList<>(Arrays.asList(mColumns));
             columns.remove(mPrimaryKey);
-            final int size = columns.size();
-            for (int i = 0; i < size; i++) {
-                if (i > 0) {
-                    batchSQL.append(", ");
-                }
-                batchSQL.append(columns.get(i)).append('=').append('?');
-            }
-            if (!TextUtils.isEmpty(whereClause)) {
-                batchSQL.append(" WHERE ").append(whereClause);
-            }
-            final int whereArgsSize = whereArgs == null ? 0 : whereArgs.length;
-
-            SQLiteStatement statement = db.compileStatement(batchSQL.toString());
+            entry = mStatementCache.acquire(db, buildUpdateSql(columns, whereClause));
+            final SQLiteStatement statement = entry.statement;
+            final Column[] columnDefinitions = mUpdateColumns;
+            final int[] ordinals = mUpdateOrdinals;
+            final int size = columnDefinitions.length;
             logBuilder = Utils.newLogBuilder();
             for (T entity : entities) {
-                ContentValues values = toContentValues(entity);
-                values.remove(mPrimaryKey);
-                if (logBuilder != null) {
-                    logBuilder.append(values);
-                }
-                for (int i = 0; i < size; i++) {
-                    statement.bindString(i + 1, values.getAsString(columns.get(i)));
-                }
+                bindEntity(statement, 1, entity, toLogValues(entity, logBuilder), columnDefinitions, ordinals);
                 if (whereArgsSize > 0) {
                     for (int i = 0; i < whereArgsSize; i++) {
                         statement.bindString(size + i + 1, whereArgs[i]);
@@ -551,7 +1278,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
                 }
                 int count = statement.executeUpdateDelete();
                 if (Utils.isDebug()) {
-                    Utils.log(this, entityLog("boolean batchUpdate(List<T> entities, String whereClause, String[] whereArgs)"), ", count: ", count, "values: ", values.toString());
+                    Utils.log(this, entityLog("boolean batchUpdate(List<T> entities, String whereClause, String[] whereArgs)"), ", count: ", count);
                 }
             }
             success = true;
@@ -560,6 +1287,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
                 Utils.log(this, entityLog("boolean batchUpdate(List<T> entities, String whereClause, String[] whereArgs)"), e);
             }
         } finally {
+            mStatementCache.release(entry);
             if (Utils.isDebug()) {
                 Utils.log4SQL(
                         this,
@@ -580,7 +1308,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null);
+            c = select(db, false, getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 result = c.getLong(0);
             }
@@ -610,7 +1338,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null);
+            c = select(db, false, getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 result = c.getString(0);
             }
@@ -640,7 +1368,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null);
+            c = select(db, false, getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null, null);
             int count = Utils.getCount(c);
             if (count > 0) {
                 result = new ArrayList<>(count);
@@ -674,7 +1402,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null);
+            c = select(db, false, getTableName(), new String[] {columnOrExpression}, whereClause, whereArgs, null, null, null, null);
             int count = Utils.getCount(c);
             if (count > 0) {
                 result = new ArrayList<>(count);
@@ -714,7 +1442,7 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(getTableName(), columnsOrExpressions, whereClause, whereArgs, null, null, null);
+            c = select(db, false, getTableName(), columnsOrExpressions, whereClause, whereArgs, null, null, null, null);
             if (c != null && !c.isClosed() && c.moveToFirst()) {
                 result = new ContentValues();
                 for (String column : columnsOrExpressions) {
@@ -742,17 +1470,50 @@ public abstract class AbstractSQLiteDaoImpl<T> extends AbstractDefaultDao<T> {
     }
 
     @Override
-    protected Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs) {
+    protected Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs, QueryOptions options) {
         Cursor c = null;
         try {
             SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
-            c = db.query(tableName, columns, whereClause, whereArgs, null, null, null);
+            c = query(db, tableName, columns, whereClause, whereArgs, options);
         } catch (Exception e) {
             if (Utils.isDebug()) {
-                Utils.log(this, entityLog("Cursor query(Uri uri, String[] columns, String whereClause, String[] whereArgs)"), e);
+                Utils.log(this, entityLog("Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs, QueryOptions options)"), e);
             }
         } finally {
             return c;
         }
     }
-}
\ No newline at end of file
+
+    private Cursor query(SQLiteDatabase db, String tableName, String[] columns,
+                         String whereClause, String[] whereArgs, QueryOptions options) {
+        if (options == null) {
+            return select(db, false, tableName, columns, whereClause, whereArgs, null, null, null, null);
+        }
+        return select(
+                db,
+                options.isDistinct(),
+                tableName,
+                columns,
+                whereClause,
+                whereArgs,
+                options.groupBy(),
+                options.having(),
+                options.orderBy(),
+                options.limitClause()
+        );
+    }
+
+    /**
+     * 执行查询，开启执行计划分析时由{@link QueryPlanAnalyzer}采样<br/>
+     * 除按单个主键查询外，所有查询（含queryByIds、hasMany）均经由此方法
+     */
+    private Cursor select(SQLiteDatabase db, boolean distinct, String table, String[] columns,
+                          String selection, String[] selectionArgs, String groupBy, String having,
+                          String orderBy, String limit) {
+        if (QueryPlanAnalyzer.isEnabled()) {
+            return QueryPlanAnalyzer.query(this, db, distinct, table, columns, selection, selectionArgs,
+                    groupBy, having, orderBy, limit);
+        }
+        return Cancellations.query(db, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+    }
+}
@@ -0,0 +1,73 @@
+package com.kejunyao.db;
+
+/**
+ * 缓存统计信息
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+    private final int maxSize;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, int size, int maxSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * 淘汰次数
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 当前缓存大小
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 缓存容量上限
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 命中率
+     */
+    public float hitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0f : (float) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats[hits=%d, misses=%d, evictions=%d, size=%d/%d, hitRate=%.2f]",
+                hitCount, missCount, evictionCount, size, maxSize, hitRate());
+    }
+}
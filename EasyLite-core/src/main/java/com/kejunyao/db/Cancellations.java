@@ -0,0 +1,96 @@
+package com.kejunyao.db;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+
+/**
+ * 查询取消信号，当前线程正在执行的{@link DaoFuture}被取消时，中断其中正在执行的查询<br/>
+ * CancellationSignal需要API 16，低版本上查询不可中断，取消只能阻止尚未执行的任务。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class Cancellations {
+
+    private static final boolean SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+    private Cancellations() {
+    }
+
+    /**
+     * 创建取消信号
+     * @return 取消信号，低版本返回null
+     */
+    static Object newSignal() {
+        return SUPPORTED ? JellyBean.newSignal() : null;
+    }
+
+    static void cancel(Object signal) {
+        if (signal != null) {
+            JellyBean.cancel(signal);
+        }
+    }
+
+    static Cursor rawQuery(SQLiteDatabase db, String sql, String[] selectionArgs) {
+        Object signal = DaoFuture.currentSignal();
+        if (signal == null) {
+            return db.rawQuery(sql, selectionArgs);
+        }
+        return JellyBean.rawQuery(db, sql, selectionArgs, signal);
+    }
+
+    static Cursor query(SQLiteDatabase db, boolean distinct, String table, String[] columns,
+                        String selection, String[] selectionArgs, String groupBy,
+                        String having, String orderBy, String limit) {
+        Object signal = DaoFuture.currentSignal();
+        if (signal == null) {
+            return db.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+        }
+        return JellyBean.query(db, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit, signal);
+    }
+
+    static Cursor query(ContentResolver resolver, Uri uri, String[] projection,
+                        String selection, String[] selectionArgs, String sortOrder) {
+        Object signal = DaoFuture.currentSignal();
+        if (signal == null) {
+            return resolver.query(uri, projection, selection, selectionArgs, sortOrder);
+        }
+        return JellyBean.query(resolver, uri, projection, selection, selectionArgs, sortOrder, signal);
+    }
+
+    /**
+     * 仅在API 16及以上加载
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class JellyBean {
+
+        static Object newSignal() {
+            return new CancellationSignal();
+        }
+
+        static void cancel(Object signal) {
+            ((CancellationSignal) signal).cancel();
+        }
+
+        static Cursor rawQuery(SQLiteDatabase db, String sql, String[] selectionArgs, Object signal) {
+            return db.rawQuery(sql, selectionArgs, (CancellationSignal) signal);
+        }
+
+        static Cursor query(SQLiteDatabase db, boolean distinct, String table, String[] columns,
+                            String selection, String[] selectionArgs, String groupBy,
+                            String having, String orderBy, String limit, Object signal) {
+            return db.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit,
+                    (CancellationSignal) signal);
+        }
+
+        static Cursor query(ContentResolver resolver, Uri uri, String[] projection,
+                            String selection, String[] selectionArgs, String sortOrder, Object signal) {
+            return resolver.query(uri, projection, selection, selectionArgs, sortOrder, (CancellationSignal) signal);
+        }
+    }
+}
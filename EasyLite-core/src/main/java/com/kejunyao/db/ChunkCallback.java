@@ -0,0 +1,20 @@
+package com.kejunyao.db;
+
+import java.util.List;
+
+/**
+ * 分块回调<br/>
+ * 查询结果按块多次通过{@link #onCallback(Object)}回调，全部回调结束后回调{@link #onFinish(int)}；
+ * 若同时为{@link UIDaoCallback}，则回调在主线程中进行。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public interface ChunkCallback<T> extends DaoCallback<List<T>> {
+
+    /**
+     * 全部记录已回调
+     * @param total 回调的记录总数
+     */
+    void onFinish(int total);
+}
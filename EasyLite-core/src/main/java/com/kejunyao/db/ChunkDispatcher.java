@@ -0,0 +1,98 @@
+package com.kejunyao.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 分块回调分发<br/>
+ * 回调在主线程中进行时，最多只有{@link #MAX_PENDING_CHUNKS}块等待主线程处理，
+ * 超出时查询线程等待，避免结果在主线程消息队列中堆积。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class ChunkDispatcher<T> {
+
+    static final int MAX_PENDING_CHUNKS = 2;
+
+    private final int mChunkSize;
+    private final ChunkCallback<T> mCallback;
+    private final boolean isOnMainThread;
+    private final Semaphore mPendingChunks = new Semaphore(MAX_PENDING_CHUNKS);
+    private List<T> mChunk;
+
+    ChunkDispatcher(int chunkSize, ChunkCallback<T> callback) {
+        this.mChunkSize = chunkSize;
+        this.mCallback = callback;
+        this.isOnMainThread = (callback instanceof UIDaoCallback) || (callback instanceof SafelyDaoCallback);
+    }
+
+    /**
+     * 添加一条记录，满一块时回调
+     */
+    void add(T entity) {
+        if (mChunk == null) {
+            mChunk = new ArrayList<>(mChunkSize);
+        }
+        mChunk.add(entity);
+        if (mChunk.size() >= mChunkSize) {
+            dispatch(mChunk);
+            mChunk = null;
+            // 分块之间让排队中更高优先级的任务先执行
+            InstrumentedExecutor.yieldToUrgent();
+        }
+    }
+
+    private void dispatch(final List<T> chunk) {
+        if (mCallback == null) {
+            return;
+        }
+        if (!isOnMainThread) {
+            mCallback.onCallback(chunk);
+            return;
+        }
+        mPendingChunks.acquireUninterruptibly();
+        MainThreadDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (isSafely()) {
+                        mCallback.onCallback(chunk);
+                    }
+                } finally {
+                    mPendingChunks.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * 回调剩余记录并结束
+     */
+    void finish(final int total) {
+        if (mChunk != null) {
+            dispatch(mChunk);
+            mChunk = null;
+        }
+        if (mCallback == null) {
+            return;
+        }
+        if (!isOnMainThread) {
+            mCallback.onFinish(total);
+            return;
+        }
+        MainThreadDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isSafely()) {
+                    mCallback.onFinish(total);
+                }
+            }
+        });
+    }
+
+    private boolean isSafely() {
+        return !(mCallback instanceof SafelyDaoCallback) || ((SafelyDaoCallback) mCallback).isSafely();
+    }
+}
@@ -0,0 +1,98 @@
+package com.kejunyao.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 分块复制表数据的后台迁移，适用于重建大表（如修改主键、删除字段）<br/>
+ * 按rowid升序每次复制chunkSize行，每块在独立的事务中提交并记录最后复制的rowid，中断后从该位置继续；
+ * 目标表须在之前的前台迁移中创建，复制使用INSERT OR REPLACE，重复复制同一块不会产生重复数据。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public class ChunkedCopyMigration extends Migration {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final String mSourceTable;
+    private final String mTargetTable;
+    private final String[] mTargetColumns;
+    private final String[] mSourceExpressions;
+    private final int mChunkSize;
+    private final boolean mDropSource;
+
+    /**
+     * 复制同名列，完成后保留源表
+     */
+    public ChunkedCopyMigration(int version, String name, String sourceTable, String targetTable, String[] columns) {
+        this(version, name, sourceTable, targetTable, columns, columns, DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * @param targetColumns 目标表的列
+     * @param sourceExpressions 与targetColumns一一对应的源表列或表达式
+     * @param chunkSize 每块复制的行数，须大于0
+     * @param dropSourceWhenDone 复制完成后是否删除源表
+     */
+    public ChunkedCopyMigration(int version, String name, String sourceTable, String targetTable,
+                                String[] targetColumns, String[] sourceExpressions,
+                                int chunkSize, boolean dropSourceWhenDone) {
+        super(version, name);
+        Assert.notNull(sourceTable, "sourceTable must not be null!");
+        Assert.notNull(targetTable, "targetTable must not be null!");
+        Assert.isTrue(targetColumns != null && targetColumns.length > 0, "targetColumns must not be empty!");
+        Assert.isTrue(sourceExpressions != null && sourceExpressions.length == targetColumns.length,
+                "sourceExpressions must match targetColumns!");
+        Assert.isTrue(chunkSize > 0, "chunkSize must be greater than 0!");
+        mSourceTable = sourceTable;
+        mTargetTable = targetTable;
+        mTargetColumns = targetColumns;
+        mSourceExpressions = sourceExpressions;
+        mChunkSize = chunkSize;
+        mDropSource = dropSourceWhenDone;
+    }
+
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
+
+    @Override
+    protected long migrate(SQLiteDatabase db, long progress) throws Exception {
+        String end;
+        SQLiteStatement statement = db.compileStatement(Utils.concat(
+                "SELECT MAX(rowid) FROM (SELECT rowid FROM ", mSourceTable, " WHERE rowid > ? ORDER BY rowid LIMIT ?)"));
+        try {
+            statement.bindLong(1, progress);
+            statement.bindLong(2, mChunkSize);
+            end = statement.simpleQueryForString();
+        } finally {
+            Utils.closeSafely(statement);
+        }
+        if (end == null) {
+            if (mDropSource) {
+                db.execSQL("DROP TABLE IF EXISTS " + mSourceTable);
+            }
+            return DONE;
+        }
+        StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ").append(mTargetTable).append(" (");
+        for (int i = 0; i < mTargetColumns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(mTargetColumns[i]);
+        }
+        sql.append(") SELECT ");
+        for (int i = 0; i < mSourceExpressions.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(mSourceExpressions[i]);
+        }
+        sql.append(" FROM ").append(mSourceTable).append(" WHERE rowid > ? AND rowid <= ?");
+        long last = Long.parseLong(end);
+        db.execSQL(sql.toString(), new Object[] {progress, last});
+        return last;
+    }
+}
@@ -0,0 +1,20 @@
+package com.kejunyao.db;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * 可关闭的迭代器<br/>
+ * 逐行读取并转换记录，不会一次性加载全部结果；遍历结束后自动关闭，提前结束遍历时须调用{@link #close()}。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * 关闭迭代器，释放底层Cursor
+     */
+    @Override
+    void close();
+}
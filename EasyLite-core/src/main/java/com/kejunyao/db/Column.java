@@ -35,6 +35,10 @@ public class Column {
         return this;
     }
 
+    public String type() {
+        return this.type;
+    }
+
     public Column type(String type) {
         this.type = type;
         return this;
@@ -0,0 +1,24 @@
+package com.kejunyao.db;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定实体字段对应的列名，配合{@link GenerateMapper}使用
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.FIELD})
+public @interface ColumnName {
+
+    /**
+     * 列名
+     */
+    String value();
+}
@@ -0,0 +1,70 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 基于{@link Cursor}的{@link CloseableIterator}，按需逐行转换实体
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class CursorIterator<T> implements CloseableIterator<T> {
+
+    private final AbstractDefaultDao<T> mDao;
+    private final Cursor mCursor;
+    private int[] mIndices;
+    private boolean isIndicesResolved;
+    private boolean isMoved;
+    private boolean hasNext;
+    private boolean isClosed;
+
+    CursorIterator(AbstractDefaultDao<T> dao, Cursor cursor) {
+        this.mDao = dao;
+        this.mCursor = cursor;
+        this.isClosed = cursor == null || cursor.isClosed();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (isClosed) {
+            return false;
+        }
+        if (!isMoved) {
+            hasNext = mCursor.moveToNext();
+            isMoved = true;
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        isMoved = false;
+        if (!isIndicesResolved) {
+            mIndices = mDao.resolveIndices(mCursor);
+            isIndicesResolved = true;
+        }
+        return mDao.toEntity(mCursor, mIndices);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public void close() {
+        if (!isClosed) {
+            isClosed = true;
+            hasNext = false;
+            Utils.closeSafely(mCursor);
+        }
+    }
+}
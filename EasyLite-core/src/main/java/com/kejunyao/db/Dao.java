@@ -3,7 +3,9 @@ package com.kejunyao.db;
 import android.content.ContentValues;
 import android.database.Cursor;
 
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * EasyDao的通用接口<br/>
@@ -37,6 +39,22 @@ public interface Dao<T> {
      */
     T query(String primaryKey);
 
+    /**
+     * 按主键批量查询，结果与参数按主键列的亲和性匹配（如整型主键的“007”与“7”）<br/>
+     * 主键数不超过999时以一条参数化的“IN (?, ...)”查询；超过时{@link AbstractSQLiteDaoImpl}将主键写入临时表后以一条查询读取，
+     * 其他实现分块查询，各分块可能读到不同时刻的数据
+     * @param primaryKeys 多个主键值
+     * @return Key为参数中的主键值，按参数顺序排列，不存在的主键不在结果中；查询出错时返回null
+     */
+    Map<String, T> queryByIds(String[] primaryKeys);
+
+    /**
+     * 按主键批量判断记录是否存在，查询方式同{@link #queryByIds(String[])}
+     * @param primaryKeys 多个主键值
+     * @return 第i位表示primaryKeys[i]对应的记录是否存在；查询出错时返回null
+     */
+    BitSet hasMany(String[] primaryKeys);
+
     /**
      * 查询符合条件的某条记录
      * @param whereClause 查询条件
@@ -61,12 +79,54 @@ public interface Dao<T> {
      */
     List<T> queryMany(String whereClause, String[] whereArgs);
 
+    /**
+     * 按查询选项查询符合条件的多条记录，排序、分页、去重、分组在SQL中执行
+     * @param whereClause 查询条件
+     * @param whereArgs 查询条件中的参数
+     * @param options 查询选项，可为null
+     * @return 符合条件的多条记录
+     */
+    List<T> queryMany(String whereClause, String[] whereArgs, QueryOptions options);
+
     /**
      * 查询某实体（T）所有记录
      * @return 所有记录
      */
     List<T> queryAll();
 
+    /**
+     * 键集分页查询，按排序列及主键定位，翻页耗时与页码无关
+     * @param request 分页请求
+     * @return 当前页记录及下一页的续查令牌
+     * @throws IllegalArgumentException 续查令牌无效
+     */
+    Page<T> page(PageRequest request);
+
+    /**
+     * 以迭代器方式逐条查询符合条件的记录，记录在遍历时才转换为实体<br/>
+     * 遍历结束后迭代器自动关闭，提前结束遍历时须调用{@link CloseableIterator#close()}
+     * @param whereClause 查询条件
+     * @param whereArgs 查询条件中的参数
+     * @return {@link CloseableIterator}
+     */
+    CloseableIterator<T> iterate(String whereClause, String[] whereArgs);
+
+    /**
+     * 按查询选项以迭代器方式逐条查询符合条件的记录
+     * @param options 查询选项，可为null
+     * @see #iterate(String, String[])
+     */
+    CloseableIterator<T> iterate(String whereClause, String[] whereArgs, QueryOptions options);
+
+    /**
+     * 逐条遍历符合条件的记录
+     * @param whereClause 查询条件
+     * @param whereArgs 查询条件中的参数
+     * @param visitor 访问者，返回false时结束遍历
+     * @return 已遍历的记录数
+     */
+    int forEach(String whereClause, String[] whereArgs, EntityVisitor<T> visitor);
+
     /**
      * 插入实体
      * @param entity 实体
@@ -127,6 +187,14 @@ public interface Dao<T> {
      */
     boolean batchInsert(List<T> entities);
 
+    /**
+     * 分批次批量插入实体，每批次在独立事务中提交
+     * @param entities 批量实体
+     * @param listener 批次进度Listener，可为null
+     * @return true，全部批次插入成功；false，存在插入失败的批次
+     */
+    boolean batchInsert(List<T> entities, OnBatchListener listener);
+
     /**
      * 批量更新实体
      * @param entities 批量实体
@@ -176,6 +244,13 @@ public interface Dao<T> {
      */
     boolean insertOrUpdate(T entity, String whereClause, String[] whereArgs);
 
+    /**
+     * 按主键批量插入或更新，{@link AbstractSQLiteDaoImpl}按批次大小分批在独立事务中提交
+     * @param entities 批量实体
+     * @return true，全部批次插入或更新成功；false，存在失败的批次
+     */
+    boolean batchInsertOrUpdate(List<T> entities);
+
     /**
      * 查询column值、求和（SUM(column))、最大值（MAX(column)）等等（仅一条记录）
      * @param columnOrExpression 列名或表达式
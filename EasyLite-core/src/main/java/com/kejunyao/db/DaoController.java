@@ -6,7 +6,16 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Dao控制器
@@ -16,130 +25,706 @@ import java.util.List;
  */
 final class DaoController {
 
+    /**
+     * 查询结果缓存未命中
+     */
+    private static final Object MISS = new Object();
+
     private final Dao mDao;
 
     private final SQLiteOpenHelper mSQLiteOpenHelper;
 
+    /**
+     * 写操作计数，用于判断预取的分页结果是否已过期
+     */
+    private final AtomicLong mWriteVersion = new AtomicLong();
+    private PageRequest mPrefetchRequest;
+    private Page<?> mPrefetchPage;
+    private long mPrefetchVersion;
+    /**
+     * 按主键缓存的实体，未开启时为null
+     */
+    private volatile EntityCache mEntityCache;
+    private int mEntityCacheSize;
+    /**
+     * 与其他Controller共享的查询结果缓存，未开启时为null
+     */
+    private volatile QueryCache mQueryCache;
+    private final String mTableName;
+    /**
+     * 单个实体估算的字节数
+     */
+    private final int mEntitySize;
+    /**
+     * 写后缓冲，未开启时为null
+     */
+    private volatile WriteBehindBuffer mWriteBehind;
+
     DaoController(Dao dao, SQLiteOpenHelper openHelper) {
         this.mDao = dao;
         this.mSQLiteOpenHelper = openHelper;
+        if (dao instanceof AbstractDefaultDao) {
+            AbstractDefaultDao<?> d = (AbstractDefaultDao<?>) dao;
+            Column[] columns = d.getColumns();
+            mTableName = d.getTableName();
+            mEntitySize = 16 + 24 * (columns == null ? 0 : columns.length);
+        } else {
+            mTableName = null;
+            mEntitySize = 16;
+        }
     }
 
     Dao getDao() {
         return mDao;
     }
 
+    /**
+     * 以调用方的实体类型使用Dao，Dao与实体类一一对应，由调用方保证类型一致
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Dao<T> dao() {
+        return (Dao<T>) mDao;
+    }
+
+    /**
+     * 缓存中的实体与Dao的实体类型一致
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object entity) {
+        return (T) entity;
+    }
+
+    /**
+     * 经由本Controller的写操作完成后调用，使预取的分页结果及全部缓存的实体失效
+     */
+    private void onWrite() {
+        onWrite(null);
+    }
+
+    /**
+     * 经由本Controller、绕过写后缓冲的写操作完成后调用，丢弃写后缓冲中同一主键待重试的记录，
+     * 并使预取的分页结果及缓存的实体失效
+     * @param primaryKeys 受影响记录的主键，null表示无法确定受影响的记录
+     */
+    private void onWrite(String[] primaryKeys) {
+        WriteBehindBuffer buffer = mWriteBehind;
+        if (buffer != null) {
+            buffer.supersede(primaryKeys);
+        }
+        invalidate(primaryKeys);
+    }
+
+    /**
+     * 使预取的分页结果及缓存的实体失效
+     * @param primaryKeys 受影响记录的主键，null表示无法确定受影响的记录
+     */
+    private void invalidate(String[] primaryKeys) {
+        synchronized (this) {
+            mWriteVersion.incrementAndGet();
+            mPrefetchRequest = null;
+            mPrefetchPage = null;
+            QueryCache queryCache = mQueryCache;
+            if (queryCache != null) {
+                queryCache.invalidate(mTableName);
+            }
+            EntityCache cache = mEntityCache;
+            if (cache != null) {
+                if (primaryKeys == null) {
+                    cache.evictAll();
+                } else {
+                    for (String primaryKey : primaryKeys) {
+                        cache.remove(primaryKey);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 使预取的分页结果、缓存的实体及本表的查询结果全部失效，用于绕过本Controller的写操作之后
+     */
+    void invalidate() {
+        invalidate(null);
+    }
+
+    /**
+     * 开启或关闭实体缓存
+     * @param maxSize 最多缓存的实体数，小于等于0时关闭缓存
+     */
+    void setEntityCacheSize(int maxSize) {
+        synchronized (this) {
+            mWriteVersion.incrementAndGet();
+            if (maxSize <= 0 || !(mDao instanceof AbstractDefaultDao)) {
+                mEntityCache = null;
+            } else {
+                mEntityCache = new EntityCache(maxSize);
+                mEntityCacheSize = maxSize;
+            }
+        }
+    }
+
+    /**
+     * 设置查询结果缓存，无法确定表名的Dao不缓存查询结果
+     * @param cache 查询结果缓存，null表示关闭
+     */
+    void setQueryCache(QueryCache cache) {
+        mQueryCache = mTableName == null ? null : cache;
+    }
+
+    String getTableName() {
+        return mTableName;
+    }
+
+    /**
+     * 查询数据库
+     */
+    private interface Loader<R> {
+        R load();
+    }
+
+    /**
+     * 先等待写后缓冲刷写完成，开启查询结果缓存时优先从缓存中获取，未命中时查询数据库并缓存结果
+     * @param method 查询方法，与其他参数一起生成缓存Key
+     * @param extra 其他影响查询结果的参数，见{@link QueryCache#key(Class, String, String, String[], Object)}
+     */
+    private <R> R cachedQuery(String method, String whereClause, String[] whereArgs, Object extra, Loader<R> loader) {
+        awaitWriteBehind();
+        QueryCache cache = mQueryCache;
+        if (cache == null) {
+            return loader.load();
+        }
+        String key = QueryCache.key(mDao.getClass(), method, whereClause, whereArgs, extra);
+        Object cached = getCachedResult(cache, key);
+        if (cached != MISS) {
+            // 缓存项由同一方法、同一Key写入，类型一致
+            @SuppressWarnings("unchecked")
+            R result = (R) cached;
+            return result;
+        }
+        final long version = cache.version(mTableName);
+        R result = loader.load();
+        putCachedResult(cache, key, version, result);
+        return result;
+    }
+
+    /**
+     * 从查询结果缓存中获取
+     * @return 查询结果的副本，未命中时返回{@link #MISS}
+     */
+    private Object getCachedResult(QueryCache cache, String key) {
+        QueryCache.Entry entry = cache.get(key);
+        return entry == null ? MISS : copyOf(entry.value);
+    }
+
+    /**
+     * 缓存查询结果，null（可能是查询出错）不缓存
+     * @param version 查询之前获取的表写版本
+     */
+    private void putCachedResult(QueryCache cache, String key, long version, Object result) {
+        if (result != null) {
+            cache.put(key, mTableName, version, copyOf(result), mEntitySize);
+        }
+    }
+
+    /**
+     * 列表及ContentValues可能被调用方修改，缓存及返回的均为副本；实体由所有调用方共享
+     */
+    private static Object copyOf(Object value) {
+        if (value instanceof List) {
+            return new ArrayList<>((List<?>) value);
+        }
+        if (value instanceof ContentValues) {
+            return new ContentValues((ContentValues) value);
+        }
+        return value;
+    }
+
+    /**
+     * 开启或关闭写后缓冲，关闭或替换时先刷写原缓冲中的内容
+     * @param buffer 写后缓冲，null表示关闭
+     */
+    void setWriteBehind(WriteBehindBuffer buffer) {
+        WriteBehindBuffer old;
+        synchronized (this) {
+            old = mWriteBehind;
+            mWriteBehind = buffer;
+        }
+        if (old != null) {
+            onFlushed(old.close());
+        }
+    }
+
+    boolean isWriteBehind() {
+        return mWriteBehind != null;
+    }
+
+    /**
+     * 在当前线程中刷写写后缓冲，未开启写后缓冲或缓冲为空时直接返回<br/>
+     * 绕过缓冲的写操作之前均先刷写，保证写操作顺序不变
+     */
+    void flushWriteBehind() {
+        WriteBehindBuffer buffer = mWriteBehind;
+        if (buffer != null && buffer.hasPending()) {
+            onFlushed(buffer.flush());
+        }
+    }
+
+    /**
+     * 等待写后缓冲刷写完成，刷写在写线程中执行（见{@link WriteBehindBuffer.Scheduler#awaitFlush(WriteBehindBuffer)}）<br/>
+     * 除按主键查询外，其他读操作之前均先调用，保证读到缓冲中的写操作
+     */
+    void awaitWriteBehind() {
+        WriteBehindBuffer buffer = mWriteBehind;
+        if (buffer != null && buffer.hasPending()) {
+            buffer.awaitFlush();
+        }
+    }
+
+    /**
+     * 刷写完成后使相关缓存失效：刷写期间的查询可能缓存了刷写之前的结果
+     */
+    private void onFlushed(List<Object> entities) {
+        if (entities != null) {
+            invalidate(primaryKeysOf(entities));
+        }
+    }
+
+    /**
+     * 写入写后缓冲
+     * @return true，已写入缓冲；false，未开启写后缓冲
+     */
+    private boolean putWriteBehind(Object entity) {
+        WriteBehindBuffer buffer = mWriteBehind;
+        if (buffer == null) {
+            return false;
+        }
+        buffer.put(entity);
+        invalidate(primaryKeysOf(entity));
+        return true;
+    }
+
+    /**
+     * 获取写后缓冲中尚未落库的实体
+     * @return 实体，未开启写后缓冲或不在缓冲中时返回null
+     */
+    private <T> T getPendingEntity(String primaryKey) {
+        WriteBehindBuffer buffer = mWriteBehind;
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.hasRecovered()) {
+            // 日志中恢复的记录尚未重放，先刷写
+            awaitWriteBehind();
+        }
+        return cast(buffer.get(primaryKey));
+    }
+
+    WriteBehindStats getWriteBehindStats() {
+        WriteBehindBuffer buffer = mWriteBehind;
+        return buffer == null ? null : buffer.stats();
+    }
+
+    /**
+     * 实体缓存统计信息，未开启缓存时返回null
+     */
+    CacheStats getEntityCacheStats() {
+        EntityCache cache = mEntityCache;
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * 从实体缓存中获取实体
+     * @return 缓存的实体，未开启缓存或未命中时返回null
+     */
+    <T> T getCachedEntity(String primaryKey) {
+        EntityCache cache = mEntityCache;
+        if (cache == null) {
+            return null;
+        }
+        return cast(cache.get(primaryKey));
+    }
+
+    /**
+     * @see #dao()
+     */
+    @SuppressWarnings("unchecked")
+    private <T> AbstractDefaultDao<T> defaultDao() {
+        return (AbstractDefaultDao<T>) mDao;
+    }
+
+    /**
+     * 实体缓存的Key：按主键列亲和性规范后的主键值，与写操作后失效时使用的主键值一致
+     */
+    private String cacheKey(String primaryKey) {
+        return mDao instanceof AbstractDefaultDao ? defaultDao().normalizePrimaryKey(primaryKey) : primaryKey;
+    }
+
+    private String[] primaryKeysOf(Object entity) {
+        if (mEntityCache == null) {
+            return null;
+        }
+        return new String[] {defaultDao().primaryKeyOf(entity)};
+    }
+
+    private String[] primaryKeysOf(List<?> entities) {
+        // 记录数超过缓存容量时，直接清空缓存
+        if (mEntityCache == null || entities == null || entities.size() > mEntityCacheSize) {
+            return null;
+        }
+        AbstractDefaultDao<Object> dao = defaultDao();
+        String[] primaryKeys = new String[entities.size()];
+        for (int i = 0, size = entities.size(); i < size; i++) {
+            primaryKeys[i] = dao.primaryKeyOf(entities.get(i));
+        }
+        return primaryKeys;
+    }
+
+    /**
+     * @see {@link Dao#page(PageRequest)}
+     */
+    <T> Page<T> page(PageRequest request) {
+        awaitWriteBehind();
+        synchronized (this) {
+            if (request.equals(mPrefetchRequest) && mPrefetchVersion == mWriteVersion.get()) {
+                Page<T> page = cast(mPrefetchPage);
+                mPrefetchRequest = null;
+                mPrefetchPage = null;
+                if (Utils.isDebug()) {
+                    Utils.log(this, "page hit prefetch, ", request);
+                }
+                return page;
+            }
+        }
+        return this.<T>dao().page(request);
+    }
+
+    /**
+     * 预取分页结果，预取期间有写操作时丢弃结果
+     */
+    void prefetch(PageRequest request) {
+        awaitWriteBehind();
+        final long version = mWriteVersion.get();
+        Page<?> page = mDao.page(request);
+        synchronized (this) {
+            if (version == mWriteVersion.get()) {
+                mPrefetchRequest = request;
+                mPrefetchPage = page;
+                mPrefetchVersion = version;
+            }
+        }
+    }
+
     /**
      * @see {@link Dao#has(String)}
      */
     boolean has(String primaryKey) {
+        if (getPendingEntity(primaryKey) != null || getCachedEntity(primaryKey) != null) {
+            return true;
+        }
         return mDao.has(primaryKey);
     }
 
     /**
      * @see {@link Dao#has(String, String[])}
      */
-    boolean has(String whereClause, String[] whereArgs) {
-        return mDao.has(whereClause, whereArgs);
+    boolean has(final String whereClause, final String[] whereArgs) {
+        return cachedQuery("has", whereClause, whereArgs, null, new Loader<Boolean>() {
+            @Override
+            public Boolean load() {
+                return mDao.has(whereClause, whereArgs);
+            }
+        });
     }
 
     /**
      * @see {@link Dao#query(String)}
      */
     <T> T query(String primaryKey) {
-        return (T) mDao.query(primaryKey);
+        T pending = getPendingEntity(primaryKey);
+        if (pending != null) {
+            return pending;
+        }
+        EntityCache cache = mEntityCache;
+        if (cache == null) {
+            return this.<T>dao().query(primaryKey);
+        }
+        final String key = cacheKey(primaryKey);
+        T entity = cast(cache.get(key));
+        if (entity != null) {
+            return entity;
+        }
+        final long version = mWriteVersion.get();
+        entity = this.<T>dao().query(primaryKey);
+        synchronized (this) {
+            // 查询期间有写操作时不缓存，避免缓存旧值
+            if (version == mWriteVersion.get()) {
+                cache.put(key, entity);
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * 先从实体缓存中获取，未命中的主键再批量查询
+     * @see {@link Dao#queryByIds(String[])}
+     */
+    <T> Map<String, T> queryByIds(String[] primaryKeys) {
+        awaitWriteBehind();
+        EntityCache cache = mEntityCache;
+        if (cache == null || primaryKeys == null) {
+            return this.<T>dao().queryByIds(primaryKeys);
+        }
+        Map<String, T> cached = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String primaryKey : primaryKeys) {
+            T entity = cast(cache.get(cacheKey(primaryKey)));
+            if (entity != null) {
+                cached.put(primaryKey, entity);
+            } else {
+                misses.add(primaryKey);
+            }
+        }
+        if (misses.isEmpty()) {
+            return toOrderedMap(primaryKeys, cached, null);
+        }
+        final long version = mWriteVersion.get();
+        Map<String, T> loaded = this.<T>dao().queryByIds(misses.toArray(new String[misses.size()]));
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (this) {
+            // 查询期间有写操作时不缓存，避免缓存旧值
+            if (version == mWriteVersion.get()) {
+                for (Map.Entry<String, T> e : loaded.entrySet()) {
+                    cache.put(cacheKey(e.getKey()), e.getValue());
+                }
+            }
+        }
+        return toOrderedMap(primaryKeys, cached, loaded);
+    }
+
+    private static <T> Map<String, T> toOrderedMap(String[] primaryKeys, Map<String, T> cached, Map<String, T> loaded) {
+        Map<String, T> result = new LinkedHashMap<>();
+        for (String primaryKey : primaryKeys) {
+            T entity = cached.get(primaryKey);
+            if (entity == null && loaded != null) {
+                entity = loaded.get(primaryKey);
+            }
+            if (entity != null) {
+                result.put(primaryKey, entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see {@link Dao#hasMany(String[])}
+     */
+    BitSet hasMany(String[] primaryKeys) {
+        awaitWriteBehind();
+        return mDao.hasMany(primaryKeys);
     }
 
     /**
      * @see {@link Dao#query(String, String[])}
      */
-    <T> T query(String whereClause, String[] whereArgs) {
-        return (T) mDao.query(whereClause, whereArgs);
+    <T> T query(final String whereClause, final String[] whereArgs) {
+        return cachedQuery("query", whereClause, whereArgs, null, new Loader<T>() {
+            @Override
+            public T load() {
+                return DaoController.this.<T>dao().query(whereClause, whereArgs);
+            }
+        });
     }
 
     /**
      * @see {@link Dao#rawQuery(String, String[])}
      */
     Cursor rawQuery(String sql, String[] selectionArgs) {
+        awaitWriteBehind();
         return mDao.rawQuery(sql, selectionArgs);
     }
 
     /**
      * @see {@link Dao#queryMany(String, String[])}
      */
-    <T> List<T> queryMany(String whereClause, String[] whereArgs) {
-        return mDao.queryMany(whereClause, whereArgs);
+    <T> List<T> queryMany(final String whereClause, final String[] whereArgs) {
+        return cachedQuery("queryMany", whereClause, whereArgs, null, new Loader<List<T>>() {
+            @Override
+            public List<T> load() {
+                return DaoController.this.<T>dao().queryMany(whereClause, whereArgs);
+            }
+        });
+    }
+
+    /**
+     * @see {@link Dao#queryMany(String, String[], QueryOptions)}
+     */
+    <T> List<T> queryMany(final String whereClause, final String[] whereArgs, final QueryOptions options) {
+        return cachedQuery("queryMany", whereClause, whereArgs, options, new Loader<List<T>>() {
+            @Override
+            public List<T> load() {
+                return DaoController.this.<T>dao().queryMany(whereClause, whereArgs, options);
+            }
+        });
     }
 
     /**
      * @see {@link Dao#queryAll()}
      */
     <T> List<T> queryAll() {
-        return mDao.queryAll();
+        return cachedQuery("queryAll", null, null, null, new Loader<List<T>>() {
+            @Override
+            public List<T> load() {
+                return DaoController.this.<T>dao().queryAll();
+            }
+        });
+    }
+
+    /**
+     * @see {@link Dao#iterate(String, String[])}
+     */
+    <T> CloseableIterator<T> iterate(String whereClause, String[] whereArgs) {
+        awaitWriteBehind();
+        return this.<T>dao().iterate(whereClause, whereArgs);
+    }
+
+    /**
+     * @see {@link Dao#iterate(String, String[], QueryOptions)}
+     */
+    <T> CloseableIterator<T> iterate(String whereClause, String[] whereArgs, QueryOptions options) {
+        awaitWriteBehind();
+        return this.<T>dao().iterate(whereClause, whereArgs, options);
+    }
+
+    /**
+     * @see {@link Dao#forEach(String, String[], EntityVisitor)}
+     */
+    <T> int forEach(String whereClause, String[] whereArgs, EntityVisitor<T> visitor) {
+        awaitWriteBehind();
+        return this.<T>dao().forEach(whereClause, whereArgs, visitor);
     }
 
     /**
      * @see {@link Dao#insert(T)}
      */
     <T> boolean insert(T entity) {
-        return mDao.insert(entity);
+        if (putWriteBehind(entity)) {
+            return true;
+        }
+        try {
+            return this.<T>dao().insert(entity);
+        } finally {
+            onWrite(primaryKeysOf(entity));
+        }
     }
 
     /**
      * @see {@link Dao#update(T)}
      */
     <T> boolean update(T entity) {
-        return mDao.update(entity);
+        flushWriteBehind();
+        try {
+            return this.<T>dao().update(entity);
+        } finally {
+            onWrite(primaryKeysOf(entity));
+        }
     }
 
     /**
      * @see {@link Dao#update(ContentValues, String, String[])}
      */
     boolean update(ContentValues values, String whereClause, String[] whereArgs) {
-        return mDao.update(values, whereClause, whereArgs);
+        flushWriteBehind();
+        try {
+            return mDao.update(values, whereClause, whereArgs);
+        } finally {
+            onWrite();
+        }
     }
 
     /**
      * @see {@link Dao#update(T, String, String[])}
      */
     <T> boolean update(T entity, String whereClause, String[] whereArgs) {
-        return mDao.update(entity, whereClause, whereArgs);
+        flushWriteBehind();
+        try {
+            return this.<T>dao().update(entity, whereClause, whereArgs);
+        } finally {
+            onWrite();
+        }
     }
 
     /**
      * @see {@link Dao#update(String[], ContentValues)}
      */
     boolean update(String[] primaryKeys, ContentValues values) {
-        return mDao.update(primaryKeys, values);
+        flushWriteBehind();
+        try {
+            return mDao.update(primaryKeys, values);
+        } finally {
+            onWrite(primaryKeys);
+        }
     }
 
     /**
      * @see {@link Dao#delete(String)}
      */
     boolean delete(String primaryKey) {
-        return mDao.delete(primaryKey);
+        flushWriteBehind();
+        try {
+            return mDao.delete(primaryKey);
+        } finally {
+            onWrite(new String[] {primaryKey});
+        }
     }
 
     /**
      * @see {@link Dao#delete(String[])}
      */
     boolean delete(String[] primaryKeys) {
-        return mDao.delete(primaryKeys);
+        flushWriteBehind();
+        try {
+            return mDao.delete(primaryKeys);
+        } finally {
+            onWrite(primaryKeys);
+        }
     }
 
     /**
      * @see {@link Dao#delete(String, String[])}
      */
     boolean delete(String whereClause, String[] whereArgs) {
-        return mDao.delete(whereClause, whereArgs);
+        flushWriteBehind();
+        try {
+            return mDao.delete(whereClause, whereArgs);
+        } finally {
+            onWrite();
+        }
+    }
+
+    /**
+     * batchInsert是否在外层事务中执行<br/>
+     * 内置的Dao按批次分别提交并回调{@link OnBatchListener}，外层事务会使各批次的提交失效，因此忽略{@link Transaction}注解
+     */
+    private boolean hasBatchTransaction(Class<?>... parameterTypes) {
+        boolean hasTransaction = AnnotationUtils.hasTransaction(mDao.getClass(), "batchInsert", parameterTypes);
+        if (hasTransaction && (mDao instanceof AbstractSQLiteDaoImpl || mDao instanceof AbstractProviderDaoImpl)) {
+            if (Utils.isDebug()) {
+                Utils.log(this, mDao.getClass().getSimpleName(), ", batchInsert commits in batches, @Transaction ignored");
+            }
+            return false;
+        }
+        return hasTransaction;
     }
 
     /**
      * @see {@link Dao#batchInsert(List <T>)}
      */
     <T> boolean batchInsert(List<T> entities) {
+        flushWriteBehind();
         boolean success = false;
-        boolean hasTransaction = AnnotationUtils.hasTransaction(mDao.getClass(), "batchInsert", List.class);
+        boolean hasTransaction = hasBatchTransaction(List.class);
         SQLiteDatabase db = null;
         if (hasTransaction) {
             if (Utils.isDebug()) {
@@ -153,7 +738,7 @@ final class DaoController {
             }
         }
         try {
-            boolean s = mDao.batchInsert(entities);
+            boolean s = this.<T>dao().batchInsert(entities);
             if (hasTransaction) {
                 db.setTransactionSuccessful();
             }
@@ -166,6 +751,45 @@ final class DaoController {
             if (hasTransaction) {
                 db.endTransaction();
             }
+            onWrite(primaryKeysOf(entities));
+            return success;
+        }
+    }
+
+    /**
+     * @see {@link Dao#batchInsert(List <T>, OnBatchListener)}
+     */
+    <T> boolean batchInsert(List<T> entities, OnBatchListener listener) {
+        flushWriteBehind();
+        boolean success = false;
+        boolean hasTransaction = hasBatchTransaction(List.class, OnBatchListener.class);
+        SQLiteDatabase db = null;
+        if (hasTransaction) {
+            if (Utils.isDebug()) {
+                Utils.log(this, mDao.getClass().getSimpleName() , ", batchInsert(List, OnBatchListener) has transaction");
+            }
+            db = mSQLiteOpenHelper.getWritableDatabase();
+            db.beginTransaction();
+        } else {
+            if (Utils.isDebug()) {
+                Utils.log(this, mDao.getClass().getSimpleName(), ", batchInsert(List, OnBatchListener) no transaction");
+            }
+        }
+        try {
+            boolean s = this.<T>dao().batchInsert(entities, listener);
+            if (hasTransaction) {
+                db.setTransactionSuccessful();
+            }
+            success = s;
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "batchInsert(List, OnBatchListener)", e);
+            }
+        } finally {
+            if (hasTransaction) {
+                db.endTransaction();
+            }
+            onWrite(primaryKeysOf(entities));
             return success;
         }
     }
@@ -174,6 +798,7 @@ final class DaoController {
      * @see {@link Dao#batchUpdate(List <T>)}
      */
     <T> boolean batchUpdate(List<T> entities) {
+        flushWriteBehind();
         boolean success = false;
         boolean hasTransaction = AnnotationUtils.hasTransaction(mDao.getClass(), "batchUpdate", List.class);
         SQLiteDatabase db = null;
@@ -202,6 +827,7 @@ final class DaoController {
             if (hasTransaction) {
                 db.endTransaction();
             }
+            onWrite(primaryKeysOf(entities));
             return success;
         }
     }
@@ -210,6 +836,7 @@ final class DaoController {
      * @see {@link Dao#batchUpdate(List <T>, String , String[])}
      */
     <T> boolean batchUpdate(List<T> entities, String whereClause, String[] whereArgs) {
+        flushWriteBehind();
         boolean success = false;
         boolean hasTransaction = AnnotationUtils.hasTransaction(mDao.getClass(), "batchUpdate", List.class, String.class, String[].class);
         SQLiteDatabase db = null;
@@ -238,6 +865,7 @@ final class DaoController {
             if (hasTransaction) {
                 db.endTransaction();
             }
+            onWrite();
             return success;
         }
     }
@@ -246,17 +874,42 @@ final class DaoController {
      * @see {@link Dao#insertOrUpdate(T)}
      */
     <T> boolean insertOrUpdate(T entity) {
-        return mDao.insertOrUpdate(entity);
+        if (putWriteBehind(entity)) {
+            return true;
+        }
+        try {
+            return this.<T>dao().insertOrUpdate(entity);
+        } finally {
+            onWrite(primaryKeysOf(entity));
+        }
     }
 
     /**
      * @see {@link Dao#insertOrUpdate(T, String, String[])}
      */
     <T> boolean insertOrUpdate(T entity, String whereClause, String[] whereArgs) {
-        return mDao.insertOrUpdate(entity, whereClause, whereArgs);
+        flushWriteBehind();
+        try {
+            return this.<T>dao().insertOrUpdate(entity, whereClause, whereArgs);
+        } finally {
+            onWrite();
+        }
+    }
+
+    /**
+     * @see {@link Dao#batchInsertOrUpdate(List <T>)}
+     */
+    <T> boolean batchInsertOrUpdate(List<T> entities) {
+        flushWriteBehind();
+        try {
+            return this.<T>dao().batchInsertOrUpdate(entities);
+        } finally {
+            onWrite(primaryKeysOf(entities));
+        }
     }
 
     <T> T execute(String methodName, Class<?>[] parameterTypes, Object... args) {
+        flushWriteBehind();
         Method method = AnnotationUtils.getMethod(mDao.getClass(), methodName, parameterTypes);
         if (method == null) {
             if (Utils.isDebug()) {
@@ -291,6 +944,8 @@ final class DaoController {
             if (hasTransaction) {
                 db.endTransaction();
             }
+            // 无法判断任意方法是否写库，按写操作处理
+            onWrite();
             return t;
         }
     }
@@ -299,122 +954,257 @@ final class DaoController {
      * @see {@link Dao#batchUpdate(List < ContentValues >, String )}
      */
     boolean batchUpdate(List<ContentValues> values, String column) {
-        return mDao.batchUpdate(values, column);
+        flushWriteBehind();
+        try {
+            return dao().batchUpdate(values, column);
+        } finally {
+            onWrite();
+        }
     }
 
+    /**
+     * 事务可能修改任意表，由调用方负责使相关缓存失效
+     */
     boolean exeTransaction(Action action) {
+        flushWriteBehind();
         return mDao.exeTransaction(action);
     }
 
     /**
      * @see {@link Dao#getLong(String, String, String[])}
      */
-    Long getLong(String columnOrExpression, String whereClause, String[] whereArgs) {
-        return mDao.getLong(columnOrExpression, whereClause, whereArgs);
+    Long getLong(final String columnOrExpression, final String whereClause, final String[] whereArgs) {
+        return cachedQuery("getLong", whereClause, whereArgs, columnOrExpression, new Loader<Long>() {
+            @Override
+            public Long load() {
+                return mDao.getLong(columnOrExpression, whereClause, whereArgs);
+            }
+        });
     }
 
     /**
      * @see {@link Dao#getString(String, String, String[])}
      */
-    String getString(String column, String whereClause, String[] whereArgs) {
-        return mDao.getString(column, whereClause, whereArgs);
+    String getString(final String column, final String whereClause, final String[] whereArgs) {
+        return cachedQuery("getString", whereClause, whereArgs, column, new Loader<String>() {
+            @Override
+            public String load() {
+                return mDao.getString(column, whereClause, whereArgs);
+            }
+        });
     }
 
     /**
      * @see {@link Dao#getLongs(String, String, String[])}
      */
-    List<Long> getLongs(String columnOrExpression, String whereClause, String[] whereArgs) {
-        return mDao.getLongs(columnOrExpression, whereClause, whereArgs);
+    List<Long> getLongs(final String columnOrExpression, final String whereClause, final String[] whereArgs) {
+        return cachedQuery("getLongs", whereClause, whereArgs, columnOrExpression, new Loader<List<Long>>() {
+            @Override
+            public List<Long> load() {
+                return dao().getLongs(columnOrExpression, whereClause, whereArgs);
+            }
+        });
     }
 
     /**
      * @see {@link Dao#getStrings(String, String, String[])}
      */
-    List<String> getStrings(String columnOrExpression, String whereClause, String[] whereArgs) {
-        return mDao.getStrings(columnOrExpression, whereClause, whereArgs);
+    List<String> getStrings(final String columnOrExpression, final String whereClause, final String[] whereArgs) {
+        return cachedQuery("getStrings", whereClause, whereArgs, columnOrExpression, new Loader<List<String>>() {
+            @Override
+            public List<String> load() {
+                return dao().getStrings(columnOrExpression, whereClause, whereArgs);
+            }
+        });
     }
 
     /**
      * @see {@link Dao#getRowValues(String[], String, String[])}
      */
-    ContentValues getRowValues(String[] columnsOrExpressions, String whereClause, String[] whereArgs) {
-        return mDao.getRowValues(columnsOrExpressions, whereClause, whereArgs);
+    ContentValues getRowValues(final String[] columnsOrExpressions, final String whereClause, final String[] whereArgs) {
+        return cachedQuery("getRowValues", whereClause, whereArgs, columnsOrExpressions, new Loader<ContentValues>() {
+            @Override
+            public ContentValues load() {
+                return mDao.getRowValues(columnsOrExpressions, whereClause, whereArgs);
+            }
+        });
     }
 
     /**
-     * 检查数据库表字段的完整性
+     * 检查数据库表字段及索引的完整性：表不存在时建表，字段缺失时新增字段，索引按声明补建、重建或删除<br/>
+     * 表结构指纹及schema_version与上次检查通过时一致的表直接跳过。
+     * @param db 可写数据库
+     * @param fingerprints 表结构指纹
+     * @param deferred 数据量较大、需在后台创建的索引
+     * @return true，进行了检查；false，跳过检查
      */
-    void checkTableIntegrity() {
-        if (mDao instanceof AbstractDefaultDao) {
-            AbstractDefaultDao dao = (AbstractDefaultDao) mDao;
-            Column[] columns = dao.getColumns();
-            if (columns == null || columns.length == 0) {
-                return;
+    boolean checkTableIntegrity(SQLiteDatabase db, SchemaFingerprints fingerprints, List<Index> deferred) {
+        if (!(mDao instanceof AbstractDefaultDao)) {
+            return false;
+        }
+        AbstractDefaultDao<?> dao = (AbstractDefaultDao<?>) mDao;
+        Column[] columns = dao.getColumns();
+        if (columns == null || columns.length == 0) {
+            return false;
+        }
+        final String table = dao.getTableName();
+        final Index[] indexes = dao.getIndexes();
+        final String fingerprint = SchemaFingerprints.fingerprint(table, columns, indexes);
+        if (fingerprints.isUnchanged(table, fingerprint)) {
+            fingerprints.onSkipped(table, fingerprint);
+            if (Utils.isDebug()) {
+                Utils.log(this, table, " 表结构未变化，跳过检查");
+            }
+            return false;
+        }
+        try {
+            Set<String> existing = getTableColumns(db, table);
+            if (existing.isEmpty()) {
+                if (Utils.isDebug()) {
+                    Utils.log(this, table, " 表不存在，进行表添加操作");
+                }
+                dao.createTable(db);
+                fingerprints.onChecked(table, fingerprint);
+                return true;
+            }
+            if (Utils.isDebug()) {
+                Utils.log(this, table, " 表存在，进行字段检查操作.......");
+            }
+            boolean complete = true;
+            for (Column column : columns) {
+                if (existing.contains(column.name().toLowerCase(Locale.US))) {
+                    continue;
+                }
+                try {
+                    db.execSQL(column.buildAddColumnSql(table));
+                    dao.onSchemaChanged();
+                    if (Utils.isDebug()) {
+                        Utils.log(this, table, '.', column.name(), "，添加成功！");
+                    }
+                } catch (Exception e) {
+                    complete = false;
+                    if (Utils.isDebug()) {
+                        Utils.log(this, table + '.' + column.name() + "，新增失败！", e);
+                    }
+                }
+            }
+            if (!checkIndexes(db, dao, table, indexes, deferred)) {
+                complete = false;
             }
-            Cursor cursor = null;
-            try {
-                SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
-                final String table = dao.getTableName();
-                if (hasTable(table)) {
+            // 新增字段、索引失败或索引在后台创建时不记录指纹，下次继续检查
+            if (complete) {
+                fingerprints.onChecked(table, fingerprint);
+            }
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "checkTableIntegrity " + table, e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按声明补建缺失的索引、重建定义变化的索引、删除不再声明的由EasyLite创建的索引
+     * @return 是否全部完成
+     */
+    private boolean checkIndexes(SQLiteDatabase db, AbstractDefaultDao<?> dao, String table,
+                                 Index[] indexes, List<Index> deferred) {
+        Map<String, String> existing = Indexes.existing(db, table);
+        Set<String> managed = Indexes.managed(db, table);
+        Set<String> declared = new HashSet<>();
+        boolean complete = true;
+        long rows = -1;
+        if (indexes != null) {
+            for (Index index : indexes) {
+                if (!Indexes.isSupported(db, index)) {
                     if (Utils.isDebug()) {
-                        Utils.log(this, table, " 表存在，进行字段检查操作.......");
+                        Utils.log(this, table, " 当前SQLite版本不支持部分索引，跳过: ", index.nameOn(table));
                     }
-                    cursor = db.rawQuery("SELECT * FROM " + table, null);
-                    if (cursor != null && !cursor.isClosed()) {
-                        for (int i = 0, length = columns.length; i < length; i++) {
-                            Column column = columns[i];
-                            int index = cursor.getColumnIndex(column.name());
-                            if (index < 0) {
-                                try {
-                                    db.execSQL(column.buildAddColumnSql(table));
-                                    if (Utils.isDebug()) {
-                                        Utils.log(this, table, '.', column.name(), "，添加成功！");
-                                    }
-                                } catch (Exception e) {
-                                    if (Utils.isDebug()) {
-                                        Utils.log(this, table, '.', column.name(), "，新增失败！");
-                                        e.printStackTrace();
-                                    }
-                                }
-                            } else {
-                                if (Utils.isDebug()) {
-                                    Utils.log(this, table, '.', column.name(), "，已存在！");
-                                }
-                            }
+                    continue;
+                }
+                final String name = index.nameOn(table).toLowerCase(Locale.US);
+                declared.add(name);
+                String sql = existing.get(name);
+                if (sql != null && Indexes.isSameDefinition(sql, index.buildSql(table, false))) {
+                    continue;
+                }
+                try {
+                    if (sql != null) {
+                        if (Utils.isDebug()) {
+                            Utils.log(this, table, " 索引定义已变化，重建: ", name);
                         }
+                        Indexes.drop(db, name);
                     }
-                } else {
+                    if (rows < 0) {
+                        rows = Indexes.estimateRows(db, table);
+                    }
+                    if (rows > Indexes.BACKGROUND_BUILD_ROWS) {
+                        deferred.add(index);
+                        complete = false;
+                        continue;
+                    }
+                    Indexes.create(db, table, index);
+                    dao.onSchemaChanged();
                     if (Utils.isDebug()) {
-                        Utils.log(this, table, " 表不存在，进行表添加操作");
+                        Utils.log(this, table, " 索引", name, "，创建成功！");
+                    }
+                } catch (Exception e) {
+                    complete = false;
+                    if (Utils.isDebug()) {
+                        Utils.log(this, table + " 索引" + name + "，创建失败！", e);
                     }
-                    dao.createTable(db);
                 }
-            } catch (Exception e) {
+            }
+        }
+        for (String name : managed) {
+            if (!declared.contains(name)) {
+                Indexes.drop(db, name);
+                dao.onSchemaChanged();
                 if (Utils.isDebug()) {
-                    e.printStackTrace();
+                    Utils.log(this, table, " 索引", name, "，已不再声明，删除！");
                 }
-            } finally {
-                Utils.closeSafely(cursor);
             }
         }
+        return complete;
     }
 
-    private boolean hasTable(String table) {
-        boolean has = false;
+    /**
+     * 在后台创建索引，由写线程调用
+     */
+    void buildIndex(SQLiteDatabase db, Index index) {
+        AbstractDefaultDao<?> dao = (AbstractDefaultDao<?>) mDao;
+        final String table = dao.getTableName();
+        final long t = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            Indexes.create(db, table, index);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        dao.onSchemaChanged();
+        if (Utils.isDebug()) {
+            Utils.log(this, table, " 索引", index.nameOn(table), "，后台创建成功，耗时: ", (System.currentTimeMillis() - t), " ms");
+        }
+    }
+
+    /**
+     * 通过PRAGMA table_info读取表的字段名（小写），表不存在时返回空集合
+     */
+    private static Set<String> getTableColumns(SQLiteDatabase db, String table) {
+        Set<String> columns = new HashSet<>();
         Cursor cursor = null;
         try {
-            SQLiteDatabase db = mSQLiteOpenHelper.getWritableDatabase();
-            cursor = db.rawQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = ? AND name = ?", new String[] {"table", table});
-            if (cursor != null && !cursor.isClosed() && cursor.moveToFirst()) {
-                has = cursor.getInt(0) > 0;
-            }
-        } catch (Exception e) {
-            if (Utils.isDebug()) {
-                e.printStackTrace();
+            cursor = db.rawQuery(Utils.concat("PRAGMA table_info(", table, ")"), null);
+            if (cursor != null) {
+                final int nameIndex = cursor.getColumnIndexOrThrow("name");
+                while (cursor.moveToNext()) {
+                    columns.add(cursor.getString(nameIndex).toLowerCase(Locale.US));
+                }
             }
         } finally {
             Utils.closeSafely(cursor);
-            return has;
         }
+        return columns;
     }
 }
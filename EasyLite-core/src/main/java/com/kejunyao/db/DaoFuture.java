@@ -0,0 +1,190 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+import android.os.Process;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 可取消的异步操作句柄，由{@link DatabaseController}的异步方法返回<br/>
+ * 取消成功后{@link DaoCallback}不再回调：取消尚未执行的操作时将其移出队列；
+ * 取消正在执行的操作时中断其中的查询（需要API 16），写操作一旦开始执行不会被中断，
+ * 操作结束后结果为{@link Cursor}或{@link Closeable}（如{@link CloseableIterator}）时关闭。<br/>
+ * 操作执行失败时不回调，也不在执行线程（含{@link #executeInline()}的调用线程）中抛出异常，
+ * 只输出日志，{@link #get()}抛出{@link ExecutionException}。<br/>
+ * 回调为{@link SafelyDaoCallback}（如{@link NoLeakDaoCallback}）时，若执行前其宿主已销毁，操作自动取消。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class DaoFuture<V> extends FutureTask<V> implements Prioritized, PriorityTaskQueue.Reorderable {
+
+    /**
+     * 当前线程正在执行的操作
+     */
+    private static final ThreadLocal<DaoFuture<?>> CURRENT = new ThreadLocal<>();
+
+    private final Priority mPriority;
+    private final Object mSource;
+    private final DaoCallback<V> mCallback;
+    private final Object mCancellationSignal;
+    private volatile ExecutorService mExecutor;
+    private volatile boolean mReadOnly;
+
+    /**
+     * @param callable 异步操作
+     * @param source 决定优先级及生命周期的对象，一般为回调
+     * @param callback 操作完成后回调，可为null
+     */
+    DaoFuture(Callable<V> callable, Object source, DaoCallback<V> callback) {
+        super(callable);
+        this.mPriority = PriorityTask.priorityOf(source, Priority.NORMAL);
+        this.mSource = source;
+        this.mCallback = callback;
+        this.mCancellationSignal = Cancellations.newSignal();
+    }
+
+    /**
+     * 当前线程正在执行的操作的取消信号
+     * @return 取消信号，不在操作中或低版本时返回null
+     */
+    static Object currentSignal() {
+        DaoFuture<?> future = CURRENT.get();
+        return future == null ? null : future.mCancellationSignal;
+    }
+
+    /**
+     * 提交到线程池执行
+     * @param readOnly 是否为只读操作，只读操作可按优先级越过其他只读操作，写操作按提交顺序执行
+     */
+    DaoFuture<V> executeOn(ExecutorService executor, boolean readOnly) {
+        mExecutor = executor;
+        mReadOnly = readOnly;
+        executor.execute(this);
+        return this;
+    }
+
+    /**
+     * 在当前线程中立即执行，不改变线程优先级
+     */
+    DaoFuture<V> executeInline() {
+        super.run();
+        return this;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public boolean isReorderable() {
+        return mReadOnly;
+    }
+
+    @Override
+    public void run() {
+        if ((mSource instanceof SafelyDaoCallback) && !((SafelyDaoCallback) mSource).isSafely()) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "callback is not safely, cancelled before running");
+            }
+            cancel();
+            return;
+        }
+        Process.setThreadPriority(mPriority.threadPriority);
+        final DaoFuture<?> previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            super.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 取消操作
+     * @return true，取消成功；false，操作已完成或已取消
+     */
+    public boolean cancel() {
+        return cancel(true);
+    }
+
+    /**
+     * 取消操作，正在执行的查询通过CancellationSignal中断，不中断执行线程
+     * @param mayInterruptIfRunning 是否中断正在执行的查询
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(false)) {
+            return false;
+        }
+        ExecutorService executor = mExecutor;
+        if (executor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) executor).remove(this);
+        }
+        if (mayInterruptIfRunning) {
+            Cancellations.cancel(mCancellationSignal);
+        }
+        return true;
+    }
+
+    /**
+     * 操作已执行完成，执行中被取消时结果不会被接收，关闭结果
+     */
+    @Override
+    protected void set(V v) {
+        super.set(v);
+        if (isCancelled()) {
+            if (v instanceof Cursor) {
+                Utils.closeSafely((Cursor) v);
+            } else if (v instanceof Closeable) {
+                Utils.closeSafely((Closeable) v);
+            }
+        }
+    }
+
+    /**
+     * 操作执行失败或执行中被取消时（如查询被中断）只输出日志
+     */
+    @Override
+    protected void setException(Throwable t) {
+        super.setException(t);
+        if (Utils.isDebug()) {
+            Utils.log(this, isCancelled() ? "cancelled while running, " : "execute failure, ", t);
+        }
+    }
+
+    /**
+     * 正常完成时回调；执行失败或已取消时不回调
+     */
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        V result;
+        try {
+            result = get();
+        } catch (CancellationException e) {
+            // 已取消，不回调
+            return;
+        } catch (ExecutionException e) {
+            // 失败原因由get()抛出
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        DatabaseController.doCallback(mCallback, result);
+    }
+}
@@ -5,26 +5,88 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.os.Process;
+import android.os.Build;
 import android.util.SparseArray;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * 数据库增、删、改、查Controller
+ * 数据库增、删、改、查Controller<br/>
+ * 异步操作默认按{@link Priority#NORMAL}依提交顺序执行，回调实现{@link Prioritized}时按其优先级排队，
+ * 不同优先级的写操作之间不保证执行顺序。<br/>
+ * 异步操作返回{@link DaoFuture}，页面销毁等不再需要结果时可调用{@link DaoFuture#cancel()}取消。
  *
  * @author kejunyao
  * @since 2018年04月20日
  */
 public class DatabaseController {
 
-    private final HashMap<Class, DaoController> mControllers = new HashMap<>();
+    /**
+     * 无对应DaoController的解析结果
+     */
+    private static final Object NO_CONTROLLER = new Object();
+
+    /**
+     * 已注册的DaoController，Key为实体类
+     */
+    private final ConcurrentHashMap<Class<?>, DaoController> mControllers = new ConcurrentHashMap<>();
+    /**
+     * 实体类（含子类）到DaoController的解析结果，未找到时为{@link #NO_CONTROLLER}
+     */
+    private final ConcurrentHashMap<Class<?>, Object> mResolvedControllers = new ConcurrentHashMap<>();
+    /**
+     * 注册表版本，注册Dao后递增，用于丢弃并发解析出的过期结果
+     */
+    private volatile int mRegistryVersion;
+    /**
+     * 按表加锁，事务、{@link #executeWithLock(Runnable)}等操作之间互斥
+     */
+    private final TableLockManager mLockManager = new TableLockManager();
+    /**
+     * 查询结果缓存，未开启时为null
+     */
+    private volatile QueryCache mQueryCache;
     private SparseArray<OnDatabaseUpdateListener> mListeners;
+    /**
+     * 版本迁移
+     */
+    private final MigrationEngine mMigrations = new MigrationEngine();
+    /**
+     * 正在后台创建的索引（小写）
+     */
+    private final Set<String> mBuildingIndexes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
+    /**
+     * 写操作（及未区分读写的操作）线程池
+     */
     private final ExecutorService mExecutor;
+    /**
+     * 读操作线程池，未开启并发读时为null，读操作在{@link #mExecutor}中执行
+     */
+    private volatile InstrumentedExecutor mReadExecutor;
+    /**
+     * 写后缓冲的定时刷写及溢写日志的写入线程，首次开启写后缓冲时创建，空闲时线程自动退出
+     */
+    private ScheduledThreadPoolExecutor mFlushScheduler;
     private final ContentResolver mContentResolver;
     private final SQLiteOpenHelper mSQLiteOpenHelper;
     private final String mProviderAuthority;
@@ -41,7 +103,7 @@ public class DatabaseController {
     public DatabaseController(ExecutorService executor, SQLiteOpenHelper openHelper,
                               ContentResolver resolver, String providerAuthority) {
         if (executor == null) {
-            this.mExecutor = Utils.newSingleFixedThreadPool();
+            this.mExecutor = newExecutor("EasyLite-writer", 1);
         } else {
             this.mExecutor = executor;
         }
@@ -58,6 +120,167 @@ public class DatabaseController {
         Utils.setLoggingEnabled(enabled);
     }
 
+    /**
+     * 开启并发读：开启数据库WAL（预写日志）模式，异步读操作在独立的读线程池中并发执行，
+     * 写操作仍在单一线程中按提交顺序执行<br/>
+     * 读写分离后，先提交的写操作不保证在后提交的读操作之前完成，需要读到写入结果时应在写操作的回调中发起读操作。
+     * 须在发起异步操作之前调用，且只能调用一次。
+     * @param maxReaders 读线程数，须大于0
+     */
+    public DatabaseController enableConcurrentReads(int maxReaders) {
+        synchronized (this) {
+            if (mSQLiteOpenHelper != null) {
+                enableWriteAheadLogging(mSQLiteOpenHelper);
+            }
+            startReaders(maxReaders);
+        }
+        return this;
+    }
+
+    /**
+     * 创建读线程池，WAL模式由调用方开启（如{@link TuningProfile}在onConfigure中开启），不会打开数据库
+     */
+    void startReaders(int maxReaders) {
+        Assert.isTrue(maxReaders > 0, "maxReaders must be greater than 0!");
+        synchronized (this) {
+            Assert.isTrue(mReadExecutor == null, "concurrent reads already enabled!");
+            mReadExecutor = newExecutor("EasyLite-reader", maxReaders);
+        }
+    }
+
+    /**
+     * 创建按优先级排队的线程池，处于事务之中或持有表锁时不执行插队的任务
+     */
+    private InstrumentedExecutor newExecutor(String name, int threads) {
+        InstrumentedExecutor executor = new InstrumentedExecutor(name, threads);
+        executor.setYieldPolicy(new InstrumentedExecutor.YieldPolicy() {
+            @Override
+            public boolean canYield() {
+                if (mLockManager.isHeldByCurrentThread()) {
+                    return false;
+                }
+                final SQLiteOpenHelper helper = mSQLiteOpenHelper;
+                return helper == null || !helper.getWritableDatabase().inTransaction();
+            }
+        });
+        return executor;
+    }
+
+    /**
+     * 开启并发读，读线程数与CPU核数相同（最多4个）
+     * @see #enableConcurrentReads(int)
+     */
+    public DatabaseController enableConcurrentReads() {
+        return enableConcurrentReads(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    private void enableWriteAheadLogging(SQLiteOpenHelper openHelper) {
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                openHelper.setWriteAheadLoggingEnabled(true);
+            } else {
+                openHelper.getWritableDatabase().enableWriteAheadLogging();
+            }
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "enableWriteAheadLogging", e);
+            }
+        }
+    }
+
+    /**
+     * 获取读线程池的统计信息
+     * @return 统计信息，未开启并发读时返回null
+     */
+    public ExecutorStats getReaderStats() {
+        InstrumentedExecutor executor = mReadExecutor;
+        return executor == null ? null : executor.stats();
+    }
+
+    /**
+     * 获取写线程池（未开启并发读时为全部异步操作的线程池）的统计信息
+     * @return 统计信息，构造时传入的线程池不做统计，返回null
+     */
+    public ExecutorStats getWriterStats() {
+        return mExecutor instanceof InstrumentedExecutor ? ((InstrumentedExecutor) mExecutor).stats() : null;
+    }
+
+    /**
+     * 执行异步读操作
+     * @param priority 优先级
+     */
+    private void executeRead(Priority priority, Runnable r) {
+        ExecutorService executor = mReadExecutor;
+        (executor == null ? mExecutor : executor).execute(new PriorityTask(priority, r, true));
+    }
+
+    /**
+     * 执行异步读操作，按回调指定的优先级排队
+     * @param callback 操作完成后回调，可为null
+     */
+    private <V> DaoFuture<V> executeRead(DaoCallback<V> callback, Callable<V> callable) {
+        return executeRead(new DaoFuture<>(callable, callback, callback));
+    }
+
+    private <V> DaoFuture<V> executeRead(DaoFuture<V> future) {
+        ExecutorService executor = mReadExecutor;
+        return future.executeOn(executor == null ? mExecutor : executor, true);
+    }
+
+    /**
+     * 执行异步写操作，写操作之间按提交顺序执行，回调指定的优先级只决定线程优先级
+     * @param callback 操作完成后回调，可为null
+     */
+    private <V> DaoFuture<V> executeWrite(DaoCallback<V> callback, Callable<V> callable) {
+        return executeWrite(new DaoFuture<>(callable, callback, callback));
+    }
+
+    private <V> DaoFuture<V> executeWrite(DaoFuture<V> future) {
+        return future.executeOn(mExecutor, false);
+    }
+
+    /**
+     * 耗时的异步任务（如{@link #execute(DaoProcessCallback)}中的批量同步）在分块之间调用，
+     * 先执行排队中优先级更高的读操作（写操作按提交顺序执行，不插队），再继续当前任务<br/>
+     * 处于事务之中、持有表锁（如{@link #executeWithLock(Runnable)}之中）或非本Controller默认线程池的线程调用时不做任何操作。
+     */
+    public static void yieldToUrgent() {
+        InstrumentedExecutor.yieldToUrgent();
+    }
+
+    /**
+     * 设置主线程回调每帧的时间预算，默认4毫秒<br/>
+     * 主线程回调（{@link UIDaoCallback}、{@link SafelyDaoCallback}等）每帧集中执行一次，超出预算的回调留到下一帧。
+     * @param millis 时间预算，单位毫秒，须大于0
+     */
+    public static void setMainThreadFrameBudget(long millis) {
+        MainThreadDispatcher.setFrameBudget(millis);
+    }
+
+    /**
+     * 开启或关闭执行计划分析（诊断模式，用于压测，会读取被采样查询的全部结果并额外执行EXPLAIN QUERY PLAN）<br/>
+     * 首次出现的SQL形态执行一次EXPLAIN QUERY PLAN，标记全表扫描及临时B树排序并给出索引建议，结果见{@link #getQueryPlanReport()}。<br/>
+     * 作用于进程内所有数据库，统计结果按数据库文件区分（见{@link QueryPlanStats#database()}）。
+     * @param sampleRate 每sampleRate次查询采样一次，0表示关闭
+     */
+    public static void setQueryPlanAnalysis(int sampleRate) {
+        QueryPlanAnalyzer.setSampleRate(sampleRate);
+    }
+
+    /**
+     * 获取执行计划分析结果：有全表扫描或临时B树的SQL形态在前，其余按累计耗时降序
+     */
+    public static List<QueryPlanStats> getQueryPlanReport() {
+        return QueryPlanAnalyzer.report();
+    }
+
+    /**
+     * 清空执行计划分析结果
+     */
+    public static void resetQueryPlanReport() {
+        QueryPlanAnalyzer.reset();
+    }
+
     public DatabaseController addDatabaseUpdateListener(int currVersion, OnDatabaseUpdateListener l) {
         synchronized (this) {
             if (mListeners == null) {
@@ -68,16 +291,37 @@ public class DatabaseController {
                 }
             }
             mListeners.put(currVersion, l);
+            mMigrations.addListener(currVersion, l);
         }
         return this;
     }
 
+    /**
+     * 注册迁移步骤，须在打开数据库之前注册<br/>
+     * 升级时只登记新版本引入的迁移步骤，打开数据库时按版本号（同一版本按注册顺序）依次执行，
+     * 每次执行与其进度在同一事务中提交；失败时回滚当前事务并暂停后续步骤，下次打开数据库时从检查点继续，不会删除数据。
+     * 前台迁移失败时打开数据库抛出异常；后台迁移在全部前台迁移（含更高版本的）完成之后执行。
+     * @see Migration
+     * @see ChunkedCopyMigration
+     */
+    public DatabaseController addMigration(Migration migration) {
+        mMigrations.add(migration);
+        return this;
+    }
+
+    /**
+     * 获取全部迁移步骤的执行记录（状态、进度、执行次数、耗时、失败原因）
+     */
+    public List<MigrationRecord> getMigrationRecords() {
+        return mMigrations.records(mSQLiteOpenHelper.getReadableDatabase());
+    }
+
     public static void doCallback(final DaoCallback<Boolean> callback, final boolean success) {
         if (callback == null) {
             return;
         }
         if (callback instanceof SafelyDaoCallback) {
-            Utils.executeOnMainThread(new Runnable() {
+            MainThreadDispatcher.post(new Runnable() {
                 @Override
                 public void run() {
                     ((SafelyDaoCallback) callback).onCallbackSafely(success);
@@ -86,7 +330,7 @@ public class DatabaseController {
             return;
         }
         if (callback instanceof UIDaoCallback) {
-            Utils.executeOnMainThread(new Runnable() {
+            MainThreadDispatcher.post(new Runnable() {
                 @Override
                 public void run() {
                     callback.onCallback(success);
@@ -102,7 +346,7 @@ public class DatabaseController {
             return;
         }
         if (callback instanceof SafelyDaoCallback) {
-            Utils.executeOnMainThread(new Runnable() {
+            MainThreadDispatcher.post(new Runnable() {
                 @Override
                 public void run() {
                     ((SafelyDaoCallback) callback).onCallbackSafely(entity);
@@ -111,7 +355,7 @@ public class DatabaseController {
             return;
         }
         if ((callback instanceof UIDaoCallback) || (callback instanceof DaoProcessCallback)) {
-            Utils.executeOnMainThread(new Runnable() {
+            MainThreadDispatcher.post(new Runnable() {
                 @Override
                 public void run() {
                     callback.onCallback(entity);
@@ -127,7 +371,7 @@ public class DatabaseController {
             return;
         }
         if (callback instanceof SafelyDaoCallback) {
-            Utils.executeOnMainThread(new Runnable() {
+            MainThreadDispatcher.post(new Runnable() {
                 @Override
                 public void run() {
                     ((SafelyDaoCallback) callback).onCallbackSafely(entities);
@@ -136,7 +380,7 @@ public class DatabaseController {
             return;
         }
         if (callback instanceof UIDaoCallback) {
-            Utils.executeOnMainThread(new Runnable() {
+            MainThreadDispatcher.post(new Runnable() {
                 @Override
                 public void run() {
                     callback.onCallback(entities);
@@ -147,16 +391,42 @@ public class DatabaseController {
         callback.onCallback(entities);
     }
 
+    /**
+     * 查找实体类对应的DaoController，解析结果（包括未找到）按实体类缓存，查找无锁
+     */
     private DaoController findDaoController(Class clazz) {
-        DaoController controller = mControllers.get(clazz);
-        if (controller == null) {
-            for (Class key : mControllers.keySet()) {
-                if (key.isAssignableFrom(clazz)) {
-                    return mControllers.get(key);
-                }
+        if (clazz == null) {
+            return null;
+        }
+        Object resolved = mResolvedControllers.get(clazz);
+        if (resolved == null) {
+            final int version = mRegistryVersion;
+            resolved = resolveDaoController(clazz);
+            mResolvedControllers.put(clazz, resolved);
+            if (version != mRegistryVersion) {
+                // 解析期间注册了新的Dao，结果可能已过期
+                mResolvedControllers.remove(clazz);
+            }
+        }
+        return resolved == NO_CONTROLLER ? null : (DaoController) resolved;
+    }
+
+    /**
+     * 按继承关系由近及远查找已注册的实体类，找不到时再查找实体类实现的接口等
+     */
+    private Object resolveDaoController(Class<?> clazz) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            DaoController controller = mControllers.get(c);
+            if (controller != null) {
+                return controller;
             }
         }
-        return controller;
+        for (Map.Entry<Class<?>, DaoController> entry : mControllers.entrySet()) {
+            if (entry.getKey().isAssignableFrom(clazz)) {
+                return entry.getValue();
+            }
+        }
+        return NO_CONTROLLER;
     }
 
     public void onDatabaseUpdate(SQLiteDatabase db, int currVersion) {
@@ -195,7 +465,11 @@ public class DatabaseController {
             dao.setContentResolver(mContentResolver);
             dao.setProviderAuthority(mProviderAuthority);
             dao.setSQLiteOpenHelper(mSQLiteOpenHelper);
-            mControllers.put(dao.getPersistentClass(), new DaoController(dao, mSQLiteOpenHelper));
+            DaoController controller = new DaoController(dao, mSQLiteOpenHelper);
+            controller.setQueryCache(mQueryCache);
+            mControllers.put(dao.getPersistentClass(), controller);
+            mRegistryVersion++;
+            mResolvedControllers.clear();
         }
     }
 
@@ -223,6 +497,23 @@ public class DatabaseController {
         }
     }
 
+    /**
+     * 获取某实体Dao的已编译语句缓存统计信息
+     * @param clazz 实体类
+     * @return 统计信息，Dao不支持语句缓存时返回null
+     */
+    public <T> CacheStats getStatementCacheStats(Class<T> clazz) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            return null;
+        }
+        Dao<?> dao = controller.getDao();
+        if (dao instanceof AbstractSQLiteDaoImpl) {
+            return ((AbstractSQLiteDaoImpl<?>) dao).getStatementCacheStats();
+        }
+        return null;
+    }
+
     /**
      * 表创建操作
      */
@@ -255,98 +546,591 @@ public class DatabaseController {
                 db.execSQL("DROP TABLE IF EXISTS " + tableName + ";");
             }
         }
+        notifySchemaChanged();
+    }
+
+    /**
+     * 通知所有Dao表结构已发生变化
+     */
+    private void notifySchemaChanged() {
+        Collection<DaoController> cs = mControllers.values();
+        for (DaoController c : cs) {
+            Dao<?> dao = c.getDao();
+            if (dao instanceof AbstractDefaultDao) {
+                ((AbstractDefaultDao<?>) dao).onSchemaChanged();
+            }
+            c.invalidate();
+        }
+    }
+
+    /**
+     * 使所有Dao的缓存（实体缓存、预取的分页结果、查询结果）失效<br/>
+     * 通过{@link #execute(Runnable)}等方式直接修改数据后须调用
+     */
+    public void invalidateCaches() {
+        for (DaoController c : mControllers.values()) {
+            c.invalidate();
+        }
+        QueryCache cache = mQueryCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 使指定表相关的缓存失效
+     * @param tables 表名，null表示全部表
+     */
+    private void invalidateCaches(String[] tables) {
+        if (tables == null) {
+            invalidateCaches();
+            return;
+        }
+        QueryCache cache = mQueryCache;
+        for (String table : tables) {
+            if (cache != null) {
+                cache.invalidate(table);
+            }
+            for (DaoController c : mControllers.values()) {
+                if (table != null && table.equalsIgnoreCase(c.getTableName())) {
+                    c.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * 开启查询结果缓存，has、query、queryMany、queryAll、getLong、getStrings等按条件查询的方法，
+     * 以（Dao类、查询方法、查询条件、参数）为Key缓存查询结果<br/>
+     * 经由本Controller对某表的写操作会使该表的查询结果失效，{@link #exeTransaction(Action)}
+     * 仅使{@link TableAction#getTables()}声明的表失效，未声明时使全部查询结果失效。
+     * @param maxBytes 缓存占用内存（估算值）的上限，单位字节，小于等于0时关闭缓存
+     */
+    public void setQueryCacheSize(int maxBytes) {
+        synchronized (this) {
+            QueryCache cache = maxBytes > 0 ? new QueryCache(maxBytes) : null;
+            mQueryCache = cache;
+            for (DaoController c : mControllers.values()) {
+                c.setQueryCache(cache);
+            }
+        }
+    }
+
+    /**
+     * 获取查询结果缓存的统计信息，size及maxSize单位为字节
+     * @return 统计信息，未开启缓存时返回null
+     */
+    public CacheStats getQueryCacheStats() {
+        QueryCache cache = mQueryCache;
+        return cache == null ? null : cache.stats();
     }
 
     /**
-     * 数据库升级
+     * 开启某实体的按主键LRU缓存，{@link #query(Class, String)}、{@link #has(Class, String)}命中时不再访问数据库<br/>
+     * 经由本Controller的写操作会使相应的缓存失效；缓存的实体由所有调用方共享，取出后应视为只读。
+     * @param clazz 实体类
+     * @param maxSize 最多缓存的实体数，小于等于0时关闭缓存
+     */
+    public <T> void setEntityCacheSize(Class<T> clazz, int maxSize) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return;
+        }
+        controller.setEntityCacheSize(maxSize);
+    }
+
+    /**
+     * 获取某实体缓存的统计信息
+     * @return 统计信息，未开启缓存时返回null
+     */
+    public <T> CacheStats getEntityCacheStats(Class<T> clazz) {
+        DaoController controller = findDaoController(clazz);
+        return controller == null ? null : controller.getEntityCacheStats();
+    }
+
+    /**
+     * 开启某实体的写后缓冲（不开启溢写日志）
+     * @see #enableWriteBehind(Class, int, long, File)
+     */
+    public <T> void enableWriteBehind(Class<T> clazz, int maxEntries, long maxDelayMillis) {
+        enableWriteBehind(clazz, maxEntries, maxDelayMillis, null);
+    }
+
+    /**
+     * 开启某实体的写后缓冲，适用于埋点、已读回执等高频写入的数据<br/>
+     * {@link #insert(Object)}、{@link #insertOrUpdate(Object)}（含异步方法）写入内存缓冲后立即返回，
+     * 同一主键只保留最后一次写入，缓冲的实体数达到maxEntries或首次写入超过maxDelayMillis后在写线程中批量刷写；
+     * 缓冲模式下insert按插入或更新处理，异步方法在调用线程中完成并回调。<br/>
+     * 按主键查询可读到缓冲中的实体；其他读操作之前在写线程中刷写缓冲并等待完成，其他写操作之前先刷写缓冲；
+     * 缓冲中的实体提交后不要再修改。<br/>
+     * 没有主键值（或自增主键为0）的新记录不合并，按写入顺序全部插入；写入失败的记录在之后的刷写中重试，
+     * 每条记录重试3次仍失败后丢弃（计入{@link WriteBehindStats}的丢弃数），同一主键有更新的写入时直接丢弃失败的记录。<br/>
+     * 开启溢写日志时每次写入在后台线程中追加到日志，日志段中的记录全部落库后才删除，进程崩溃后再次开启时重放日志中未落库的记录；
+     * 尚未写入日志的记录在崩溃时丢失，刷写完成但日志尚未删除时崩溃，新记录可能重复插入。
+     * @param clazz 实体类，Dao须继承{@link AbstractDefaultDao}
+     * @param maxEntries 缓冲的实体数上限，须大于0
+     * @param maxDelayMillis 首次写入到刷写的最长时间，单位毫秒
+     * @param journal 溢写日志文件，可为null；实际按“文件名.序号”分段保存
+     */
+    public <T> void enableWriteBehind(Class<T> clazz, int maxEntries, long maxDelayMillis, File journal) {
+        final DaoController controller = findDaoController(clazz);
+        Assert.notNull(controller, "the DaoController is not exist!");
+        Assert.isTrue(controller.getDao() instanceof AbstractDefaultDao, "write-behind requires AbstractDefaultDao!");
+        WriteBehindBuffer.Scheduler scheduler = new WriteBehindBuffer.Scheduler() {
+            @Override
+            public void scheduleFlush(WriteBehindBuffer buffer, long delayMillis) {
+                scheduleWriteBehindFlush(controller, delayMillis);
+            }
+
+            @Override
+            public void awaitFlush(WriteBehindBuffer buffer) {
+                awaitWriteBehindFlush(controller);
+            }
+
+            @Override
+            public void scheduleJournalWrite(final WriteBehindBuffer buffer) {
+                flushScheduler().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        buffer.writeJournal();
+                    }
+                });
+            }
+        };
+        controller.setWriteBehind(new WriteBehindBuffer((AbstractDefaultDao<?>) controller.getDao(), maxEntries, maxDelayMillis,
+                journal == null ? null : new WriteBehindJournal(journal), scheduler));
+    }
+
+    /**
+     * 关闭某实体的写后缓冲，关闭前刷写缓冲中的内容
+     */
+    public <T> void disableWriteBehind(Class<T> clazz) {
+        DaoController controller = findDaoController(clazz);
+        if (controller != null) {
+            controller.setWriteBehind(null);
+        }
+    }
+
+    /**
+     * 立即刷写某实体的写后缓冲，如应用切到后台时调用
+     */
+    public <T> void flushWriteBehind(Class<T> clazz) {
+        DaoController controller = findDaoController(clazz);
+        if (controller != null) {
+            controller.flushWriteBehind();
+        }
+    }
+
+    /**
+     * 立即刷写全部写后缓冲
+     */
+    public void flushWriteBehind() {
+        for (DaoController c : mControllers.values()) {
+            c.flushWriteBehind();
+        }
+    }
+
+    /**
+     * 刷写指定表的写后缓冲
+     * @param tables 表名，null表示全部表
+     */
+    private void flushWriteBehind(String[] tables) {
+        if (tables == null) {
+            flushWriteBehind();
+            return;
+        }
+        for (DaoController c : mControllers.values()) {
+            for (String table : tables) {
+                if (table != null && table.equalsIgnoreCase(c.getTableName())) {
+                    c.flushWriteBehind();
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取某实体写后缓冲的统计信息
+     * @return 统计信息，未开启写后缓冲时返回null
+     */
+    public <T> WriteBehindStats getWriteBehindStats(Class<T> clazz) {
+        DaoController controller = findDaoController(clazz);
+        return controller == null ? null : controller.getWriteBehindStats();
+    }
+
+    /**
+     * 延时后在写线程中刷写写后缓冲
+     */
+    private void scheduleWriteBehindFlush(final DaoController controller, long delayMillis) {
+        final Runnable flush = new PriorityTask(Priority.NORMAL, new Runnable() {
+            @Override
+            public void run() {
+                controller.flushWriteBehind();
+            }
+        });
+        if (delayMillis <= 0) {
+            mExecutor.execute(flush);
+            return;
+        }
+        flushScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                mExecutor.execute(flush);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在写线程中刷写写后缓冲并等待完成，读操作之前调用，写操作仍在写线程中按顺序执行<br/>
+     * 当前线程不能等待写线程时（已在写线程中、持有表锁、处于事务之中或使用构造时传入的线程池）直接在当前线程刷写。
+     */
+    private void awaitWriteBehindFlush(final DaoController controller) {
+        if (!canAwaitWriter()) {
+            controller.flushWriteBehind();
+            return;
+        }
+        DaoFuture<Void> future;
+        try {
+            future = executeWrite(new DaoFuture<>(Executors.<Void>callable(new Runnable() {
+                @Override
+                public void run() {
+                    controller.flushWriteBehind();
+                }
+            }, null), null, null));
+        } catch (RejectedExecutionException e) {
+            // 写线程池已关闭
+            controller.flushWriteBehind();
+            return;
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "flush write-behind failure", e);
+            }
+        }
+    }
+
+    private boolean canAwaitWriter() {
+        if (!(mExecutor instanceof InstrumentedExecutor) || ((InstrumentedExecutor) mExecutor).isCurrentThread()) {
+            return false;
+        }
+        if (mLockManager.isHeldByCurrentThread()) {
+            return false;
+        }
+        final SQLiteOpenHelper helper = mSQLiteOpenHelper;
+        return helper == null || !helper.getWritableDatabase().inTransaction();
+    }
+
+    /**
+     * 延时刷写写后缓冲及写溢写日志的后台线程，首次使用时创建
+     */
+    private ScheduledThreadPoolExecutor flushScheduler() {
+        synchronized (this) {
+            if (mFlushScheduler == null) {
+                mFlushScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "EasyLite-flush");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                mFlushScheduler.setKeepAliveTime(10, TimeUnit.SECONDS);
+                mFlushScheduler.allowCoreThreadTimeOut(true);
+            }
+            return mFlushScheduler;
+        }
+    }
+
+    /**
+     * 数据库升级<br/>
+     * 此时已处于系统开启的事务中，只登记(oldVersion, newVersion]范围内的迁移步骤，与版本号一同提交；
+     * 迁移步骤在{@link #onOpen(SQLiteDatabase)}中执行。
      */
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         if (Utils.isDebug()) {
             Utils.log(this, "DB new version = ", newVersion, ", DB old version = ", oldVersion);
         }
-        synchronized (this) {
-            db.beginTransaction();
-            int version = oldVersion + 1;
-            try {
-                while (version <= newVersion) {
-                    onDatabaseUpdate(db, version);
-                    version++;
-                }
-                db.setTransactionSuccessful();
-            } catch (Exception e) {
-                if (Utils.isDebug()) {
-                    Utils.log(this, "onUpgrade, DB new version = " + newVersion + ", DB old version = " + oldVersion, e);
+        mMigrations.onUpgrade(db, oldVersion, newVersion);
+    }
+
+    /**
+     * 数据库打开，执行未完成的前台迁移，并在写线程中执行后台迁移<br/>
+     * 前台迁移失败时抛出异常，打开数据库（getWritableDatabase等）随之失败，已提交的进度保留，数据不会被删除，
+     * 下次打开数据库时从检查点继续；后台迁移失败不抛出异常，失败原因见{@link #getMigrationRecords()}。
+     * @throws IllegalStateException 前台迁移失败
+     */
+    public void onOpen(SQLiteDatabase db) {
+        if (db.isReadOnly()) {
+            return;
+        }
+        boolean background;
+        try {
+            background = mMigrations.runForeground(db);
+        } catch (RuntimeException e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "onOpen, run migrations failure", e);
+            }
+            throw e;
+        } finally {
+            notifySchemaChanged();
+        }
+        if (background && mMigrations.beginBackground()) {
+            mExecutor.execute(new PriorityTask(Priority.BULK, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mMigrations.runBackground(mSQLiteOpenHelper.getWritableDatabase());
+                    } catch (Exception e) {
+                        if (Utils.isDebug()) {
+                            Utils.log(DatabaseController.this, "run background migrations failure", e);
+                        }
+                    } finally {
+                        notifySchemaChanged();
+                    }
                 }
-                dropAllTables(db);
-            } finally {
-                db.endTransaction();
+            }));
+        }
+    }
+
+    /**
+     * 数据库降级<br/>
+     * 不删除任何数据：保留现有表，仅补建缺失的表，缺失的字段由{@link #checkDatabaseIntegrity()}补齐。
+     */
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (Utils.isDebug()) {
+            Utils.log(this, "onDowngrade, DB new version = ", newVersion, ", DB old version = ", oldVersion, ", keep all data");
+        }
+        synchronized (this) {
+            createAllTables(db);
+        }
+        notifySchemaChanged();
+    }
+
+    public <T> boolean has(Class<T> clazz, long primaryKey) {
+        return has(clazz, String.valueOf(primaryKey));
+    }
+
+    public <T> boolean has(Class<T> clazz, String primaryKey) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return false;
+        }
+        return controller.has(primaryKey);
+    }
+
+    public <T> boolean has(Class<T> clazz, String whereClause, String[] whereArgs) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return false;
+        }
+        return controller.has(whereClause, whereArgs);
+    }
+
+    public <T> DaoFuture<Boolean> has(final Class<T> clazz, final String whereClause,
+                                      final String[] whereArgs, final DaoCallback<Boolean> callback) {
+        return executeRead(callback, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return has(clazz, whereClause, whereArgs);
+            }
+        });
+    }
+
+    public <T> T query(Class<T> clazz, long primaryKey) {
+        return query(clazz, String.valueOf(primaryKey));
+    }
+
+    public <T> T query(Class<T> clazz, String primaryKey) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return null;
+        }
+        return controller.query(primaryKey);
+    }
+
+    /**
+     * 按主键批量查询，{@link AbstractSQLiteDaoImpl}读到的是同一时刻的数据<br/>
+     * 主键数不超过999时以一条参数化的“IN (?, ...)”查询，不占用写锁；
+     * 超过时将主键写入临时表后以一条查询读取，临时表与查询须在同一连接上，因此在一个短事务中执行
+     * @param clazz 实体类
+     * @param primaryKeys 多个主键值
+     * @return Key为参数中的主键值，按参数顺序排列，不存在的主键不在结果中；查询出错时返回null
+     */
+    public <T> Map<String, T> queryByIds(Class<T> clazz, String[] primaryKeys) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return null;
+        }
+        return controller.queryByIds(primaryKeys);
+    }
+
+    /**
+     * @see #queryByIds(Class, String[])
+     */
+    public <T> Map<Long, T> queryByIds(Class<T> clazz, long[] primaryKeys) {
+        String[] keys = Utils.toArray(primaryKeys);
+        Map<String, T> entities = queryByIds(clazz, keys);
+        if (entities == null) {
+            return null;
+        }
+        Map<Long, T> result = new LinkedHashMap<>(entities.size());
+        for (int i = 0; i < keys.length; i++) {
+            T entity = entities.get(keys[i]);
+            if (entity != null) {
+                result.put(primaryKeys[i], entity);
             }
         }
+        return result;
+    }
+
+    public <T> DaoFuture<Map<String, T>> queryByIds(final Class<T> clazz, final String[] primaryKeys,
+                                                   final DaoCallback<Map<String, T>> callback) {
+        return executeRead(callback, new Callable<Map<String, T>>() {
+            @Override
+            public Map<String, T> call() {
+                return queryByIds(clazz, primaryKeys);
+            }
+        });
     }
 
     /**
-     * 数据库降级
+     * 按主键批量判断记录是否存在
+     * @param clazz 实体类
+     * @param primaryKeys 多个主键值
+     * @return 第i位表示primaryKeys[i]对应的记录是否存在；查询出错时返回null
      */
-    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        synchronized (this) {
-            dropAllTables(db);
-            createAllTables(db);
+    public <T> BitSet hasMany(Class<T> clazz, String[] primaryKeys) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return null;
         }
+        return controller.hasMany(primaryKeys);
     }
 
-    public <T> boolean has(Class<T> clazz, long primaryKey) {
-        return has(clazz, String.valueOf(primaryKey));
+    /**
+     * @see #hasMany(Class, String[])
+     */
+    public <T> BitSet hasMany(Class<T> clazz, long[] primaryKeys) {
+        return hasMany(clazz, Utils.toArray(primaryKeys));
     }
 
-    public <T> boolean has(Class<T> clazz, String primaryKey) {
+    public <T> DaoFuture<BitSet> hasMany(final Class<T> clazz, final String[] primaryKeys,
+                                         final DaoCallback<BitSet> callback) {
+        return executeRead(callback, new Callable<BitSet>() {
+            @Override
+            public BitSet call() {
+                return hasMany(clazz, primaryKeys);
+            }
+        });
+    }
+
+    public <T> T query(Class<T> clazz, String whereClause, String[] whereArgs) {
         DaoController controller = findDaoController(clazz);
         if (controller == null) {
             if (Utils.isDebug()) {
                 Utils.log(this, "the DaoController is not exist!");
             }
-            return false;
+            return null;
         }
-        return controller.has(primaryKey);
+        return controller.query(whereClause, whereArgs);
     }
 
-    public <T> boolean has(Class<T> clazz, String whereClause, String[] whereArgs) {
+    public <T> List<T> queryMany(Class<T> clazz, String whereClause, String[] whereArgs) {
         DaoController controller = findDaoController(clazz);
         if (controller == null) {
             if (Utils.isDebug()) {
                 Utils.log(this, "the DaoController is not exist!");
             }
-            return false;
+            return null;
         }
-        return controller.has(whereClause, whereArgs);
+        return controller.queryMany(whereClause, whereArgs);
     }
 
-    public <T> void has(final Class<T> clazz, final String whereClause,
-                        final String[] whereArgs, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
-            @Override
-            public void run() {
-                boolean success = has(clazz, whereClause, whereArgs);
-                doCallback(callback, success);
+    /**
+     * 按查询选项查询符合条件的多条记录
+     * @see {@link Dao#queryMany(String, String[], QueryOptions)}
+     */
+    public <T> List<T> queryMany(Class<T> clazz, String whereClause, String[] whereArgs, QueryOptions options) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
             }
-        });
+            return null;
+        }
+        return controller.queryMany(whereClause, whereArgs, options);
     }
 
-    public <T> T query(Class<T> clazz, long primaryKey) {
-        return query(clazz, String.valueOf(primaryKey));
+    public <T> List<T> queryAll(Class<T> clazz) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return null;
+        }
+        return controller.queryAll();
     }
 
-    public <T> T query(Class<T> clazz, String primaryKey) {
-        DaoController controller = findDaoController(clazz);
+    /**
+     * 键集分页查询<br/>
+     * 请求设置了{@link PageRequest#prefetch(boolean)}时，返回当前页后在后台预取下一页，
+     * 预取结果在下一次请求时直接返回，期间经由本Controller的写操作会使其失效。
+     * @see {@link Dao#page(PageRequest)}
+     */
+    public <T> Page<T> page(Class<T> clazz, PageRequest request) {
+        final DaoController controller = findDaoController(clazz);
         if (controller == null) {
             if (Utils.isDebug()) {
                 Utils.log(this, "the DaoController is not exist!");
             }
             return null;
         }
-        return controller.query(primaryKey);
+        Page<T> page = controller.page(request);
+        if (request.isPrefetch() && page != null && page.hasNext()) {
+            final PageRequest next = request.next(page.nextToken());
+            executeRead(Priority.BULK, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        controller.prefetch(next);
+                    } catch (Exception e) {
+                        if (Utils.isDebug()) {
+                            Utils.log(DatabaseController.this, "prefetch " + next, e);
+                        }
+                    }
+                }
+            });
+        }
+        return page;
     }
 
-    public <T> T query(Class<T> clazz, String whereClause, String[] whereArgs) {
+    /**
+     * 以迭代器方式逐条查询符合条件的记录
+     * @see {@link Dao#iterate(String, String[])}
+     */
+    public <T> CloseableIterator<T> iterate(Class<T> clazz, String whereClause, String[] whereArgs) {
         DaoController controller = findDaoController(clazz);
         if (controller == null) {
             if (Utils.isDebug()) {
@@ -354,10 +1138,14 @@ public class DatabaseController {
             }
             return null;
         }
-        return controller.query(whereClause, whereArgs);
+        return controller.iterate(whereClause, whereArgs);
     }
 
-    public <T> List<T> queryMany(Class<T> clazz, String whereClause, String[] whereArgs) {
+    /**
+     * 按查询选项以迭代器方式逐条查询符合条件的记录
+     * @see {@link Dao#iterate(String, String[], QueryOptions)}
+     */
+    public <T> CloseableIterator<T> iterate(Class<T> clazz, String whereClause, String[] whereArgs, QueryOptions options) {
         DaoController controller = findDaoController(clazz);
         if (controller == null) {
             if (Utils.isDebug()) {
@@ -365,18 +1153,22 @@ public class DatabaseController {
             }
             return null;
         }
-        return controller.queryMany(whereClause, whereArgs);
+        return controller.iterate(whereClause, whereArgs, options);
     }
 
-    public <T> List<T> queryAll(Class<T> clazz) {
+    /**
+     * 逐条遍历符合条件的记录
+     * @see {@link Dao#forEach(String, String[], EntityVisitor)}
+     */
+    public <T> int forEach(Class<T> clazz, String whereClause, String[] whereArgs, EntityVisitor<T> visitor) {
         DaoController controller = findDaoController(clazz);
         if (controller == null) {
             if (Utils.isDebug()) {
                 Utils.log(this, "the DaoController is not exist!");
             }
-            return null;
+            return 0;
         }
-        return controller.queryAll();
+        return controller.forEach(whereClause, whereArgs, visitor);
     }
 
     /**
@@ -514,6 +1306,26 @@ public class DatabaseController {
         return controller.batchInsert(entities);
     }
 
+    /**
+     * 分批次批量插入，每批次（见{@link AbstractDefaultDao#setBatchSize(int)}）在独立事务中提交
+     * @param entities 批量实体
+     * @param listener 批次进度Listener，在执行线程中回调，可为null
+     * @return true，全部批次插入成功；false，存在插入失败的批次
+     */
+    public <T> boolean batchInsert(List<T> entities, OnBatchListener listener) {
+        if (entities == null || entities.isEmpty()) {
+            return false;
+        }
+        DaoController controller = findDaoController(entities.get(0).getClass());
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return false;
+        }
+        return controller.batchInsert(entities, listener);
+    }
+
     public <T> boolean batchUpdate(List<T> entities) {
         if (entities == null || entities.isEmpty()) {
             return false;
@@ -547,70 +1359,92 @@ public class DatabaseController {
      * 异步通过column批量更新记录的某些属性
      * XXX 使用此方法须将，每一个{@link ContentValues}必须包含column名称及对应的值
      */
-    public <T> void batchUpdate(final Class<T> clazz, final List<ContentValues> values, final String column,
-                                final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> batchUpdate(final Class<T> clazz, final List<ContentValues> values, final String column,
+                                              final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                boolean success = batchUpdate(clazz, values, column);
-                doCallback(callback, success);
+            public Boolean call() {
+                return batchUpdate(clazz, values, column);
             }
         });
     }
 
-    public <T> void insert(final T entity, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> insert(final T entity, final DaoCallback<Boolean> callback) {
+        return executeBuffered(entity.getClass(), callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = insert(entity);
-                doCallback(callback, success);
+            public Boolean call() {
+                return insert(entity);
             }
         });
     }
 
-    public <T> void insert(final Class<T> clazz, final T entity, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> insert(final Class<T> clazz, final T entity, final DaoCallback<Boolean> callback) {
+        return executeBuffered(clazz, callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = insert(clazz, entity);
-                doCallback(callback, success);
+            public Boolean call() {
+                return insert(clazz, entity);
             }
         });
     }
 
-    public <T> void batchInsert(final List<T> entities, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    /**
+     * 执行可写入写后缓冲的异步写操作，开启写后缓冲时在调用线程中写入缓冲，不再提交到写线程
+     */
+    private <V> DaoFuture<V> executeBuffered(Class<?> clazz, DaoCallback<V> callback, Callable<V> callable) {
+        DaoController controller = findDaoController(clazz);
+        if (controller != null && controller.isWriteBehind()) {
+            return new DaoFuture<>(callable, callback, callback).executeInline();
+        }
+        return executeWrite(callback, callable);
+    }
+
+    public <T> DaoFuture<Boolean> batchInsert(final List<T> entities, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = batchInsert(entities);
-                doCallback(callback, success);
+            public Boolean call() {
+                return batchInsert(entities);
             }
         });
     }
 
-    public <T> void query(final Class<T> clazz, final long id, final DaoCallback<T> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> batchInsert(final List<T> entities, final OnBatchListener listener,
+                                              final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                T entity = query(clazz, id);
-                doCallback(callback, entity);
+            public Boolean call() {
+                return batchInsert(entities, listener);
+            }
+        });
+    }
+
+    public <T> DaoFuture<T> query(final Class<T> clazz, final long id, final DaoCallback<T> callback) {
+        DaoController controller = findDaoController(clazz);
+        T cached = controller == null ? null : controller.<T>getCachedEntity(String.valueOf(id));
+        if (cached != null) {
+            // 命中实体缓存，直接回调
+            final T entity = cached;
+            return new DaoFuture<>(new Callable<T>() {
+                @Override
+                public T call() {
+                    return entity;
+                }
+            }, null, callback).executeInline();
+        }
+        return executeRead(callback, new Callable<T>() {
+            @Override
+            public T call() {
+                return query(clazz, id);
             }
         });
     }
 
-    public <T> void query(final Class<T> clazz,
-                          final String whereClause, final String[] whereArgs,
-                          final DaoCallback<T> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<T> query(final Class<T> clazz,
+                                  final String whereClause, final String[] whereArgs,
+                                  final DaoCallback<T> callback) {
+        return executeRead(callback, new Callable<T>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                T entity = query(clazz, whereClause, whereArgs);
-                doCallback(callback, entity);
+            public T call() {
+                return query(clazz, whereClause, whereArgs);
             }
         });
     }
@@ -622,6 +1456,10 @@ public class DatabaseController {
      * @return {@link Cursor}
      */
     public Cursor rawQuery(String sql, String[] selectionArgs) {
+        // SQL可能查询任意表
+        for (DaoController c : mControllers.values()) {
+            c.awaitWriteBehind();
+        }
         DaoController controller = null;
         for (DaoController daoController : mControllers.values()) {
             controller = daoController;
@@ -645,25 +1483,26 @@ public class DatabaseController {
      * @param selectionArgs 条件参数
      * @param callback {@link DaoCallback}
      */
-    public void rawQuery(final String sql, final String[] selectionArgs,
-                         final DaoCallback<Cursor> callback) {
-        mExecutor.execute(new Runnable() {
+    public DaoFuture<Cursor> rawQuery(final String sql, final String[] selectionArgs,
+                                      final DaoCallback<Cursor> callback) {
+        return executeRead(callback, new Callable<Cursor>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                Cursor cursor = rawQuery(sql, selectionArgs);
-                doCallback(callback, cursor);
+            public Cursor call() {
+                return rawQuery(sql, selectionArgs);
             }
         });
     }
 
     /**
      * 事务操作
-     * @param action {@link Action}
+     * @param action {@link Action}，实现{@link TableAction}时仅对所声明的表加排它锁并使其缓存失效，否则对全部表加排它锁
      * @return true，成功；false，失败
      */
     public boolean exeTransaction(Action action) {
-        synchronized (this) {
+        final String[] tables = action instanceof TableAction ? ((TableAction) action).getTables() : null;
+        TableLockManager.Lease lease = mLockManager.acquire(tables, true);
+        try {
+            flushWriteBehind(tables);
             DaoController controller = null;
             for (DaoController daoController : mControllers.values()) {
                 controller = daoController;
@@ -677,8 +1516,15 @@ public class DatabaseController {
                 }
                 return false;
             } else {
-                return controller.exeTransaction(action);
+                try {
+                    return controller.exeTransaction(action);
+                } finally {
+                    // 未声明所修改的表时，事务可能修改任意表
+                    invalidateCaches(tables);
+                }
             }
+        } finally {
+            lease.release();
         }
     }
 
@@ -687,64 +1533,121 @@ public class DatabaseController {
      * @param action {@link Action}
      * @param callback {@link DaoCallback}
      */
-    public void exeTransaction(final Action action, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public DaoFuture<Boolean> exeTransaction(final Action action, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = exeTransaction(action);
-                doCallback(callback, success);
+            public Boolean call() {
+                return exeTransaction(action);
             }
         });
     }
 
-    public <T> void queryMany(final Class<T> clazz,
-                              final String whereClause, final String[] whereArgs,
-                              final DaoCallback<List<T>> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<List<T>> queryMany(final Class<T> clazz,
+                                            final String whereClause, final String[] whereArgs,
+                                            final DaoCallback<List<T>> callback) {
+        return executeRead(callback, new Callable<List<T>>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                List<T> entities = queryMany(clazz, whereClause, whereArgs);
-                doCallback(callback, entities);
+            public List<T> call() {
+                return queryMany(clazz, whereClause, whereArgs);
             }
         });
     }
 
-    public <T> void queryAll(final Class<T> clazz, final DaoCallback<List<T>> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<List<T>> queryMany(final Class<T> clazz,
+                                            final String whereClause, final String[] whereArgs,
+                                            final QueryOptions options,
+                                            final DaoCallback<List<T>> callback) {
+        return executeRead(callback, new Callable<List<T>>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                List<T> entities = queryAll(clazz);
-                doCallback(callback, entities);
+            public List<T> call() {
+                return queryMany(clazz, whereClause, whereArgs, options);
             }
         });
     }
 
-    public <T> void update(final T entity, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Page<T>> page(final Class<T> clazz, final PageRequest request, final DaoCallback<Page<T>> callback) {
+        return executeRead(callback, new Callable<Page<T>>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = update(entity);
-                doCallback(callback, success);
+            public Page<T> call() {
+                Page<T> page = null;
+                try {
+                    page = page(clazz, request);
+                } catch (Exception e) {
+                    if (Utils.isDebug()) {
+                        Utils.log(DatabaseController.this, "page " + request, e);
+                    }
+                }
+                return page;
             }
         });
     }
 
-    public boolean update(Class clazz, String[] primaryKeys, ContentValues values) {
-        synchronized (this) {
-            DaoController controller = findDaoController(clazz);
-            if (controller == null) {
-                if (Utils.isDebug()) {
-                    Utils.log(this, "the DaoController is not exist!");
+    public <T> DaoFuture<List<T>> queryAll(final Class<T> clazz, final DaoCallback<List<T>> callback) {
+        return executeRead(callback, new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return queryAll(clazz);
+            }
+        });
+    }
+
+    /**
+     * 异步分块遍历符合条件的记录，每chunkSize条回调一次
+     * @param chunkSize 每块记录数，须大于0
+     * @param callback {@link ChunkCallback}
+     * @return {@link DaoFuture}，取消后不再回调后续的块
+     */
+    public <T> DaoFuture<Integer> forEach(final Class<T> clazz,
+                                          final String whereClause, final String[] whereArgs,
+                                          final int chunkSize, final ChunkCallback<T> callback) {
+        Assert.isTrue(chunkSize > 0, "chunkSize must be greater than 0!");
+        final AtomicReference<DaoFuture<Integer>> holder = new AtomicReference<>();
+        holder.set(new DaoFuture<>(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                final ChunkDispatcher<T> dispatcher = new ChunkDispatcher<>(chunkSize, callback);
+                int total = forEach(clazz, whereClause, whereArgs, new EntityVisitor<T>() {
+                    @Override
+                    public boolean visit(T entity) {
+                        if (holder.get().isCancelled()) {
+                            return false;
+                        }
+                        dispatcher.add(entity);
+                        return true;
+                    }
+                });
+                if (!holder.get().isCancelled()) {
+                    dispatcher.finish(total);
                 }
-            } else {
-                return controller.update(primaryKeys, values);
+                return total;
+            }
+        }, callback, null));
+        return executeRead(holder.get());
+    }
+
+    public <T> DaoFuture<Boolean> update(final T entity, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return update(entity);
+            }
+        });
+    }
+
+    public boolean update(Class clazz, String[] primaryKeys, ContentValues values) {
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
             }
             return false;
         }
+        TableLockManager.Lease lease = mLockManager.acquire(tablesOf(controller), true);
+        try {
+            return controller.update(primaryKeys, values);
+        } finally {
+            lease.release();
+        }
     }
 
     public boolean update(Class clazz, ContentValues values, String whereClause, String[] whereArgs) {
@@ -759,130 +1662,111 @@ public class DatabaseController {
         return false;
     }
 
-    public <T> void update(final T entity,
-                           final String whereClause, final String[] whereArgs,
-                           final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> update(final T entity,
+                                         final String whereClause, final String[] whereArgs,
+                                         final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                boolean success = update(entity, whereClause, whereArgs);
-                doCallback(callback, success);
+            public Boolean call() {
+                return update(entity, whereClause, whereArgs);
             }
         });
     }
 
-    public <T> void batchUpdate(final List<T> entities, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> batchUpdate(final List<T> entities, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = batchUpdate(entities);
-                doCallback(callback, success);
+            public Boolean call() {
+                return batchUpdate(entities);
             }
         });
     }
 
-    public <T> void batchUpdate(final List<T> entities,
-                                final String whereClause, final String[] whereArgs,
-                                final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> batchUpdate(final List<T> entities,
+                                              final String whereClause, final String[] whereArgs,
+                                              final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = batchUpdate(entities, whereClause, whereArgs);
-                doCallback(callback, success);
+            public Boolean call() {
+                return batchUpdate(entities, whereClause, whereArgs);
             }
         });
     }
 
-    public <T> void delete(final Class<T> clazz, final long id, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> delete(final Class<T> clazz, final long id, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = delete(clazz, id);
-                doCallback(callback, success);
+            public Boolean call() {
+                return delete(clazz, id);
             }
         });
     }
 
-    public <T> void delete(final Class<T> clazz, final long[] primaryKeys, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> delete(final Class<T> clazz, final long[] primaryKeys, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = delete(clazz, primaryKeys);
-                doCallback(callback, success);
+            public Boolean call() {
+                return delete(clazz, primaryKeys);
             }
         });
     }
 
-    public <T> void delete(final Class<T> clazz, final String[] primaryKeys, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> delete(final Class<T> clazz, final String[] primaryKeys, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = delete(clazz, primaryKeys);
-                doCallback(callback, success);
+            public Boolean call() {
+                return delete(clazz, primaryKeys);
             }
         });
     }
 
-    public <T> void delete(final Class<T> clazz,
-                           final String whereClause,
-                           final String[] whereArgs,
-                           final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> delete(final Class<T> clazz,
+                                         final String whereClause,
+                                         final String[] whereArgs,
+                                         final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = delete(clazz, whereClause, whereArgs);
-                doCallback(callback, success);
+            public Boolean call() {
+                return delete(clazz, whereClause, whereArgs);
             }
         });
     }
 
-    public <T> void update(final Class<T> clazz,
-                           final String[] primaryKeys,
-                           final ContentValues values,
-                           final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> update(final Class<T> clazz,
+                                         final String[] primaryKeys,
+                                         final ContentValues values,
+                                         final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = update(clazz, primaryKeys, values);
-                doCallback(callback, success);
+            public Boolean call() {
+                return update(clazz, primaryKeys, values);
             }
         });
     }
 
-    public <T> void update(final Class<T> clazz,
-                           final long[] primaryKeys,
-                           final ContentValues values,
-                           final DaoCallback<Boolean> callback) {
-        update(clazz, Utils.toArray(primaryKeys), values, callback);
+    public <T> DaoFuture<Boolean> update(final Class<T> clazz,
+                                         final long[] primaryKeys,
+                                         final ContentValues values,
+                                         final DaoCallback<Boolean> callback) {
+        return update(clazz, Utils.toArray(primaryKeys), values, callback);
     }
 
-    public <T> void update(final Class<T> clazz,
-                           final List<Long> primaryKeys,
-                           final ContentValues values,
-                           final DaoCallback<Boolean> callback) {
-        update(clazz, Utils.toArray(primaryKeys), values, callback);
+    public <T> DaoFuture<Boolean> update(final Class<T> clazz,
+                                         final List<Long> primaryKeys,
+                                         final ContentValues values,
+                                         final DaoCallback<Boolean> callback) {
+        return update(clazz, Utils.toArray(primaryKeys), values, callback);
     }
 
-    public <T> void update(final Class<T> clazz,
-                           final ContentValues values,
-                           final String whereClause,
-                           final String[] whereArgs,
-                           final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> update(final Class<T> clazz,
+                                         final ContentValues values,
+                                         final String whereClause,
+                                         final String[] whereArgs,
+                                         final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = update(clazz, values, whereClause, whereArgs);
-                if (callback != null) {
-                    doCallback(callback, success);
-                }
+            public Boolean call() {
+                return update(clazz, values, whereClause, whereArgs);
             }
         });
     }
@@ -909,24 +1793,48 @@ public class DatabaseController {
         return controller.insertOrUpdate(entity, whereClause, whereArgs);
     }
 
-    public <T> void insertOrUpdate(final T entity, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    /**
+     * 按主键批量插入或更新，在一个事务中执行
+     * @param entities 批量实体
+     * @return true，批量插入或更新成功；false，批量插入或更新失败
+     */
+    public <T> boolean batchInsertOrUpdate(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return false;
+        }
+        DaoController controller = findDaoController(entities.get(0).getClass());
+        if (controller == null) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "the DaoController is not exist!");
+            }
+            return false;
+        }
+        return controller.batchInsertOrUpdate(entities);
+    }
+
+    public <T> DaoFuture<Boolean> batchInsertOrUpdate(final List<T> entities, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = insertOrUpdate(entity);
-                doCallback(callback, success);
+            public Boolean call() {
+                return batchInsertOrUpdate(entities);
             }
         });
     }
 
-    public <T> void insertOrUpdate(final T entity, final String whereClause, final String[] whereArgs, final DaoCallback<Boolean> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> insertOrUpdate(final T entity, final DaoCallback<Boolean> callback) {
+        return executeBuffered(entity.getClass(), callback, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                boolean success = insertOrUpdate(entity, whereClause, whereArgs);
-                doCallback(callback, success);
+            public Boolean call() {
+                return insertOrUpdate(entity);
+            }
+        });
+    }
+
+    public <T> DaoFuture<Boolean> insertOrUpdate(final T entity, final String whereClause, final String[] whereArgs, final DaoCallback<Boolean> callback) {
+        return executeWrite(callback, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return insertOrUpdate(entity, whereClause, whereArgs);
             }
         });
     }
@@ -937,14 +1845,11 @@ public class DatabaseController {
         return delete(clazz, whereClause, whereArgs);
     }
 
-    public <T> void deleteAllAsync(final Class<T> clazz) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Boolean> deleteAllAsync(final Class<T> clazz) {
+        return executeWrite(null, new Callable<Boolean>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                final String whereClause = null;
-                final String[] whereArgs = null;
-                delete(clazz, whereClause, whereArgs);
+            public Boolean call() {
+                return deleteAll(clazz);
             }
         });
     }
@@ -960,26 +1865,22 @@ public class DatabaseController {
         return controller.getLong(columnOrExpression, whereClause, whereArgs);
     }
 
-    public <T> void getLong(final Class<T> clazz, final String columnOrExpression, final String whereClause,
-                            final String[] whereArgs, final DaoCallback<Long> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<Long> getLong(final Class<T> clazz, final String columnOrExpression, final String whereClause,
+                                       final String[] whereArgs, final DaoCallback<Long> callback) {
+        return executeRead(callback, new Callable<Long>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                long result = getLong(clazz, columnOrExpression, whereClause, whereArgs);
-                doCallback(callback, result);
+            public Long call() {
+                return getLong(clazz, columnOrExpression, whereClause, whereArgs);
             }
         });
     }
 
-    public <T> void getString(final Class<T> clazz, final String column, final String whereClause,
-                              final String[] whereArgs, final DaoCallback<String> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<String> getString(final Class<T> clazz, final String column, final String whereClause,
+                                           final String[] whereArgs, final DaoCallback<String> callback) {
+        return executeRead(callback, new Callable<String>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                String result = getString(clazz, column, whereClause, whereArgs);
-                doCallback(callback, result);
+            public String call() {
+                return getString(clazz, column, whereClause, whereArgs);
             }
         });
     }
@@ -1019,14 +1920,12 @@ public class DatabaseController {
      * @param whereArgs 查询参数
      * @param callback {@link DaoCallback}
      */
-    public <T> void getLongs(final Class<T> clazz, final String columnOrExpression, final String whereClause,
-                             final String[] whereArgs, final DaoCallback<List<Long>> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<List<Long>> getLongs(final Class<T> clazz, final String columnOrExpression, final String whereClause,
+                                              final String[] whereArgs, final DaoCallback<List<Long>> callback) {
+        return executeRead(callback, new Callable<List<Long>>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                List<Long> result = getLongs(clazz, columnOrExpression, whereClause, whereArgs);
-                doCallback(callback, result);
+            public List<Long> call() {
+                return getLongs(clazz, columnOrExpression, whereClause, whereArgs);
             }
         });
     }
@@ -1039,14 +1938,12 @@ public class DatabaseController {
      * @param callback {@link DaoCallback}
      * @return 取行某列的文本
      */
-    public <T> void getStrings(final Class<T> clazz, final String columnOrExpression, final String whereClause,
-                               final String[] whereArgs, final DaoCallback<List<String>> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<List<String>> getStrings(final Class<T> clazz, final String columnOrExpression, final String whereClause,
+                                                  final String[] whereArgs, final DaoCallback<List<String>> callback) {
+        return executeRead(callback, new Callable<List<String>>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                List<String> result = getStrings(clazz, columnOrExpression, whereClause, whereArgs);
-                doCallback(callback, result);
+            public List<String> call() {
+                return getStrings(clazz, columnOrExpression, whereClause, whereArgs);
             }
         });
     }
@@ -1093,42 +1990,52 @@ public class DatabaseController {
      * @param whereClause 查询条件
      * @param whereArgs 查询参数
      */
-    public <T> void getRowValues(final Class<T> clazz, final String[] columnsOrExpressions,
-                                 final String whereClause, final String[] whereArgs,
-                                 final DaoCallback<ContentValues> callback) {
-        mExecutor.execute(new Runnable() {
+    public <T> DaoFuture<ContentValues> getRowValues(final Class<T> clazz, final String[] columnsOrExpressions,
+                                                     final String whereClause, final String[] whereArgs,
+                                                     final DaoCallback<ContentValues> callback) {
+        return executeRead(callback, new Callable<ContentValues>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                ContentValues result = getRowValues(clazz, columnsOrExpressions, whereClause, whereArgs);
-                doCallback(callback, result);
+            public ContentValues call() {
+                return getRowValues(clazz, columnsOrExpressions, whereClause, whereArgs);
             }
         });
     }
 
     /**
-     * 检查数据库的完整性
+     * 检查数据库的完整性：建立缺失的表、新增缺失的字段<br/>
+     * 各表的结构指纹保存在元数据表中，表结构定义及数据库结构均未变化的表直接跳过。
      */
-    public void checkDatabaseIntegrity() {
+    public DaoFuture<Void> checkDatabaseIntegrity() {
         Assert.notNull(mSQLiteOpenHelper, "SQLiteOpenHelper can not be null!");
-        mExecutor.execute(new Runnable() {
+        return executeWrite(null, Executors.<Void>callable(new Runnable() {
             @Override
             public void run() {
-                synchronized (this) {
+                TableLockManager.Lease lease = mLockManager.acquireAll();
+                try {
                     if (Utils.isDebug()) {
                         Utils.log(DatabaseController.this, "开始数据库完整性检查................................");
                     }
                     long t = System.currentTimeMillis();
                     SQLiteDatabase db = null;
+                    Map<DaoController, List<Index>> deferred = new LinkedHashMap<>();
                     try {
                         db = mSQLiteOpenHelper.getWritableDatabase();
                         db.beginTransaction();
+                        SchemaFingerprints fingerprints = new SchemaFingerprints(db);
+                        int checked = 0;
                         for (DaoController controller : mControllers.values()) {
-                            controller.checkTableIntegrity();
+                            List<Index> indexes = new ArrayList<>();
+                            if (controller.checkTableIntegrity(db, fingerprints, indexes)) {
+                                checked++;
+                            }
+                            if (!indexes.isEmpty()) {
+                                deferred.put(controller, indexes);
+                            }
                         }
+                        fingerprints.save(db);
                         db.setTransactionSuccessful();
                         if (Utils.isDebug()) {
-                            Utils.log(DatabaseController.this, "checkDatabaseIntegrity, 数据库完整性操作成功");
+                            Utils.log(DatabaseController.this, "checkDatabaseIntegrity, 数据库完整性操作成功, checked: ", checked, ", total: ", mControllers.size());
                         }
                     } catch (Exception e) {
                         if (Utils.isDebug()) {
@@ -1142,60 +2049,181 @@ public class DatabaseController {
                             Utils.log(DatabaseController.this, "数据库完整性检查耗时: ", (System.currentTimeMillis() - t), " ms");
                         }
                     }
+                    for (Map.Entry<DaoController, List<Index>> e : deferred.entrySet()) {
+                        buildIndexesInBackground(e.getKey(), e.getValue());
+                    }
+                } finally {
+                    lease.release();
                 }
             }
-        });
+        }, null));
+    }
+
+    /**
+     * 在写线程中以{@link Priority#BULK}优先级逐个创建索引，每个索引只锁定所在的表，创建之间让出写线程给紧急任务；
+     * 创建成功后，下次完整性检查时记录表结构指纹。
+     */
+    private void buildIndexesInBackground(final DaoController controller, final List<Index> indexes) {
+        final String table = controller.getTableName();
+        for (Index index : indexes) {
+            mBuildingIndexes.add(index.nameOn(table).toLowerCase(Locale.US));
+        }
+        mExecutor.execute(new PriorityTask(Priority.BULK, new Runnable() {
+            @Override
+            public void run() {
+                for (Index index : indexes) {
+                    final String name = index.nameOn(table).toLowerCase(Locale.US);
+                    TableLockManager.Lease lease = mLockManager.acquire(tablesOf(controller), true);
+                    try {
+                        controller.buildIndex(mSQLiteOpenHelper.getWritableDatabase(), index);
+                    } catch (Exception e) {
+                        if (Utils.isDebug()) {
+                            Utils.log(DatabaseController.this, "build index " + name + " failure", e);
+                        }
+                    } finally {
+                        lease.release();
+                        mBuildingIndexes.remove(name);
+                    }
+                    controller.invalidate();
+                    InstrumentedExecutor.yieldToUrgent();
+                }
+            }
+        }));
+    }
+
+    /**
+     * 输出所有表的索引状态，用于诊断<br/>
+     * 每行一个索引：表名、索引名、状态（ok：已创建；missing：未创建；changed：定义已变化；building：后台创建中；
+     * unsupported：当前SQLite版本不支持；undeclared：未在Dao中声明）及建索引语句。
+     */
+    public String dumpIndexes() {
+        Assert.notNull(mSQLiteOpenHelper, "SQLiteOpenHelper can not be null!");
+        SQLiteDatabase db = mSQLiteOpenHelper.getReadableDatabase();
+        StringBuilder sb = new StringBuilder();
+        for (DaoController controller : mControllers.values()) {
+            Dao<?> dao = controller.getDao();
+            if (!(dao instanceof AbstractDefaultDao)) {
+                continue;
+            }
+            final String table = ((AbstractDefaultDao<?>) dao).getTableName();
+            Map<String, String> existing = Indexes.existing(db, table);
+            Index[] indexes = ((AbstractDefaultDao<?>) dao).getIndexes();
+            if (indexes != null) {
+                for (Index index : indexes) {
+                    final String name = index.nameOn(table).toLowerCase(Locale.US);
+                    final String expected = index.buildSql(table, false);
+                    String sql = existing.remove(name);
+                    String state;
+                    if (!Indexes.isSupported(db, index)) {
+                        state = "unsupported";
+                    } else if (mBuildingIndexes.contains(name)) {
+                        state = "building";
+                    } else if (sql == null) {
+                        state = "missing";
+                    } else if (Indexes.isSameDefinition(sql, expected)) {
+                        state = "ok";
+                    } else {
+                        state = "changed";
+                    }
+                    sb.append(table).append('\t').append(name).append('\t').append(state)
+                            .append('\t').append(expected).append('\n');
+                }
+            }
+            for (Map.Entry<String, String> e : existing.entrySet()) {
+                sb.append(table).append('\t').append(e.getKey()).append("\tundeclared\t")
+                        .append(e.getValue()).append('\n');
+            }
+        }
+        return sb.toString();
     }
 
     @SuppressWarnings("unchecked")
     public <T> T execute(final Class clazz, String methodName, Class<?>[] parameterTypes, Object[] args) {
-        synchronized (this) {
-            DaoController controller = findDaoController(clazz);
-            if (controller == null) {
-                return null;
-            }
+        DaoController controller = findDaoController(clazz);
+        if (controller == null) {
+            return null;
+        }
+        TableLockManager.Lease lease = mLockManager.acquire(tablesOf(controller), true);
+        try {
             return controller.execute(methodName, parameterTypes, args);
+        } finally {
+            lease.release();
         }
     }
 
     @SuppressWarnings("unchecked")
-    public void execute(final Class clazz, final String methodName, final Class<?>[] parameterTypes, final Object[] args,
-                        final DaoCallback callback) {
-        mExecutor.execute(new Runnable() {
+    public DaoFuture<Object> execute(final Class clazz, final String methodName, final Class<?>[] parameterTypes, final Object[] args,
+                                     final DaoCallback callback) {
+        return executeWrite((DaoCallback<Object>) callback, new Callable<Object>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                doCallback(callback, execute(clazz, methodName, parameterTypes, args));
+            public Object call() {
+                return execute(clazz, methodName, parameterTypes, args);
             }
         });
     }
 
-    public void execute(final Runnable r) {
-        mExecutor.execute(r);
+    public DaoFuture<Void> execute(final Runnable r) {
+        return executeWrite(new DaoFuture<>(Executors.<Void>callable(r, null), r, null));
+    }
+
+    /**
+     * 对全部表加排它锁后执行（异步操作）
+     */
+    public DaoFuture<Void> executeWithLock(final Runnable r) {
+        return executeWithLock(null, true, r);
     }
 
-    public void executeWithLock(final Runnable r) {
-        mExecutor.execute(new Runnable() {
+    /**
+     * 对指定的表加锁后执行（异步操作），与其他表的加锁操作可并行执行
+     * @param tables 表名，null表示全部表
+     * @param exclusive true，排它锁；false，共享锁（如只读的导出操作）
+     */
+    public DaoFuture<Void> executeWithLock(final String[] tables, final boolean exclusive, final Runnable r) {
+        return executeWrite(new DaoFuture<>(Executors.<Void>callable(new Runnable() {
             @Override
             public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                synchronized (this) {
+                TableLockManager.Lease lease = mLockManager.acquire(tables, exclusive);
+                try {
+                    flushWriteBehind(tables);
                     r.run();
+                } finally {
+                    lease.release();
                 }
             }
-        });
+        }, null), r, null));
     }
 
-    public <T> void execute(final DaoProcessCallback<T> callback) {
-        mExecutor.execute(new Runnable() {
+    /**
+     * 对全部表加排它锁后执行{@link DaoProcessCallback#onProcess()}（异步操作）
+     */
+    public <T> DaoFuture<T> execute(final DaoProcessCallback<T> callback) {
+        return executeWrite(callback, new Callable<T>() {
             @Override
-            public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                synchronized (this) {
-                    T entity = callback.onProcess();
-                    doCallback(callback, entity);
+            public T call() {
+                TableLockManager.Lease lease = mLockManager.acquireAll();
+                try {
+                    flushWriteBehind();
+                    return callback.onProcess();
+                } finally {
+                    lease.release();
                 }
             }
         });
     }
+
+    /**
+     * 获取各表锁的统计信息
+     * @return Key为表名，"*"为全部表的锁
+     */
+    public Map<String, LockStats> getLockStats() {
+        return mLockManager.stats();
+    }
+
+    /**
+     * Dao对应的表，无法确定时返回null（即全部表）
+     */
+    private static String[] tablesOf(DaoController controller) {
+        String table = controller.getTableName();
+        return table == null ? null : new String[] {table};
+    }
 }
@@ -0,0 +1,44 @@
+package com.kejunyao.db;
+
+import android.util.LruCache;
+
+/**
+ * 按主键缓存实体的LRU缓存（二级缓存）<br/>
+ * 缓存的实体由所有调用方共享，取出后应视为只读。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class EntityCache {
+
+    private final LruCache<String, Object> mCache;
+
+    EntityCache(int maxSize) {
+        Assert.isTrue(maxSize > 0, "maxSize must be greater than 0!");
+        mCache = new LruCache<>(maxSize);
+    }
+
+    Object get(String primaryKey) {
+        return primaryKey == null ? null : mCache.get(primaryKey);
+    }
+
+    void put(String primaryKey, Object entity) {
+        if (primaryKey != null && entity != null) {
+            mCache.put(primaryKey, entity);
+        }
+    }
+
+    void remove(String primaryKey) {
+        if (primaryKey != null) {
+            mCache.remove(primaryKey);
+        }
+    }
+
+    void evictAll() {
+        mCache.evictAll();
+    }
+
+    CacheStats stats() {
+        return new CacheStats(mCache.hitCount(), mCache.missCount(), mCache.evictionCount(), mCache.size(), mCache.maxSize());
+    }
+}
@@ -0,0 +1,49 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+/**
+ * 实体与数据库记录之间的映射，由EasyLite-compiler根据{@link GenerateMapper}生成<br/>
+ * 列以序号（ordinal）标识，序号即列在{@link #columns()}中的位置。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public interface EntityMapper<T> {
+
+    /**
+     * 映射的所有列名
+     */
+    String[] columns();
+
+    /**
+     * 解析各列在Cursor中的位置，每个Cursor只需解析一次
+     * @param c {@link Cursor}
+     * @return 各列在Cursor中的位置，按序号排列，Cursor中不存在的列为-1
+     */
+    int[] resolveIndices(Cursor c);
+
+    /**
+     * 将Cursor当前行转换为实体
+     * @param c {@link Cursor}
+     * @param indices {@link #resolveIndices(Cursor)}的结果
+     * @return 实体
+     */
+    T toEntity(Cursor c, int[] indices);
+
+    /**
+     * 将实体转换为{@link ContentValues}
+     */
+    ContentValues toContentValues(T entity);
+
+    /**
+     * 将实体某列的值直接绑定到语句参数
+     * @param program 语句
+     * @param index 参数位置，从1开始
+     * @param entity 实体
+     * @param ordinal 列序号
+     */
+    void bind(SQLiteProgram program, int index, T entity, int ordinal);
+}
@@ -0,0 +1,56 @@
+package com.kejunyao.db;
+
+import java.util.HashMap;
+
+/**
+ * 查找编译期生成的{@link EntityMapper}
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class EntityMappers {
+
+    /**
+     * 生成的EntityMapper类名后缀
+     */
+    static final String SUFFIX = "_EntityMapper";
+
+    private static final Object NONE = new Object();
+    private static final HashMap<Class<?>, Object> MAPPERS = new HashMap<>();
+
+    private EntityMappers() {
+    }
+
+    /**
+     * 获取实体类对应的EntityMapper
+     * @param clazz 实体类
+     * @return EntityMapper，未生成时返回null
+     */
+    @SuppressWarnings("unchecked")
+    static <T> EntityMapper<T> get(Class<T> clazz) {
+        synchronized (MAPPERS) {
+            Object mapper = MAPPERS.get(clazz);
+            if (mapper == null) {
+                mapper = newMapper(clazz);
+                MAPPERS.put(clazz, mapper == null ? NONE : mapper);
+            }
+            return mapper == NONE ? null : (EntityMapper<T>) mapper;
+        }
+    }
+
+    private static Object newMapper(Class<?> clazz) {
+        try {
+            Class<?> mapperClass = Class.forName(clazz.getName() + SUFFIX, true, clazz.getClassLoader());
+            if (EntityMapper.class.isAssignableFrom(mapperClass)) {
+                return mapperClass.getDeclaredConstructor().newInstance();
+            }
+        } catch (ClassNotFoundException e) {
+            // 未生成EntityMapper
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(EntityMappers.class, "newMapper failure, class: " + clazz.getName(), e);
+            }
+        }
+        return null;
+    }
+}
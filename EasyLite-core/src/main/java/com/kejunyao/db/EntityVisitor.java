@@ -0,0 +1,17 @@
+package com.kejunyao.db;
+
+/**
+ * 逐条遍历记录的访问者
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public interface EntityVisitor<T> {
+
+    /**
+     * 访问一条记录
+     * @param entity 实体
+     * @return true，继续遍历；false，结束遍历
+     */
+    boolean visit(T entity);
+}
@@ -0,0 +1,113 @@
+package com.kejunyao.db;
+
+/**
+ * 线程池统计信息，耗时单位为毫秒
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class ExecutorStats {
+
+    private final String name;
+    private final int poolSize;
+    private final int activeCount;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final long taskCount;
+    private final long averageWaitMillis;
+    private final long maxWaitMillis;
+    private final long averageRunMillis;
+    private final long maxRunMillis;
+
+    ExecutorStats(String name, int poolSize, int activeCount, int queueDepth, int maxQueueDepth, long taskCount,
+                  long averageWaitMillis, long maxWaitMillis, long averageRunMillis, long maxRunMillis) {
+        this.name = name;
+        this.poolSize = poolSize;
+        this.activeCount = activeCount;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.taskCount = taskCount;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.averageRunMillis = averageRunMillis;
+        this.maxRunMillis = maxRunMillis;
+    }
+
+    /**
+     * 线程池名称
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 线程数上限
+     */
+    public int poolSize() {
+        return poolSize;
+    }
+
+    /**
+     * 正在执行的任务数
+     */
+    public int activeCount() {
+        return activeCount;
+    }
+
+    /**
+     * 当前排队的任务数
+     */
+    public int queueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * 排队任务数的峰值
+     */
+    public int maxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * 已完成的任务数
+     */
+    public long taskCount() {
+        return taskCount;
+    }
+
+    /**
+     * 任务平均排队耗时
+     */
+    public long averageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    /**
+     * 任务最长排队耗时
+     */
+    public long maxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * 任务平均执行耗时
+     */
+    public long averageRunMillis() {
+        return averageRunMillis;
+    }
+
+    /**
+     * 任务最长执行耗时
+     */
+    public long maxRunMillis() {
+        return maxRunMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExecutorStats[%s, threads=%d, active=%d, queue=%d, maxQueue=%d, tasks=%d, "
+                        + "wait=%d/%dms, run=%d/%dms]",
+                name, poolSize, activeCount, queueDepth, maxQueueDepth, taskCount,
+                averageWaitMillis, maxWaitMillis, averageRunMillis, maxRunMillis);
+    }
+}
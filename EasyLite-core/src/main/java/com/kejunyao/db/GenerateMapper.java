@@ -0,0 +1,26 @@
+package com.kejunyao.db;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 实体映射注解<br/>
+ * 实体类添加该注解后，EasyLite-compiler会在编译期生成名为“实体类名_EntityMapper”的{@link EntityMapper}，
+ * Dao未重写{@link AbstractDefaultDao#toEntity(android.database.Cursor)}、
+ * {@link AbstractDefaultDao#toContentValues(Object)}时，使用生成的EntityMapper完成转换。<br/>
+ * 实体的非static、非transient字段均作为列映射，列名默认为字段名，可用{@link ColumnName}指定；
+ * private字段及其他包中父类的非public字段须提供对应的get/set（boolean可为is）方法；
+ * 不属于Dao列（{@link AbstractDefaultDao#getColumns()}）的字段不会写入数据库。<br/>
+ * 使用时须在模块中添加：annotationProcessor project(':EasyLite-compiler')
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.TYPE})
+public @interface GenerateMapper {
+}
@@ -0,0 +1,127 @@
+package com.kejunyao.db;
+
+import android.text.TextUtils;
+
+/**
+ * 数据库表索引，由{@link AbstractDefaultDao#getIndexes()}声明<br/>
+ * 支持单列、组合、唯一、部分（WHERE条件，SQLite 3.8.0+）及覆盖索引；
+ * 建表时一并创建，完整性检查时补建缺失的索引、重建定义变化的索引、删除不再声明的索引。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public class Index {
+
+    private String name;
+    private final String[] columns;
+    private String[] include;
+    private boolean unique;
+    private String where;
+
+    /**
+     * @param columns 索引列，可带排序，如"time DESC"
+     */
+    public static Index on(String... columns) {
+        return new Index(columns);
+    }
+
+    public Index(String... columns) {
+        Assert.isTrue(columns != null && columns.length > 0, "columns must not be empty!");
+        this.columns = columns;
+    }
+
+    /**
+     * 指定索引名称，未指定时为idx_表名_索引列
+     */
+    public Index name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * 唯一索引
+     */
+    public Index unique() {
+        Assert.isTrue(include == null, "unique index can not include columns!");
+        this.unique = true;
+        return this;
+    }
+
+    /**
+     * 部分索引，只索引满足条件的行，查询条件须包含该条件才会使用此索引
+     * @param predicate WHERE条件，如"deleted = 0"
+     */
+    public Index where(String predicate) {
+        this.where = predicate;
+        return this;
+    }
+
+    /**
+     * 覆盖索引：附加在索引列之后、只用于避免回表的列（SQLite没有INCLUDE语法，附加列同样参与排序）
+     */
+    public Index include(String... columns) {
+        Assert.isTrue(!unique, "unique index can not include columns!");
+        this.include = columns;
+        return this;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public boolean isPartial() {
+        return !TextUtils.isEmpty(where);
+    }
+
+    /**
+     * 索引名称
+     * @param table 索引所在的表
+     */
+    public String nameOn(String table) {
+        if (!TextUtils.isEmpty(name)) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder("idx_").append(table);
+        for (String column : columns) {
+            String c = column.trim();
+            int space = c.indexOf(' ');
+            sb.append('_').append(space > 0 ? c.substring(0, space) : c);
+        }
+        return sb.toString();
+    }
+
+    public String buildCreateIndexSql(String table) {
+        return buildSql(table, true);
+    }
+
+    /**
+     * @param ifNotExists false时与sqlite_master中保存的语句格式一致，用于比较索引定义是否变化
+     */
+    String buildSql(String table, boolean ifNotExists) {
+        StringBuilder sb = new StringBuilder("CREATE ");
+        if (unique) {
+            sb.append("UNIQUE ");
+        }
+        sb.append("INDEX ");
+        if (ifNotExists) {
+            sb.append("IF NOT EXISTS ");
+        }
+        sb.append(nameOn(table)).append(" ON ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns[i].trim());
+        }
+        if (include != null) {
+            for (String column : include) {
+                sb.append(", ").append(column.trim());
+            }
+        }
+        sb.append(')');
+        if (isPartial()) {
+            sb.append(" WHERE ").append(where.trim());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 索引的创建、删除与查询<br/>
+ * 由EasyLite创建的索引记录在元数据表中，完整性检查时只删除其中不再声明的索引，不影响迁移等方式手动创建的索引。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class Indexes {
+
+    static final String TABLE = "easylite_indexes";
+
+    /**
+     * 部分索引需要的SQLite版本（3.8.0）
+     */
+    private static final int PARTIAL_INDEX_VERSION = 3008000;
+
+    /**
+     * 已有数据超过该行数（按最大rowid估算）的表，新建索引在后台执行，避免阻塞完整性检查
+     */
+    static final long BACKGROUND_BUILD_ROWS = 50000;
+
+    private Indexes() {
+    }
+
+    static void ensureTable(SQLiteDatabase db) {
+        db.execSQL(Utils.concat("CREATE TABLE IF NOT EXISTS ", TABLE,
+                " (index_name TEXT PRIMARY KEY, table_name TEXT NOT NULL)"));
+    }
+
+    /**
+     * 当前SQLite版本是否支持该索引
+     */
+    static boolean isSupported(SQLiteDatabase db, Index index) {
+        return !index.isPartial() || Utils.getSQLiteVersion(db) >= PARTIAL_INDEX_VERSION;
+    }
+
+    /**
+     * 创建索引并记录为EasyLite创建的索引
+     */
+    static void create(SQLiteDatabase db, String table, Index index) {
+        ensureTable(db);
+        db.execSQL(index.buildCreateIndexSql(table));
+        db.execSQL(Utils.concat("INSERT OR REPLACE INTO ", TABLE, " (index_name, table_name) VALUES (?, ?)"),
+                new Object[] {index.nameOn(table).toLowerCase(Locale.US), table});
+    }
+
+    /**
+     * 删除索引及其记录
+     */
+    static void drop(SQLiteDatabase db, String name) {
+        db.execSQL("DROP INDEX IF EXISTS " + name);
+        db.execSQL(Utils.concat("DELETE FROM ", TABLE, " WHERE index_name = ?"),
+                new Object[] {name.toLowerCase(Locale.US)});
+    }
+
+    /**
+     * 读取表上已存在的索引（不含主键、UNIQUE约束自动创建的索引）
+     * @return 索引名（小写） -> 建索引语句
+     */
+    static Map<String, String> existing(SQLiteDatabase db, String table) {
+        Map<String, String> indexes = new HashMap<>();
+        Cursor c = null;
+        try {
+            c = db.rawQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL",
+                    new String[] {table});
+            while (c != null && c.moveToNext()) {
+                indexes.put(c.getString(0).toLowerCase(Locale.US), c.getString(1));
+            }
+        } finally {
+            Utils.closeSafely(c);
+        }
+        return indexes;
+    }
+
+    /**
+     * 读取表上由EasyLite创建的索引名（小写）
+     */
+    static Set<String> managed(SQLiteDatabase db, String table) {
+        ensureTable(db);
+        Set<String> names = new HashSet<>();
+        Cursor c = null;
+        try {
+            c = db.rawQuery(Utils.concat("SELECT index_name FROM ", TABLE, " WHERE table_name = ?"),
+                    new String[] {table});
+            while (c != null && c.moveToNext()) {
+                names.add(c.getString(0));
+            }
+        } finally {
+            Utils.closeSafely(c);
+        }
+        return names;
+    }
+
+    /**
+     * 两条建索引语句是否等价（忽略大小写、空白及IF NOT EXISTS）
+     */
+    static boolean isSameDefinition(String sql1, String sql2) {
+        return normalize(sql1).equals(normalize(sql2));
+    }
+
+    private static String normalize(String sql) {
+        String s = sql.toLowerCase(Locale.US).replaceAll("\\s+", " ").replace("if not exists ", "");
+        return s.replaceAll(" ?([(),]) ?", "$1").trim();
+    }
+
+    /**
+     * 按最大rowid估算表的行数，避免COUNT(*)全表扫描
+     */
+    static long estimateRows(SQLiteDatabase db, String table) {
+        SQLiteStatement statement = db.compileStatement(Utils.concat("SELECT MAX(rowid) FROM ", table));
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            Utils.closeSafely(statement);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.kejunyao.db;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按{@link Priority}排队、统计排队深度及耗时的线程池
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class InstrumentedExecutor extends ThreadPoolExecutor {
+
+    /**
+     * 当前线程正在执行的任务
+     */
+    private static final ThreadLocal<TimedRunnable> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 判断当前线程能否执行插队的任务
+     */
+    interface YieldPolicy {
+        /**
+         * @return false，不能执行，如当前线程处于事务之中或持有表锁
+         */
+        boolean canYield();
+    }
+
+    private final String mName;
+    private final PriorityTaskQueue mQueue;
+    private volatile YieldPolicy mYieldPolicy;
+
+    private int mMaxQueueDepth;
+    private long mTaskCount;
+    private long mTotalWaitMillis;
+    private long mMaxWaitMillis;
+    private long mTotalRunMillis;
+    private long mMaxRunMillis;
+
+    /**
+     * @param name 线程名前缀
+     * @param threads 线程数
+     */
+    InstrumentedExecutor(final String name, int threads) {
+        super(threads, threads, 30L, TimeUnit.SECONDS, new PriorityTaskQueue(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, name + '-' + mCount.incrementAndGet());
+            }
+        });
+        mName = name;
+        mQueue = (PriorityTaskQueue) getQueue();
+        allowCoreThreadTimeOut(true);
+    }
+
+    void setYieldPolicy(YieldPolicy policy) {
+        mYieldPolicy = policy;
+    }
+
+    /**
+     * 当前线程正在执行低优先级任务时，先执行排队中优先级更高的读任务（写任务按提交顺序执行，不插队），供耗时任务在分块之间调用<br/>
+     * 非本线程池的线程调用，或{@link YieldPolicy}不允许（如处于事务之中、持有表锁，插队的任务会并入该事务或打乱加锁顺序）时不做任何操作。
+     */
+    static void yieldToUrgent() {
+        final TimedRunnable current = CURRENT.get();
+        if (current == null) {
+            return;
+        }
+        final YieldPolicy policy = current.executor().mYieldPolicy;
+        if (policy != null && !policy.canYield()) {
+            return;
+        }
+        final Priority priority = current.getPriority();
+        Runnable task = current.executor().mQueue.pollHigherThan(priority);
+        if (task == null) {
+            return;
+        }
+        try {
+            while (task != null) {
+                task.run();
+                task = current.executor().mQueue.pollHigherThan(priority);
+            }
+        } finally {
+            Process.setThreadPriority(priority.threadPriority);
+        }
+    }
+
+    /**
+     * 当前线程是否为本线程池的线程（正在执行其中的任务）
+     */
+    boolean isCurrentThread() {
+        final TimedRunnable current = CURRENT.get();
+        return current != null && current.executor() == this;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedRunnable(command));
+        int depth = mQueue.size();
+        synchronized (this) {
+            if (depth > mMaxQueueDepth) {
+                mMaxQueueDepth = depth;
+            }
+        }
+    }
+
+    /**
+     * 从队列中移除任务，task为提交时的任务
+     */
+    @Override
+    public boolean remove(Runnable task) {
+        for (Runnable queued : mQueue) {
+            if (queued == task || (queued instanceof TimedRunnable && ((TimedRunnable) queued).mRunnable == task)) {
+                return super.remove(queued);
+            }
+        }
+        return false;
+    }
+
+    private void record(long waitMillis, long runMillis) {
+        synchronized (this) {
+            mTaskCount++;
+            mTotalWaitMillis += waitMillis;
+            mTotalRunMillis += runMillis;
+            if (waitMillis > mMaxWaitMillis) {
+                mMaxWaitMillis = waitMillis;
+            }
+            if (runMillis > mMaxRunMillis) {
+                mMaxRunMillis = runMillis;
+            }
+        }
+    }
+
+    ExecutorStats stats() {
+        synchronized (this) {
+            return new ExecutorStats(mName, getMaximumPoolSize(), getActiveCount(), mQueue.size(), mMaxQueueDepth,
+                    mTaskCount, mTaskCount == 0 ? 0 : mTotalWaitMillis / mTaskCount, mMaxWaitMillis,
+                    mTaskCount == 0 ? 0 : mTotalRunMillis / mTaskCount, mMaxRunMillis);
+        }
+    }
+
+    private final class TimedRunnable implements Runnable, Prioritized, PriorityTaskQueue.Reorderable {
+
+        private final Runnable mRunnable;
+        private final long mEnqueueTime;
+
+        TimedRunnable(Runnable runnable) {
+            mRunnable = runnable;
+            mEnqueueTime = SystemClock.uptimeMillis();
+        }
+
+        InstrumentedExecutor executor() {
+            return InstrumentedExecutor.this;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return PriorityTask.priorityOf(mRunnable, Priority.NORMAL);
+        }
+
+        @Override
+        public boolean isReorderable() {
+            return PriorityTaskQueue.isReorderable(mRunnable);
+        }
+
+        @Override
+        public void run() {
+            final TimedRunnable previous = CURRENT.get();
+            CURRENT.set(this);
+            final long start = SystemClock.uptimeMillis();
+            try {
+                mRunnable.run();
+            } finally {
+                record(start - mEnqueueTime, SystemClock.uptimeMillis() - start);
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        }
+    }
+}
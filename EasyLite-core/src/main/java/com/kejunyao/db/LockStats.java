@@ -0,0 +1,85 @@
+package com.kejunyao.db;
+
+/**
+ * 表锁统计信息，耗时单位为毫秒
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class LockStats {
+
+    private final String table;
+    private final long acquisitionCount;
+    private final long contentionCount;
+    private final long averageWaitMillis;
+    private final long maxWaitMillis;
+    private final long averageHoldMillis;
+    private final long maxHoldMillis;
+
+    LockStats(String table, long acquisitionCount, long contentionCount, long averageWaitMillis,
+              long maxWaitMillis, long averageHoldMillis, long maxHoldMillis) {
+        this.table = table;
+        this.acquisitionCount = acquisitionCount;
+        this.contentionCount = contentionCount;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.averageHoldMillis = averageHoldMillis;
+        this.maxHoldMillis = maxHoldMillis;
+    }
+
+    /**
+     * 表名，"*"表示全部表
+     */
+    public String table() {
+        return table;
+    }
+
+    /**
+     * 加锁次数
+     */
+    public long acquisitionCount() {
+        return acquisitionCount;
+    }
+
+    /**
+     * 加锁时需要等待的次数
+     */
+    public long contentionCount() {
+        return contentionCount;
+    }
+
+    /**
+     * 发生等待时的平均等待耗时
+     */
+    public long averageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    /**
+     * 最长等待耗时
+     */
+    public long maxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * 平均持有耗时
+     */
+    public long averageHoldMillis() {
+        return averageHoldMillis;
+    }
+
+    /**
+     * 最长持有耗时
+     */
+    public long maxHoldMillis() {
+        return maxHoldMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LockStats[%s, acquisitions=%d, contentions=%d, wait=%d/%dms, hold=%d/%dms]",
+                table, acquisitionCount, contentionCount, averageWaitMillis, maxWaitMillis,
+                averageHoldMillis, maxHoldMillis);
+    }
+}
@@ -0,0 +1,136 @@
+package com.kejunyao.db;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 主线程回调分发<br/>
+ * 回调先进入队列，每帧只用一个消息（API 16及以上为Choreographer帧回调）集中执行，
+ * 每帧执行时间不超过预算，剩余的回调留到下一帧，避免大量异步操作的回调挤占主线程消息队列。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class MainThreadDispatcher {
+
+    /**
+     * 默认每帧执行回调的时间预算
+     */
+    static final long DEFAULT_FRAME_BUDGET_MILLIS = 4L;
+    /**
+     * 无Choreographer时的帧间隔
+     */
+    private static final long FRAME_INTERVAL_MILLIS = 16L;
+
+    private static final boolean HAS_CHOREOGRAPHER = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+    private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    private static final ConcurrentLinkedQueue<Runnable> PENDING = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+    private static volatile long sFrameBudgetMillis = DEFAULT_FRAME_BUDGET_MILLIS;
+
+    private static final Runnable DRAIN = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private static final Runnable SCHEDULE_FRAME = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+
+    private MainThreadDispatcher() {
+    }
+
+    /**
+     * 设置每帧执行回调的时间预算，每帧至少执行一个回调
+     * @param millis 时间预算，单位毫秒
+     */
+    static void setFrameBudget(long millis) {
+        Assert.isTrue(millis > 0, "frame budget must be greater than 0!");
+        sFrameBudgetMillis = millis;
+    }
+
+    /**
+     * 在主线程中执行
+     */
+    static void post(Runnable command) {
+        PENDING.add(command);
+        if (SCHEDULED.compareAndSet(false, true)) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                scheduleFrame();
+            } else {
+                HANDLER.post(SCHEDULE_FRAME);
+            }
+        }
+    }
+
+    /**
+     * 在下一帧执行，须在主线程调用
+     */
+    private static void scheduleFrame() {
+        if (HAS_CHOREOGRAPHER) {
+            JellyBean.postFrameCallback();
+        } else {
+            HANDLER.postDelayed(DRAIN, FRAME_INTERVAL_MILLIS);
+        }
+    }
+
+    private static void drain() {
+        final long deadline = SystemClock.uptimeMillis() + sFrameBudgetMillis;
+        boolean finished = false;
+        try {
+            Runnable command;
+            while ((command = PENDING.poll()) != null) {
+                command.run();
+                if (SystemClock.uptimeMillis() >= deadline) {
+                    break;
+                }
+            }
+            finished = true;
+        } finally {
+            if (!PENDING.isEmpty()) {
+                // 超出预算或回调抛出异常，剩余的回调留到下一帧
+                scheduleFrame();
+            } else {
+                SCHEDULED.set(false);
+                // 重置标记前可能有新的回调入队
+                if (!PENDING.isEmpty() && SCHEDULED.compareAndSet(false, true)) {
+                    scheduleFrame();
+                }
+            }
+            if (!finished && Utils.isDebug()) {
+                Utils.log(MainThreadDispatcher.class, "callback failed, ", PENDING.size(), " pending");
+            }
+        }
+    }
+
+    /**
+     * 仅在API 16及以上加载
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class JellyBean {
+
+        private static final Choreographer.FrameCallback FRAME_CALLBACK = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                drain();
+            }
+        };
+
+        static void postFrameCallback() {
+            Choreographer.getInstance().postFrameCallback(FRAME_CALLBACK);
+        }
+    }
+}
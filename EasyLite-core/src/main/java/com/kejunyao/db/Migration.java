@@ -0,0 +1,64 @@
+package com.kejunyao.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * 数据库迁移步骤<br/>
+ * 迁移步骤按版本号（同一版本按注册顺序）依次执行，每次调用{@link #migrate(SQLiteDatabase, long)}在独立的事务中执行，
+ * 执行进度与事务一同提交到检查点表；执行失败时事务回滚，数据不会被删除，下次打开数据库时从上次提交的进度继续。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public abstract class Migration {
+
+    /**
+     * 迁移完成
+     */
+    public static final long DONE = -1;
+
+    private final int version;
+    private final String name;
+
+    /**
+     * @param version 引入该迁移的数据库版本，须大于0
+     * @param name 同一版本内唯一的名称，保存在检查点表中，发布后不能修改
+     */
+    protected Migration(int version, String name) {
+        Assert.isTrue(version > 0, "version must be greater than 0!");
+        Assert.isTrue(name != null && name.length() > 0, "name must not be empty!");
+        this.version = version;
+        this.name = name;
+    }
+
+    public final int getVersion() {
+        return version;
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * 是否在后台执行<br/>
+     * 默认false：在打开数据库时执行，全部完成后打开数据库才返回；执行失败时打开数据库抛出异常，下次打开时从检查点继续。<br/>
+     * 后台迁移不阻塞打开数据库，在全部前台迁移完成后于写线程中按顺序执行，只应操作不影响现有功能的数据（如复制大表到新表）。
+     * 注意：版本N的后台迁移在更高版本的前台迁移之后才执行，更高版本的前台迁移不能依赖它的结果。
+     */
+    public boolean isBackground() {
+        return false;
+    }
+
+    /**
+     * 执行一次迁移，在独立的事务中调用，抛出异常时回滚
+     * @param db 可写数据库
+     * @param progress 上次提交的进度，首次执行为0
+     * @return {@link #DONE}表示迁移完成；否则为新的进度，提交后以该进度再次调用
+     */
+    protected abstract long migrate(SQLiteDatabase db, long progress) throws Exception;
+
+    @Override
+    public String toString() {
+        return version + ":" + name;
+    }
+}
@@ -0,0 +1,297 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 可续跑的版本迁移引擎<br/>
+ * 升级时（{@link android.database.sqlite.SQLiteOpenHelper#onUpgrade}，已处于系统开启的事务中）只在检查点表中登记
+ * (oldVersion, newVersion]范围内的迁移步骤，与版本号的修改一同提交；
+ * 打开数据库时按顺序执行未完成的前台步骤，每次{@link Migration#migrate(SQLiteDatabase, long)}与其进度在同一事务中提交，
+ * 失败时只回滚当前事务并记录原因，后续步骤暂停，下次打开数据库时从检查点继续，不会删除任何数据；
+ * 后台步骤在全部前台步骤（含更高版本的前台步骤）完成之后才执行。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class MigrationEngine {
+
+    static final String TABLE = "easylite_migrations";
+
+    /**
+     * 错误信息最大长度
+     */
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    /**
+     * 兼容{@link OnDatabaseUpdateListener}的迁移步骤
+     */
+    private static final class ListenerMigration extends Migration {
+        private final OnDatabaseUpdateListener mListener;
+
+        ListenerMigration(int version, OnDatabaseUpdateListener l) {
+            super(version, "OnDatabaseUpdateListener");
+            mListener = l;
+        }
+
+        @Override
+        protected long migrate(SQLiteDatabase db, long progress) {
+            mListener.onDatabaseUpdate(db, getVersion());
+            return DONE;
+        }
+    }
+
+    /**
+     * 已注册的迁移步骤，按版本号排序，同一版本按注册顺序
+     */
+    private final List<Migration> mMigrations = new ArrayList<>();
+    /**
+     * 后台迁移是否已在执行
+     */
+    private boolean mBackgroundRunning;
+
+    synchronized void add(Migration migration) {
+        Assert.notNull(migration, "migration must not be null!");
+        int index = mMigrations.size();
+        for (int i = 0; i < mMigrations.size(); i++) {
+            Migration m = mMigrations.get(i);
+            Assert.isTrue(m.getVersion() != migration.getVersion() || !m.getName().equals(migration.getName()),
+                    "duplicate migration: " + migration);
+            if (m.getVersion() > migration.getVersion() && index == mMigrations.size()) {
+                index = i;
+            }
+        }
+        mMigrations.add(index, migration);
+    }
+
+    void addListener(int version, OnDatabaseUpdateListener l) {
+        add(new ListenerMigration(version, l));
+    }
+
+    private synchronized List<Migration> snapshot() {
+        return new ArrayList<>(mMigrations);
+    }
+
+    private static void ensureTable(SQLiteDatabase db) {
+        db.execSQL(Utils.concat("CREATE TABLE IF NOT EXISTS ", TABLE,
+                " (version INTEGER NOT NULL, name TEXT NOT NULL, state INTEGER NOT NULL DEFAULT 0,",
+                " progress INTEGER NOT NULL DEFAULT 0, attempts INTEGER NOT NULL DEFAULT 0,",
+                " duration INTEGER NOT NULL DEFAULT 0, started_at INTEGER, finished_at INTEGER, error TEXT,",
+                " PRIMARY KEY (version, name))"));
+    }
+
+    private static String key(int version, String name) {
+        return version + ":" + name;
+    }
+
+    /**
+     * 登记(oldVersion, newVersion]范围内的迁移步骤，须在onUpgrade中调用
+     */
+    void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        ensureTable(db);
+        SQLiteStatement statement = db.compileStatement(Utils.concat(
+                "INSERT OR IGNORE INTO ", TABLE, " (version, name) VALUES (?, ?)"));
+        try {
+            for (Migration m : snapshot()) {
+                if (m.getVersion() > oldVersion && m.getVersion() <= newVersion) {
+                    statement.bindLong(1, m.getVersion());
+                    statement.bindString(2, m.getName());
+                    statement.executeInsert();
+                }
+            }
+        } finally {
+            Utils.closeSafely(statement);
+        }
+    }
+
+    /**
+     * 读取未完成步骤的进度
+     */
+    private static Map<String, Long> loadPending(SQLiteDatabase db) {
+        Map<String, Long> pending = new HashMap<>();
+        Cursor c = null;
+        try {
+            c = db.rawQuery(Utils.concat("SELECT version, name, progress FROM ", TABLE,
+                    " WHERE state != ", String.valueOf(MigrationRecord.STATE_DONE)), null);
+            while (c != null && c.moveToNext()) {
+                pending.put(key(c.getInt(0), c.getString(1)), c.getLong(2));
+            }
+        } finally {
+            Utils.closeSafely(c);
+        }
+        return pending;
+    }
+
+    /**
+     * 执行未完成的前台迁移，须在onOpen中调用
+     * @return 是否有待执行的后台迁移（前台迁移全部完成时才会执行后台迁移）
+     * @throws IllegalStateException 前台迁移失败，已提交的进度保留在检查点表中
+     */
+    boolean runForeground(SQLiteDatabase db) {
+        ensureTable(db);
+        Map<String, Long> pending = loadPending(db);
+        if (pending.isEmpty()) {
+            return false;
+        }
+        boolean background = false;
+        for (Migration m : snapshot()) {
+            Long progress = pending.get(key(m.getVersion(), m.getName()));
+            if (progress == null) {
+                continue;
+            }
+            if (m.isBackground()) {
+                background = true;
+                continue;
+            }
+            Exception error = run(db, m, progress);
+            if (error != null) {
+                throw new IllegalStateException("migration " + m + " failed", error);
+            }
+        }
+        return background;
+    }
+
+    /**
+     * 标记后台迁移开始执行
+     * @return false：后台迁移已在执行
+     */
+    synchronized boolean beginBackground() {
+        if (mBackgroundRunning) {
+            return false;
+        }
+        mBackgroundRunning = true;
+        return true;
+    }
+
+    /**
+     * 在写线程中按顺序执行未完成的后台迁移，每块之间让出写线程给紧急任务
+     * @return 是否全部完成
+     */
+    boolean runBackground(SQLiteDatabase db) {
+        try {
+            Map<String, Long> pending = loadPending(db);
+            for (Migration m : snapshot()) {
+                Long progress = pending.get(key(m.getVersion(), m.getName()));
+                if (progress != null && m.isBackground() && run(db, m, progress) != null) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            synchronized (this) {
+                mBackgroundRunning = false;
+            }
+        }
+    }
+
+    /**
+     * 执行一个迁移步骤直至完成或失败
+     * @return 失败原因，完成时返回null
+     */
+    private Exception run(SQLiteDatabase db, Migration m, long progress) {
+        final String[] whereArgs = {String.valueOf(m.getVersion()), m.getName()};
+        db.execSQL(Utils.concat("UPDATE ", TABLE,
+                " SET attempts = attempts + 1, started_at = COALESCE(started_at, ?) WHERE version = ? AND name = ?"),
+                new Object[] {System.currentTimeMillis(), whereArgs[0], whereArgs[1]});
+        if (Utils.isDebug()) {
+            Utils.log(this, "migration ", m, " start, progress: ", progress);
+        }
+        while (true) {
+            final long start = System.currentTimeMillis();
+            long next = progress;
+            Exception error = null;
+            db.beginTransaction();
+            try {
+                next = m.migrate(db, progress);
+                long duration = System.currentTimeMillis() - start;
+                if (next == Migration.DONE) {
+                    db.execSQL(Utils.concat("UPDATE ", TABLE,
+                            " SET state = ", String.valueOf(MigrationRecord.STATE_DONE),
+                            ", duration = duration + ?, finished_at = ?, error = NULL WHERE version = ? AND name = ?"),
+                            new Object[] {duration, System.currentTimeMillis(), whereArgs[0], whereArgs[1]});
+                } else {
+                    db.execSQL(Utils.concat("UPDATE ", TABLE,
+                            " SET progress = ?, duration = duration + ? WHERE version = ? AND name = ?"),
+                            new Object[] {next, duration, whereArgs[0], whereArgs[1]});
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                try {
+                    db.endTransaction();
+                } catch (Exception e) {
+                    // 提交失败
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            }
+            if (error != null) {
+                if (Utils.isDebug()) {
+                    Utils.log(this, "migration " + m + " failure, progress: " + progress, error);
+                }
+                onFailed(db, whereArgs, error);
+                return error;
+            }
+            if (next == Migration.DONE) {
+                if (Utils.isDebug()) {
+                    Utils.log(this, "migration ", m, " done");
+                }
+                return null;
+            }
+            progress = next;
+            if (m.isBackground()) {
+                InstrumentedExecutor.yieldToUrgent();
+            }
+        }
+    }
+
+    private void onFailed(SQLiteDatabase db, String[] whereArgs, Exception e) {
+        String error = e.getClass().getName() + ": " + e.getMessage();
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        try {
+            db.execSQL(Utils.concat("UPDATE ", TABLE,
+                    " SET state = ", String.valueOf(MigrationRecord.STATE_FAILED),
+                    ", error = ? WHERE version = ? AND name = ?"),
+                    new Object[] {error, whereArgs[0], whereArgs[1]});
+        } catch (Exception ex) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "record migration failure failed", ex);
+            }
+        }
+    }
+
+    /**
+     * 读取全部迁移步骤的执行记录，不修改数据库，可使用只读数据库
+     */
+    List<MigrationRecord> records(SQLiteDatabase db) {
+        List<MigrationRecord> records = new ArrayList<>();
+        // 检查点表不存在时没有执行记录，不在此建表
+        Cursor c = null;
+        try {
+            c = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[] {TABLE});
+            if (c == null || !c.moveToFirst()) {
+                return records;
+            }
+            c.close();
+            c = db.rawQuery(Utils.concat("SELECT version, name, state, progress, attempts, duration, error FROM ",
+                    TABLE, " ORDER BY version, rowid"), null);
+            while (c != null && c.moveToNext()) {
+                records.add(new MigrationRecord(c.getInt(0), c.getString(1), c.getInt(2),
+                        c.getLong(3), c.getInt(4), c.getLong(5), c.isNull(6) ? null : c.getString(6)));
+            }
+        } finally {
+            Utils.closeSafely(c);
+        }
+        return records;
+    }
+}
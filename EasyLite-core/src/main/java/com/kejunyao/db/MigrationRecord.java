@@ -0,0 +1,82 @@
+package com.kejunyao.db;
+
+/**
+ * 迁移步骤的执行记录
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class MigrationRecord {
+
+    public static final int STATE_PENDING = 0;
+    public static final int STATE_DONE = 1;
+    public static final int STATE_FAILED = 2;
+
+    private final int version;
+    private final String name;
+    private final int state;
+    private final long progress;
+    private final int attempts;
+    private final long durationMillis;
+    private final String error;
+
+    MigrationRecord(int version, String name, int state, long progress,
+                    int attempts, long durationMillis, String error) {
+        this.version = version;
+        this.name = name;
+        this.state = state;
+        this.progress = progress;
+        this.attempts = attempts;
+        this.durationMillis = durationMillis;
+        this.error = error;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 状态：{@link #STATE_PENDING}、{@link #STATE_DONE}、{@link #STATE_FAILED}（下次打开数据库时重试）
+     */
+    public int state() {
+        return state;
+    }
+
+    /**
+     * 最后提交的进度
+     */
+    public long progress() {
+        return progress;
+    }
+
+    /**
+     * 执行次数（含中断后继续执行）
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    /**
+     * 累计执行耗时（已提交的部分），单位毫秒
+     */
+    public long durationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * 最后一次失败的原因，未失败时为null
+     */
+    public String error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MigrationRecord[%d:%s, state=%d, progress=%d, attempts=%d, duration=%dms, error=%s]",
+                version, name, state, progress, attempts, durationMillis, error);
+    }
+}
@@ -0,0 +1,30 @@
+package com.kejunyao.db;
+
+/**
+ * 批量操作进度Listener<br/>
+ * 批量操作按批次（见{@link AbstractDefaultDao#setBatchSize(int)}）分别提交，每一批次提交或失败后回调，
+ * 回调在执行数据库操作的线程中进行。<br/>
+ * 批次提交即落库，Dao的batchInsert方法上的{@link Transaction}注解对内置Dao不生效；
+ * 在调用方开启的事务中（如{@link Action}内）执行时，各批次随外层事务一起提交，
+ * 此时onBatchCommitted只表示该批次执行成功，任一批次失败都会使外层事务整体回滚。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public interface OnBatchListener {
+
+    /**
+     * 某一批次提交成功
+     * @param committed 已成功提交的记录数
+     * @param total 总记录数
+     */
+    void onBatchCommitted(int committed, int total);
+
+    /**
+     * 某一批次执行失败，该批次已回滚
+     * @param start 失败批次在列表中的起始位置（包含）
+     * @param end 失败批次在列表中的结束位置（不包含）
+     * @param e 失败原因
+     */
+    void onBatchFailed(int start, int end, Exception e);
+}
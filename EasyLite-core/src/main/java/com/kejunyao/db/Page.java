@@ -0,0 +1,44 @@
+package com.kejunyao.db;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分页查询结果
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class Page<T> {
+
+    private final List<T> entities;
+    private final String nextToken;
+
+    Page(List<T> entities, String nextToken) {
+        this.entities = entities == null ? Collections.<T>emptyList() : entities;
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * 当前页记录，无记录时为空列表
+     */
+    public List<T> entities() {
+        return entities;
+    }
+
+    /**
+     * 下一页的续查令牌，传给{@link PageRequest#after(String)}；没有下一页时返回null
+     */
+    public String nextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{size=" + entities.size() + ", nextToken=" + nextToken + "}";
+    }
+}
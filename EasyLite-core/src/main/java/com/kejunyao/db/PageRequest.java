@@ -0,0 +1,171 @@
+package com.kejunyao.db;
+
+import java.util.Arrays;
+
+/**
+ * 键集（Keyset）分页请求<br/>
+ * 按“排序列 + 主键”定位下一页的起始位置（WHERE (sort, pk) > (?, ?)），翻页耗时与页码无关；
+ * 下一页通过{@link #after(String)}传入上一页的{@link Page#nextToken()}获取。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class PageRequest {
+
+    private final int pageSize;
+    private String sortColumn;
+    private boolean descending;
+    private String whereClause;
+    private String[] whereArgs;
+    private String token;
+    private boolean prefetch;
+
+    /**
+     * @param pageSize 每页记录数，须大于0
+     */
+    public static PageRequest create(int pageSize) {
+        return new PageRequest(pageSize);
+    }
+
+    private PageRequest(int pageSize) {
+        Assert.isTrue(pageSize > 0, "pageSize must be greater than 0!");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * 按某列升序排列，未指定时按主键排列
+     */
+    public PageRequest sortBy(String column) {
+        return sortBy(column, false);
+    }
+
+    /**
+     * 按某列排列，相同值再按主键排列
+     * @param column 列名
+     * @param descending true，降序；false，升序
+     */
+    public PageRequest sortBy(String column, boolean descending) {
+        this.sortColumn = column;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * 仅按主键降序排列
+     */
+    public PageRequest descending() {
+        this.descending = true;
+        return this;
+    }
+
+    /**
+     * 查询条件
+     */
+    public PageRequest where(String whereClause, String[] whereArgs) {
+        this.whereClause = whereClause;
+        this.whereArgs = whereArgs;
+        return this;
+    }
+
+    /**
+     * 从某个位置之后开始查询
+     * @param token 上一页的{@link Page#nextToken()}，null表示第一页
+     */
+    public PageRequest after(String token) {
+        this.token = token;
+        return this;
+    }
+
+    /**
+     * 是否在返回当前页后于后台预取下一页（仅{@link DatabaseController#page(Class, PageRequest)}有效）
+     */
+    public PageRequest prefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public String sortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public String whereClause() {
+        return whereClause;
+    }
+
+    public String[] whereArgs() {
+        return whereArgs;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * 生成下一页请求
+     */
+    PageRequest next(String nextToken) {
+        PageRequest request = new PageRequest(pageSize);
+        request.sortColumn = sortColumn;
+        request.descending = descending;
+        request.whereClause = whereClause;
+        request.whereArgs = whereArgs;
+        request.prefetch = prefetch;
+        request.token = nextToken;
+        return request;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PageRequest)) {
+            return false;
+        }
+        PageRequest that = (PageRequest) o;
+        return pageSize == that.pageSize
+                && descending == that.descending
+                && equals(sortColumn, that.sortColumn)
+                && equals(whereClause, that.whereClause)
+                && Arrays.equals(whereArgs, that.whereArgs)
+                && equals(token, that.token);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = pageSize;
+        result = 31 * result + (descending ? 1 : 0);
+        result = 31 * result + (sortColumn == null ? 0 : sortColumn.hashCode());
+        result = 31 * result + (whereClause == null ? 0 : whereClause.hashCode());
+        result = 31 * result + Arrays.hashCode(whereArgs);
+        result = 31 * result + (token == null ? 0 : token.hashCode());
+        return result;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "PageRequest{pageSize=" + pageSize
+                + ", sortColumn=" + sortColumn
+                + ", descending=" + descending
+                + ", whereClause=" + whereClause
+                + ", whereArgs=" + Arrays.toString(whereArgs)
+                + ", token=" + token
+                + "}";
+    }
+}
@@ -0,0 +1,214 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+import android.util.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 键集分页的续查令牌，记录上一页最后一条记录的排序列值及主键值<br/>
+ * 令牌中同时记录排序方式，与请求的排序方式不一致时视为无效令牌。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class PageToken {
+
+    private static final int VERSION = 2;
+    private static final int FLAGS = Base64.URL_SAFE | Base64.NO_WRAP | Base64.NO_PADDING;
+
+    private final String sortColumn;
+    private final boolean descending;
+    private final int sortType;
+    private final Object sortValue;
+    private final int primaryKeyType;
+    private final Object primaryKeyValue;
+
+    private PageToken(String sortColumn, boolean descending,
+                      int sortType, Object sortValue,
+                      int primaryKeyType, Object primaryKeyValue) {
+        this.sortColumn = sortColumn;
+        this.descending = descending;
+        this.sortType = sortType;
+        this.sortValue = sortValue;
+        this.primaryKeyType = primaryKeyType;
+        this.primaryKeyValue = primaryKeyValue;
+    }
+
+    /**
+     * 读取Cursor当前行生成令牌
+     * @param sortIndex 排序列位置，未指定排序列时为-1
+     * @param primaryKeyIndex 主键位置
+     */
+    static PageToken read(Cursor c, String sortColumn, boolean descending, int sortIndex, int primaryKeyIndex) {
+        int sortType = Cursor.FIELD_TYPE_NULL;
+        Object sortValue = null;
+        if (sortIndex >= 0) {
+            sortType = c.getType(sortIndex);
+            sortValue = readValue(c, sortIndex, sortType);
+        }
+        int primaryKeyType = c.getType(primaryKeyIndex);
+        Object primaryKeyValue = readValue(c, primaryKeyIndex, primaryKeyType);
+        return new PageToken(sortColumn, descending, sortType, sortValue, primaryKeyType, primaryKeyValue);
+    }
+
+    private static Object readValue(Cursor c, int index, int type) {
+        switch (type) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return c.getLong(index);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return c.getDouble(index);
+            case Cursor.FIELD_TYPE_STRING:
+                return c.getString(index);
+            default:
+                throw new IllegalArgumentException("BLOB column can not be used as page key: " + c.getColumnName(index));
+        }
+    }
+
+    /**
+     * 解析令牌
+     * @throws IllegalArgumentException 令牌格式错误或与请求的排序方式不一致
+     */
+    static PageToken decode(String token, String sortColumn, boolean descending) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.decode(token, FLAGS)));
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("unsupported page token: " + token);
+            }
+            String tokenSortColumn = in.readBoolean() ? in.readUTF() : null;
+            boolean tokenDescending = in.readBoolean();
+            if (tokenDescending != descending
+                    || (tokenSortColumn == null ? sortColumn != null : !tokenSortColumn.equals(sortColumn))) {
+                throw new IllegalArgumentException("page token does not match the sort order: " + token);
+            }
+            int sortType = in.readByte();
+            Object sortValue = readValue(in, sortType);
+            int primaryKeyType = in.readByte();
+            Object primaryKeyValue = readValue(in, primaryKeyType);
+            return new PageToken(sortColumn, descending, sortType, sortValue, primaryKeyType, primaryKeyValue);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid page token: " + token, e);
+        }
+    }
+
+    private static Object readValue(DataInputStream in, int type) throws IOException {
+        switch (type) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return in.readLong();
+            case Cursor.FIELD_TYPE_FLOAT:
+                return in.readDouble();
+            case Cursor.FIELD_TYPE_STRING:
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    throw new IOException("invalid string length: " + length);
+                }
+                byte[] data = new byte[length];
+                in.readFully(data);
+                return new String(data, "UTF-8");
+            default:
+                throw new IOException("unknown value type: " + type);
+        }
+    }
+
+    String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeBoolean(sortColumn != null);
+            if (sortColumn != null) {
+                out.writeUTF(sortColumn);
+            }
+            out.writeBoolean(descending);
+            writeValue(out, sortType, sortValue);
+            writeValue(out, primaryKeyType, primaryKeyValue);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.encodeToString(bytes.toByteArray(), FLAGS);
+    }
+
+    private static void writeValue(DataOutputStream out, int type, Object value) throws IOException {
+        out.writeByte(type);
+        switch (type) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                out.writeLong((Long) value);
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                out.writeDouble((Double) value);
+                break;
+            case Cursor.FIELD_TYPE_STRING:
+                // 以长度前缀写入UTF-8字节，writeUTF限制为64KB
+                byte[] data = ((String) value).getBytes("UTF-8");
+                out.writeInt(data.length);
+                out.write(data);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 生成定位到令牌之后记录的查询条件，等价于 (sort, pk) > (?, ?)（降序为 &lt;），
+     * 为兼容不支持行值比较的SQLite版本（3.15以下）展开书写；
+     * 排序列为NULL的记录升序时排在最前，降序时排在最后。
+     * @param primaryKey 主键列名
+     * @param args 查询参数，条件中的参数依次追加到其中
+     * @return 查询条件
+     */
+    String seekClause(String primaryKey, List<String> args) {
+        final String op = descending ? " < " : " > ";
+        final String pk = placeholder(primaryKeyType);
+        if (sortColumn == null) {
+            args.add(toArg(primaryKeyValue));
+            return primaryKey + op + pk;
+        }
+        if (sortValue == null) {
+            args.add(toArg(primaryKeyValue));
+            if (descending) {
+                return Utils.concat("(", sortColumn, " IS NULL AND ", primaryKey, op, pk, ")");
+            }
+            return Utils.concat("((", sortColumn, " IS NULL AND ", primaryKey, op, pk, ") OR ", sortColumn, " IS NOT NULL)");
+        }
+        final String sort = placeholder(sortType);
+        args.add(toArg(sortValue));
+        args.add(toArg(sortValue));
+        args.add(toArg(primaryKeyValue));
+        String clause = Utils.concat(
+                "(", sortColumn, op, sort,
+                " OR (", sortColumn, " = ", sort, " AND ", primaryKey, op, pk, ")"
+        );
+        if (descending) {
+            clause = Utils.concat(clause, " OR ", sortColumn, " IS NULL");
+        }
+        return Utils.concat(clause, ")");
+    }
+
+    /**
+     * 参数以文本绑定，按原值类型转换，保证与列值按相同类型比较
+     */
+    private static String placeholder(int type) {
+        switch (type) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return "CAST(? AS INTEGER)";
+            case Cursor.FIELD_TYPE_FLOAT:
+                return "CAST(? AS REAL)";
+            default:
+                return "?";
+        }
+    }
+
+    private static String toArg(Object value) {
+        return String.valueOf(value);
+    }
+}
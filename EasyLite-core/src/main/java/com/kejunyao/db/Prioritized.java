@@ -0,0 +1,15 @@
+package com.kejunyao.db;
+
+/**
+ * 指定异步任务的优先级<br/>
+ * {@link DaoCallback}、{@link OnBatchListener}、{@link DaoProcessCallback}或提交的Runnable实现该接口时，
+ * 异步任务按{@link #getPriority()}排队，否则按{@link Priority#NORMAL}排队。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public interface Prioritized {
+
+    Priority getPriority();
+
+}
@@ -0,0 +1,34 @@
+package com.kejunyao.db;
+
+import android.os.Process;
+
+/**
+ * 异步任务优先级<br/>
+ * 排队的读操作按优先级执行，同一优先级按提交顺序执行；低优先级任务每排队500毫秒提升一级，避免饿死。
+ * 写操作之间始终按提交顺序执行，读操作不会越过先提交的写操作，优先级只决定写操作执行时的线程优先级。<br/>
+ * 仅{@link DatabaseController}默认创建的线程池按优先级排队，构造时传入的线程池只按优先级设置线程优先级。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public enum Priority {
+
+    /**
+     * 界面可见内容所需的操作，如当前页面的查询
+     */
+    UI_CRITICAL(Process.THREAD_PRIORITY_DEFAULT),
+    /**
+     * 普通操作（默认）
+     */
+    NORMAL(Process.THREAD_PRIORITY_BACKGROUND),
+    /**
+     * 耗时的批量操作，如后台同步、预取
+     */
+    BULK(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE);
+
+    final int threadPriority;
+
+    Priority(int threadPriority) {
+        this.threadPriority = threadPriority;
+    }
+}
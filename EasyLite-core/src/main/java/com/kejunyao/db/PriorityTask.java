@@ -0,0 +1,61 @@
+package com.kejunyao.db;
+
+import android.os.Process;
+
+/**
+ * 带优先级的异步任务，执行前按优先级设置线程优先级<br/>
+ * 默认为写任务，在{@link PriorityTaskQueue}中按提交顺序执行；只读任务可按优先级重排。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class PriorityTask implements Runnable, Prioritized, PriorityTaskQueue.Reorderable {
+
+    private final Priority mPriority;
+    private final Runnable mRunnable;
+    private final boolean mReadOnly;
+
+    PriorityTask(Priority priority, Runnable runnable) {
+        this(priority, runnable, false);
+    }
+
+    /**
+     * @param readOnly 是否为只读任务
+     */
+    PriorityTask(Priority priority, Runnable runnable, boolean readOnly) {
+        this.mPriority = priority;
+        this.mRunnable = runnable;
+        this.mReadOnly = readOnly;
+    }
+
+    /**
+     * 获取对象指定的优先级
+     * @param obj 回调等对象，可为null
+     * @param defaultPriority 未指定时的优先级
+     */
+    static Priority priorityOf(Object obj, Priority defaultPriority) {
+        if (obj instanceof Prioritized) {
+            Priority priority = ((Prioritized) obj).getPriority();
+            if (priority != null) {
+                return priority;
+            }
+        }
+        return defaultPriority;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public boolean isReorderable() {
+        return mReadOnly;
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(mPriority.threadPriority);
+        mRunnable.run();
+    }
+}
@@ -0,0 +1,289 @@
+package com.kejunyao.db;
+
+import android.os.SystemClock;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按{@link Priority}排队的任务队列<br/>
+ * 写任务（未实现{@link Reorderable}的任务）在同一个FIFO队列中按提交顺序执行，不因优先级互相越过；
+ * 读任务每个优先级一个FIFO队列，只能越过其他读任务，不会越过先提交的写任务，保证读到此前提交的写操作的结果。
+ * 可执行的读任务中取优先级最高者，队首任务每等待{@link #AGING_MILLIS}毫秒提升一级，
+ * 持续提交的高优先级任务不会使低优先级任务饿死。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class PriorityTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    static final long AGING_MILLIS = 500L;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    /**
+     * 写任务队列的下标，在各优先级的读任务队列之后
+     */
+    private static final int ORDERED = PRIORITIES.length;
+
+    /**
+     * 可按优先级重排的任务，如只读查询
+     */
+    interface Reorderable {
+        /**
+         * @return true，可越过先提交的读任务；false，按提交顺序执行
+         */
+        boolean isReorderable();
+    }
+
+    private static final class Node {
+        final Runnable task;
+        final long enqueueTime;
+        final long sequence;
+
+        Node(Runnable task, long enqueueTime, long sequence) {
+            this.task = task;
+            this.enqueueTime = enqueueTime;
+            this.sequence = sequence;
+        }
+    }
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    /**
+     * 各优先级的读任务队列，最后一个为写任务队列
+     */
+    private final ArrayDeque<Node>[] mQueues;
+    private int mCount;
+    private long mSequence;
+
+    @SuppressWarnings("unchecked")
+    PriorityTaskQueue() {
+        mQueues = (ArrayDeque<Node>[]) new ArrayDeque<?>[PRIORITIES.length + 1];
+        for (int i = 0; i < mQueues.length; i++) {
+            mQueues[i] = new ArrayDeque<>();
+        }
+    }
+
+    static boolean isReorderable(Runnable task) {
+        return task instanceof Reorderable && ((Reorderable) task).isReorderable();
+    }
+
+    /**
+     * 读任务是否可以执行：写任务队列为空，或其先于写任务队列的队首提交
+     */
+    private boolean isRunnable(Node read) {
+        final Node write = mQueues[ORDERED].peekFirst();
+        return write == null || read.sequence < write.sequence;
+    }
+
+    /**
+     * 选出下一个要执行的队列，调用方须持有锁<br/>
+     * 可执行的读任务中取优先级（计入等待时间）最高者，没有时取写任务队列的队首
+     * @return 队列下标，队列为空时返回-1
+     */
+    private int select() {
+        final long now = SystemClock.uptimeMillis();
+        int best = -1;
+        long bestRank = 0;
+        for (int i = 0; i < ORDERED; i++) {
+            Node head = mQueues[i].peekFirst();
+            if (head == null || !isRunnable(head)) {
+                continue;
+            }
+            long rank = i - (now - head.enqueueTime) / AGING_MILLIS;
+            if (best < 0 || rank < bestRank) {
+                best = i;
+                bestRank = rank;
+            }
+        }
+        if (best < 0 && !mQueues[ORDERED].isEmpty()) {
+            best = ORDERED;
+        }
+        return best;
+    }
+
+    private Runnable dequeue(int index) {
+        mCount--;
+        return mQueues[index].pollFirst().task;
+    }
+
+    /**
+     * 取出优先级高于priority的可执行的读任务（不计等待时间），用于耗时任务在分块之间让出线程；
+     * 写任务不插队
+     * @return 任务，没有时返回null
+     */
+    Runnable pollHigherThan(Priority priority) {
+        mLock.lock();
+        try {
+            for (int i = 0; i < priority.ordinal(); i++) {
+                Node head = mQueues[i].peekFirst();
+                if (head != null && isRunnable(head)) {
+                    return dequeue(i);
+                }
+            }
+            return null;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        Assert.notNull(task, "task must not be null!");
+        Priority priority = PriorityTask.priorityOf(task, Priority.NORMAL);
+        mLock.lock();
+        try {
+            mQueues[isReorderable(task) ? priority.ordinal() : ORDERED].addLast(
+                    new Node(task, SystemClock.uptimeMillis(), mSequence++));
+            mCount++;
+            mNotEmpty.signal();
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) {
+        offer(task);
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public Runnable poll() {
+        mLock.lock();
+        try {
+            int index = select();
+            return index < 0 ? null : dequeue(index);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                mNotEmpty.await();
+            }
+            return dequeue(select());
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        mLock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+            return dequeue(select());
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        mLock.lock();
+        try {
+            int index = select();
+            return index < 0 ? null : mQueues[index].peekFirst().task;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        mLock.lock();
+        try {
+            for (ArrayDeque<Node> queue : mQueues) {
+                for (Iterator<Node> it = queue.iterator(); it.hasNext(); ) {
+                    if (it.next().task.equals(o)) {
+                        it.remove();
+                        mCount--;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        mLock.lock();
+        try {
+            return mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        mLock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && mCount > 0) {
+                c.add(dequeue(select()));
+                n++;
+            }
+            return n;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 返回当前任务的快照，通过迭代器删除不影响队列
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        mLock.lock();
+        try {
+            List<Runnable> tasks = new ArrayList<>(mCount);
+            for (ArrayDeque<Node> queue : mQueues) {
+                for (Node node : queue) {
+                    tasks.add(node.task);
+                }
+            }
+            return tasks.iterator();
+        } finally {
+            mLock.unlock();
+        }
+    }
+}
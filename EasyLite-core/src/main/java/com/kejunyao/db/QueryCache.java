@@ -0,0 +1,211 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 查询结果缓存，按估算的内存占用（字节）淘汰<br/>
+ * 缓存项按表记录版本，表发生写操作后该表的缓存项全部失效；表名不区分大小写。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class QueryCache {
+
+    private static final char SEPARATOR = '\u0001';
+
+    /**
+     * 缓存项
+     */
+    static final class Entry {
+        final String table;
+        final long version;
+        final Object value;
+        final int size;
+
+        Entry(String table, long version, Object value, int size) {
+            this.table = table;
+            this.version = version;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private final LruCache<String, Entry> mCache;
+    /**
+     * 各表的写版本
+     */
+    private final Map<String, Long> mTableVersions = new HashMap<>();
+    /**
+     * 全部缓存项失效的次数，计入各表的写版本
+     */
+    private long mEpoch;
+    private long mHitCount;
+    private long mMissCount;
+
+    QueryCache(int maxBytes) {
+        Assert.isTrue(maxBytes > 0, "maxBytes must be greater than 0!");
+        mCache = new LruCache<String, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Entry value) {
+                return value.size;
+            }
+        };
+    }
+
+    /**
+     * 生成缓存Key
+     * @param clazz 实体类
+     * @param method 查询方法
+     * @param whereClause 查询条件
+     * @param whereArgs 查询参数
+     * @param extra 其他影响查询结果的参数（查询列、查询选项等），可为null
+     */
+    static String key(Class<?> clazz, String method, String whereClause, String[] whereArgs, Object extra) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(clazz.getName()).append(SEPARATOR).append(method).append(SEPARATOR).append(whereClause);
+        if (whereArgs != null) {
+            for (String arg : whereArgs) {
+                builder.append(SEPARATOR).append(arg);
+            }
+        }
+        if (extra != null) {
+            builder.append(SEPARATOR).append(SEPARATOR);
+            if (extra instanceof String[]) {
+                for (String s : (String[]) extra) {
+                    builder.append(s).append(SEPARATOR);
+                }
+            } else {
+                builder.append(extra);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 获取表当前的写版本，须在查询数据库之前获取
+     */
+    long version(String table) {
+        table = normalize(table);
+        synchronized (mTableVersions) {
+            Long version = mTableVersions.get(table);
+            return version == null ? mEpoch : mEpoch + version;
+        }
+    }
+
+    /**
+     * 获取缓存项
+     * @return 缓存项，未命中或已失效时返回null
+     */
+    Entry get(String key) {
+        Entry entry = mCache.get(key);
+        synchronized (mTableVersions) {
+            if (entry != null && entry.version == version(entry.table)) {
+                mHitCount++;
+                return entry;
+            }
+            mMissCount++;
+        }
+        if (entry != null) {
+            mCache.remove(key);
+        }
+        return null;
+    }
+
+    /**
+     * 缓存查询结果
+     * @param version 查询之前通过{@link #version(String)}获取的写版本，查询期间表有写操作时不缓存
+     * @param entitySize 单个实体估算的字节数
+     */
+    void put(String key, String table, long version, Object value, int entitySize) {
+        int size = 2 * key.length() + 32 + sizeOf(value, entitySize);
+        if (size > mCache.maxSize()) {
+            return;
+        }
+        table = normalize(table);
+        synchronized (mTableVersions) {
+            if (version != version(table)) {
+                return;
+            }
+            mCache.put(key, new Entry(table, version, value, size));
+        }
+    }
+
+    /**
+     * 使某表的缓存项全部失效
+     */
+    void invalidate(String table) {
+        if (table == null) {
+            return;
+        }
+        table = normalize(table);
+        synchronized (mTableVersions) {
+            Long version = mTableVersions.get(table);
+            mTableVersions.put(table, version == null ? 1L : version + 1);
+        }
+        // 同时移除失效项，释放内存
+        for (Map.Entry<String, Entry> e : mCache.snapshot().entrySet()) {
+            if (table.equals(e.getValue().table)) {
+                mCache.remove(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * 使全部缓存项失效
+     */
+    void invalidateAll() {
+        synchronized (mTableVersions) {
+            mEpoch++;
+            mCache.evictAll();
+        }
+    }
+
+    /**
+     * SQLite的表名不区分大小写，统一转为小写
+     */
+    private static String normalize(String table) {
+        return table == null ? null : table.toLowerCase(Locale.US);
+    }
+
+    CacheStats stats() {
+        synchronized (mTableVersions) {
+            return new CacheStats(mHitCount, mMissCount, mCache.evictionCount(), mCache.size(), mCache.maxSize());
+        }
+    }
+
+    /**
+     * 估算查询结果占用的字节数
+     */
+    private static int sizeOf(Object value, int entitySize) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2 * ((String) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        if (value instanceof ContentValues) {
+            int size = 48;
+            for (Map.Entry<String, Object> e : ((ContentValues) value).valueSet()) {
+                size += 32 + sizeOf(e.getKey(), entitySize) + sizeOf(e.getValue(), entitySize);
+            }
+            return size;
+        }
+        if (value instanceof List) {
+            int size = 40;
+            for (Object o : (List<?>) value) {
+                size += 4 + sizeOf(o, entitySize);
+            }
+            return size;
+        }
+        return entitySize;
+    }
+}
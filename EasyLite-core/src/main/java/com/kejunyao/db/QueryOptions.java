@@ -0,0 +1,137 @@
+package com.kejunyao.db;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+/**
+ * 查询选项：排序、分页、去重、分组<br/>
+ * 选项直接下推到SQL语句中执行，使SQLite可以利用索引并提前结束查询。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class QueryOptions {
+
+    static final String PARAM_DISTINCT = "distinct";
+    static final String PARAM_GROUP_BY = "groupBy";
+    static final String PARAM_HAVING = "having";
+    static final String PARAM_LIMIT = "limit";
+
+    private boolean distinct;
+    private String orderBy;
+    private String groupBy;
+    private String having;
+    private int limit = -1;
+    private int offset;
+
+    public static QueryOptions create() {
+        return new QueryOptions();
+    }
+
+    public QueryOptions distinct() {
+        this.distinct = true;
+        return this;
+    }
+
+    /**
+     * 排序，如“_id DESC”
+     */
+    public QueryOptions orderBy(String orderBy) {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    public QueryOptions groupBy(String groupBy) {
+        this.groupBy = groupBy;
+        return this;
+    }
+
+    public QueryOptions having(String having) {
+        this.having = having;
+        return this;
+    }
+
+    /**
+     * 最多返回的记录数，须大于等于0
+     */
+    public QueryOptions limit(int limit) {
+        Assert.isTrue(limit >= 0, "limit must not be negative!");
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * 跳过的记录数，须大于等于0
+     */
+    public QueryOptions offset(int offset) {
+        Assert.isTrue(offset >= 0, "offset must not be negative!");
+        this.offset = offset;
+        return this;
+    }
+
+    public boolean isDistinct() {
+        return distinct;
+    }
+
+    public String orderBy() {
+        return orderBy;
+    }
+
+    public String groupBy() {
+        return groupBy;
+    }
+
+    public String having() {
+        return having;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * 生成SQLiteDatabase#query所需的limit参数（“offset, limit”格式）
+     * @return limit参数，不限制时返回null
+     */
+    String limitClause() {
+        if (offset > 0) {
+            return offset + ", " + (limit < 0 ? Long.MAX_VALUE : limit);
+        }
+        return limit < 0 ? null : String.valueOf(limit);
+    }
+
+    /**
+     * 将排序以外的选项以参数形式附加到ContentProvider的Uri上，排序通过sortOrder传递
+     */
+    Uri appendTo(Uri uri) {
+        Uri.Builder builder = uri.buildUpon();
+        if (distinct) {
+            builder.appendQueryParameter(PARAM_DISTINCT, "true");
+        }
+        if (!TextUtils.isEmpty(groupBy)) {
+            builder.appendQueryParameter(PARAM_GROUP_BY, groupBy);
+        }
+        if (!TextUtils.isEmpty(having)) {
+            builder.appendQueryParameter(PARAM_HAVING, having);
+        }
+        String limitClause = limitClause();
+        if (limitClause != null) {
+            builder.appendQueryParameter(PARAM_LIMIT, limitClause);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryOptions{distinct=" + distinct
+                + ", orderBy=" + orderBy
+                + ", groupBy=" + groupBy
+                + ", having=" + having
+                + ", limit=" + limitClause()
+                + "}";
+    }
+}
@@ -0,0 +1,329 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 执行计划分析（诊断模式，用于压测）<br/>
+ * 按采样率对{@link AbstractSQLiteDaoImpl}执行的查询计时，首次出现的SQL形态执行一次EXPLAIN QUERY PLAN，
+ * 标记全表扫描及临时B树排序，按SQL形态汇总耗时，并根据查询条件、排序给出建议创建的索引。<br/>
+ * 采样率及统计结果为进程内共享，统计按（数据库文件、SQL形态）区分，多个{@link DatabaseController}的同形态查询互不合并。
+ * 按条件查询、分页及按主键批量查询（queryByIds、hasMany的各分块）均会被采样；按单个主键查询使用预编译的语句，不采样。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class QueryPlanAnalyzer {
+
+    /**
+     * 最多统计的SQL形态数，超出后不再记录新的形态
+     */
+    private static final int MAX_SHAPES = 256;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern PREDICATE = Pattern.compile(
+            "([A-Za-z_][A-Za-z0-9_]*)\\s*(==|=|<=|>=|<|>|IS\\b|IN\\b|BETWEEN\\b)", Pattern.CASE_INSENSITIVE);
+
+    private static final char SEPARATOR = '\u0001';
+
+    private static final class Shape {
+        final String database;
+        final String dao;
+        final String table;
+        final String sql;
+        final String plan;
+        final boolean fullScan;
+        final boolean tempBTree;
+        final String suggestion;
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long rows;
+
+        Shape(String database, String dao, String table, String sql, String plan,
+              boolean fullScan, boolean tempBTree, String suggestion) {
+            this.database = database;
+            this.dao = dao;
+            this.table = table;
+            this.sql = sql;
+            this.plan = plan;
+            this.fullScan = fullScan;
+            this.tempBTree = tempBTree;
+            this.suggestion = suggestion;
+        }
+
+        synchronized void add(long nanos, int rowCount) {
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+            rows += rowCount;
+        }
+
+        synchronized QueryPlanStats snapshot() {
+            return new QueryPlanStats(database, dao, table, sql, plan, fullScan, tempBTree, count,
+                    totalNanos / 1000000, maxNanos / 1000000, rows, suggestion);
+        }
+    }
+
+    /**
+     * 采样率，0表示关闭
+     */
+    private static volatile int sSampleRate;
+    private static final AtomicLong sCounter = new AtomicLong();
+    /**
+     * 数据库文件 + SQL形态 -> 统计
+     */
+    private static final Map<String, Shape> sShapes = new LinkedHashMap<>();
+
+    private QueryPlanAnalyzer() {
+    }
+
+    /**
+     * @param sampleRate 每sampleRate次查询采样一次，0表示关闭
+     */
+    static void setSampleRate(int sampleRate) {
+        Assert.isTrue(sampleRate >= 0, "sampleRate must not be less than 0!");
+        sSampleRate = sampleRate;
+    }
+
+    static boolean isEnabled() {
+        return sSampleRate > 0;
+    }
+
+    static void reset() {
+        synchronized (sShapes) {
+            sShapes.clear();
+        }
+    }
+
+    /**
+     * 统计结果，有全表扫描或临时B树的形态在前，其余按累计耗时降序
+     */
+    static List<QueryPlanStats> report() {
+        List<Shape> shapes;
+        synchronized (sShapes) {
+            shapes = new ArrayList<>(sShapes.values());
+        }
+        List<QueryPlanStats> stats = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            stats.add(shape.snapshot());
+        }
+        Collections.sort(stats, new Comparator<QueryPlanStats>() {
+            @Override
+            public int compare(QueryPlanStats s1, QueryPlanStats s2) {
+                boolean flagged1 = s1.isFullScan() || s1.isTempBTree();
+                boolean flagged2 = s2.isFullScan() || s2.isTempBTree();
+                if (flagged1 != flagged2) {
+                    return flagged1 ? -1 : 1;
+                }
+                return s1.totalMillis() == s2.totalMillis() ? 0 : (s1.totalMillis() > s2.totalMillis() ? -1 : 1);
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * 执行查询，采样时读取全部结果计时并记录
+     */
+    static Cursor query(AbstractDefaultDao<?> dao, SQLiteDatabase db, boolean distinct, String table, String[] columns,
+                        String selection, String[] selectionArgs, String groupBy, String having,
+                        String orderBy, String limit) {
+        final int rate = sSampleRate;
+        if (rate <= 0 || sCounter.incrementAndGet() % rate != 0) {
+            return Cancellations.query(db, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+        }
+        final long start = System.nanoTime();
+        Cursor c = Cancellations.query(db, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+        // 查询在首次读取时才执行
+        final int rows = Utils.getCount(c);
+        final long nanos = System.nanoTime() - start;
+        try {
+            String sql = buildSql(distinct, table, columns, selection, groupBy, having, orderBy, limit);
+            String shapeSql = shapeOf(sql);
+            String key = db.getPath() + SEPARATOR + shapeSql;
+            Shape shape;
+            synchronized (sShapes) {
+                shape = sShapes.get(key);
+            }
+            if (shape == null) {
+                shape = explain(dao, db, table, shapeSql, sql, selection, selectionArgs, orderBy);
+                synchronized (sShapes) {
+                    Shape existing = sShapes.get(key);
+                    if (existing != null) {
+                        shape = existing;
+                    } else if (sShapes.size() < MAX_SHAPES) {
+                        sShapes.put(key, shape);
+                    } else {
+                        shape = null;
+                    }
+                }
+            }
+            if (shape != null) {
+                shape.add(nanos, rows);
+            }
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(null, "QueryPlanAnalyzer, analyze " + table + " failure", e);
+            }
+        }
+        return c;
+    }
+
+    private static String buildSql(boolean distinct, String table, String[] columns, String selection,
+                                   String groupBy, String having, String orderBy, String limit) {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        if (distinct) {
+            sb.append("DISTINCT ");
+        }
+        if (columns == null || columns.length == 0) {
+            sb.append('*');
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(columns[i]);
+            }
+        }
+        sb.append(" FROM ").append(table);
+        appendClause(sb, " WHERE ", selection);
+        appendClause(sb, " GROUP BY ", groupBy);
+        appendClause(sb, " HAVING ", having);
+        appendClause(sb, " ORDER BY ", orderBy);
+        appendClause(sb, " LIMIT ", limit);
+        return sb.toString();
+    }
+
+    private static void appendClause(StringBuilder sb, String name, String clause) {
+        if (clause != null && clause.length() > 0) {
+            sb.append(name).append(clause);
+        }
+    }
+
+    /**
+     * SQL形态：字面量替换为?，IN列表合并为IN (?)，空白合并
+     */
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?)");
+        return shape.replaceAll("\\s+", " ").trim();
+    }
+
+    private static Shape explain(AbstractDefaultDao<?> dao, SQLiteDatabase db, String table, String shapeSql, String sql,
+                                 String selection, String[] selectionArgs, String orderBy) {
+        StringBuilder plan = new StringBuilder();
+        boolean fullScan = false;
+        boolean tempBTree = false;
+        Cursor c = null;
+        try {
+            c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+            if (c != null) {
+                int index = c.getColumnIndex("detail");
+                if (index < 0) {
+                    index = c.getColumnCount() - 1;
+                }
+                while (c.moveToNext()) {
+                    String detail = c.getString(index);
+                    if (detail == null) {
+                        continue;
+                    }
+                    plan.append(detail).append('\n');
+                    String upper = detail.toUpperCase(Locale.US);
+                    if (upper.startsWith("SCAN ") && !upper.contains(" INDEX")
+                            && !upper.startsWith("SCAN SUBQUERY") && !upper.startsWith("SCAN CONSTANT")) {
+                        fullScan = true;
+                    }
+                    if (upper.contains("USE TEMP B-TREE")) {
+                        tempBTree = true;
+                    }
+                }
+            }
+        } finally {
+            Utils.closeSafely(c);
+        }
+        String suggestion = null;
+        if (fullScan || tempBTree) {
+            suggestion = suggest(dao, table, selection, tempBTree ? orderBy : null);
+        }
+        if (Utils.isDebug() && (fullScan || tempBTree)) {
+            Utils.log(null, "QueryPlanAnalyzer, ", dao.getClass().getName(), ": ", shapeSql,
+                    "\nplan: ", plan.toString(), "suggestion: ", suggestion);
+        }
+        return new Shape(db.getPath(), dao.getClass().getName(), table, shapeSql, plan.toString().trim(),
+                fullScan, tempBTree, suggestion);
+    }
+
+    /**
+     * 根据查询条件给出索引建议：等值条件列在前，其后为一个范围条件列；没有范围条件且需要排序时附加排序列
+     * @return 建索引语句，无法给出建议时返回null
+     */
+    static String suggest(AbstractDefaultDao<?> dao, String table, String selection, String orderBy) {
+        Set<String> known = new HashSet<>();
+        Column[] columns = dao.getColumns();
+        if (columns != null) {
+            for (Column column : columns) {
+                known.add(column.name().toLowerCase(Locale.US));
+            }
+        }
+        List<String> key = new ArrayList<>();
+        String range = null;
+        if (selection != null) {
+            Matcher m = PREDICATE.matcher(selection);
+            while (m.find()) {
+                String column = m.group(1).toLowerCase(Locale.US);
+                if (!known.contains(column) || key.contains(column)) {
+                    continue;
+                }
+                String op = m.group(2).toUpperCase(Locale.US);
+                if ("=".equals(op) || "==".equals(op) || "IS".equals(op) || "IN".equals(op)) {
+                    key.add(column);
+                } else if (range == null) {
+                    range = column;
+                }
+            }
+        }
+        if (range != null) {
+            key.remove(range);
+            key.add(range);
+        } else if (orderBy != null) {
+            List<String> order = new ArrayList<>();
+            for (String term : orderBy.split(",")) {
+                String t = term.trim();
+                int space = t.indexOf(' ');
+                String column = (space > 0 ? t.substring(0, space) : t).toLowerCase(Locale.US);
+                if (!known.contains(column)) {
+                    order = null;
+                    break;
+                }
+                if (!key.contains(column)) {
+                    order.add(space > 0 ? column + t.substring(space) : column);
+                }
+            }
+            if (order != null) {
+                key.addAll(order);
+            }
+        }
+        if (key.isEmpty()) {
+            return null;
+        }
+        return Index.on(key.toArray(new String[key.size()])).buildCreateIndexSql(table);
+    }
+}
@@ -0,0 +1,127 @@
+package com.kejunyao.db;
+
+/**
+ * 某一SQL形态（参数、字面量替换为?后的语句）的执行计划及采样统计，耗时单位为毫秒
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class QueryPlanStats {
+
+    private final String database;
+    private final String dao;
+    private final String table;
+    private final String sql;
+    private final String plan;
+    private final boolean fullScan;
+    private final boolean tempBTree;
+    private final long sampleCount;
+    private final long totalMillis;
+    private final long maxMillis;
+    private final long totalRows;
+    private final String suggestion;
+
+    QueryPlanStats(String database, String dao, String table, String sql, String plan, boolean fullScan, boolean tempBTree,
+                   long sampleCount, long totalMillis, long maxMillis, long totalRows, String suggestion) {
+        this.database = database;
+        this.dao = dao;
+        this.table = table;
+        this.sql = sql;
+        this.plan = plan;
+        this.fullScan = fullScan;
+        this.tempBTree = tempBTree;
+        this.sampleCount = sampleCount;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.totalRows = totalRows;
+        this.suggestion = suggestion;
+    }
+
+    /**
+     * 执行该语句的数据库文件路径
+     */
+    public String database() {
+        return database;
+    }
+
+    /**
+     * 执行该语句的Dao类名
+     */
+    public String dao() {
+        return dao;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    /**
+     * SQL形态
+     */
+    public String sql() {
+        return sql;
+    }
+
+    /**
+     * EXPLAIN QUERY PLAN的输出，每行一步
+     */
+    public String plan() {
+        return plan;
+    }
+
+    /**
+     * 是否全表扫描（SCAN TABLE且未使用索引）
+     */
+    public boolean isFullScan() {
+        return fullScan;
+    }
+
+    /**
+     * 是否使用临时B树排序、分组或去重（USE TEMP B-TREE）
+     */
+    public boolean isTempBTree() {
+        return tempBTree;
+    }
+
+    /**
+     * 采样次数
+     */
+    public long sampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * 采样的累计耗时（含读取结果）
+     */
+    public long totalMillis() {
+        return totalMillis;
+    }
+
+    public long maxMillis() {
+        return maxMillis;
+    }
+
+    public long averageMillis() {
+        return sampleCount == 0 ? 0 : totalMillis / sampleCount;
+    }
+
+    /**
+     * 采样的累计返回行数
+     */
+    public long totalRows() {
+        return totalRows;
+    }
+
+    /**
+     * 建议创建的索引语句，可在Dao的{@link AbstractDefaultDao#getIndexes()}中声明；无建议时为null
+     */
+    public String suggestion() {
+        return suggestion;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueryPlanStats[%s, database=%s, sql=%s, fullScan=%b, tempBTree=%b, samples=%d, total=%dms, max=%dms, rows=%d, suggestion=%s]",
+                dao, database, sql, fullScan, tempBTree, sampleCount, totalMillis, maxMillis, totalRows, suggestion);
+    }
+}
@@ -0,0 +1,150 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteProgram;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * {@link SQLiteProgram}参数绑定工具类<br/>
+ * 按值的运行时类型及{@link Column}声明类型选择bindLong、bindDouble、bindBlob、bindNull或bindString，
+ * 避免数值被转为字符串后再由SQLite转换，同时保留整型亲和性便于索引查找。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class SQLiteBinder {
+
+    private static final int AFFINITY_TEXT = 0;
+    private static final int AFFINITY_NUMERIC = 1;
+    private static final int AFFINITY_INTEGER = 2;
+    private static final int AFFINITY_REAL = 3;
+    private static final int AFFINITY_BLOB = 4;
+
+    /**
+     * SQLite认可的数值文本：可选符号、数字（可带小数）、可选指数；不含NaN、Infinity、十六进制及“f”“d”后缀
+     */
+    private static final Pattern NUMERIC_TEXT = Pattern.compile("[+-]?(\\d+(\\.\\d*)?|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private SQLiteBinder() {
+    }
+
+    /**
+     * 绑定values中column对应的值
+     * @param program {@link SQLiteProgram}
+     * @param index 参数位置（从1开始）
+     * @param values 值
+     * @param column 列定义，不能为null
+     */
+    public static void bind(SQLiteProgram program, int index, ContentValues values, Column column) {
+        bind(program, index, values.get(column.name()), column);
+    }
+
+    /**
+     * 按值的运行时类型及列声明类型绑定参数
+     * @param program {@link SQLiteProgram}
+     * @param index 参数位置（从1开始）
+     * @param value 值
+     * @param column 列定义，为null时按值的运行时类型绑定
+     */
+    public static void bind(SQLiteProgram program, int index, Object value, Column column) {
+        if (value == null) {
+            program.bindNull(index);
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            program.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            program.bindLong(index, ((Boolean) value) ? 1L : 0L);
+        } else if (value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+        } else {
+            bindText(program, index, value.toString(), column);
+        }
+    }
+
+    private static void bindText(SQLiteProgram program, int index, String value, Column column) {
+        final int affinity = column == null ? AFFINITY_TEXT : affinity(column.type());
+        if (affinity == AFFINITY_INTEGER || affinity == AFFINITY_NUMERIC) {
+            try {
+                program.bindLong(index, Long.parseLong(value.trim()));
+                return;
+            } catch (NumberFormatException e) {
+                // ignore
+            }
+        }
+        if (affinity == AFFINITY_REAL || affinity == AFFINITY_NUMERIC) {
+            final String trimmed = value.trim();
+            if (NUMERIC_TEXT.matcher(trimmed).matches()) {
+                final double d = Double.parseDouble(trimmed);
+                // 超出double范围时保留原文本
+                if (!Double.isInfinite(d)) {
+                    program.bindDouble(index, d);
+                    return;
+                }
+            }
+        }
+        program.bindString(index, value);
+    }
+
+    /**
+     * 按列亲和性将文本值转换为SQLite比较时使用的规范形式，
+     * 如整型列的“007”“+7”“7.0”均为“7”，用于以参数匹配查询结果
+     * @param value 文本值
+     * @param column 列定义，为null时原样返回
+     */
+    static String normalize(String value, Column column) {
+        if (value == null || column == null) {
+            return value;
+        }
+        final int affinity = affinity(column.type());
+        if (affinity == AFFINITY_TEXT || affinity == AFFINITY_BLOB) {
+            return value;
+        }
+        final String trimmed = value.trim();
+        if (!NUMERIC_TEXT.matcher(trimmed).matches()) {
+            return value;
+        }
+        if (affinity != AFFINITY_REAL) {
+            try {
+                return String.valueOf(Long.parseLong(trimmed));
+            } catch (NumberFormatException e) {
+                // ignore
+            }
+        }
+        final double d = Double.parseDouble(trimmed);
+        if (Double.isInfinite(d)) {
+            return value;
+        }
+        // 整型、数值亲和性的列将可无损转换的实数存为整数
+        if (affinity != AFFINITY_REAL && d == Math.rint(d) && Math.abs(d) < 9.2e18) {
+            return String.valueOf((long) d);
+        }
+        return String.valueOf(d);
+    }
+
+    /**
+     * 按SQLite规则由声明类型推导列亲和性
+     */
+    private static int affinity(String type) {
+        if (type == null || type.length() == 0) {
+            return AFFINITY_BLOB;
+        }
+        String uc = type.toUpperCase(Locale.US);
+        if (uc.contains("INT")) {
+            return AFFINITY_INTEGER;
+        }
+        if (uc.contains("CHAR") || uc.contains("CLOB") || uc.contains("TEXT")) {
+            return AFFINITY_TEXT;
+        }
+        if (uc.contains("BLOB")) {
+            return AFFINITY_BLOB;
+        }
+        if (uc.contains("REAL") || uc.contains("FLOA") || uc.contains("DOUB")) {
+            return AFFINITY_REAL;
+        }
+        return AFFINITY_NUMERIC;
+    }
+}
@@ -0,0 +1,153 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 表结构指纹，保存在数据库元数据表中，用于跳过表结构未变化的表的完整性检查<br/>
+ * 指纹由{@link AbstractDefaultDao#getColumns()}及{@link AbstractDefaultDao#getIndexes()}计算，同时记录检查时数据库的schema_version（任何建表、改表操作都会使其递增）；
+ * 两者均未变化时，表结构必然与上次检查后一致。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class SchemaFingerprints {
+
+    static final String TABLE = "easylite_schema";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final class Entry {
+        final String fingerprint;
+        final long schemaVersion;
+
+        Entry(String fingerprint, long schemaVersion) {
+            this.fingerprint = fingerprint;
+            this.schemaVersion = schemaVersion;
+        }
+    }
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private final long mSchemaVersion;
+    /**
+     * 本次检查通过（含跳过）的表及其指纹
+     */
+    private final Map<String, String> mChecked = new LinkedHashMap<>();
+    /**
+     * 本次是否有表实际进行了检查，全部跳过时无需保存
+     */
+    private boolean mDirty;
+
+    /**
+     * 读取全部表的指纹，元数据表不存在时创建
+     */
+    SchemaFingerprints(SQLiteDatabase db) {
+        db.execSQL(Utils.concat("CREATE TABLE IF NOT EXISTS ", TABLE,
+                " (table_name TEXT PRIMARY KEY, fingerprint TEXT NOT NULL, schema_version INTEGER NOT NULL)"));
+        Cursor c = null;
+        try {
+            c = db.rawQuery(Utils.concat("SELECT table_name, fingerprint, schema_version FROM ", TABLE), null);
+            while (c != null && c.moveToNext()) {
+                mEntries.put(c.getString(0), new Entry(c.getString(1), c.getLong(2)));
+            }
+        } finally {
+            Utils.closeSafely(c);
+        }
+        mSchemaVersion = schemaVersion(db);
+    }
+
+    /**
+     * 计算表结构指纹（SHA-1），包含字段与索引定义
+     */
+    static String fingerprint(String table, Column[] columns, Index[] indexes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder builder = new StringBuilder(table);
+            if (columns != null) {
+                for (Column column : columns) {
+                    builder.append('\n').append(column.buildCreateTableNeedSql().trim());
+                }
+            }
+            if (indexes != null) {
+                for (Index index : indexes) {
+                    builder.append('\n').append(index.buildSql(table, false));
+                }
+            }
+            byte[] bytes = digest.digest(builder.toString().getBytes("UTF-8"));
+            char[] chars = new char[bytes.length * 2];
+            for (int i = 0; i < bytes.length; i++) {
+                chars[2 * i] = HEX[(bytes[i] >> 4) & 0x0f];
+                chars[2 * i + 1] = HEX[bytes[i] & 0x0f];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 表结构是否与上次检查通过时一致
+     */
+    boolean isUnchanged(String table, String fingerprint) {
+        Entry entry = mEntries.get(table);
+        return entry != null && entry.schemaVersion == mSchemaVersion && entry.fingerprint.equals(fingerprint);
+    }
+
+    /**
+     * 记录检查通过的表
+     */
+    void onChecked(String table, String fingerprint) {
+        mChecked.put(table, fingerprint);
+        mDirty = true;
+    }
+
+    /**
+     * 记录跳过检查的表，其他表检查时改变了schema_version时一并更新
+     */
+    void onSkipped(String table, String fingerprint) {
+        mChecked.put(table, fingerprint);
+    }
+
+    /**
+     * 保存本次检查通过的表的指纹，须在全部表检查完成之后、同一事务中调用
+     */
+    void save(SQLiteDatabase db) {
+        if (!mDirty) {
+            return;
+        }
+        // 检查过程中新增字段、建表会使schema_version递增，须重新读取
+        final long schemaVersion = schemaVersion(db);
+        SQLiteStatement statement = null;
+        try {
+            statement = db.compileStatement(Utils.concat("INSERT OR REPLACE INTO ", TABLE,
+                    " (table_name, fingerprint, schema_version) VALUES (?, ?, ?)"));
+            for (Map.Entry<String, String> e : mChecked.entrySet()) {
+                statement.bindString(1, e.getKey());
+                statement.bindString(2, e.getValue());
+                statement.bindLong(3, schemaVersion);
+                statement.executeInsert();
+            }
+        } finally {
+            Utils.closeSafely(statement);
+        }
+        mChecked.clear();
+        mDirty = false;
+    }
+
+    private static long schemaVersion(SQLiteDatabase db) {
+        SQLiteStatement statement = db.compileStatement("PRAGMA schema_version");
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            Utils.closeSafely(statement);
+        }
+    }
+}
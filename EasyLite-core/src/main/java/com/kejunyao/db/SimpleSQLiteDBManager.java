@@ -12,15 +12,32 @@ public class SimpleSQLiteDBManager extends DatabaseController {
 
     private static volatile SimpleSQLiteDBManager sInstance;
 
-    private SimpleSQLiteDBManager(Context context, String name, int version) {
-        super(Utils.newSingleFixedThreadPool(), new SimpleSQLiteOpenHelper(context, name, version));
+    private SimpleSQLiteDBManager(Context context, String name, int version, TuningProfile profile) {
+        super(Utils.newSingleFixedThreadPool(), new SimpleSQLiteOpenHelper(context, name, version, profile));
+        if (profile != null && profile.readers() > 0) {
+            // WAL由调优配置在打开数据库时开启
+            startReaders(profile.readers());
+        }
     }
 
     public static SimpleSQLiteDBManager init(Context context, String name, int version) {
+        return init(context, name, version, null);
+    }
+
+    /**
+     * @param profile 连接及PRAGMA调优配置，为null时使用SQLite默认值；
+     *                读线程数大于0时开启并发读，可按构建渠道选择，如{@code TuningProfile.forName(BuildConfig.FLAVOR)}；
+     *                设置无法同时使用时抛出{@link IllegalArgumentException}
+     */
+    public static SimpleSQLiteDBManager init(Context context, String name, int version, TuningProfile profile) {
+        if (profile != null) {
+            // 在打开数据库之前检查，避免在onConfigure中才失败
+            profile.validate();
+        }
         if (sInstance == null) {
             synchronized (SimpleSQLiteDBManager.class) {
                 if (sInstance == null) {
-                    sInstance = new SimpleSQLiteDBManager(context, name, version);
+                    sInstance = new SimpleSQLiteDBManager(context, name, version, profile);
                 }
             }
         }
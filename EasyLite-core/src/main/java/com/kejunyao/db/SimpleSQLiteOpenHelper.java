@@ -3,6 +3,10 @@ package com.kejunyao.db;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * 简单实现的{@link SQLiteOpenHelper}
@@ -12,8 +16,29 @@ import android.database.sqlite.SQLiteOpenHelper;
  */
 public class SimpleSQLiteOpenHelper extends SQLiteOpenHelper {
 
+    private final TuningProfile mProfile;
+    /**
+     * 打开数据库时读取的生效设置
+     */
+    private volatile Map<String, String> mEffectiveSettings = Collections.emptyMap();
+
     public SimpleSQLiteOpenHelper(Context context, String name, int version) {
+        this(context, name, version, null);
+    }
+
+    /**
+     * @param profile 调优配置，为null时使用SQLite默认值
+     */
+    public SimpleSQLiteOpenHelper(Context context, String name, int version, TuningProfile profile) {
         super(context, name, null, version);
+        mProfile = profile;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        if (mProfile != null) {
+            mProfile.applyTo(db);
+        }
     }
 
     @Override
@@ -25,4 +50,31 @@ public class SimpleSQLiteOpenHelper extends SQLiteOpenHelper {
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         SimpleSQLiteDBManager.getInstance().onUpgrade(db, oldVersion, newVersion);
     }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        SimpleSQLiteDBManager.getInstance().onDowngrade(db, oldVersion, newVersion);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        if (mProfile != null) {
+            // API 16以下不会回调onConfigure
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+                mProfile.applyTo(db);
+            }
+            mEffectiveSettings = Collections.unmodifiableMap(TuningProfile.readEffective(db));
+            if (Utils.isDebug()) {
+                Utils.log(this, "onOpen, ", mProfile, ", effective: ", mEffectiveSettings);
+            }
+        }
+        SimpleSQLiteDBManager.getInstance().onOpen(db);
+    }
+
+    /**
+     * 获取打开数据库时生效的PRAGMA设置（未设置调优配置时为空）
+     */
+    public Map<String, String> getEffectiveSettings() {
+        return mEffectiveSettings;
+    }
 }
@@ -0,0 +1,122 @@
+package com.kejunyao.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已编译{@link SQLiteStatement}的LRU缓存，以SQL语句为key<br/>
+ * 语句通过{@link #acquire(SQLiteDatabase, String)}取出后由当前线程独占，
+ * 使用完毕须调用{@link #release(Entry)}归还；同一语句被并发使用时，另行编译新的语句。
+ * 数据库实例变化或表结构变化（{@link #invalidate()}）时，已缓存的语句全部关闭。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class StatementCache {
+
+    private final int mMaxSize;
+    private final LinkedHashMap<String, Entry> mEntries;
+    private SQLiteDatabase mDatabase;
+    private int mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    StatementCache(int maxSize) {
+        Assert.isTrue(maxSize > 0, "maxSize must be greater than 0!");
+        this.mMaxSize = maxSize;
+        this.mEntries = new LinkedHashMap<>(maxSize, 0.75f, true);
+    }
+
+    /**
+     * 取出sql对应的已编译语句，缓存中不存在时编译新的语句
+     */
+    Entry acquire(SQLiteDatabase db, String sql) {
+        final int generation;
+        synchronized (this) {
+            if (mDatabase != db) {
+                closeAllLocked();
+                mDatabase = db;
+            }
+            Entry entry = mEntries.remove(sql);
+            if (entry != null) {
+                mHitCount++;
+                return entry;
+            }
+            mMissCount++;
+            generation = mGeneration;
+        }
+        return new Entry(db, sql, db.compileStatement(sql), generation);
+    }
+
+    /**
+     * 归还语句，语句已失效或缓存中已存在相同语句时直接关闭
+     */
+    void release(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        try {
+            entry.statement.clearBindings();
+        } catch (Exception e) {
+            Utils.closeSafely(entry.statement);
+            return;
+        }
+        synchronized (this) {
+            if (entry.db == mDatabase && entry.generation == mGeneration
+                    && !mEntries.containsKey(entry.sql)) {
+                mEntries.put(entry.sql, entry);
+                trimToSizeLocked();
+                return;
+            }
+        }
+        Utils.closeSafely(entry.statement);
+    }
+
+    /**
+     * 使全部缓存语句失效（如表结构变化时）
+     */
+    synchronized void invalidate() {
+        closeAllLocked();
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(mHitCount, mMissCount, mEvictionCount, mEntries.size(), mMaxSize);
+    }
+
+    private void trimToSizeLocked() {
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mEntries.size() > mMaxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            mEvictionCount++;
+            Utils.closeSafely(eldest.statement);
+        }
+    }
+
+    private void closeAllLocked() {
+        for (Entry entry : mEntries.values()) {
+            Utils.closeSafely(entry.statement);
+        }
+        mEntries.clear();
+        mGeneration++;
+    }
+
+    static final class Entry {
+        final SQLiteDatabase db;
+        final String sql;
+        final SQLiteStatement statement;
+        final int generation;
+
+        Entry(SQLiteDatabase db, String sql, SQLiteStatement statement, int generation) {
+            this.db = db;
+            this.sql = sql;
+            this.statement = statement;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.kejunyao.db;
+
+/**
+ * 声明所修改表的{@link Action}<br/>
+ * 事务执行后仅使所声明表的缓存失效，其他表的缓存不受影响。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public interface TableAction extends Action {
+
+    /**
+     * @return 事务中会修改的表名
+     */
+    String[] getTables();
+
+}
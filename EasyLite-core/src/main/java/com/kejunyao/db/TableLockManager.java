@@ -0,0 +1,411 @@
+package com.kejunyao.db;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按表加锁的读写锁管理器<br/>
+ * 每张表一把读写锁，另有一把全部表的读写锁：按表加锁时先持有全部表的共享锁，再按表名顺序逐一加锁，
+ * 加锁顺序固定，不会死锁；无法确定表时对全部表加排它锁。<br/>
+ * 锁按线程记录，可重入：已持有的锁能覆盖的请求（排它锁覆盖共享锁，全部表的排它锁覆盖所有请求）直接返回；
+ * 需要新锁时，按顺序排在已持有的锁之后的直接等待，否则（如共享锁升级为排它锁、持有表锁时对全部表加锁、
+ * 逆序加锁）先尝试立即获取，无法立即获取时释放当前线程持有的全部锁，再连同新锁按顺序重新获取（持有次数不变），
+ * 不会死锁，也不会因其他线程是否持有该锁而失败。重新获取期间其他线程可以修改已释放的表，
+ * 处于数据库事务中的写操作仍由SQLite保证原子性。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class TableLockManager {
+
+    static final String ALL_TABLES = "*";
+
+    private final TableLock mGlobal = new TableLock(ALL_TABLES);
+    private final ConcurrentHashMap<String, TableLock> mTables = new ConcurrentHashMap<>();
+    /**
+     * 当前线程持有的锁
+     */
+    private final ThreadLocal<Held> mHeld = new ThreadLocal<Held>() {
+        @Override
+        protected Held initialValue() {
+            return new Held();
+        }
+    };
+
+    /**
+     * 对指定的表加锁
+     * @param tables 表名，null表示全部表（此时总是排它锁）
+     * @param exclusive true，排它锁；false，共享锁
+     * @return {@link Lease}，用完后须在同一线程的finally中调用{@link Lease#release()}
+     */
+    Lease acquire(String[] tables, boolean exclusive) {
+        final Held held = mHeld.get();
+        Lease lease = new Lease(held);
+        if (mGlobal.isHeldByCurrentThread(true)) {
+            // 已持有全部表的排它锁
+            return lease;
+        }
+        if (lockInOrder(lease, held, tables, exclusive)) {
+            return lease;
+        }
+        lease.release();
+        return reacquire(held, tables, exclusive);
+    }
+
+    /**
+     * 按顺序加锁，排在已持有的锁之前的只尝试立即获取
+     * @return false，需要逆序加锁且无法立即获取
+     */
+    private boolean lockInOrder(Lease lease, Held held, String[] tables, boolean exclusive) {
+        if (tables == null) {
+            return lease.lock(mGlobal, true, held.global == 0);
+        }
+        if (!lease.lock(mGlobal, false, held.global == 0)) {
+            return false;
+        }
+        for (String table : sorted(tables)) {
+            if (!lease.lock(tableLock(table), exclusive,
+                    held.tables.isEmpty() || held.tables.lastKey().compareTo(table) < 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 释放当前线程持有的全部锁，再按全部表、表名的顺序连同请求的锁重新获取，原有的持有次数不变
+     */
+    private Lease reacquire(Held held, String[] tables, boolean exclusive) {
+        TreeMap<String, int[]> holds = new TreeMap<>();
+        for (String table : held.tables.keySet()) {
+            holds.put(table, tableLock(table).releaseAll());
+        }
+        int[] globalHolds = mGlobal.releaseAll();
+        if (Utils.isDebug()) {
+            Utils.log(this, "lock out of order, release and reacquire in order: ", holds.keySet(),
+                    " + ", tables == null ? ALL_TABLES : Arrays.toString(tables));
+        }
+        Lease lease = new Lease(held);
+        lease.restore(mGlobal, globalHolds, true, tables == null);
+        TreeSet<String> requested = tables == null ? new TreeSet<String>() : sorted(tables);
+        TreeSet<String> names = new TreeSet<>(requested);
+        names.addAll(holds.keySet());
+        for (String table : names) {
+            int[] h = holds.get(table);
+            lease.restore(tableLock(table), h == null ? new int[2] : h, requested.contains(table), exclusive);
+        }
+        return lease;
+    }
+
+    /**
+     * 对全部表加排它锁
+     */
+    Lease acquireAll() {
+        return acquire(null, true);
+    }
+
+    /**
+     * 当前线程是否持有锁
+     */
+    boolean isHeldByCurrentThread() {
+        return mHeld.get().global > 0;
+    }
+
+    private TableLock tableLock(String table) {
+        TableLock t = mTables.get(table);
+        if (t == null) {
+            TableLock created = new TableLock(table);
+            t = mTables.putIfAbsent(table, created);
+            if (t == null) {
+                t = created;
+            }
+        }
+        return t;
+    }
+
+    /**
+     * 表名不区分大小写，去重后按字典序排列
+     */
+    private static TreeSet<String> sorted(String[] tables) {
+        TreeSet<String> set = new TreeSet<>();
+        for (String table : tables) {
+            if (table != null) {
+                set.add(table.toLowerCase(Locale.US));
+            }
+        }
+        return set;
+    }
+
+    /**
+     * 各表锁的统计信息，Key为表名，全部表的锁为{@link #ALL_TABLES}
+     */
+    Map<String, LockStats> stats() {
+        Map<String, LockStats> stats = new HashMap<>();
+        stats.put(ALL_TABLES, mGlobal.stats());
+        for (TableLock t : mTables.values()) {
+            stats.put(t.name, t.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * 线程持有的锁：全部表的锁的持有次数，表名 -> 表锁的持有次数
+     */
+    private static final class Held {
+        int global;
+        final TreeMap<String, Integer> tables = new TreeMap<>();
+    }
+
+    /**
+     * 可重入、支持无竞争时由共享锁升级为排它锁的读写锁，有等待的排它锁时新的共享锁让行
+     */
+    private static final class TableLock {
+        final String name;
+        private Thread mWriter;
+        private int mWriteHolds;
+        private final HashMap<Thread, Integer> mReaders = new HashMap<>();
+        private int mWaitingWriters;
+        private long mAcquisitions;
+        private long mContentions;
+        private long mTotalWaitMillis;
+        private long mMaxWaitMillis;
+        private long mTotalHoldMillis;
+        private long mMaxHoldMillis;
+
+        TableLock(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 当前线程持有的锁是否能覆盖请求
+         */
+        synchronized boolean isHeldByCurrentThread(boolean exclusive) {
+            final Thread current = Thread.currentThread();
+            return mWriter == current || (!exclusive && mReaders.containsKey(current));
+        }
+
+        private boolean canLock(Thread current, boolean exclusive) {
+            if (mWriter == current) {
+                return true;
+            }
+            if (mWriter != null) {
+                return false;
+            }
+            if (exclusive) {
+                return mReaders.isEmpty() || (mReaders.size() == 1 && mReaders.containsKey(current));
+            }
+            return mWaitingWriters == 0 || mReaders.containsKey(current);
+        }
+
+        /**
+         * 加锁
+         * @param blocking false时无法立即获取直接返回
+         * @return 是否已加锁
+         */
+        synchronized boolean lock(boolean exclusive, boolean blocking) {
+            final Thread current = Thread.currentThread();
+            if (!await(current, exclusive, blocking)) {
+                return false;
+            }
+            if (exclusive) {
+                mWriter = current;
+                mWriteHolds++;
+            } else {
+                Integer holds = mReaders.get(current);
+                mReaders.put(current, holds == null ? 1 : holds + 1);
+            }
+            return true;
+        }
+
+        /**
+         * 当前线程未持有该锁时加锁并设置持有次数，writeHolds大于0时为排它锁
+         */
+        synchronized void lockHolds(int writeHolds, int readHolds) {
+            final Thread current = Thread.currentThread();
+            await(current, writeHolds > 0, true);
+            if (writeHolds > 0) {
+                mWriter = current;
+                mWriteHolds = writeHolds;
+            }
+            if (readHolds > 0) {
+                mReaders.put(current, readHolds);
+            }
+        }
+
+        /**
+         * 释放当前线程持有的全部次数
+         * @return 释放前的持有次数：排它锁，共享锁
+         */
+        synchronized int[] releaseAll() {
+            final Thread current = Thread.currentThread();
+            final Integer readHolds = mReaders.remove(current);
+            final int[] holds = {mWriter == current ? mWriteHolds : 0, readHolds == null ? 0 : readHolds};
+            if (mWriter == current) {
+                mWriter = null;
+                mWriteHolds = 0;
+            }
+            notifyAll();
+            return holds;
+        }
+
+        /**
+         * 等待可以加锁，调用方须持有本对象的锁
+         * @param blocking false时无法立即获取直接返回
+         */
+        private boolean await(Thread current, boolean exclusive, boolean blocking) {
+            final long start = SystemClock.uptimeMillis();
+            boolean contended = false;
+            boolean interrupted = false;
+            while (!canLock(current, exclusive)) {
+                if (!blocking) {
+                    return false;
+                }
+                contended = true;
+                if (exclusive) {
+                    mWaitingWriters++;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } finally {
+                    if (exclusive) {
+                        mWaitingWriters--;
+                    }
+                }
+            }
+            if (interrupted) {
+                current.interrupt();
+            }
+            mAcquisitions++;
+            if (contended) {
+                final long waitMillis = SystemClock.uptimeMillis() - start;
+                mContentions++;
+                mTotalWaitMillis += waitMillis;
+                if (waitMillis > mMaxWaitMillis) {
+                    mMaxWaitMillis = waitMillis;
+                }
+            }
+            return true;
+        }
+
+        synchronized void unlock(boolean exclusive, long holdMillis) {
+            if (exclusive) {
+                if (--mWriteHolds == 0) {
+                    mWriter = null;
+                }
+            } else {
+                final Thread current = Thread.currentThread();
+                int holds = mReaders.get(current);
+                if (holds == 1) {
+                    mReaders.remove(current);
+                } else {
+                    mReaders.put(current, holds - 1);
+                }
+            }
+            mTotalHoldMillis += holdMillis;
+            if (holdMillis > mMaxHoldMillis) {
+                mMaxHoldMillis = holdMillis;
+            }
+            notifyAll();
+        }
+
+        synchronized LockStats stats() {
+            return new LockStats(name, mAcquisitions, mContentions,
+                    mContentions == 0 ? 0 : mTotalWaitMillis / mContentions, mMaxWaitMillis,
+                    mAcquisitions == 0 ? 0 : mTotalHoldMillis / mAcquisitions, mMaxHoldMillis);
+        }
+    }
+
+    /**
+     * 一次加锁新持有的锁，已持有的锁能覆盖的部分不重复加锁
+     */
+    static final class Lease {
+        private final Held mHeld;
+        private final List<TableLock> mTableLocks = new ArrayList<>(2);
+        private final List<Boolean> mExclusives = new ArrayList<>(2);
+        private final List<Long> mAcquiredTimes = new ArrayList<>(2);
+
+        private Lease(Held held) {
+            mHeld = held;
+        }
+
+        /**
+         * @param blocking 是否可以等待，加锁顺序排在已持有的锁之前时不能等待
+         * @return false，不能等待且无法立即获取
+         */
+        private boolean lock(TableLock t, boolean exclusive, boolean blocking) {
+            if (t.isHeldByCurrentThread(exclusive)) {
+                return true;
+            }
+            if (!t.lock(exclusive, blocking)) {
+                return false;
+            }
+            add(t, exclusive);
+            return true;
+        }
+
+        /**
+         * 重新获取释放前的持有次数，需要时一并加上本次请求的锁
+         * @param holds 释放前的持有次数：排它锁，共享锁
+         * @param requested 是否为本次请求的锁
+         */
+        private void restore(TableLock t, int[] holds, boolean requested, boolean exclusive) {
+            final boolean add = requested && holds[0] == 0 && (exclusive || holds[1] == 0);
+            final int writeHolds = holds[0] + (add && exclusive ? 1 : 0);
+            final int readHolds = holds[1] + (add && !exclusive ? 1 : 0);
+            if (writeHolds == 0 && readHolds == 0) {
+                return;
+            }
+            t.lockHolds(writeHolds, readHolds);
+            if (add) {
+                add(t, exclusive);
+            }
+        }
+
+        private void add(TableLock t, boolean exclusive) {
+            if (t.name.equals(ALL_TABLES)) {
+                mHeld.global++;
+            } else {
+                Integer holds = mHeld.tables.get(t.name);
+                mHeld.tables.put(t.name, holds == null ? 1 : holds + 1);
+            }
+            mTableLocks.add(t);
+            mExclusives.add(exclusive);
+            mAcquiredTimes.add(SystemClock.uptimeMillis());
+        }
+
+        /**
+         * 按加锁的相反顺序释放
+         */
+        void release() {
+            final long now = SystemClock.uptimeMillis();
+            for (int i = mTableLocks.size() - 1; i >= 0; i--) {
+                TableLock t = mTableLocks.get(i);
+                t.unlock(mExclusives.get(i), now - mAcquiredTimes.get(i));
+                if (t.name.equals(ALL_TABLES)) {
+                    mHeld.global--;
+                } else {
+                    int holds = mHeld.tables.get(t.name);
+                    if (holds == 1) {
+                        mHeld.tables.remove(t.name);
+                    } else {
+                        mHeld.tables.put(t.name, holds - 1);
+                    }
+                }
+            }
+            mTableLocks.clear();
+            mExclusives.clear();
+            mAcquiredTimes.clear();
+        }
+    }
+}
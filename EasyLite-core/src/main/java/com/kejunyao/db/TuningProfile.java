@@ -0,0 +1,256 @@
+package com.kejunyao.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 数据库连接及PRAGMA调优配置，在{@link android.database.sqlite.SQLiteOpenHelper#onConfigure}中应用
+ * （API 16以下没有onConfigure，在onOpen中应用，此时page_size对新建的数据库不再生效）<br/>
+ * 未设置的项保持SQLite默认值；cache_size、mmap_size、temp_store、locking_mode是连接级别的设置，只作用于主连接，
+ * 并发读使用的读连接由系统连接池创建，不会应用这些设置。
+ * 可按构建渠道选择预设：{@code TuningProfile.forName(BuildConfig.FLAVOR)}。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class TuningProfile {
+
+    private static final String[] JOURNAL_MODES = {"DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF"};
+    private static final String[] SYNCHRONOUS = {"OFF", "NORMAL", "FULL", "EXTRA"};
+    private static final String[] TEMP_STORES = {"DEFAULT", "FILE", "MEMORY"};
+    private static final String[] LOCKING_MODES = {"NORMAL", "EXCLUSIVE"};
+
+    /**
+     * 报告中读取的PRAGMA
+     */
+    private static final String[] PRAGMAS = {
+            "journal_mode", "synchronous", "page_size", "cache_size", "mmap_size", "temp_store", "locking_mode"
+    };
+
+    private String journalMode;
+    private String synchronous;
+    private int pageSize;
+    private Integer cacheSize;
+    private long mmapSize = -1;
+    private String tempStore;
+    private String lockingMode;
+    private int readers;
+
+    public static TuningProfile create() {
+        return new TuningProfile();
+    }
+
+    /**
+     * 持久性优先：WAL，synchronous=FULL，每次提交都同步到磁盘
+     */
+    public static TuningProfile durable() {
+        return create().journalMode("WAL").synchronous("FULL");
+    }
+
+    /**
+     * 均衡：WAL，synchronous=NORMAL（断电可能丢失最近提交的事务，但不会损坏数据库），主连接8MB页缓存，临时表在内存中，2个读线程
+     */
+    public static TuningProfile balanced() {
+        return create().journalMode("WAL").synchronous("NORMAL")
+                .cacheSize(-8192).tempStore("MEMORY").readers(2);
+    }
+
+    /**
+     * 吞吐优先：WAL，synchronous=NORMAL，4KB页，临时表在内存中，4个读线程<br/>
+     * 读主要由读连接承担，页缓存、内存映射只作用于主连接，因此不做调整
+     */
+    public static TuningProfile throughput() {
+        return create().journalMode("WAL").synchronous("NORMAL").pageSize(4096)
+                .tempStore("MEMORY").readers(4);
+    }
+
+    /**
+     * 按名称获取预设，用于按构建渠道切换
+     * @param name durable、balanced、throughput（不区分大小写），为null、default或其他名称时返回不做任何调整的配置
+     */
+    public static TuningProfile forName(String name) {
+        if (name == null || "default".equalsIgnoreCase(name)) {
+            return create();
+        }
+        String n = name.toLowerCase(Locale.US);
+        if ("durable".equals(n)) {
+            return durable();
+        }
+        if ("balanced".equals(n)) {
+            return balanced();
+        }
+        if ("throughput".equals(n)) {
+            return throughput();
+        }
+        if (Utils.isDebug()) {
+            Utils.log(null, "unknown tuning profile: ", name, ", use default");
+        }
+        return create();
+    }
+
+    private static String checkValue(String value, String[] allowed, String name) {
+        String v = value.toUpperCase(Locale.US);
+        Assert.isTrue(Arrays.asList(allowed).contains(v), name + " must be one of " + Arrays.toString(allowed));
+        return v;
+    }
+
+    /**
+     * 日志模式：DELETE、TRUNCATE、PERSIST、MEMORY、WAL、OFF
+     */
+    public TuningProfile journalMode(String mode) {
+        this.journalMode = checkValue(mode, JOURNAL_MODES, "journalMode");
+        return this;
+    }
+
+    /**
+     * 同步级别：OFF、NORMAL、FULL、EXTRA
+     */
+    public TuningProfile synchronous(String level) {
+        this.synchronous = checkValue(level, SYNCHRONOUS, "synchronous");
+        return this;
+    }
+
+    /**
+     * 页大小，须为512到65536之间2的幂，只对新建的数据库生效
+     */
+    public TuningProfile pageSize(int pageSize) {
+        Assert.isTrue(pageSize >= 512 && pageSize <= 65536 && (pageSize & (pageSize - 1)) == 0,
+                "pageSize must be a power of two between 512 and 65536!");
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * 页缓存大小，正数为页数，负数为KB数（同SQLite）
+     */
+    public TuningProfile cacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    /**
+     * 内存映射大小（字节），0表示关闭，需要SQLite 3.7.17+，低版本忽略
+     */
+    public TuningProfile mmapSize(long mmapSize) {
+        Assert.isTrue(mmapSize >= 0, "mmapSize must not be negative!");
+        this.mmapSize = mmapSize;
+        return this;
+    }
+
+    /**
+     * 临时表、临时索引的存储位置：DEFAULT、FILE、MEMORY
+     */
+    public TuningProfile tempStore(String tempStore) {
+        this.tempStore = checkValue(tempStore, TEMP_STORES, "tempStore");
+        return this;
+    }
+
+    /**
+     * 锁模式：NORMAL、EXCLUSIVE（独占，不能与WAL同时使用）
+     */
+    public TuningProfile lockingMode(String lockingMode) {
+        this.lockingMode = checkValue(lockingMode, LOCKING_MODES, "lockingMode");
+        return this;
+    }
+
+    /**
+     * 读线程数，大于0时开启并发读（见{@link DatabaseController#enableConcurrentReads(int)}），
+     * 同时决定并发使用的读连接数（连接池的上限由系统决定）；须使用WAL模式
+     */
+    public TuningProfile readers(int readers) {
+        Assert.isTrue(readers >= 0, "readers must not be negative!");
+        this.readers = readers;
+        return this;
+    }
+
+    public int readers() {
+        return readers;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return "WAL".equals(journalMode);
+    }
+
+    /**
+     * 检查各项设置能否同时使用，不能时抛出{@link IllegalArgumentException}
+     */
+    void validate() {
+        Assert.isTrue(readers == 0 || isWriteAheadLogging(), "concurrent readers require WAL journal mode!");
+        Assert.isTrue(!"EXCLUSIVE".equals(lockingMode) || !isWriteAheadLogging(),
+                "EXCLUSIVE locking mode can not be used with WAL journal mode!");
+    }
+
+    /**
+     * 应用到数据库连接，须在onConfigure（API 16以下在onOpen）中、事务之外调用
+     */
+    public void applyTo(SQLiteDatabase db) {
+        validate();
+        if (pageSize > 0) {
+            pragma(db, "page_size = " + pageSize);
+        }
+        if (isWriteAheadLogging()) {
+            db.enableWriteAheadLogging();
+        } else if (journalMode != null) {
+            pragma(db, "journal_mode = " + journalMode);
+        }
+        if (synchronous != null) {
+            pragma(db, "synchronous = " + synchronous);
+        }
+        if (cacheSize != null) {
+            pragma(db, "cache_size = " + cacheSize);
+        }
+        if (mmapSize >= 0) {
+            pragma(db, "mmap_size = " + mmapSize);
+        }
+        if (tempStore != null) {
+            pragma(db, "temp_store = " + tempStore);
+        }
+        if (lockingMode != null) {
+            pragma(db, "locking_mode = " + lockingMode);
+        }
+    }
+
+    /**
+     * 执行PRAGMA，部分PRAGMA会返回结果，统一使用rawQuery执行
+     */
+    private static String pragma(SQLiteDatabase db, String pragma) {
+        Cursor c = null;
+        try {
+            c = db.rawQuery("PRAGMA " + pragma, null);
+            return c != null && c.moveToFirst() ? c.getString(0) : null;
+        } finally {
+            Utils.closeSafely(c);
+        }
+    }
+
+    /**
+     * 读取连接当前生效的设置
+     * @return PRAGMA名称 -> 值，读取失败的项为null
+     */
+    public static Map<String, String> readEffective(SQLiteDatabase db) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String name : PRAGMAS) {
+            String value = null;
+            try {
+                value = pragma(db, name);
+            } catch (Exception e) {
+                if (Utils.isDebug()) {
+                    Utils.log(null, "readEffective, PRAGMA " + name, e);
+                }
+            }
+            values.put(name, value);
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TuningProfile[journalMode=%s, synchronous=%s, pageSize=%d, cacheSize=%s, mmapSize=%d, tempStore=%s, lockingMode=%s, readers=%d]",
+                journalMode, synchronous, pageSize, cacheSize, mmapSize, tempStore, lockingMode, readers);
+    }
+}
@@ -6,6 +6,8 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteClosable;
+import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
@@ -14,6 +16,7 @@ import android.text.TextUtils;
 
 import com.kejunyao.log.Log;
 
+import java.io.Closeable;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.ref.WeakReference;
@@ -36,6 +39,8 @@ public final class Utils {
 
     private static final Handler HANDLER = new Handler(Looper.getMainLooper());
 
+    private static volatile int sSQLiteVersion = -1;
+
     private Utils() {
     }
 
@@ -56,6 +61,24 @@ public final class Utils {
         }
     }
 
+    public static final void closeSafely(SQLiteClosable closable) {
+        if (closable != null) {
+            try {
+                closable.close();
+            } catch (Exception e) {
+            }
+        }
+    }
+
+    public static final void closeSafely(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+            }
+        }
+    }
+
     public static long getInsertId(Uri uri) {
         if (uri == null) {
             return -1l;
@@ -478,6 +501,55 @@ public final class Utils {
         return sb.toString();
     }
 
+    /**
+     * 获取当前设备SQLite版本号，如3.7.11返回3007011（同一进程内只查询一次）
+     * @param db {@link SQLiteDatabase}
+     * @return SQLite版本号，获取失败返回0
+     */
+    public static int getSQLiteVersion(SQLiteDatabase db) {
+        int version = sSQLiteVersion;
+        if (version >= 0) {
+            return version;
+        }
+        version = 0;
+        Cursor c = null;
+        try {
+            c = db.rawQuery("SELECT sqlite_version()", null);
+            if (c != null && !c.isClosed() && c.moveToFirst()) {
+                version = parseSQLiteVersion(c.getString(0));
+            }
+            sSQLiteVersion = version;
+        } catch (Exception e) {
+            if (sDebug) {
+                log(null, "getSQLiteVersion", e);
+            }
+        } finally {
+            closeSafely(c);
+        }
+        if (sDebug) {
+            log(null, "SQLite version: ", version);
+        }
+        return version;
+    }
+
+    static int parseSQLiteVersion(String version) {
+        if (TextUtils.isEmpty(version)) {
+            return 0;
+        }
+        String[] parts = version.split("\\.");
+        int result = 0;
+        for (int i = 0; i < 3; i++) {
+            result *= 1000;
+            if (i < parts.length) {
+                try {
+                    result += Integer.parseInt(parts[i].trim());
+                } catch (NumberFormatException e) {
+                }
+            }
+        }
+        return result;
+    }
+
     public static void putCursorValue(ContentValues values, Cursor cursor, String columnName) {
         int columnIndex = cursor.getColumnIndex(columnName);
         int type = cursor.getType(columnIndex);
@@ -0,0 +1,466 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 写后缓冲<br/>
+ * 插入、插入或更新的实体先放入内存缓冲，同一主键只保留最后一次写入；新记录（无主键值或自增主键为0）不合并，按写入顺序全部保留。
+ * 缓冲的实体数达到上限或首次写入超过指定时长后，由{@link Scheduler}在后台线程批量刷写（SQLite实现在一个事务中提交）。<br/>
+ * 写入失败的记录按主键保留到下次刷写重试（开启溢写日志时同时保留在日志中），每条记录重试{@link #MAX_RETRIES}次仍失败后丢弃；
+ * 同一主键有更新的写入（缓冲中或直接写入数据库）时丢弃失败的旧记录，保证最后一次写入生效。<br/>
+ * 开启溢写日志时写入只在内存中排队，由{@link Scheduler}在后台线程追加到日志，调用线程不做文件读写。<br/>
+ * 缓冲期间实体以引用方式保存，提交后不要再修改实体。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class WriteBehindBuffer {
+
+    /**
+     * 写入失败的记录最多重试的刷写次数
+     */
+    static final int MAX_RETRIES = 3;
+
+    /**
+     * 刷写调度
+     */
+    interface Scheduler {
+        /**
+         * 在delayMillis毫秒后于后台线程刷写缓冲
+         */
+        void scheduleFlush(WriteBehindBuffer buffer, long delayMillis);
+
+        /**
+         * 立即刷写缓冲并等待完成，供读操作之前调用
+         */
+        void awaitFlush(WriteBehindBuffer buffer);
+
+        /**
+         * 在后台线程调用{@link WriteBehindBuffer#writeJournal()}
+         */
+        void scheduleJournalWrite(WriteBehindBuffer buffer);
+    }
+
+    /**
+     * 待重试的记录
+     */
+    private static final class Retry {
+        final ContentValues values;
+        /**
+         * 主键，新记录为null
+         */
+        final String primaryKey;
+        /**
+         * 已写入（失败）的次数
+         */
+        int attempts;
+
+        Retry(ContentValues values, String primaryKey, int attempts) {
+            this.values = values;
+            this.primaryKey = primaryKey;
+            this.attempts = attempts;
+        }
+    }
+
+    private final AbstractDefaultDao<Object> mDao;
+    private final int mMaxEntries;
+    private final long mMaxDelayMillis;
+    /**
+     * 溢写日志，未开启时为null
+     */
+    private final WriteBehindJournal mJournal;
+    private final Scheduler mScheduler;
+    /**
+     * 保证同一时间只有一个线程刷写，刷写顺序与写入顺序一致
+     */
+    private final Object mFlushLock = new Object();
+    /**
+     * 有主键的待刷写实体，Key为主键
+     */
+    private LinkedHashMap<String, Object> mEntries = new LinkedHashMap<>();
+    /**
+     * 新记录，只追加不合并
+     */
+    private List<Object> mAppends = new ArrayList<>();
+    /**
+     * 正在刷写的有主键实体，刷写完成前按主键查询仍可见
+     */
+    private Map<String, Object> mFlushing = Collections.emptyMap();
+    /**
+     * 是否有从溢写日志恢复、尚未重放的记录（在mFailed中）
+     */
+    private boolean mRecovered;
+    /**
+     * 待重试的记录（含从溢写日志恢复的记录），按写入顺序，同一主键只保留一条
+     */
+    private List<Retry> mFailed;
+    private boolean mFlushRequested;
+    private long mWriteCount;
+    private long mCoalescedCount;
+    private long mFlushCount;
+    private long mFlushedCount;
+    private long mDroppedCount;
+
+    /**
+     * @param journal 溢写日志，可为null；不为null时读取上次未落库的记录，在首次刷写时重放
+     */
+    @SuppressWarnings("unchecked")
+    WriteBehindBuffer(AbstractDefaultDao<?> dao, int maxEntries, long maxDelayMillis,
+                      WriteBehindJournal journal, Scheduler scheduler) {
+        Assert.isTrue(maxEntries > 0, "maxEntries must be greater than 0!");
+        Assert.isTrue(maxDelayMillis >= 0, "maxDelayMillis must not be less than 0!");
+        // 缓冲中的实体均由DaoController按该Dao的实体类型写入
+        mDao = (AbstractDefaultDao<Object>) dao;
+        mMaxEntries = maxEntries;
+        mMaxDelayMillis = maxDelayMillis;
+        mJournal = journal;
+        mScheduler = scheduler;
+        if (journal != null) {
+            List<ContentValues> recovered = journal.recover();
+            if (!recovered.isEmpty()) {
+                // 按日志顺序重放，同一主键只保留最后一次写入
+                Map<String, Retry> last = new HashMap<>();
+                for (ContentValues values : recovered) {
+                    String primaryKey = primaryKeyOf(values);
+                    if (primaryKey != null) {
+                        last.put(primaryKey, new Retry(values, primaryKey, 0));
+                    }
+                }
+                List<Retry> rows = new ArrayList<>(recovered.size());
+                for (ContentValues values : recovered) {
+                    String primaryKey = primaryKeyOf(values);
+                    if (primaryKey == null) {
+                        rows.add(new Retry(values, null, 0));
+                    } else if (last.get(primaryKey).values == values) {
+                        rows.add(last.get(primaryKey));
+                    }
+                }
+                mFailed = rows;
+                mRecovered = true;
+                if (Utils.isDebug()) {
+                    Utils.log(this, dao.getTableName(), ", recovered from journal: ", recovered.size());
+                }
+                scheduler.scheduleFlush(this, 0);
+            }
+        }
+    }
+
+    /**
+     * @return 规范化的主键，新记录返回null
+     */
+    private String primaryKeyOf(ContentValues values) {
+        return mDao.isNewRecord(values) ? null : mDao.normalizePrimaryKey(values.getAsString(mDao.mPrimaryKey));
+    }
+
+    /**
+     * 写入缓冲，同一主键覆盖之前未刷写的实体，新记录追加
+     */
+    void put(Object entity) {
+        ContentValues values = mDao.toContentValues(entity);
+        String primaryKey = primaryKeyOf(values);
+        long delay = -1;
+        boolean journal = false;
+        synchronized (this) {
+            if (primaryKey == null) {
+                mAppends.add(entity);
+            } else {
+                if (mEntries.remove(primaryKey) != null) {
+                    mCoalescedCount++;
+                }
+                mEntries.put(primaryKey, entity);
+            }
+            mWriteCount++;
+            if (mJournal != null) {
+                journal = mJournal.post(values);
+            }
+            final int size = mEntries.size() + mAppends.size();
+            if (size >= mMaxEntries) {
+                if (!mFlushRequested) {
+                    mFlushRequested = true;
+                    delay = 0;
+                }
+            } else if (size == 1) {
+                delay = mMaxDelayMillis;
+            }
+        }
+        if (journal) {
+            mScheduler.scheduleJournalWrite(this);
+        }
+        if (delay >= 0) {
+            mScheduler.scheduleFlush(this, delay);
+        }
+    }
+
+    /**
+     * 将排队的写入追加到溢写日志，由{@link Scheduler}在后台线程调用
+     */
+    void writeJournal() {
+        if (mJournal != null) {
+            mJournal.drain();
+        }
+    }
+
+    /**
+     * 刷写缓冲并等待完成，由{@link Scheduler}决定在哪个线程刷写
+     */
+    void awaitFlush() {
+        mScheduler.awaitFlush(this);
+    }
+
+    /**
+     * 绕过缓冲的写操作完成后调用，丢弃同一主键待重试的记录，避免重试时覆盖更新的写入
+     * @param primaryKeys 受影响记录的主键，null表示无法确定，丢弃全部有主键的待重试记录
+     */
+    void supersede(String[] primaryKeys) {
+        // 等待正在进行的刷写，其失败的记录随后才放回mFailed
+        synchronized (mFlushLock) {
+            synchronized (this) {
+                if (mFailed == null) {
+                    return;
+                }
+                Set<String> keys = null;
+                if (primaryKeys != null) {
+                    keys = new HashSet<>();
+                    for (String primaryKey : primaryKeys) {
+                        keys.add(mDao.normalizePrimaryKey(primaryKey));
+                    }
+                }
+                for (Iterator<Retry> it = mFailed.iterator(); it.hasNext(); ) {
+                    String primaryKey = it.next().primaryKey;
+                    if (primaryKey != null && (keys == null || keys.contains(primaryKey))) {
+                        it.remove();
+                        mCoalescedCount++;
+                    }
+                }
+                if (mFailed.isEmpty()) {
+                    mFailed = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取缓冲中（含正在刷写）的实体
+     * @return 实体，不在缓冲中时返回null
+     */
+    synchronized Object get(String primaryKey) {
+        primaryKey = mDao.normalizePrimaryKey(primaryKey);
+        Object entity = mEntries.get(primaryKey);
+        return entity == null ? mFlushing.get(primaryKey) : entity;
+    }
+
+    /**
+     * 是否有待刷写的内容（含待重放、待重试的记录）
+     */
+    synchronized boolean hasPending() {
+        return !mEntries.isEmpty() || !mAppends.isEmpty() || mFailed != null;
+    }
+
+    /**
+     * 是否有待重放的日志记录，重放之前缓冲中的实体不完整
+     */
+    synchronized boolean hasRecovered() {
+        return mRecovered;
+    }
+
+    /**
+     * 刷写缓冲，同一时间只有一个线程刷写，其他线程等待刷写完成<br/>
+     * 先重试待重试的记录（含日志恢复的记录），同一主键在本次刷写的实体中有更新写入的丢弃，再写入缓冲中的实体；
+     * 写入失败的记录按条计数，保留到下次刷写，已封存的日志段在全部记录落库后删除，否则只保留失败的记录。
+     * @return 已刷写（含失败）的实体，无待刷写内容时返回null
+     */
+    List<Object> flush() {
+        synchronized (mFlushLock) {
+            List<Retry> retries;
+            Map<String, Object> flushing;
+            List<Object> entities;
+            long sealed = -1;
+            synchronized (this) {
+                if (mEntries.isEmpty() && mAppends.isEmpty() && mFailed == null) {
+                    return null;
+                }
+                retries = mFailed == null ? Collections.<Retry>emptyList() : mFailed;
+                entities = new ArrayList<>(mEntries.size() + mAppends.size());
+                entities.addAll(mEntries.values());
+                entities.addAll(mAppends);
+                flushing = mEntries;
+                mFlushing = mEntries;
+                mEntries = new LinkedHashMap<>();
+                mAppends = new ArrayList<>();
+                mRecovered = false;
+                mFailed = null;
+                mFlushRequested = false;
+                if (mJournal != null) {
+                    sealed = mJournal.seal();
+                }
+            }
+            List<Retry> failed = new ArrayList<>();
+            List<ContentValues> rows = new ArrayList<>(retries.size());
+            List<Retry> replaying = new ArrayList<>(retries.size());
+            int superseded = 0;
+            for (Retry retry : retries) {
+                if (retry.primaryKey != null && flushing.containsKey(retry.primaryKey)) {
+                    // 本次刷写中有同一主键更新的写入
+                    superseded++;
+                } else {
+                    rows.add(retry.values);
+                    replaying.add(retry);
+                }
+            }
+            int dropped = 0;
+            if (!rows.isEmpty()) {
+                Set<ContentValues> stillFailed = Collections.newSetFromMap(new IdentityHashMap<ContentValues, Boolean>());
+                stillFailed.addAll(replay(rows));
+                for (Retry retry : replaying) {
+                    if (!stillFailed.contains(retry.values)) {
+                        continue;
+                    }
+                    retry.attempts++;
+                    if (retry.attempts > MAX_RETRIES) {
+                        dropped++;
+                        if (Utils.isDebug()) {
+                            Utils.log(this, mDao.getTableName(), ", drop row after retries: ", retry.values);
+                        }
+                    } else {
+                        failed.add(retry);
+                    }
+                }
+            }
+            List<Object> failedEntities = write(entities);
+            for (Object entity : failedEntities) {
+                ContentValues values = mDao.toContentValues(entity);
+                failed.add(new Retry(values, primaryKeyOf(values), 1));
+            }
+            if (mJournal != null) {
+                List<ContentValues> retained = new ArrayList<>(failed.size());
+                for (Retry retry : failed) {
+                    retained.add(retry.values);
+                }
+                if (!mJournal.retain(retained, sealed) && Utils.isDebug()) {
+                    Utils.log(this, mDao.getTableName(), ", keep journal segments up to ", sealed);
+                }
+            }
+            synchronized (this) {
+                mFlushing = Collections.emptyMap();
+                if (!failed.isEmpty()) {
+                    // 刷写期间不会有其他线程设置mFailed
+                    mFailed = failed;
+                }
+                mFlushCount++;
+                mFlushedCount += entities.size() - failedEntities.size();
+                mCoalescedCount += superseded;
+                mDroppedCount += dropped;
+            }
+            if (!failed.isEmpty()) {
+                // 失败的记录在下次刷写时重试
+                mScheduler.scheduleFlush(this, mMaxDelayMillis);
+            }
+            if (Utils.isDebug()) {
+                Utils.log(this, mDao.getTableName(), ", flush: ", entities.size(),
+                        ", failed: ", failed.size(), ", superseded: ", superseded, ", dropped: ", dropped);
+            }
+            return entities;
+        }
+    }
+
+    /**
+     * 关闭缓冲前调用，刷写剩余内容并关闭溢写日志<br/>
+     * 仍未落库的记录保留在日志中，未开启日志时丢弃。
+     */
+    List<Object> close() {
+        List<Object> entities = flush();
+        synchronized (this) {
+            if (mFailed != null) {
+                if (mJournal == null) {
+                    mDroppedCount += mFailed.size();
+                }
+                mFailed = null;
+            }
+        }
+        if (mJournal != null) {
+            mJournal.close();
+        }
+        return entities;
+    }
+
+    synchronized WriteBehindStats stats() {
+        return new WriteBehindStats(mWriteCount, mCoalescedCount, mFlushCount, mFlushedCount, mDroppedCount,
+                mEntries.size() + mAppends.size());
+    }
+
+    /**
+     * 重放记录，SQLite实现在一个事务中执行
+     * @return 写入失败的记录
+     */
+    private List<ContentValues> replay(List<ContentValues> rows) {
+        try {
+            if (!(mDao instanceof AbstractSQLiteDaoImpl)) {
+                return mDao.replay(rows);
+            }
+            SQLiteDatabase db = mDao.mSQLiteOpenHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                List<ContentValues> failed = mDao.replay(rows);
+                db.setTransactionSuccessful();
+                return failed;
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            // 事务未提交，全部记录都未落库
+            if (Utils.isDebug()) {
+                Utils.log(this, "replay " + mDao.getTableName(), e);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 写入缓冲中的实体<br/>
+     * 有主键的SQLite实现整批在一个事务中写入，失败时整批回滚后逐条重试；其他实现逐条写入。
+     * @return 写入失败的实体
+     */
+    private List<Object> write(List<Object> entities) {
+        if (entities.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            if (mDao instanceof AbstractSQLiteDaoImpl && mDao.mPrimaryKey != null
+                    && mDao.batchInsertOrUpdate(entities)) {
+                return Collections.emptyList();
+            }
+        } catch (Exception e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "flush " + mDao.getTableName(), e);
+            }
+        }
+        List<Object> failed = new ArrayList<>();
+        for (Object entity : entities) {
+            boolean success;
+            try {
+                success = mDao.insertOrUpdate(entity);
+            } catch (Exception e) {
+                success = false;
+            }
+            if (!success) {
+                failed.add(entity);
+                if (Utils.isDebug()) {
+                    Utils.log(this, mDao.getTableName(), ", write failed: ", entity);
+                }
+            }
+        }
+        return failed;
+    }
+}
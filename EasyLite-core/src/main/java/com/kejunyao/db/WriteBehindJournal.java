@@ -0,0 +1,391 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 写后缓冲的溢写日志<br/>
+ * 缓冲的每次写操作追加一条记录，进程崩溃后重放日志即可恢复未落库的写操作。
+ * 写操作先在内存中排队（{@link #post(ContentValues)}），由后台线程或封存时写入文件（{@link #drain()}），调用线程不做文件读写；
+ * 尚在排队中的记录在进程崩溃时丢失。<br/>
+ * 日志按段保存为“文件名.序号”，刷写开始时封存当前段，后续写操作追加到新段；已封存段的记录全部落库后才删除，
+ * 部分记录写入失败时只保留这些记录。
+ * 重放时按序号依次读取全部段。<br/>
+ * 记录格式：记录长度（int） + 列数（int） + 列（列名 + 类型 + 值）...，进程崩溃导致的不完整记录在重放时丢弃。
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+final class WriteBehindJournal {
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_SHORT = 4;
+    private static final byte TYPE_BYTE = 5;
+    private static final byte TYPE_DOUBLE = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_BOOLEAN = 8;
+    private static final byte TYPE_BLOB = 9;
+
+    private final File mDir;
+    private final String mName;
+    /**
+     * 当前段的序号
+     */
+    private long mSegment;
+    private FileOutputStream mOutput;
+    /**
+     * 保护mPending，不与文件读写共用锁，排队时不会等待文件读写
+     */
+    private final Object mPendingLock = new Object();
+    /**
+     * 排队中、尚未写入文件的记录
+     */
+    private List<ContentValues> mPending = new ArrayList<>();
+
+    WriteBehindJournal(File file) {
+        Assert.notNull(file, "journal file must not be null!");
+        File dir = file.getAbsoluteFile().getParentFile();
+        Assert.notNull(dir, "journal file must have a parent directory!");
+        mDir = dir;
+        mName = file.getName();
+    }
+
+    /**
+     * 读取上次未删除的全部段中的记录，当前段从已有的最大序号之后开始
+     */
+    synchronized List<ContentValues> recover() {
+        List<ContentValues> rows = new ArrayList<>();
+        long[] segments = listSegments();
+        for (long segment : segments) {
+            read(segmentFile(segment), rows);
+        }
+        mSegment = segments.length == 0 ? 0 : segments[segments.length - 1] + 1;
+        return rows;
+    }
+
+    /**
+     * 记录排队，等待{@link #drain()}写入文件
+     * @return true，排队之前没有记录，须安排一次{@link #drain()}
+     */
+    boolean post(ContentValues values) {
+        synchronized (mPendingLock) {
+            mPending.add(values);
+            return mPending.size() == 1;
+        }
+    }
+
+    /**
+     * 将排队的记录按顺序追加到当前段
+     */
+    synchronized void drain() {
+        List<ContentValues> pending;
+        synchronized (mPendingLock) {
+            if (mPending.isEmpty()) {
+                return;
+            }
+            pending = mPending;
+            mPending = new ArrayList<>();
+        }
+        for (ContentValues values : pending) {
+            append(values);
+        }
+    }
+
+    /**
+     * 追加一条记录，一次写入整条记录，写入失败时只输出日志
+     */
+    private void append(ContentValues values) {
+        try {
+            byte[] record = encode(values);
+            if (mOutput == null) {
+                if (!mDir.exists()) {
+                    mDir.mkdirs();
+                }
+                mOutput = new FileOutputStream(segmentFile(mSegment), true);
+            }
+            mOutput.write(record);
+        } catch (IOException e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "append " + segmentFile(mSegment), e);
+            }
+            closeOutput();
+        }
+    }
+
+    /**
+     * 先写入排队的记录再封存当前段，须在取出缓冲内容时同步调用
+     * @return 封存段的序号
+     */
+    synchronized long seal() {
+        drain();
+        closeOutput();
+        return mSegment++;
+    }
+
+    /**
+     * 刷写完成后删除序号小于等于sealed的全部段
+     */
+    synchronized void delete(long sealed) {
+        for (long segment : listSegments()) {
+            if (segment <= sealed) {
+                segmentFile(segment).delete();
+            }
+        }
+    }
+
+    /**
+     * 部分记录未能落库时，将这些记录写入临时文件后替换封存段sealed，再删除更早的段，
+     * 未落库的记录在下次刷写或进程重启后重放
+     * @param rows 未落库的记录，为空时等同于{@link #delete(long)}
+     * @return 是否保存成功，失败时保留全部段
+     */
+    synchronized boolean retain(List<ContentValues> rows, long sealed) {
+        if (rows.isEmpty()) {
+            delete(sealed);
+            return true;
+        }
+        File temp = new File(mDir, mName + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp, false);
+            for (ContentValues values : rows) {
+                out.write(encode(values));
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            if (Utils.isDebug()) {
+                Utils.log(this, "retain " + temp, e);
+            }
+            temp.delete();
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        // 先替换封存段再删除更早的段，两步之间崩溃时更早的段会再次重放
+        File target = segmentFile(sealed);
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            return false;
+        }
+        for (long segment : listSegments()) {
+            if (segment < sealed) {
+                segmentFile(segment).delete();
+            }
+        }
+        return true;
+    }
+
+    synchronized void close() {
+        drain();
+        closeOutput();
+    }
+
+    private File segmentFile(long segment) {
+        return new File(mDir, mName + '.' + segment);
+    }
+
+    /**
+     * @return 已有段的序号，升序
+     */
+    private long[] listSegments() {
+        String[] names = mDir.list();
+        if (names == null) {
+            return new long[0];
+        }
+        String prefix = mName + '.';
+        long[] segments = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(prefix)) {
+                try {
+                    segments[count] = Long.parseLong(name.substring(prefix.length()));
+                    count++;
+                } catch (NumberFormatException e) {
+                    // 非日志段
+                }
+            }
+        }
+        long[] result = new long[count];
+        System.arraycopy(segments, 0, result, 0, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void closeOutput() {
+        if (mOutput != null) {
+            try {
+                mOutput.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            mOutput = null;
+        }
+    }
+
+    private void read(File file, List<ContentValues> rows) {
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                rows.add(decode(record));
+            }
+        } catch (IOException e) {
+            // 进程崩溃时最后一条记录可能不完整，丢弃即可
+            if (Utils.isDebug()) {
+                Utils.log(this, "read " + file + ", drop incomplete record", e);
+            }
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(ContentValues values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(values.size());
+        for (Map.Entry<String, Object> e : values.valueSet()) {
+            out.writeUTF(e.getKey());
+            writeValue(out, e.getValue());
+        }
+        out.flush();
+        byte[] record = bytes.toByteArray();
+        int length = record.length - 4;
+        record[0] = (byte) (length >>> 24);
+        record[1] = (byte) (length >>> 16);
+        record[2] = (byte) (length >>> 8);
+        record[3] = (byte) length;
+        return record;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            // writeUTF限制64K，长文本按字节数组写入
+            out.writeByte(TYPE_STRING);
+            byte[] data = ((String) value).getBytes("UTF-8");
+            out.writeInt(data.length);
+            out.write(data);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            byte[] data = (byte[]) value;
+            out.writeByte(TYPE_BLOB);
+            out.writeInt(data.length);
+            out.write(data);
+        } else {
+            throw new IOException("unsupported value type: " + value.getClass());
+        }
+    }
+
+    private static ContentValues decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int count = in.readInt();
+        ContentValues values = new ContentValues(count);
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            byte type = in.readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    values.putNull(key);
+                    break;
+                case TYPE_STRING: {
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    values.put(key, new String(data, "UTF-8"));
+                    break;
+                }
+                case TYPE_LONG:
+                    values.put(key, in.readLong());
+                    break;
+                case TYPE_INTEGER:
+                    values.put(key, in.readInt());
+                    break;
+                case TYPE_SHORT:
+                    values.put(key, in.readShort());
+                    break;
+                case TYPE_BYTE:
+                    values.put(key, in.readByte());
+                    break;
+                case TYPE_DOUBLE:
+                    values.put(key, in.readDouble());
+                    break;
+                case TYPE_FLOAT:
+                    values.put(key, in.readFloat());
+                    break;
+                case TYPE_BOOLEAN:
+                    values.put(key, in.readBoolean());
+                    break;
+                case TYPE_BLOB: {
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    values.put(key, data);
+                    break;
+                }
+                default:
+                    throw new IOException("unknown value type: " + type);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,82 @@
+package com.kejunyao.db;
+
+/**
+ * 写后缓冲统计信息
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+public final class WriteBehindStats {
+
+    private final long writeCount;
+    private final long coalescedCount;
+    private final long flushCount;
+    private final long flushedCount;
+    private final long droppedCount;
+    private final int pendingCount;
+
+    WriteBehindStats(long writeCount, long coalescedCount, long flushCount,
+                     long flushedCount, long droppedCount, int pendingCount) {
+        this.writeCount = writeCount;
+        this.coalescedCount = coalescedCount;
+        this.flushCount = flushCount;
+        this.flushedCount = flushedCount;
+        this.droppedCount = droppedCount;
+        this.pendingCount = pendingCount;
+    }
+
+    /**
+     * 写入缓冲的次数
+     */
+    public long writeCount() {
+        return writeCount;
+    }
+
+    /**
+     * 同一主键被后续写入覆盖的次数
+     */
+    public long coalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * 刷写次数
+     */
+    public long flushCount() {
+        return flushCount;
+    }
+
+    /**
+     * 已落库的实体数
+     */
+    public long flushedCount() {
+        return flushedCount;
+    }
+
+    /**
+     * 重试后仍写入失败而丢弃的实体数
+     */
+    public long droppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * 当前待刷写的实体数
+     */
+    public int pendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * 平均每次刷写的实体数
+     */
+    public float averageBatchSize() {
+        return flushCount == 0 ? 0f : (float) (flushedCount + droppedCount) / flushCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WriteBehindStats[writes=%d, coalesced=%d, flushes=%d, flushed=%d, dropped=%d, pending=%d, avgBatch=%.1f]",
+                writeCount, coalescedCount, flushCount, flushedCount, droppedCount, pendingCount, averageBatchSize());
+    }
+}
@@ -0,0 +1,172 @@
+package com.kejunyao.db;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link DaoFuture}取消及失败处理测试
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class DaoFutureTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 记录回调结果的回调
+     */
+    private static final class RecordingCallback<T> implements DaoCallback<T> {
+        final CountDownLatch called = new CountDownLatch(1);
+        final AtomicReference<T> result = new AtomicReference<>();
+
+        @Override
+        public void onCallback(T t) {
+            result.set(t);
+            called.countDown();
+        }
+    }
+
+    private static final class Resource implements Closeable {
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+
+    @Test
+    public void deliversResult() throws Exception {
+        RecordingCallback<String> callback = new RecordingCallback<>();
+        DaoFuture<String> future = new DaoFuture<>(new Callable<String>() {
+            @Override
+            public String call() {
+                return "ok";
+            }
+        }, callback, callback).executeOn(executor, true);
+        assertEquals("ok", future.get(1, TimeUnit.SECONDS));
+        assertTrue(callback.called.await(1, TimeUnit.SECONDS));
+        assertEquals("ok", callback.result.get());
+    }
+
+    @Test
+    public void cancelBeforeStartSuppressesCallback() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        });
+        final AtomicBoolean ran = new AtomicBoolean();
+        RecordingCallback<Boolean> callback = new RecordingCallback<>();
+        DaoFuture<Boolean> future = new DaoFuture<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                ran.set(true);
+                return true;
+            }
+        }, callback, callback).executeOn(executor, true);
+        assertTrue(future.cancel());
+        blocker.countDown();
+        assertFalse(callback.called.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void cancelWhileRunningClosesResultWithoutCallback() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final Resource resource = new Resource();
+        RecordingCallback<Resource> callback = new RecordingCallback<>();
+        DaoFuture<Resource> future = new DaoFuture<>(new Callable<Resource>() {
+            @Override
+            public Resource call() throws Exception {
+                started.countDown();
+                proceed.await();
+                return resource;
+            }
+        }, callback, callback).executeOn(executor, true);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertTrue(future.cancel());
+        proceed.countDown();
+
+        assertFalse(callback.called.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(resource.closed.get());
+    }
+
+    @Test
+    public void cancelWhileRunningWriteCompletesWithoutCallback() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final CountDownLatch written = new CountDownLatch(1);
+        RecordingCallback<Boolean> callback = new RecordingCallback<>();
+        DaoFuture<Boolean> future = new DaoFuture<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                started.countDown();
+                proceed.await();
+                written.countDown();
+                return Boolean.TRUE;
+            }
+        }, callback, callback).executeOn(executor, false);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertTrue(future.cancel());
+        proceed.countDown();
+
+        // 写操作不被中断，但不再回调
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        assertFalse(callback.called.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void failureIsNotThrownIntoExecutingThread() throws Exception {
+        final IllegalStateException error = new IllegalStateException("boom");
+        RecordingCallback<Boolean> callback = new RecordingCallback<>();
+        DaoFuture<Boolean> future = new DaoFuture<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                throw error;
+            }
+        }, callback, callback);
+        future.executeInline();
+        try {
+            future.get();
+            fail("get() must throw");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+        assertEquals(1, callback.called.getCount());
+    }
+}
@@ -0,0 +1,174 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Dao使用{@link EntityMapper}转换实体的测试（SQLite）
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class EntityMapperDaoTest {
+
+    static final class Note {
+        long id;
+        String title;
+        /**
+         * 不属于Dao的列
+         */
+        boolean draft;
+    }
+
+    /**
+     * 按EasyLite-compiler生成代码的形式手写的映射
+     */
+    static final class Note_EntityMapper implements EntityMapper<Note> {
+
+        private static final String[] COLUMNS = {"id", "title", "draft"};
+        int resolved;
+
+        @Override
+        public String[] columns() {
+            return COLUMNS.clone();
+        }
+
+        @Override
+        public int[] resolveIndices(Cursor c) {
+            resolved++;
+            int[] indices = new int[3];
+            for (int i = 0; i < 3; i++) {
+                indices[i] = c.getColumnIndex(COLUMNS[i]);
+            }
+            return indices;
+        }
+
+        @Override
+        public Note toEntity(Cursor c, int[] indices) {
+            Note entity = new Note();
+            if (indices[0] >= 0) {
+                entity.id = c.getLong(indices[0]);
+            }
+            if (indices[1] >= 0) {
+                entity.title = c.getString(indices[1]);
+            }
+            if (indices[2] >= 0) {
+                entity.draft = c.getInt(indices[2]) != 0;
+            }
+            return entity;
+        }
+
+        @Override
+        public ContentValues toContentValues(Note entity) {
+            ContentValues values = new ContentValues(3);
+            values.put("id", entity.id);
+            values.put("title", entity.title);
+            values.put("draft", entity.draft);
+            return values;
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Note entity, int ordinal) {
+            switch (ordinal) {
+                case 0:
+                    program.bindLong(index, entity.id);
+                    break;
+                case 1:
+                    if (entity.title == null) {
+                        program.bindNull(index);
+                    } else {
+                        program.bindString(index, entity.title);
+                    }
+                    break;
+                case 2:
+                    program.bindLong(index, entity.draft ? 1 : 0);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown ordinal: " + ordinal);
+            }
+        }
+    }
+
+    static final class NoteDao extends SimpleSQLiteDaoImpl<Note> {
+
+        @Override
+        public String getTableName() {
+            return "note";
+        }
+
+        @Override
+        public Column[] getColumns() {
+            return new Column[] {
+                    Column.create("id").longType().primaryKey(),
+                    Column.create("title").textType()
+            };
+        }
+    }
+
+    private NoteDao dao;
+
+    @Before
+    public void setUp() {
+        dao = new NoteDao();
+        dao.setSQLiteOpenHelper(new ItemDao.Helper(RuntimeEnvironment.application, dao));
+    }
+
+    private static Note note(long id, String title) {
+        Note note = new Note();
+        note.id = id;
+        note.title = title;
+        note.draft = true;
+        return note;
+    }
+
+    @Test
+    public void writesOnlyDaoColumns() {
+        ContentValues values = dao.toContentValues(note(1, "a"));
+        assertFalse(values.containsKey("draft"));
+        assertEquals(2, values.size());
+
+        assertTrue(dao.insert(note(1, "a")));
+        assertTrue(dao.insertOrUpdate(note(1, "b")));
+        assertTrue(dao.update(note(1, "c")));
+        List<Note> notes = dao.queryMany(null, null);
+        assertEquals(1, notes.size());
+        assertEquals("c", notes.get(0).title);
+        assertFalse(notes.get(0).draft);
+    }
+
+    @Test
+    public void resolvesIndicesOncePerCursor() {
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(dao.insert(note(i, "n" + i)));
+        }
+        Note_EntityMapper mapper = (Note_EntityMapper) EntityMappers.get(Note.class);
+        Cursor c = dao.mSQLiteOpenHelper.getReadableDatabase().rawQuery("SELECT id, title FROM note ORDER BY id", null);
+        int before = mapper.resolved;
+        try {
+            int rows = 0;
+            while (c.moveToNext()) {
+                assertEquals("n" + (++rows), dao.toEntity(c).title);
+            }
+            assertEquals(3, rows);
+        } finally {
+            c.close();
+        }
+        assertEquals(before + 1, mapper.resolved);
+    }
+}
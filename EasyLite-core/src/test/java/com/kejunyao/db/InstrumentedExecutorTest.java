@@ -0,0 +1,184 @@
+package com.kejunyao.db;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link InstrumentedExecutor#yieldToUrgent()}测试
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class InstrumentedExecutorTest {
+
+    private final InstrumentedExecutor executor = new InstrumentedExecutor("test", 1);
+    private final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void runBulkTaskThatYields() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(2);
+        final Runnable urgent = new PriorityTask(Priority.UI_CRITICAL, new Runnable() {
+            @Override
+            public void run() {
+                order.add("urgent");
+                done.countDown();
+            }
+        }, true);
+        executor.execute(new PriorityTask(Priority.BULK, new Runnable() {
+            @Override
+            public void run() {
+                order.add("chunk 1");
+                executor.execute(urgent);
+                InstrumentedExecutor.yieldToUrgent();
+                order.add("chunk 2");
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void runsUrgentTaskBetweenChunks() throws Exception {
+        runBulkTaskThatYields();
+        assertEquals(Arrays.asList("chunk 1", "urgent", "chunk 2"), order);
+    }
+
+    @Test
+    public void doesNotYieldWhenPolicyForbids() throws Exception {
+        final TableLockManager manager = new TableLockManager();
+        executor.setYieldPolicy(new InstrumentedExecutor.YieldPolicy() {
+            @Override
+            public boolean canYield() {
+                return !manager.isHeldByCurrentThread();
+            }
+        });
+        final CountDownLatch done = new CountDownLatch(2);
+        final Runnable urgent = new PriorityTask(Priority.UI_CRITICAL, new Runnable() {
+            @Override
+            public void run() {
+                order.add("urgent");
+                done.countDown();
+            }
+        }, true);
+        executor.execute(new PriorityTask(Priority.BULK, new Runnable() {
+            @Override
+            public void run() {
+                TableLockManager.Lease lease = manager.acquire(new String[] {"event"}, true);
+                try {
+                    order.add("chunk 1");
+                    executor.execute(urgent);
+                    InstrumentedExecutor.yieldToUrgent();
+                    order.add("chunk 2");
+                } finally {
+                    lease.release();
+                }
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("chunk 1", "chunk 2", "urgent"), order);
+    }
+
+    private Runnable task(final String name, Priority priority, boolean readOnly) {
+        return new PriorityTask(priority, new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        }, readOnly);
+    }
+
+    /**
+     * 阻塞唯一的线程，使之后提交的任务排队
+     */
+    private CountDownLatch block() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private void drain() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void writesRunInSubmissionOrder() throws Exception {
+        CountDownLatch release = block();
+        executor.execute(task("bulk write", Priority.BULK, false));
+        executor.execute(task("normal write", Priority.NORMAL, false));
+        executor.execute(task("urgent write", Priority.UI_CRITICAL, false));
+        release.countDown();
+        drain();
+        assertEquals(Arrays.asList("bulk write", "normal write", "urgent write"), order);
+    }
+
+    @Test
+    public void readsDoNotOvertakeEarlierWrites() throws Exception {
+        CountDownLatch release = block();
+        executor.execute(task("bulk read", Priority.BULK, true));
+        executor.execute(task("normal write", Priority.NORMAL, false));
+        executor.execute(task("bulk read 2", Priority.BULK, true));
+        executor.execute(task("urgent read", Priority.UI_CRITICAL, true));
+        release.countDown();
+        drain();
+        assertEquals(Arrays.asList("bulk read", "normal write", "urgent read", "bulk read 2"), order);
+    }
+
+    @Test
+    public void yieldDoesNotRunWrites() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new PriorityTask(Priority.BULK, new Runnable() {
+            @Override
+            public void run() {
+                order.add("chunk 1");
+                executor.execute(task("urgent write", Priority.UI_CRITICAL, false));
+                executor.execute(task("urgent read", Priority.UI_CRITICAL, true));
+                InstrumentedExecutor.yieldToUrgent();
+                order.add("chunk 2");
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        drain();
+        // 读任务晚于写任务提交，不能越过它
+        assertEquals(Arrays.asList("chunk 1", "chunk 2", "urgent write", "urgent read"), order);
+    }
+}
@@ -0,0 +1,122 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * 测试用的SQLite Dao，使用内存数据库，非自增主键
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+class ItemDao extends SimpleSQLiteDaoImpl<ItemDao.Item> {
+
+    static final class Item {
+        long id;
+        String name;
+        Integer rank;
+
+        Item() {
+        }
+
+        Item(long id, String name, Integer rank) {
+            this.id = id;
+            this.name = name;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * 创建使用独立内存数据库的Dao
+     */
+    static ItemDao open() {
+        final ItemDao dao = new ItemDao();
+        dao.setSQLiteOpenHelper(new Helper(RuntimeEnvironment.application, dao));
+        return dao;
+    }
+
+    @Override
+    public String getTableName() {
+        return "item";
+    }
+
+    @Override
+    public Column[] getColumns() {
+        return new Column[] {
+                Column.create("id").longType().primaryKey(),
+                Column.create("name").textType().notNull(),
+                Column.create("rank").integerType()
+        };
+    }
+
+    @Override
+    public Item toEntity(Cursor c) {
+        Item item = new Item();
+        item.id = c.getLong(c.getColumnIndex("id"));
+        item.name = c.getString(c.getColumnIndex("name"));
+        int rank = c.getColumnIndex("rank");
+        item.rank = c.isNull(rank) ? null : c.getInt(rank);
+        return item;
+    }
+
+    @Override
+    public ContentValues toContentValues(Item entity) {
+        ContentValues values = new ContentValues();
+        values.put("id", entity.id);
+        values.put("name", entity.name);
+        values.put("rank", entity.rank);
+        return values;
+    }
+
+    SQLiteDatabase db() {
+        return mSQLiteOpenHelper.getWritableDatabase();
+    }
+
+    long count() {
+        return DatabaseUtils.queryNumEntries(db(), getTableName());
+    }
+
+    /**
+     * 按主键批量操作使用的临时表中的记录数，临时表不存在时为0
+     */
+    long tempKeys() {
+        if (DatabaseUtils.longForQuery(db(),
+                "SELECT COUNT(*) FROM sqlite_temp_master WHERE name = 'easylite_keys'", null) == 0) {
+            return 0;
+        }
+        return DatabaseUtils.queryNumEntries(db(), "temp.easylite_keys");
+    }
+
+    String nameOf(long id) {
+        Item item = query(String.valueOf(id));
+        return item == null ? null : item.name;
+    }
+
+    /**
+     * 内存数据库，首次打开时为dao建表
+     */
+    static final class Helper extends SQLiteOpenHelper {
+
+        private final AbstractDefaultDao<?> mDao;
+
+        Helper(Context context, AbstractDefaultDao<?> dao) {
+            super(context, null, null, 1);
+            mDao = dao;
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            mDao.createTable(db);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        }
+    }
+}
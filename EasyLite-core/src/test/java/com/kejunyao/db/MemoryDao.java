@@ -0,0 +1,219 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 测试用的内存Dao（非SQLite实现），自增主键，按主键条件读写
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+class MemoryDao extends AbstractDefaultDao<MemoryDao.Event> {
+
+    static final class Event {
+        long id;
+        String name;
+
+        Event(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    /**
+     * 主键 -> 记录
+     */
+    final Map<Long, ContentValues> rows = new LinkedHashMap<>();
+    /**
+     * name在该集合中的记录写入失败
+     */
+    final Set<String> failing = new HashSet<>();
+    int inserts;
+    int updates;
+    private long mNextId = 1;
+
+    @Override
+    public String getTableName() {
+        return "event";
+    }
+
+    @Override
+    public Column[] getColumns() {
+        return new Column[] {
+                Column.create("id").longType().primaryKeyAuto(),
+                Column.create("name").textType()
+        };
+    }
+
+    @Override
+    public ContentValues toContentValues(Event entity) {
+        ContentValues values = new ContentValues();
+        values.put("id", entity.id);
+        values.put("name", entity.name);
+        return values;
+    }
+
+    synchronized String nameOf(long id) {
+        ContentValues values = rows.get(id);
+        return values == null ? null : values.getAsString("name");
+    }
+
+    @Override
+    protected Cursor query(String tableName, String[] columns, String whereClause, String[] whereArgs, QueryOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected synchronized boolean has(String log, String whereClause, String[] whereArgs) {
+        return rows.containsKey(Long.valueOf(whereArgs[0]));
+    }
+
+    @Override
+    protected synchronized boolean insert(String log, ContentValues values) {
+        if (failing.contains(values.getAsString("name"))) {
+            return false;
+        }
+        Long id = values.getAsLong("id");
+        if (id == null || id == 0) {
+            id = mNextId++;
+        } else if (rows.containsKey(id)) {
+            return false;
+        } else {
+            mNextId = Math.max(mNextId, id + 1);
+        }
+        ContentValues row = new ContentValues(values);
+        row.put("id", id);
+        rows.put(id, row);
+        inserts++;
+        return true;
+    }
+
+    @Override
+    protected Event query(String log, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected List<Event> queryMany(String log, String whereClause, String[] whereArgs, QueryOptions options) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected synchronized boolean update(String log, ContentValues values, String whereClause, String[] whereArgs) {
+        Long id = Long.valueOf(whereArgs[0]);
+        if (failing.contains(values.getAsString("name")) || !rows.containsKey(id)) {
+            return false;
+        }
+        rows.get(id).putAll(values);
+        updates++;
+        return true;
+    }
+
+    @Override
+    protected synchronized boolean delete(String log, String whereClause, String[] whereArgs) {
+        return rows.remove(Long.valueOf(whereArgs[0])) != null;
+    }
+
+    @Override
+    public Event query(String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean insert(Event entity) {
+        return insert(null, toContentValues(entity));
+    }
+
+    @Override
+    public boolean update(Event entity, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean update(String[] primaryKeys, ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean update(ContentValues values, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean delete(String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean delete(String[] primaryKeys) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean batchInsert(List<Event> entities) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean batchInsert(List<Event> entities, OnBatchListener listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean batchUpdate(List<Event> entities) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean batchUpdate(List<ContentValues> values, String column) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean batchUpdate(List<Event> entities, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Long getLong(String columnOrExpression, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getString(String columnOrExpression, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Long> getLongs(String columnOrExpression, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<String> getStrings(String columnOrExpression, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ContentValues getRowValues(String[] columnsOrExpressions, String whereClause, String[] whereArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    List<String> names() {
+        List<String> names = new ArrayList<>();
+        synchronized (this) {
+            for (ContentValues values : rows.values()) {
+                names.add(values.getAsString("name"));
+            }
+        }
+        return names;
+    }
+}
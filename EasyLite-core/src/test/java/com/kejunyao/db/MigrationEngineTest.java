@@ -0,0 +1,225 @@
+package com.kejunyao.db;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link MigrationEngine}检查点、失败续跑及前后台顺序测试（SQLite）
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class MigrationEngineTest {
+
+    private SQLiteDatabase db;
+    private MigrationEngine engine;
+    private final List<String> log = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        engine = new MigrationEngine();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    /**
+     * 每次插入一行，共3次；第一次执行到progress == failAt时插入后抛出异常
+     */
+    private final class StepMigration extends Migration {
+        private final long mFailAt;
+        private boolean mFailed;
+        final List<Long> calls = new ArrayList<>();
+
+        StepMigration(int version, String name, long failAt) {
+            super(version, name);
+            mFailAt = failAt;
+        }
+
+        @Override
+        protected long migrate(SQLiteDatabase db, long progress) throws Exception {
+            calls.add(progress);
+            log.add(getName());
+            db.execSQL("INSERT INTO step (n) VALUES (?)", new Object[] {progress});
+            if (progress == mFailAt && !mFailed) {
+                mFailed = true;
+                throw new IllegalStateException("step " + progress);
+            }
+            return progress == 2 ? DONE : progress + 1;
+        }
+    }
+
+    private final class LogMigration extends Migration {
+        private final boolean mBackground;
+
+        LogMigration(int version, String name, boolean background) {
+            super(version, name);
+            mBackground = background;
+        }
+
+        @Override
+        public boolean isBackground() {
+            return mBackground;
+        }
+
+        @Override
+        protected long migrate(SQLiteDatabase db, long progress) {
+            log.add(getName());
+            return DONE;
+        }
+    }
+
+    private MigrationRecord record(String name) {
+        for (MigrationRecord r : engine.records(db)) {
+            if (r.name().equals(name)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    private long count(String table) {
+        return DatabaseUtils.queryNumEntries(db, table);
+    }
+
+    @Test
+    public void failedStepResumesFromCheckpoint() {
+        db.execSQL("CREATE TABLE step (n INTEGER)");
+        StepMigration step = new StepMigration(2, "step", 1);
+        engine.add(step);
+        engine.onUpgrade(db, 1, 2);
+        try {
+            engine.runForeground(db);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        MigrationRecord r = record("step");
+        assertEquals(MigrationRecord.STATE_FAILED, r.state());
+        assertEquals(1, r.progress());
+        assertEquals(1, r.attempts());
+        assertNotNull(r.error());
+        // 第0块已提交，失败的第1块已回滚
+        assertEquals(1, count("step"));
+
+        assertFalse(engine.runForeground(db));
+        assertEquals(Arrays.asList(0L, 1L, 1L, 2L), step.calls);
+        r = record("step");
+        assertEquals(MigrationRecord.STATE_DONE, r.state());
+        assertEquals(2, r.attempts());
+        assertNull(r.error());
+        assertEquals(3, count("step"));
+
+        // 已完成的步骤不再执行
+        assertFalse(engine.runForeground(db));
+        assertEquals(4, step.calls.size());
+    }
+
+    @Test
+    public void failedCopyKeepsSourceAndResumes() {
+        db.execSQL("CREATE TABLE src (id INTEGER PRIMARY KEY, name TEXT)");
+        db.execSQL("CREATE TABLE dst (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+        for (int i = 1; i <= 10; i++) {
+            db.execSQL("INSERT INTO src (id, name) VALUES (?, ?)", new Object[] {i, i == 6 ? null : "n" + i});
+        }
+        String[] columns = {"id", "name"};
+        engine.add(new ChunkedCopyMigration(2, "copy", "src", "dst", columns, columns, 3, true));
+        engine.onUpgrade(db, 1, 2);
+        assertTrue(engine.runForeground(db));
+        assertTrue(engine.beginBackground());
+        assertFalse(engine.runBackground(db));
+
+        MigrationRecord r = record("copy");
+        assertEquals(MigrationRecord.STATE_FAILED, r.state());
+        assertEquals(3, r.progress());
+        // 源表完整保留，目标表只有已提交的块
+        assertEquals(10, count("src"));
+        assertEquals(3, count("dst"));
+
+        db.execSQL("UPDATE src SET name = 'n6' WHERE id = 6");
+        assertTrue(engine.beginBackground());
+        assertTrue(engine.runBackground(db));
+        assertEquals(MigrationRecord.STATE_DONE, record("copy").state());
+        assertEquals(10, count("dst"));
+        assertEquals(0, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = 'src'", null));
+    }
+
+    @Test
+    public void backgroundRunsAfterAllForeground() {
+        engine.add(new LogMigration(2, "bg2", true));
+        engine.add(new LogMigration(2, "fg2", false));
+        engine.add(new LogMigration(3, "fg3", false));
+        engine.onUpgrade(db, 1, 3);
+        assertTrue(engine.runForeground(db));
+        assertEquals(Arrays.asList("fg2", "fg3"), log);
+        assertEquals(MigrationRecord.STATE_PENDING, record("bg2").state());
+
+        assertTrue(engine.beginBackground());
+        assertFalse(engine.beginBackground());
+        assertTrue(engine.runBackground(db));
+        assertEquals(Arrays.asList("fg2", "fg3", "bg2"), log);
+        assertFalse(engine.runForeground(db));
+    }
+
+    @Test
+    public void failedForegroundHoldsBackBackground() {
+        db.execSQL("CREATE TABLE step (n INTEGER)");
+        engine.add(new StepMigration(2, "step", 0));
+        engine.add(new LogMigration(2, "bg", true));
+        engine.add(new LogMigration(3, "fg3", false));
+        engine.onUpgrade(db, 1, 3);
+        try {
+            engine.runForeground(db);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // 失败的前台步骤之后的步骤均未执行
+        assertEquals(Arrays.asList("step"), log);
+        assertEquals(MigrationRecord.STATE_PENDING, record("fg3").state());
+        assertEquals(MigrationRecord.STATE_PENDING, record("bg").state());
+    }
+
+    @Test
+    public void recordsReadsReadOnlyDatabase() {
+        File file = new File(RuntimeEnvironment.application.getCacheDir(), "migration-readonly.db");
+        SQLiteDatabase.deleteDatabase(file);
+        SQLiteDatabase.openOrCreateDatabase(file, null).close();
+        SQLiteDatabase readOnly = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            assertTrue(engine.records(readOnly).isEmpty());
+            // 读取记录时不建表
+            assertEquals(0, DatabaseUtils.longForQuery(readOnly,
+                    "SELECT COUNT(*) FROM sqlite_master WHERE name = '" + MigrationEngine.TABLE + "'", null));
+        } finally {
+            readOnly.close();
+            SQLiteDatabase.deleteDatabase(file);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.kejunyao.db;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PageToken}键集分页测试（SQLite）
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class PageTokenTest {
+
+    /**
+     * 各记录的rank，含重复值及NULL，主键为下标+1
+     */
+    private static final Integer[] RANKS = {3, null, 1, 3, null, 2, 1, 3, null, 10, 2, -1};
+
+    private ItemDao dao;
+
+    @Before
+    public void setUp() {
+        dao = ItemDao.open();
+        List<ItemDao.Item> items = new ArrayList<>();
+        for (int i = 0; i < RANKS.length; i++) {
+            items.add(new ItemDao.Item(i + 1, "item" + (i + 1), RANKS[i]));
+        }
+        assertTrue(dao.batchInsert(items));
+    }
+
+    private List<Long> pageAll(PageRequest first, int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        PageRequest request = first;
+        for (int pages = 0; pages <= RANKS.length; pages++) {
+            Page<ItemDao.Item> page = dao.page(request);
+            assertTrue(page.entities().size() <= pageSize);
+            for (ItemDao.Item item : page.entities()) {
+                ids.add(item.id);
+            }
+            if (!page.hasNext()) {
+                return ids;
+            }
+            request = copy(first).after(page.nextToken());
+        }
+        throw new AssertionError("paging does not terminate: " + ids);
+    }
+
+    private static PageRequest copy(PageRequest request) {
+        return PageRequest.create(request.pageSize()).sortBy(request.sortColumn(), request.isDescending());
+    }
+
+    /**
+     * 按rank、id排序的全部主键，NULL升序时在前、降序时在后
+     */
+    private static List<Long> expected(boolean descending) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < RANKS.length; i++) {
+            ids.add((long) (i + 1));
+        }
+        final int sign = descending ? -1 : 1;
+        Collections.sort(ids, new Comparator<Long>() {
+            @Override
+            public int compare(Long a, Long b) {
+                Integer ra = RANKS[(int) (a - 1)];
+                Integer rb = RANKS[(int) (b - 1)];
+                int result;
+                if (ra == null || rb == null) {
+                    result = ra == rb ? 0 : (ra == null ? -1 : 1);
+                } else {
+                    result = ra.compareTo(rb);
+                }
+                if (result == 0) {
+                    result = a.compareTo(b);
+                }
+                return sign * result;
+            }
+        });
+        return ids;
+    }
+
+    @Test
+    public void pagesAscendingThroughDuplicatesAndNulls() {
+        for (int pageSize = 1; pageSize <= 5; pageSize++) {
+            assertEquals("pageSize " + pageSize, expected(false),
+                    pageAll(PageRequest.create(pageSize).sortBy("rank"), pageSize));
+        }
+    }
+
+    @Test
+    public void pagesDescendingThroughDuplicatesAndNulls() {
+        for (int pageSize = 1; pageSize <= 5; pageSize++) {
+            assertEquals("pageSize " + pageSize, expected(true),
+                    pageAll(PageRequest.create(pageSize).sortBy("rank", true), pageSize));
+        }
+    }
+
+    @Test
+    public void pagesByPrimaryKeyInBothDirections() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= RANKS.length; id++) {
+            ids.add(id);
+        }
+        assertEquals(ids, pageAll(PageRequest.create(5), 5));
+        Collections.reverse(ids);
+        assertEquals(ids, pageAll(PageRequest.create(5).descending(), 5));
+    }
+
+    @Test
+    public void encodesSortValueLongerThan64K() {
+        char[] chars = new char[70000];
+        Arrays.fill(chars, '中');
+        String name = new String(chars);
+        assertTrue(dao.insert(new ItemDao.Item(100, name, 0)));
+        assertTrue(dao.insert(new ItemDao.Item(101, name + "z", 0)));
+        Page<ItemDao.Item> page = dao.page(PageRequest.create(1).sortBy("name", true));
+        assertEquals(101, page.entities().get(0).id);
+        page = dao.page(PageRequest.create(1).sortBy("name", true).after(page.nextToken()));
+        assertEquals(100, page.entities().get(0).id);
+        assertTrue(page.hasNext());
+        page = dao.page(PageRequest.create(1).sortBy("name", true).after(page.nextToken()));
+        assertEquals(9, page.entities().get(0).id);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTokenForOtherSortOrder() {
+        Page<ItemDao.Item> page = dao.page(PageRequest.create(2).sortBy("rank"));
+        dao.page(PageRequest.create(2).sortBy("rank", true).after(page.nextToken()));
+    }
+}
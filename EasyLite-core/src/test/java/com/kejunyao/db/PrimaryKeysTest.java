@@ -0,0 +1,113 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按主键批量更新、删除测试（SQLite），覆盖分块IN语句及临时表两种方式的边界
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class PrimaryKeysTest {
+
+    private static final int ROWS = 2 * AbstractSQLiteDaoImpl.TEMP_KEYS_THRESHOLD + 100;
+    private static final int[] SIZES = {
+            1,
+            AbstractDefaultDao.MIN_KEYS_PER_STATEMENT - 1,
+            AbstractDefaultDao.MIN_KEYS_PER_STATEMENT,
+            AbstractDefaultDao.MIN_KEYS_PER_STATEMENT + 1,
+            AbstractDefaultDao.MAX_KEYS_PER_STATEMENT - 1,
+            AbstractDefaultDao.MAX_KEYS_PER_STATEMENT,
+            AbstractDefaultDao.MAX_KEYS_PER_STATEMENT + 1,
+            AbstractSQLiteDaoImpl.TEMP_KEYS_THRESHOLD,
+            AbstractSQLiteDaoImpl.TEMP_KEYS_THRESHOLD + 1
+    };
+
+    private static ItemDao open() {
+        ItemDao dao = ItemDao.open();
+        List<ItemDao.Item> items = new ArrayList<>(ROWS);
+        for (int i = 1; i <= ROWS; i++) {
+            items.add(new ItemDao.Item(i, "item" + i, i));
+        }
+        assertTrue(dao.batchInsert(items));
+        return dao;
+    }
+
+    /**
+     * size个主键：存在的奇数主键，末尾混入一个重复主键和一个不存在的主键
+     * @param existing 返回其中存在的不同主键数
+     */
+    private static String[] keys(int size, int[] existing) {
+        String[] keys = new String[size];
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (size > 2 && i == size - 2) {
+                keys[i] = keys[0];
+            } else if (size > 2 && i == size - 1) {
+                keys[i] = String.valueOf(ROWS * 10);
+            } else {
+                keys[i] = String.valueOf(2 * i + 1);
+                distinct++;
+            }
+        }
+        existing[0] = distinct;
+        return keys;
+    }
+
+    @Test
+    public void deletesByPrimaryKeys() {
+        for (int size : SIZES) {
+            ItemDao dao = open();
+            int[] existing = new int[1];
+            assertTrue(dao.delete(keys(size, existing)));
+            assertEquals("size " + size, ROWS - existing[0], dao.count());
+            assertNull("size " + size, dao.nameOf(1));
+            assertEquals("size " + size, "item2", dao.nameOf(2));
+            assertEquals("size " + size, 0, dao.tempKeys());
+        }
+    }
+
+    @Test
+    public void updatesByPrimaryKeys() {
+        for (int size : SIZES) {
+            ItemDao dao = open();
+            int[] existing = new int[1];
+            ContentValues values = new ContentValues();
+            values.put("name", "updated");
+            assertTrue(dao.update(keys(size, existing), values));
+            assertEquals("size " + size, existing[0], DatabaseUtils.longForQuery(dao.db(),
+                    "SELECT COUNT(*) FROM item WHERE name = 'updated'", null));
+            assertEquals("size " + size, ROWS, dao.count());
+            assertEquals("size " + size, "updated", dao.nameOf(1));
+            assertEquals("size " + size, 0, dao.tempKeys());
+        }
+    }
+
+    @Test
+    public void clearsTempKeysWhenStatementFails() {
+        ItemDao dao = open();
+        String[] keys = keys(AbstractSQLiteDaoImpl.TEMP_KEYS_THRESHOLD + 1, new int[1]);
+        ContentValues values = new ContentValues();
+        // name非空约束使更新失败，整体回滚
+        values.putNull("name");
+        assertFalse(dao.update(keys, values));
+        assertEquals("item1", dao.nameOf(1));
+        assertEquals(0, dao.tempKeys());
+    }
+}
@@ -0,0 +1,127 @@
+package com.kejunyao.db;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Dao#queryByIds(String[])}、{@link Dao#hasMany(String[])}测试（SQLite）
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class QueryByIdsTest {
+
+    private static final int ROWS = 4000;
+    private static final int[] SIZES = {
+            1,
+            AbstractDefaultDao.MAX_KEYS_PER_STATEMENT + 1,
+            AbstractDefaultDao.MAX_KEYS_PER_QUERY,
+            AbstractDefaultDao.MAX_KEYS_PER_QUERY + 1,
+            3000
+    };
+
+    private ItemDao dao;
+
+    @Before
+    public void setUp() {
+        dao = ItemDao.open();
+        List<ItemDao.Item> items = new ArrayList<>(ROWS);
+        // 只有偶数主键存在
+        for (int i = 2; i <= ROWS; i += 2) {
+            items.add(new ItemDao.Item(i, "item" + i, i));
+        }
+        assertTrue(dao.batchInsert(items));
+    }
+
+    /**
+     * 主键依次为 size..1，带前导0，使结果须按规范化的主键匹配
+     */
+    private static String[] keys(int size) {
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "00" + (size - i);
+        }
+        return keys;
+    }
+
+    @Test
+    public void queriesByNonCanonicalKeysInArgumentOrder() {
+        for (int size : SIZES) {
+            String[] keys = keys(size);
+            Map<String, ItemDao.Item> result = dao.queryByIds(keys);
+            assertEquals("size " + size, size / 2, result.size());
+            List<String> expected = new ArrayList<>();
+            for (String key : keys) {
+                if (Integer.parseInt(key) % 2 == 0) {
+                    expected.add(key);
+                }
+            }
+            assertEquals("size " + size, expected, new ArrayList<>(result.keySet()));
+            for (Map.Entry<String, ItemDao.Item> e : result.entrySet()) {
+                assertEquals(Long.parseLong(e.getKey()), e.getValue().id);
+            }
+            assertEquals("size " + size, 0, dao.tempKeys());
+        }
+    }
+
+    @Test
+    public void hasManyMatchesNonCanonicalKeys() {
+        for (int size : SIZES) {
+            String[] keys = keys(size);
+            BitSet bits = dao.hasMany(keys);
+            for (int i = 0; i < size; i++) {
+                assertEquals("size " + size + ", key " + keys[i], Integer.parseInt(keys[i]) % 2 == 0, bits.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void queriesDuplicateAndUnknownKeys() {
+        Map<String, ItemDao.Item> result = dao.queryByIds(new String[] {"4", "+4", "4.0", "abc", "3"});
+        assertEquals(3, result.size());
+        assertEquals(4, result.get("+4").id);
+        assertEquals(4, result.get("4.0").id);
+        assertFalse(result.containsKey("abc"));
+    }
+
+    @Test
+    public void normalizesByColumnAffinity() {
+        Column integer = Column.create("a").integerType();
+        Column text = Column.create("b").textType();
+        Column real = Column.create("c").doubleType();
+        assertEquals("7", SQLiteBinder.normalize("007", integer));
+        assertEquals("7", SQLiteBinder.normalize(" 7.0 ", integer));
+        assertEquals("1000", SQLiteBinder.normalize("1e3", integer));
+        assertEquals("7.5", SQLiteBinder.normalize("7.5", integer));
+        assertEquals("abc", SQLiteBinder.normalize("abc", integer));
+        assertEquals("007", SQLiteBinder.normalize("007", text));
+        assertEquals("7.0", SQLiteBinder.normalize("7", real));
+    }
+
+    @Test
+    public void cachesEntitiesByNormalizedKey() {
+        DaoController controller = new DaoController(dao, null);
+        controller.setEntityCacheSize(16);
+        Map<String, ItemDao.Item> result = controller.queryByIds(new String[] {"004"});
+        assertEquals("item4", result.get("004").name);
+        ItemDao.Item item = new ItemDao.Item(4, "renamed", 4);
+        assertTrue(controller.update(item));
+        result = controller.queryByIds(new String[] {"004"});
+        assertEquals("renamed", result.get("004").name);
+        assertEquals("renamed", controller.<ItemDao.Item>query("04").name);
+    }
+}
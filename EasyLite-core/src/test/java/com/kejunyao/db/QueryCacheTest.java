@@ -0,0 +1,76 @@
+package com.kejunyao.db;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link QueryCache}及{@link DaoController}查询结果缓存失效测试
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class QueryCacheTest {
+
+    private static final String[] ID_1 = {"1"};
+
+    private QueryCache cache;
+    private MemoryDao dao;
+    private DaoController controller;
+
+    @Before
+    public void setUp() {
+        cache = new QueryCache(64 * 1024);
+        dao = new MemoryDao();
+        controller = new DaoController(dao, null);
+        controller.setQueryCache(cache);
+    }
+
+    @Test
+    public void invalidatesTableIgnoringCase() {
+        long version = cache.version("Event");
+        cache.put("k", "Event", version, "v", 16);
+        assertNotNull(cache.get("k"));
+
+        cache.invalidate("EVENT");
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    public void skipsResultReadBeforeConcurrentWrite() {
+        long version = cache.version("event");
+        cache.invalidate("EVENT");
+        cache.put("k", "event", version, "stale", 16);
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    public void writeThroughControllerInvalidatesCachedQuery() {
+        assertFalse(controller.has("id = ?", ID_1));
+        // 绕过Controller的写操作不会使缓存失效
+        dao.insert(new MemoryDao.Event(0, "a"));
+        assertFalse(controller.has("id = ?", ID_1));
+        assertEquals(1, cache.stats().hitCount());
+
+        controller.insert(new MemoryDao.Event(0, "b"));
+        assertTrue(controller.has("id = ?", ID_1));
+    }
+
+    @Test
+    public void tableWriteFromOtherPathInvalidatesCachedQuery() {
+        assertFalse(controller.has("id = ?", ID_1));
+        dao.insert(new MemoryDao.Event(0, "a"));
+        cache.invalidate("EVENT");
+        assertTrue(controller.has("id = ?", ID_1));
+    }
+}
@@ -0,0 +1,72 @@
+package com.kejunyao.db;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AbstractSQLiteDaoImpl}批量写操作测试（SQLite）
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class SQLiteDaoTest {
+
+    private ItemDao dao;
+
+    @Before
+    public void setUp() {
+        dao = ItemDao.open();
+    }
+
+    private static List<ItemDao.Item> items(int from, int to) {
+        List<ItemDao.Item> items = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            items.add(new ItemDao.Item(i, "item" + i, i));
+        }
+        return items;
+    }
+
+    @Test
+    public void batchInsertOrUpdateInsertsAndUpdates() {
+        assertTrue(dao.batchInsertOrUpdate(items(1, 6)));
+        List<ItemDao.Item> changed = items(4, 9);
+        for (ItemDao.Item item : changed) {
+            item.name = "new" + item.id;
+        }
+        assertTrue(dao.batchInsertOrUpdate(changed));
+        assertEquals(8, dao.count());
+        assertEquals("item3", dao.nameOf(3));
+        assertEquals("new4", dao.nameOf(4));
+        assertEquals("new8", dao.nameOf(8));
+    }
+
+    @Test
+    public void batchInsertOrUpdateRollsBackOnlyFailedBatch() {
+        assertTrue(dao.batchInsert(items(1, 6)));
+        dao.setBatchSize(2);
+        List<ItemDao.Item> changed = items(1, 6);
+        for (ItemDao.Item item : changed) {
+            item.name = "new" + item.id;
+        }
+        // name非空约束使第二批次[3, 4]失败
+        changed.get(3).name = null;
+        assertFalse(dao.batchInsertOrUpdate(changed));
+        assertEquals("new1", dao.nameOf(1));
+        assertEquals("new2", dao.nameOf(2));
+        assertEquals("item3", dao.nameOf(3));
+        assertEquals("item4", dao.nameOf(4));
+        assertEquals("new5", dao.nameOf(5));
+    }
+}
@@ -0,0 +1,206 @@
+package com.kejunyao.db;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link TableLockManager}测试
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class TableLockManagerTest {
+
+    private final TableLockManager manager = new TableLockManager();
+
+    private static final String[] EVENT = {"event"};
+
+    @Test
+    public void nestedRequestCoveredByHeldLeaseIsNoOp() {
+        TableLockManager.Lease outer = manager.acquire(EVENT, true);
+        try {
+            TableLockManager.Lease inner = manager.acquire(new String[] {"EVENT"}, false);
+            inner.release();
+            inner = manager.acquire(EVENT, true);
+            inner.release();
+        } finally {
+            outer.release();
+        }
+        assertEquals(1, manager.stats().get("event").acquisitionCount());
+        assertFalse(manager.isHeldByCurrentThread());
+    }
+
+    @Test
+    public void tableActionCanLockAllTables() throws Exception {
+        // TableAction中调用按实体类执行的方法，无法确定表时对全部表加锁
+        TableLockManager.Lease outer = manager.acquire(EVENT, true);
+        try {
+            TableLockManager.Lease inner = manager.acquireAll();
+            try {
+                assertFalse(otherThreadLocks(new String[] {"user"}, 100));
+            } finally {
+                inner.release();
+            }
+            assertTrue(otherThreadLocks(new String[] {"user"}, 1000));
+        } finally {
+            outer.release();
+        }
+        assertFalse(manager.isHeldByCurrentThread());
+    }
+
+    @Test
+    public void sharedLockUpgradesWhenUncontended() {
+        TableLockManager.Lease shared = manager.acquire(EVENT, false);
+        try {
+            TableLockManager.Lease exclusive = manager.acquire(EVENT, true);
+            exclusive.release();
+        } finally {
+            shared.release();
+        }
+        assertFalse(manager.isHeldByCurrentThread());
+    }
+
+    @Test
+    public void contendedUpgradeWaitsWithoutDeadlock() throws Exception {
+        final CountDownLatch locked = new CountDownLatch(2);
+        final CountDownLatch upgraded = new CountDownLatch(2);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        // 两个线程同时持有共享锁后都升级为排它锁
+        Runnable upgrade = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    TableLockManager.Lease shared = manager.acquire(EVENT, false);
+                    try {
+                        locked.countDown();
+                        locked.await(1, TimeUnit.SECONDS);
+                        TableLockManager.Lease exclusive = manager.acquire(EVENT, true);
+                        exclusive.release();
+                    } finally {
+                        shared.release();
+                    }
+                    assertFalse(manager.isHeldByCurrentThread());
+                } catch (Throwable t) {
+                    error.set(t);
+                } finally {
+                    upgraded.countDown();
+                }
+            }
+        };
+        new Thread(upgrade).start();
+        new Thread(upgrade).start();
+        assertTrue(upgraded.await(2, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertTrue(otherThreadLocks(EVENT, 1000));
+    }
+
+    @Test
+    public void outOfOrderNestedLockReacquiresInOrder() throws Exception {
+        final CountDownLatch holdsA = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        // 其他线程持有a并等待b，当前线程持有b后逆序请求a
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TableLockManager.Lease a = manager.acquire(new String[] {"a"}, true);
+                try {
+                    holdsA.countDown();
+                    manager.acquire(new String[] {"b"}, true).release();
+                } finally {
+                    a.release();
+                    done.countDown();
+                }
+            }
+        });
+        TableLockManager.Lease outer = manager.acquire(new String[] {"b"}, true);
+        try {
+            other.start();
+            assertTrue(holdsA.await(1, TimeUnit.SECONDS));
+            TableLockManager.Lease inner = manager.acquire(new String[] {"a"}, true);
+            // 重新获取期间另一线程已先后持有a、b
+            assertTrue(done.await(1, TimeUnit.SECONDS));
+            inner.release();
+            assertFalse(otherThreadLocks(new String[] {"b"}, 100));
+            assertTrue(otherThreadLocks(new String[] {"a"}, 1000));
+        } finally {
+            outer.release();
+        }
+        assertFalse(manager.isHeldByCurrentThread());
+        assertTrue(otherThreadLocks(new String[] {"a", "b"}, 1000));
+    }
+
+    @Test
+    public void urgentTaskRunsWhileBulkTaskHoldsLease() throws Exception {
+        final InstrumentedExecutor executor = new InstrumentedExecutor("test", 1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch urgentDone = new CountDownLatch(1);
+        final Runnable urgent = new PriorityTask(Priority.UI_CRITICAL, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    manager.acquireAll().release();
+                } catch (Throwable t) {
+                    error.set(t);
+                } finally {
+                    urgentDone.countDown();
+                }
+            }
+        }, true);
+        executor.execute(new PriorityTask(Priority.BULK, new Runnable() {
+            @Override
+            public void run() {
+                TableLockManager.Lease lease = manager.acquire(EVENT, true);
+                try {
+                    executor.execute(urgent);
+                    InstrumentedExecutor.yieldToUrgent();
+                } finally {
+                    lease.release();
+                }
+            }
+        }));
+        assertTrue(urgentDone.await(1, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertNull(error.get());
+    }
+
+    /**
+     * 在其他线程中对表加排它锁
+     * @return 是否在timeoutMillis内加锁成功
+     */
+    private boolean otherThreadLocks(final String[] tables, long timeoutMillis) throws Exception {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> future = other.submit(new Runnable() {
+                @Override
+                public void run() {
+                    manager.acquire(tables, true).release();
+                }
+            });
+            try {
+                future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            }
+        } finally {
+            other.shutdown();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.kejunyao.db;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link TuningProfile}测试
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class TuningProfileTest {
+
+    @Test
+    public void forNameFallsBackToDefaultForUnknownName() {
+        TuningProfile profile = TuningProfile.forName("staging");
+        assertFalse(profile.isWriteAheadLogging());
+        assertEquals(0, profile.readers());
+        assertEquals(4, TuningProfile.forName("Throughput").readers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsExclusiveLockingWithWal() {
+        TuningProfile.durable().lockingMode("EXCLUSIVE").validate();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsReadersWithoutWal() {
+        TuningProfile.create().readers(2).validate();
+    }
+
+    @Test
+    public void presetsAreValid() {
+        TuningProfile.durable().validate();
+        TuningProfile.balanced().validate();
+        TuningProfile.throughput().validate();
+        TuningProfile.create().journalMode("DELETE").lockingMode("EXCLUSIVE").validate();
+        assertTrue(TuningProfile.throughput().isWriteAheadLogging());
+    }
+}
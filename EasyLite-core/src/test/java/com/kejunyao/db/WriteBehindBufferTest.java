@@ -0,0 +1,268 @@
+package com.kejunyao.db;
+
+import android.content.ContentValues;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link WriteBehindBuffer}及{@link WriteBehindJournal}测试
+ *
+ * @author kejunyao
+ * @since 2026年10月17日
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class WriteBehindBufferTest {
+
+    /**
+     * 不自动刷写，溢写日志立即写入
+     */
+    private static final WriteBehindBuffer.Scheduler NO_SCHEDULE = new WriteBehindBuffer.Scheduler() {
+        @Override
+        public void scheduleFlush(WriteBehindBuffer buffer, long delayMillis) {
+        }
+
+        @Override
+        public void awaitFlush(WriteBehindBuffer buffer) {
+            buffer.flush();
+        }
+
+        @Override
+        public void scheduleJournalWrite(WriteBehindBuffer buffer) {
+            buffer.writeJournal();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MemoryDao dao;
+
+    @Before
+    public void setUp() {
+        dao = new MemoryDao();
+    }
+
+    private WriteBehindBuffer newBuffer(File journal) {
+        return new WriteBehindBuffer(dao, 100, 1000, journal == null ? null : new WriteBehindJournal(journal), NO_SCHEDULE);
+    }
+
+    @Test
+    public void coalescesWritesWithSamePrimaryKey() {
+        dao.insert(new MemoryDao.Event(5, "old"));
+        WriteBehindBuffer buffer = newBuffer(null);
+        MemoryDao.Event first = new MemoryDao.Event(5, "a");
+        MemoryDao.Event last = new MemoryDao.Event(5, "b");
+        buffer.put(first);
+        buffer.put(last);
+        assertSame(last, buffer.get("5"));
+
+        List<Object> flushed = buffer.flush();
+        assertEquals(1, flushed.size());
+        assertEquals("b", dao.nameOf(5));
+        assertEquals(1, dao.updates);
+        WriteBehindStats stats = buffer.stats();
+        assertEquals(2, stats.writeCount());
+        assertEquals(1, stats.coalescedCount());
+        assertEquals(1, stats.flushedCount());
+        assertNull(buffer.get("5"));
+        assertFalse(buffer.hasPending());
+    }
+
+    @Test
+    public void appendsNewRecordsWithoutCoalescing() {
+        WriteBehindBuffer buffer = newBuffer(null);
+        buffer.put(new MemoryDao.Event(0, "a"));
+        buffer.put(new MemoryDao.Event(0, "b"));
+        buffer.put(new MemoryDao.Event(0, "c"));
+        assertEquals(3, buffer.stats().pendingCount());
+
+        buffer.flush();
+        assertEquals(Arrays.asList("a", "b", "c"), dao.names());
+        assertEquals(0, buffer.stats().coalescedCount());
+    }
+
+    @Test
+    public void retriesFailedRowsThenCountsThemAsDropped() {
+        dao.failing.add("bad");
+        WriteBehindBuffer buffer = newBuffer(null);
+        buffer.put(new MemoryDao.Event(0, "good"));
+        buffer.put(new MemoryDao.Event(0, "bad"));
+
+        buffer.flush();
+        assertEquals(Arrays.asList("good"), dao.names());
+        assertEquals(1, buffer.stats().flushedCount());
+        assertTrue(buffer.hasPending());
+
+        for (int i = 1; i <= WriteBehindBuffer.MAX_RETRIES; i++) {
+            assertEquals(0, buffer.stats().droppedCount());
+            buffer.flush();
+        }
+        assertEquals(1, buffer.stats().droppedCount());
+        assertFalse(buffer.hasPending());
+        assertNull(buffer.flush());
+    }
+
+    @Test
+    public void retriedRowIsWrittenOnceItSucceeds() {
+        dao.failing.add("later");
+        WriteBehindBuffer buffer = newBuffer(null);
+        buffer.put(new MemoryDao.Event(0, "later"));
+        buffer.flush();
+        assertTrue(dao.names().isEmpty());
+
+        dao.failing.clear();
+        buffer.flush();
+        assertEquals(Arrays.asList("later"), dao.names());
+        assertEquals(0, buffer.stats().droppedCount());
+        assertFalse(buffer.hasPending());
+    }
+
+    @Test
+    public void replaysJournalAfterCrash() throws Exception {
+        File journal = new File(folder.getRoot(), "event.journal");
+        WriteBehindBuffer crashed = newBuffer(journal);
+        crashed.put(new MemoryDao.Event(0, "a"));
+        crashed.put(new MemoryDao.Event(7, "b"));
+        // 未刷写即“崩溃”，新的缓冲从日志恢复
+
+        WriteBehindBuffer buffer = newBuffer(journal);
+        assertTrue(buffer.hasRecovered());
+        buffer.flush();
+        assertFalse(buffer.hasRecovered());
+        assertEquals(Arrays.asList("a", "b"), dao.names());
+        assertEquals("b", dao.nameOf(7));
+        buffer.close();
+
+        assertTrue(new WriteBehindJournal(journal).recover().isEmpty());
+    }
+
+    @Test
+    public void keepsOnlyFailedRowsInJournal() {
+        File journal = new File(folder.getRoot(), "event.journal");
+        dao.failing.add("bad");
+        WriteBehindBuffer buffer = newBuffer(journal);
+        buffer.put(new MemoryDao.Event(0, "good"));
+        buffer.put(new MemoryDao.Event(0, "bad"));
+        buffer.flush();
+
+        List<ContentValues> rows = new WriteBehindJournal(journal).recover();
+        assertEquals(1, rows.size());
+        assertEquals("bad", rows.get(0).getAsString("name"));
+    }
+
+    @Test
+    public void countsRetriesPerRow() {
+        dao.failing.add("first");
+        dao.failing.add("second");
+        WriteBehindBuffer buffer = newBuffer(null);
+        buffer.put(new MemoryDao.Event(0, "first"));
+        buffer.flush();
+        buffer.put(new MemoryDao.Event(0, "second"));
+        for (int i = 1; i <= WriteBehindBuffer.MAX_RETRIES; i++) {
+            buffer.flush();
+        }
+        // first已重试3次后丢弃，second只重试了2次
+        assertEquals(1, buffer.stats().droppedCount());
+        assertTrue(buffer.hasPending());
+        dao.failing.clear();
+        buffer.flush();
+        assertEquals(Arrays.asList("second"), dao.names());
+    }
+
+    @Test
+    public void dropsFailedRowWhenNewerWriteIsBuffered() {
+        dao.failing.add("old");
+        WriteBehindBuffer buffer = newBuffer(null);
+        buffer.put(new MemoryDao.Event(5, "old"));
+        buffer.flush();
+        assertNull(dao.nameOf(5));
+
+        dao.failing.clear();
+        buffer.put(new MemoryDao.Event(5, "new"));
+        buffer.flush();
+        assertEquals("new", dao.nameOf(5));
+        assertEquals(1, dao.inserts + dao.updates);
+        assertEquals(1, buffer.stats().coalescedCount());
+        assertFalse(buffer.hasPending());
+    }
+
+    @Test
+    public void dropsFailedRowWhenNewerWriteIsCommittedDirectly() {
+        dao.failing.add("old");
+        WriteBehindBuffer buffer = newBuffer(null);
+        buffer.put(new MemoryDao.Event(5, "old"));
+        buffer.put(new MemoryDao.Event(6, "old"));
+        buffer.flush();
+
+        dao.failing.clear();
+        dao.insert(new MemoryDao.Event(5, "direct"));
+        buffer.supersede(new String[] {"5"});
+        buffer.flush();
+        assertEquals("direct", dao.nameOf(5));
+        // 其他主键的记录照常重试
+        assertEquals("old", dao.nameOf(6));
+        assertFalse(buffer.hasPending());
+    }
+
+    @Test
+    public void recoveredRowsKeepLastWritePerKey() throws Exception {
+        File journal = new File(folder.getRoot(), "event.journal");
+        WriteBehindBuffer crashed = newBuffer(journal);
+        crashed.put(new MemoryDao.Event(7, "a"));
+        crashed.put(new MemoryDao.Event(7, "b"));
+
+        // 日志中同一主键较早的写入不再重放
+        dao.failing.add("a");
+        WriteBehindBuffer buffer = newBuffer(journal);
+        buffer.flush();
+        assertEquals("b", dao.nameOf(7));
+        assertFalse(buffer.hasPending());
+    }
+
+    @Test
+    public void journalIsWrittenOffTheCallerThread() {
+        final List<WriteBehindBuffer> scheduled = new ArrayList<>();
+        File journal = new File(folder.getRoot(), "event.journal");
+        WriteBehindBuffer buffer = new WriteBehindBuffer(dao, 100, 1000, new WriteBehindJournal(journal),
+                new WriteBehindBuffer.Scheduler() {
+                    @Override
+                    public void scheduleFlush(WriteBehindBuffer buffer, long delayMillis) {
+                    }
+
+                    @Override
+                    public void awaitFlush(WriteBehindBuffer buffer) {
+                    }
+
+                    @Override
+                    public void scheduleJournalWrite(WriteBehindBuffer buffer) {
+                        scheduled.add(buffer);
+                    }
+                });
+        buffer.put(new MemoryDao.Event(0, "a"));
+        buffer.put(new MemoryDao.Event(0, "b"));
+        // 排队期间只安排一次写入，尚未写文件
+        assertEquals(1, scheduled.size());
+        assertTrue(new WriteBehindJournal(journal).recover().isEmpty());
+
+        buffer.writeJournal();
+        assertEquals(2, new WriteBehindJournal(journal).recover().size());
+    }
+}